@@ -11,6 +11,7 @@ import net.minecraft.core.registries.Registries;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraft.world.item.Item;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.AddReloadListenerEvent;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
@@ -92,6 +93,14 @@ public class TradeMod {
         LOGGER.info("交易系统命令注册完成");
     }
     
+    /**
+     * 注册数据包重载监听器：回收价格表
+     */
+    @SubscribeEvent
+    public void onAddReloadListeners(AddReloadListenerEvent event) {
+        event.addListener(new com.tradesystem.mod.manager.RecyclePriceLoader());
+    }
+    
     /**
      * 服务器启动事件
      */
@@ -102,6 +111,10 @@ public class TradeMod {
         // 初始化JSON数据管理器
         com.tradesystem.mod.data.JsonDataManager.getInstance().initialize(event.getServer());
         
+        // 初始化交易邮箱
+        com.tradesystem.mod.data.OfflineMailbox.getInstance().initialize(
+                com.tradesystem.mod.data.JsonDataManager.getInstance().getDataDirectory().resolve("mailbox"));
+        
         // 启动定期数据保存任务
         com.tradesystem.mod.task.DataSaveTask.getInstance().start();
         
@@ -116,6 +129,20 @@ public class TradeMod {
         
         // 加载商品数据
         com.tradesystem.mod.manager.ItemListingManager.getInstance().loadData();
+        com.tradesystem.mod.manager.BuyOrderManager.getInstance().loadData();
+        com.tradesystem.mod.manager.AuctionManager.getInstance().loadData();
+        
+        // 为已加载的上架物品和拍卖建立到期时间轮
+        com.tradesystem.mod.manager.MarketScheduler.getInstance().start();
+        
+        // 启动市场引擎，之后订单簿只由引擎修改
+        com.tradesystem.mod.manager.MarketEngine marketEngine = com.tradesystem.mod.manager.MarketEngine.getInstance();
+        marketEngine.addListener(com.tradesystem.mod.manager.ItemListingManager.getInstance());
+        marketEngine.addListener(com.tradesystem.mod.data.TradeManager.getInstance());
+        marketEngine.addListener(com.tradesystem.mod.manager.BuyOrderManager.getInstance());
+        marketEngine.addListener(com.tradesystem.mod.manager.AuctionManager.getInstance());
+        marketEngine.addListener(com.tradesystem.mod.manager.MarketScheduler.getInstance());
+        marketEngine.start(event.getServer());
         
         LOGGER.info("交易系统服务器启动完成");
     }
@@ -127,12 +154,21 @@ public class TradeMod {
     public void onServerStopping(ServerStoppingEvent event) {
         LOGGER.info("交易系统MOD服务器关闭中...");
         
-        // 保存JSON数据
-        com.tradesystem.mod.data.JsonDataManager.getInstance().shutdown();
+        // 停止触发拍卖结束和物品过期
+        com.tradesystem.mod.manager.MarketScheduler.getInstance().stop();
+        
+        // 执行完排队的市场命令和待发放的物品，成交会修改账本，必须在账本关闭之前
+        com.tradesystem.mod.manager.MarketEngine.getInstance().shutdown();
+        
+        // 写入账本中未刷新的金币变化并清空账本，必须在JSON数据保存之前
+        com.tradesystem.mod.data.CurrencyLedger.getInstance().shutdown();
         
-        // 保存商品数据
+        // 把商品数据交给上架物品仓库，必须在JSON数据保存之前
         com.tradesystem.mod.manager.ItemListingManager.getInstance().saveData();
         
+        // 保存JSON数据
+        com.tradesystem.mod.data.JsonDataManager.getInstance().shutdown();
+        
         // 关闭数据管理器
         if (dataManager != null) {
             dataManager.shutdown();
@@ -141,6 +177,9 @@ public class TradeMod {
         // 关闭数据服务
         DataService.getInstance().shutdown();
         
+        // 关闭交易邮箱
+        com.tradesystem.mod.data.OfflineMailbox.getInstance().shutdown();
+        
         LOGGER.info("交易系统MOD服务器关闭完成");
     }
     
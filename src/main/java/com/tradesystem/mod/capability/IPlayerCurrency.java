@@ -15,6 +15,14 @@ public interface IPlayerCurrency extends INBTSerializable<CompoundTag> {
      */
     int getMoney();
     
+    /**
+     * 获取玩家当前金币数量（不截断）
+     * @return 金币数量
+     */
+    default long getBalance() {
+        return getMoney();
+    }
+    
     /**
      * 设置玩家金币数量
      * @param money 金币数量
@@ -0,0 +1,73 @@
+package com.tradesystem.mod.capability;
+
+import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.CurrencyLedger;
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.UUID;
+
+/**
+ * 服务端玩家货币Capability
+ * 本身不保存金币，所有读写都转发到 CurrencyLedger，
+ * 因此同一个玩家的金币只有账本一份数据
+ */
+public class LedgerCurrency implements IPlayerCurrency {
+    
+    private final UUID playerId;
+    
+    public LedgerCurrency(UUID playerId) {
+        this.playerId = playerId;
+    }
+    
+    @Override
+    public long getBalance() {
+        return CurrencyLedger.getInstance().getBalance(playerId);
+    }
+    
+    @Override
+    public int getMoney() {
+        return (int) Math.min(getBalance(), Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public void setMoney(int money) {
+        CurrencyLedger.getInstance().setBalance(playerId, money);
+    }
+    
+    @Override
+    public boolean addMoney(int amount) {
+        return CurrencyLedger.getInstance().credit(playerId, amount);
+    }
+    
+    @Override
+    public boolean removeMoney(int amount) {
+        return CurrencyLedger.getInstance().debit(playerId, amount);
+    }
+    
+    @Override
+    public boolean hasMoney(int amount) {
+        return CurrencyLedger.getInstance().hasBalance(playerId, amount);
+    }
+    
+    @Override
+    public void reset() {
+        CurrencyLedger.getInstance().setBalance(playerId, TradeConfig.initialPlayerMoney);
+    }
+    
+    @Override
+    public int getMaxMoney() {
+        return TradeConfig.maxPlayerMoney;
+    }
+    
+    @Override
+    public CompoundTag serializeNBT() {
+        CompoundTag tag = new CompoundTag();
+        tag.putLong("money", getBalance());
+        return tag;
+    }
+    
+    @Override
+    public void deserializeNBT(CompoundTag nbt) {
+        // 金币以账本为准，玩家存档中的旧数据不再覆盖账本
+    }
+}
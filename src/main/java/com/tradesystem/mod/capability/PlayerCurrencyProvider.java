@@ -2,6 +2,8 @@ package com.tradesystem.mod.capability;
 
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.ICapabilityProvider;
 import net.minecraftforge.common.util.INBTSerializable;
@@ -12,15 +14,24 @@ import org.jetbrains.annotations.Nullable;
 /**
  * 玩家货币Capability提供者
  * 负责为玩家实体提供货币Capability
+ * 服务端玩家使用账本视图，客户端玩家保存同步下来的金币
  */
 public class PlayerCurrencyProvider implements ICapabilityProvider, INBTSerializable<CompoundTag> {
     
-    private PlayerCurrency currency = null;
+    private final Player player;
+    private IPlayerCurrency currency = null;
     private final LazyOptional<IPlayerCurrency> optional = LazyOptional.of(this::createCurrency);
     
-    private PlayerCurrency createCurrency() {
+    public PlayerCurrencyProvider(Player player) {
+        this.player = player;
+    }
+    
+    private IPlayerCurrency createCurrency() {
+        // 附加Capability时玩家UUID尚未设置，因此延迟到第一次访问时创建
         if (this.currency == null) {
-            this.currency = new PlayerCurrency();
+            this.currency = player instanceof ServerPlayer
+                    ? new LedgerCurrency(player.getUUID())
+                    : new PlayerCurrency();
         }
         return this.currency;
     }
@@ -36,11 +47,7 @@ public class PlayerCurrencyProvider implements ICapabilityProvider, INBTSerializ
     
     @Override
     public CompoundTag serializeNBT() {
-        CompoundTag nbt = new CompoundTag();
-        createCurrency().serializeNBT().getAllKeys().forEach(key -> {
-            nbt.put(key, createCurrency().serializeNBT().get(key));
-        });
-        return nbt;
+        return createCurrency().serializeNBT();
     }
     
     @Override
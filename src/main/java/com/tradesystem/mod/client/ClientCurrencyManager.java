@@ -10,7 +10,7 @@ import com.tradesystem.mod.config.TradeConfig;
 public class ClientCurrencyManager {
     
     private static ClientCurrencyManager instance;
-    private int playerMoney = TradeConfig.initialPlayerMoney; // 使用配置文件中的初始金币
+    private long playerMoney = TradeConfig.initialPlayerMoney; // 使用配置文件中的初始金币，与服务端账本一样为long
     
     private ClientCurrencyManager() {}
     
@@ -24,15 +24,15 @@ public class ClientCurrencyManager {
     /**
      * 获取玩家当前金币数量
      */
-    public int getPlayerMoney() {
+    public long getPlayerMoney() {
         return playerMoney;
     }
     
     /**
      * 设置玩家金币数量（由服务器同步）
      */
-    public void setPlayerMoney(int money) {
-        int oldMoney = this.playerMoney;
+    public void setPlayerMoney(long money) {
+        long oldMoney = this.playerMoney;
         this.playerMoney = Math.max(0, money);
         
         if (oldMoney != this.playerMoney) {
@@ -0,0 +1,57 @@
+package com.tradesystem.mod.client;
+
+import com.tradesystem.mod.data.OfflineMailbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 客户端交易邮箱管理器
+ * 保存服务端同步下来的邮件列表，供邮箱界面显示
+ */
+public class ClientMailboxManager {
+    
+    private static ClientMailboxManager instance;
+    private final List<OfflineMailbox.Parcel> parcels = new CopyOnWriteArrayList<>();
+    
+    private ClientMailboxManager() {}
+    
+    public static ClientMailboxManager getInstance() {
+        if (instance == null) {
+            instance = new ClientMailboxManager();
+        }
+        return instance;
+    }
+    
+    /**
+     * 更新邮件列表
+     */
+    public void updateParcels(List<OfflineMailbox.Parcel> newParcels) {
+        parcels.clear();
+        if (newParcels != null) {
+            parcels.addAll(newParcels);
+        }
+    }
+    
+    /**
+     * 获取邮件列表
+     */
+    public List<OfflineMailbox.Parcel> getParcels() {
+        return new ArrayList<>(parcels);
+    }
+    
+    /**
+     * 是否没有邮件
+     */
+    public boolean isEmpty() {
+        return parcels.isEmpty();
+    }
+    
+    /**
+     * 清空邮件列表
+     */
+    public void clear() {
+        parcels.clear();
+    }
+}
@@ -2,6 +2,8 @@ package com.tradesystem.mod.client;
 
 import com.tradesystem.mod.data.SystemItem;
 import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.manager.SystemItemManager;
+import com.tradesystem.mod.util.SearchIndex;
 import net.minecraft.world.item.ItemStack;
 
 import java.util.ArrayList;
@@ -17,6 +19,7 @@ public class ClientSystemItemManager {
     
     private static ClientSystemItemManager instance;
     private final List<SystemItem> systemItems = new CopyOnWriteArrayList<>();
+    private final SearchIndex<UUID, SystemItem> searchIndex = new SearchIndex<>();
     
     private ClientSystemItemManager() {}
     
@@ -32,8 +35,12 @@ public class ClientSystemItemManager {
      */
     public void updateSystemItems(List<SystemItem> items) {
         systemItems.clear();
+        searchIndex.clear();
         if (items != null) {
             systemItems.addAll(items);
+            for (SystemItem item : items) {
+                searchIndex.put(item.getId(), item, SystemItemManager.searchFields(item));
+            }
         }
         TradeMod.getLogger().info("客户端系统商品列表已更新，共 {} 个商品", systemItems.size());
     }
@@ -86,13 +93,8 @@ public class ClientSystemItemManager {
             return getActiveSystemItems();
         }
         
-        String lowerSearchTerm = searchTerm.toLowerCase();
-        return systemItems.stream()
+        return searchIndex.search(searchTerm).stream()
                 .filter(SystemItem::isActive)
-                .filter(item -> {
-                    String itemName = item.getItemStack().getHoverName().getString().toLowerCase();
-                    return itemName.contains(lowerSearchTerm);
-                })
                 .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
     
@@ -101,6 +103,7 @@ public class ClientSystemItemManager {
      */
     public void clear() {
         systemItems.clear();
+        searchIndex.clear();
         TradeMod.getLogger().info("客户端系统商品列表已清空");
     }
     
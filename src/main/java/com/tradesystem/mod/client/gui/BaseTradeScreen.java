@@ -135,7 +135,7 @@ public abstract class BaseTradeScreen extends Screen {
     protected void renderPlayerMoney(GuiGraphics guiGraphics) {
         if (this.minecraft != null && this.minecraft.player != null) {
             // 从ClientCurrencyManager获取同步的金币数量，确保实时更新
-            int money = com.tradesystem.mod.client.ClientCurrencyManager.getInstance().getPlayerMoney();
+            long money = com.tradesystem.mod.client.ClientCurrencyManager.getInstance().getPlayerMoney();
             String moneyText = "金币: " + CurrencyUtil.formatMoney(money);
             int textWidth = this.font.width(moneyText);
             guiGraphics.drawString(this.font, moneyText, 
@@ -6,11 +6,14 @@ import com.tradesystem.mod.client.ClientSystemItemManager;
 import com.tradesystem.mod.data.TradeItem;
 import com.tradesystem.mod.data.SystemItem;
 import com.tradesystem.mod.manager.ItemListingManager;
+import com.tradesystem.mod.manager.OrderBook;
+import com.tradesystem.mod.manager.SystemItemManager;
 
 import com.tradesystem.mod.network.NetworkHandler;
 import com.tradesystem.mod.network.PurchaseItemPacket;
 import com.tradesystem.mod.network.packet.PurchaseSystemItemPacket;
 import com.tradesystem.mod.util.CurrencyUtil;
+import com.tradesystem.mod.util.SearchIndex;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.components.EditBox;
@@ -45,6 +48,10 @@ public class BuyScreen extends BaseTradeScreen {
     private List<SystemItem> systemItems = new ArrayList<>();
     private List<Object> allDisplayItems = new ArrayList<>(); // 包含TradeItem和SystemItem
     private List<Object> filteredItems = new ArrayList<>();
+    
+    // 当前显示物品的全文索引，物品列表刷新后在下一次搜索时重建
+    private final SearchIndex<Object, Object> searchIndex = new SearchIndex<>();
+    private boolean searchIndexStale = true;
     private int currentPage = 0;
     private String currentSearch = "";
     private SortType currentSort = SortType.NEWEST;
@@ -218,6 +225,7 @@ public class BuyScreen extends BaseTradeScreen {
         allDisplayItems.clear();
         allDisplayItems.addAll(allItems);
         allDisplayItems.addAll(systemItems);
+        searchIndexStale = true;
         
         filterAndSortItems();
         updateItemSlots();
@@ -227,16 +235,7 @@ public class BuyScreen extends BaseTradeScreen {
      * 过滤和排序物品
      */
     private void filterAndSortItems() {
-        filteredItems = allDisplayItems.stream()
-                .filter(item -> {
-                    if (currentSearch.isEmpty()) {
-                        return true;
-                    }
-                    String displayName = getItemDisplayName(item);
-                    String sellerName = getItemSellerName(item);
-                    return displayName.toLowerCase().contains(currentSearch) ||
-                           sellerName.toLowerCase().contains(currentSearch);
-                })
+        filteredItems = getSearchMatches().stream()
                 .sorted((a, b) -> {
                     switch (currentSort) {
                         case PRICE_LOW_TO_HIGH:
@@ -255,6 +254,36 @@ public class BuyScreen extends BaseTradeScreen {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * 在当前显示的物品中通过全文索引查找与搜索词匹配的物品，搜索词为空时返回全部物品
+     */
+    private List<Object> getSearchMatches() {
+        if (currentSearch.isEmpty()) {
+            return allDisplayItems;
+        }
+        
+        if (searchIndexStale) {
+            searchIndex.clear();
+            for (Object item : allDisplayItems) {
+                searchIndex.put(item, item, getSearchFields(item));
+            }
+            searchIndexStale = false;
+        }
+        return searchIndex.search(currentSearch);
+    }
+    
+    /**
+     * 搜索字段：上架物品与服务端订单簿相同；系统商品的卖家统一为System
+     */
+    private List<String> getSearchFields(Object item) {
+        if (item instanceof TradeItem) {
+            return OrderBook.searchFields((TradeItem) item);
+        }
+        List<String> fields = SystemItemManager.searchFields((SystemItem) item);
+        fields.add(1, getItemSellerName(item));
+        return fields;
+    }
+    
     /**
      * 获取物品显示名称
      */
@@ -398,8 +427,8 @@ public class BuyScreen extends BaseTradeScreen {
         
         // 检查玩家是否有足够的金币
         if (minecraft != null && minecraft.player != null) {
-            int playerMoney = com.tradesystem.mod.client.ClientCurrencyManager.getInstance().getPlayerMoney();
-            int totalPrice = tradeItem.getPrice() * quantity;
+            long playerMoney = com.tradesystem.mod.client.ClientCurrencyManager.getInstance().getPlayerMoney();
+            long totalPrice = (long) tradeItem.getPrice() * quantity;
             if (playerMoney < totalPrice) {
                 minecraft.player.sendSystemMessage(
                         Component.translatable("gui.tradesystem.buy.insufficient_money",
@@ -429,8 +458,8 @@ public class BuyScreen extends BaseTradeScreen {
         
         // 检查玩家是否有足够的金币
         if (minecraft != null && minecraft.player != null) {
-            int playerMoney = com.tradesystem.mod.client.ClientCurrencyManager.getInstance().getPlayerMoney();
-            int totalPrice = systemItem.getPrice() * quantity;
+            long playerMoney = com.tradesystem.mod.client.ClientCurrencyManager.getInstance().getPlayerMoney();
+            long totalPrice = (long) systemItem.getPrice() * quantity;
             if (playerMoney < totalPrice) {
                 minecraft.player.sendSystemMessage(
                         Component.translatable("gui.tradesystem.buy.insufficient_money",
@@ -54,6 +54,13 @@ public class GuiManager {
         openScreen(new ItemManagementScreen());
     }
     
+    /**
+     * 打开交易邮箱界面
+     */
+    public static void openMailboxScreen() {
+        openScreen(new MailboxScreen());
+    }
+    
     /**
      * 打开设置界面
      */
@@ -0,0 +1,118 @@
+package com.tradesystem.mod.client.gui;
+
+import com.tradesystem.mod.client.ClientMailboxManager;
+import com.tradesystem.mod.client.gui.widget.TradeButton;
+import com.tradesystem.mod.data.OfflineMailbox;
+import com.tradesystem.mod.network.NetworkHandler;
+import com.tradesystem.mod.network.packet.MailboxActionPacket;
+import com.tradesystem.mod.util.CurrencyUtil;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.components.Button;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 交易邮箱界面
+ * 显示因背包已满或离线而暂存的物品和金币，并可一键领取
+ */
+public class MailboxScreen extends BaseTradeScreen {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 4;
+    private static final int SLOT_SPACING = 18;
+
+    private Button claimButton;
+    private Button backButton;
+
+    public MailboxScreen() {
+        super(Component.translatable("gui.tradesystem.mailbox.title"), 200, 150);
+    }
+
+    @Override
+    protected void initComponents() {
+        // 打开界面时请求最新的邮件列表
+        NetworkHandler.sendToServer(new MailboxActionPacket(MailboxActionPacket.Action.REQUEST));
+
+        claimButton = new TradeButton(leftPos + 10, topPos + imageHeight - 28, 80, 20,
+                Component.translatable("gui.tradesystem.mailbox.claim_all"),
+                button -> NetworkHandler.sendToServer(new MailboxActionPacket(MailboxActionPacket.Action.CLAIM_ALL)));
+        addRenderableWidget(claimButton);
+
+        backButton = new TradeButton(leftPos + imageWidth - 70, topPos + imageHeight - 28, 60, 20,
+                Component.translatable("gui.tradesystem.button.back"),
+                button -> GuiManager.openTradeMarket());
+        addRenderableWidget(backButton);
+    }
+
+    @Override
+    protected void renderContent(GuiGraphics guiGraphics, int mouseX, int mouseY, float partialTick) {
+        renderTitle(guiGraphics);
+        renderPlayerMoney(guiGraphics);
+
+        List<ItemStack> items = new ArrayList<>();
+        long currency = 0;
+        for (OfflineMailbox.Parcel parcel : ClientMailboxManager.getInstance().getParcels()) {
+            if (parcel.isCurrency()) {
+                currency += parcel.getAmount();
+            } else {
+                items.add(parcel.getItemStack());
+            }
+        }
+
+        claimButton.active = !items.isEmpty() || currency > 0;
+
+        if (items.isEmpty() && currency == 0) {
+            Component emptyText = Component.translatable("gui.tradesystem.mailbox.empty");
+            guiGraphics.drawString(this.font, emptyText,
+                    leftPos + (imageWidth - this.font.width(emptyText)) / 2, topPos + 60, TEXT_COLOR, false);
+            return;
+        }
+
+        if (currency > 0) {
+            guiGraphics.drawString(this.font,
+                    Component.translatable("gui.tradesystem.mailbox.currency", CurrencyUtil.formatMoney(currency)),
+                    leftPos + 10, topPos + 20, MONEY_COLOR, false);
+        }
+
+        int startX = leftPos + (imageWidth - COLUMNS * SLOT_SPACING) / 2;
+        int startY = topPos + 34;
+        int shown = Math.min(items.size(), COLUMNS * ROWS);
+        for (int i = 0; i < shown; i++) {
+            int x = startX + (i % COLUMNS) * SLOT_SPACING;
+            int y = startY + (i / COLUMNS) * SLOT_SPACING;
+            guiGraphics.fill(x - 1, y - 1, x + 17, y + 17, 0xFF373737);
+            guiGraphics.renderItem(items.get(i), x, y);
+            guiGraphics.renderItemDecorations(this.font, items.get(i), x, y);
+        }
+
+        if (items.size() > shown) {
+            guiGraphics.drawString(this.font, "+" + (items.size() - shown),
+                    startX, startY + ROWS * SLOT_SPACING + 2, TEXT_COLOR, false);
+        }
+    }
+
+    @Override
+    protected void renderTooltips(GuiGraphics guiGraphics, int mouseX, int mouseY) {
+        List<ItemStack> items = new ArrayList<>();
+        for (OfflineMailbox.Parcel parcel : ClientMailboxManager.getInstance().getParcels()) {
+            if (!parcel.isCurrency()) {
+                items.add(parcel.getItemStack());
+            }
+        }
+
+        int startX = leftPos + (imageWidth - COLUMNS * SLOT_SPACING) / 2;
+        int startY = topPos + 34;
+        int shown = Math.min(items.size(), COLUMNS * ROWS);
+        for (int i = 0; i < shown; i++) {
+            int x = startX + (i % COLUMNS) * SLOT_SPACING;
+            int y = startY + (i / COLUMNS) * SLOT_SPACING;
+            if (isMouseOver(mouseX, mouseY, x, y, 16, 16)) {
+                guiGraphics.renderTooltip(this.font, items.get(i), mouseX, mouseY);
+                return;
+            }
+        }
+    }
+}
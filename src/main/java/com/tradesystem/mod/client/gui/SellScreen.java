@@ -6,8 +6,8 @@ import com.tradesystem.mod.client.gui.widget.TradeButton;
 
 import com.tradesystem.mod.manager.RecycleManager;
 import com.tradesystem.mod.network.NetworkHandler;
-import com.tradesystem.mod.network.ListItemPacket;
 import com.tradesystem.mod.network.RecycleItemPacket;
+import com.tradesystem.mod.network.packet.BulkListItemsPacket;
 import com.tradesystem.mod.util.CurrencyUtil;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
@@ -331,13 +331,16 @@ public class SellScreen extends BaseTradeScreen {
             return;
         }
         
-        // 发送上架请求到服务器
+        // 所有选中的槽位作为一个请求发送到服务器，全部上架或全部不上架
+        java.util.Map<Integer, Integer> slotQuantities = new java.util.LinkedHashMap<>();
         for (ItemSlotWidget slot : selectedSlots) {
             if (slot.hasItem()) {
-                int slotIndex = inventorySlots.indexOf(slot);
-                NetworkHandler.sendToServer(new ListItemPacket(slotIndex, price, quantity));
+                slotQuantities.put(inventorySlots.indexOf(slot), quantity);
             }
         }
+        if (!slotQuantities.isEmpty()) {
+            NetworkHandler.sendToServer(new BulkListItemsPacket(slotQuantities, price));
+        }
         
         // 显示模态框
         showModal(Component.translatable("gui.tradesystem.sell.items_listing",
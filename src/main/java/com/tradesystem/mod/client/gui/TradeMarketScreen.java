@@ -17,6 +17,7 @@ public class TradeMarketScreen extends BaseTradeScreen {
     private Button sellButton;
     private Button myTradesButton;
     private Button itemManagementButton;
+    private Button mailboxButton;
     private Button settingsButton;
     
     public TradeMarketScreen() {
@@ -74,6 +75,17 @@ public class TradeMarketScreen extends BaseTradeScreen {
         );
         this.addRenderableWidget(itemManagementButton);
         
+        // 交易邮箱按钮
+        this.mailboxButton = new TradeButton(
+                leftPos + (imageWidth - buttonWidth) / 2,
+                startY + buttonSpacing * 4,
+                buttonWidth,
+                buttonHeight,
+                Component.translatable("gui.tradesystem.button.mailbox"),
+                this::onMailboxButtonPressed
+        );
+        this.addRenderableWidget(mailboxButton);
+        
         // 设置按钮 - 仅对管理员显示
         ClientAdminManager adminManager = ClientAdminManager.getInstance();
         adminManager.ensurePermissionChecked(); // 确保权限已检查
@@ -81,7 +93,7 @@ public class TradeMarketScreen extends BaseTradeScreen {
         if (adminManager.hasAdminPermission()) {
             this.settingsButton = new TradeButton(
                     leftPos + (imageWidth - buttonWidth) / 2,
-                    startY + buttonSpacing * 4,
+                    startY + buttonSpacing * 5,
                     buttonWidth,
                     buttonHeight,
                     Component.translatable("gui.tradesystem.button.admin_settings"),
@@ -121,6 +133,9 @@ public class TradeMarketScreen extends BaseTradeScreen {
         } else if (itemManagementButton.isMouseOver(mouseX, mouseY)) {
             guiGraphics.renderTooltip(this.font, 
                     Component.translatable("gui.tradesystem.tooltip.item_management"), mouseX, mouseY);
+        } else if (mailboxButton.isMouseOver(mouseX, mouseY)) {
+            guiGraphics.renderTooltip(this.font, 
+                    Component.translatable("gui.tradesystem.tooltip.mailbox"), mouseX, mouseY);
         } else if (settingsButton != null && settingsButton.isMouseOver(mouseX, mouseY)) {
             guiGraphics.renderTooltip(this.font, 
                     Component.translatable("gui.tradesystem.tooltip.admin_settings"), mouseX, mouseY);
@@ -155,6 +170,13 @@ public class TradeMarketScreen extends BaseTradeScreen {
         GuiManager.openItemManagementScreen();
     }
     
+    /**
+     * 交易邮箱按钮点击事件
+     */
+    private void onMailboxButtonPressed(Button button) {
+        GuiManager.openMailboxScreen();
+    }
+    
     /**
      * 设置按钮点击事件
      */
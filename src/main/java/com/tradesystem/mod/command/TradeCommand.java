@@ -1,14 +1,27 @@
 package com.tradesystem.mod.command;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.data.Auction;
+import com.tradesystem.mod.data.BuyOrder;
+import com.tradesystem.mod.manager.AuctionManager;
+import com.tradesystem.mod.manager.BuyOrderManager;
 import com.tradesystem.mod.network.NetworkHandler;
 import com.tradesystem.mod.network.packet.OpenTradeGuiPacket;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.UuidArgument;
+import net.minecraft.network.chat.ClickEvent;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
 
 /**
  * 交易命令处理类
@@ -16,6 +29,9 @@ import net.minecraft.server.level.ServerPlayer;
  */
 public class TradeCommand {
     
+    // /trade auctions 最多列出的拍卖数
+    private static final int AUCTION_LIST_LIMIT = 10;
+    
     /**
      * 注册交易命令
      */
@@ -24,6 +40,28 @@ public class TradeCommand {
             Commands.literal("trade")
                 .requires(source -> source.getEntity() instanceof ServerPlayer)
                 .executes(TradeCommand::executeTradeCommand)
+                .then(Commands.literal("engine")
+                    .requires(source -> source.hasPermission(2))
+                    .executes(TradeCommand::executeEngineStats))
+                .then(Commands.literal("bid")
+                    .then(Commands.argument("price", IntegerArgumentType.integer(1))
+                        .then(Commands.argument("quantity", IntegerArgumentType.integer(1))
+                            .executes(TradeCommand::executePlaceBid))))
+                .then(Commands.literal("bids")
+                    .executes(TradeCommand::executeListBids)
+                    .then(Commands.literal("cancel")
+                        .then(Commands.argument("index", IntegerArgumentType.integer(1))
+                            .executes(TradeCommand::executeCancelBid))))
+                .then(Commands.literal("auction")
+                    .then(Commands.argument("startPrice", IntegerArgumentType.integer(1))
+                        .then(Commands.argument("minutes", IntegerArgumentType.integer(1))
+                            .executes(TradeCommand::executeStartAuction))))
+                .then(Commands.literal("auctions")
+                    .executes(TradeCommand::executeListAuctions)
+                    .then(Commands.literal("bid")
+                        .then(Commands.argument("auction", UuidArgument.uuid())
+                            .then(Commands.argument("amount", LongArgumentType.longArg(1))
+                                .executes(TradeCommand::executeAuctionBid)))))
         );
         
         // 注册别名命令
@@ -66,4 +104,139 @@ public class TradeCommand {
         
         return 0;
     }
+    
+    /**
+     * 以主手物品为模板挂出求购订单：/trade bid <单价> <数量>
+     */
+    private static int executePlaceBid(CommandContext<CommandSourceStack> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayer player)) {
+            return 0;
+        }
+        
+        ItemStack template = player.getMainHandItem();
+        if (template.isEmpty()) {
+            player.sendSystemMessage(Component.translatable("command.tradesystem.bid.no_item"));
+            return 0;
+        }
+        
+        int price = IntegerArgumentType.getInteger(context, "price");
+        int quantity = IntegerArgumentType.getInteger(context, "quantity");
+        BuyOrderManager.getInstance().placeOrder(player, template.copy(), price, quantity);
+        return 1;
+    }
+    
+    /**
+     * 列出自己的求购订单：/trade bids
+     */
+    private static int executeListBids(CommandContext<CommandSourceStack> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayer player)) {
+            return 0;
+        }
+        
+        List<BuyOrder> orders = BuyOrderManager.getInstance().getOrders(player.getUUID());
+        if (orders.isEmpty()) {
+            player.sendSystemMessage(Component.translatable("command.tradesystem.bids.empty"));
+            return 1;
+        }
+        
+        for (int i = 0; i < orders.size(); i++) {
+            BuyOrder order = orders.get(i);
+            player.sendSystemMessage(Component.translatable("command.tradesystem.bids.entry",
+                    i + 1, order.getItemStack().getHoverName(), order.getQuantity(), order.getPrice()));
+        }
+        return orders.size();
+    }
+    
+    /**
+     * 按 /trade bids 列出的序号撤销求购订单：/trade bids cancel <序号>
+     */
+    private static int executeCancelBid(CommandContext<CommandSourceStack> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayer player)) {
+            return 0;
+        }
+        
+        List<BuyOrder> orders = BuyOrderManager.getInstance().getOrders(player.getUUID());
+        int index = IntegerArgumentType.getInteger(context, "index");
+        if (index > orders.size()) {
+            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.buy_order_not_found"));
+            return 0;
+        }
+        
+        BuyOrderManager.getInstance().cancelOrder(player, orders.get(index - 1).getId());
+        return 1;
+    }
+    
+    /**
+     * 拍卖主手物品：/trade auction <起拍价> <分钟>
+     */
+    private static int executeStartAuction(CommandContext<CommandSourceStack> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayer player)) {
+            return 0;
+        }
+        
+        ItemStack itemStack = player.getMainHandItem().copy();
+        if (itemStack.isEmpty()) {
+            player.sendSystemMessage(Component.translatable("command.tradesystem.auction.no_item"));
+            return 0;
+        }
+        
+        // 先从背包取出，开拍失败时由市场引擎退还
+        player.setItemInHand(InteractionHand.MAIN_HAND, ItemStack.EMPTY);
+        int startPrice = IntegerArgumentType.getInteger(context, "startPrice");
+        int minutes = IntegerArgumentType.getInteger(context, "minutes");
+        AuctionManager.getInstance().startAuction(player, itemStack, startPrice, minutes);
+        return 1;
+    }
+    
+    /**
+     * 列出进行中的拍卖（最先结束的在前），点击条目填入出价命令：/trade auctions
+     */
+    private static int executeListAuctions(CommandContext<CommandSourceStack> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayer player)) {
+            return 0;
+        }
+        
+        List<Auction> auctions = AuctionManager.getInstance().getActiveAuctions();
+        if (auctions.isEmpty()) {
+            player.sendSystemMessage(Component.translatable("command.tradesystem.auctions.empty"));
+            return 1;
+        }
+        
+        long now = System.currentTimeMillis();
+        int shown = Math.min(auctions.size(), AUCTION_LIST_LIMIT);
+        for (int i = 0; i < shown; i++) {
+            Auction auction = auctions.get(i);
+            long secondsLeft = Math.max(0, (auction.getEndTime() - now) / 1000);
+            String command = "/trade auctions bid " + auction.getId() + " " + auction.getMinimumBid();
+            player.sendSystemMessage(Component.translatable("command.tradesystem.auctions.entry",
+                    auction.getItemStack().getHoverName(), auction.getItemStack().getCount(),
+                    auction.getMinimumBid(), secondsLeft / 60, secondsLeft % 60)
+                    .withStyle(style -> style.withClickEvent(new ClickEvent(ClickEvent.Action.SUGGEST_COMMAND, command))));
+        }
+        return shown;
+    }
+    
+    /**
+     * 对拍卖出价：/trade auctions bid <拍卖ID> <金额>
+     */
+    private static int executeAuctionBid(CommandContext<CommandSourceStack> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayer player)) {
+            return 0;
+        }
+        
+        UUID auctionId = UuidArgument.getUuid(context, "auction");
+        long amount = LongArgumentType.getLong(context, "amount");
+        AuctionManager.getInstance().placeBid(player, auctionId, amount);
+        return 1;
+    }
+    
+    /**
+     * 显示市场引擎的运行统计（处理量、队列深度、延迟、等待下架的过期物品）
+     */
+    private static int executeEngineStats(CommandContext<CommandSourceStack> context) {
+        String stats = com.tradesystem.mod.manager.MarketEngine.getInstance().getStats()
+                + " expiring=" + com.tradesystem.mod.manager.MarketScheduler.getInstance().getPendingExpiries();
+        context.getSource().sendSuccess(() -> Component.translatable("command.tradesystem.engine.stats", stats), false);
+        return 1;
+    }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ public class TradeConfig {
     public static final ForgeConfigSpec.IntValue MAX_TRADE_ITEMS_PER_PLAYER;
     public static final ForgeConfigSpec.IntValue MAX_TRADE_PRICE;
     public static final ForgeConfigSpec.DoubleValue TRADE_TAX_RATE;
+    public static final ForgeConfigSpec.IntValue MARKET_QUEUE_CAPACITY;
     
     // 货币系统配置
     public static final ForgeConfigSpec.IntValue INITIAL_PLAYER_MONEY;
@@ -32,6 +33,9 @@ public class TradeConfig {
     public static final ForgeConfigSpec.IntValue DATA_SAVE_INTERVAL;
     public static final ForgeConfigSpec.IntValue MAX_TRADE_HISTORY;
     public static final ForgeConfigSpec.ConfigValue<Boolean> ENABLE_DATA_COMPRESSION;
+    public static final ForgeConfigSpec.IntValue WRITE_BEHIND_INTERVAL;
+    public static final ForgeConfigSpec.IntValue SNAPSHOT_GENERATIONS;
+    public static final ForgeConfigSpec.ConfigValue<String> STORAGE_FORMAT;
     
     // 网络配置
     public static final ForgeConfigSpec.IntValue NETWORK_PACKET_SIZE_LIMIT;
@@ -46,9 +50,14 @@ public class TradeConfig {
     
     // 物品过期时间配置
     public static final ForgeConfigSpec.IntValue ITEM_EXPIRY_TIME;
+    public static final ForgeConfigSpec.IntValue EXPIRY_TICK_BUDGET;
+    public static final ForgeConfigSpec.IntValue EXPIRY_BATCH_SIZE;
     
     // 玩家最大上架数量配置
     public static final ForgeConfigSpec.IntValue MAX_LISTINGS_PER_PLAYER;
+    public static final ForgeConfigSpec.IntValue MAX_BUY_ORDERS_PER_PLAYER;
+    public static final ForgeConfigSpec.IntValue AUCTION_MAX_DURATION;
+    public static final ForgeConfigSpec.IntValue AUCTION_SNIPE_WINDOW;
     
     // 物品黑名单配置
     public static final ForgeConfigSpec.ConfigValue<java.util.List<? extends String>> BLACKLISTED_ITEMS;
@@ -72,6 +81,10 @@ public class TradeConfig {
                 .comment("交易税率 (0.0-1.0)")
                 .defineInRange("trade_tax_rate", 0.05, 0.0, 1.0);
         
+        MARKET_QUEUE_CAPACITY = BUILDER
+                .comment("市场引擎命令队列容量，队列已满时新的上架/购买/下架/改价请求会被拒绝")
+                .defineInRange("market_queue_capacity", 1024, 16, 65536);
+        
         BUILDER.pop();
         
         BUILDER.comment("货币系统配置").push("currency");
@@ -101,9 +114,21 @@ public class TradeConfig {
                 .defineInRange("max_trade_history", 1000, 100, 10000);
         
         ENABLE_DATA_COMPRESSION = BUILDER
-                .comment("是否启用数据压缩")
+                .comment("是否启用数据压缩 (仅对 binary 存储格式生效)")
                 .define("enable_data_compression", true);
         
+        STORAGE_FORMAT = BUILDER
+                .comment("数据文件存储格式: json (可读) 或 binary (紧凑)，切换后启动时自动迁移已有数据")
+                .define("storage_format", "binary", value -> "json".equals(value) || "binary".equals(value));
+        
+        WRITE_BEHIND_INTERVAL = BUILDER
+                .comment("数据修改后延迟写盘的间隔 (毫秒)")
+                .defineInRange("write_behind_interval", 2000, 100, 60000);
+        
+        SNAPSHOT_GENERATIONS = BUILDER
+                .comment("每个数据文件保留的历史版本数，当前版本损坏时回退到上一个完好的版本")
+                .defineInRange("snapshot_generations", 3, 1, 10);
+        
         BUILDER.pop();
         
         BUILDER.comment("网络配置").push("network");
@@ -146,10 +171,30 @@ public class TradeConfig {
                  .comment("物品过期时间（天）")
                  .defineInRange("expiry_time", 7, 1, 365);
          
+         EXPIRY_TICK_BUDGET = BUILDER
+                 .comment("每个服务器tick处理过期物品的时间预算（微秒），超出部分留到下一个tick")
+                 .defineInRange("expiry_tick_budget", 2000, 100, 50000);
+         
+         EXPIRY_BATCH_SIZE = BUILDER
+                 .comment("每批最多下架的过期物品数量，实际批大小按实测耗时和时间预算调整；同一批物品只保存和广播一次")
+                 .defineInRange("expiry_batch_size", 256, 1, 10000);
+         
          MAX_LISTINGS_PER_PLAYER = BUILDER
                  .comment("每个玩家最大上架数量")
                  .defineInRange("max_listings_per_player", 10, 1, 100);
          
+         MAX_BUY_ORDERS_PER_PLAYER = BUILDER
+                 .comment("每个玩家最大求购订单数量，挂单期间按单价×数量冻结金币")
+                 .defineInRange("max_buy_orders_per_player", 10, 1, 100);
+         
+         AUCTION_MAX_DURATION = BUILDER
+                 .comment("拍卖最长持续时间（小时）")
+                 .defineInRange("auction_max_duration", 72, 1, 720);
+         
+         AUCTION_SNIPE_WINDOW = BUILDER
+                 .comment("防狙击时间（秒）：拍卖结束前这段时间内有人出价时，结束时间顺延到出价后这么久，0表示不顺延")
+                 .defineInRange("auction_snipe_window", 30, 0, 600);
+         
          BLACKLISTED_ITEMS = BUILDER
                  .comment("禁止交易的物品列表")
                  .defineList("blacklisted_items", Arrays.asList(
@@ -168,19 +213,28 @@ public class TradeConfig {
     public static int maxTradeItemsPerPlayer;
     public static int maxTradePrice;
     public static double tradeTaxRate;
+    public static int marketQueueCapacity = 1024;
     public static int initialPlayerMoney;
     public static int maxPlayerMoney;
     public static String currencyName;
     public static int dataSaveInterval;
     public static int maxTradeHistory;
     public static boolean enableDataCompression;
+    public static int writeBehindInterval = 2000;
+    public static int snapshotGenerations = 3;
+    public static String storageFormat = "binary";
     public static int networkPacketSizeLimit;
     public static int networkTimeout;
     public static double recycleRate;
     public static java.util.List<? extends String> recycleBlacklist;
     public static double transactionTaxRate;
      public static int itemExpiryTime;
+     public static int expiryTickBudget = 2000;
+     public static int expiryBatchSize = 256;
      public static int maxListingsPerPlayer;
+     public static int maxBuyOrdersPerPlayer = 10;
+     public static int auctionMaxDuration = 72;
+     public static int auctionSnipeWindow = 30;
      public static java.util.List<? extends String> blacklistedItems;
     
     /**
@@ -193,19 +247,28 @@ public class TradeConfig {
         maxTradeItemsPerPlayer = MAX_TRADE_ITEMS_PER_PLAYER.get();
         maxTradePrice = MAX_TRADE_PRICE.get();
         tradeTaxRate = TRADE_TAX_RATE.get();
+        marketQueueCapacity = MARKET_QUEUE_CAPACITY.get();
         initialPlayerMoney = INITIAL_PLAYER_MONEY.get();
         maxPlayerMoney = MAX_PLAYER_MONEY.get();
         currencyName = CURRENCY_NAME.get();
         dataSaveInterval = DATA_SAVE_INTERVAL.get();
         maxTradeHistory = MAX_TRADE_HISTORY.get();
         enableDataCompression = ENABLE_DATA_COMPRESSION.get();
+        writeBehindInterval = WRITE_BEHIND_INTERVAL.get();
+        snapshotGenerations = SNAPSHOT_GENERATIONS.get();
+        storageFormat = STORAGE_FORMAT.get();
         networkPacketSizeLimit = NETWORK_PACKET_SIZE_LIMIT.get();
         networkTimeout = NETWORK_TIMEOUT.get();
         recycleRate = RECYCLE_RATE.get();
         recycleBlacklist = RECYCLE_BLACKLIST.get();
         transactionTaxRate = TRANSACTION_TAX_RATE.get();
          itemExpiryTime = ITEM_EXPIRY_TIME.get();
+         expiryTickBudget = EXPIRY_TICK_BUDGET.get();
+         expiryBatchSize = EXPIRY_BATCH_SIZE.get();
          maxListingsPerPlayer = MAX_LISTINGS_PER_PLAYER.get();
+         maxBuyOrdersPerPlayer = MAX_BUY_ORDERS_PER_PLAYER.get();
+         auctionMaxDuration = AUCTION_MAX_DURATION.get();
+         auctionSnipeWindow = AUCTION_SNIPE_WINDOW.get();
          blacklistedItems = BLACKLISTED_ITEMS.get();
     }
     
@@ -216,6 +279,13 @@ public class TradeConfig {
          return recycleBlacklist;
      }
      
+     /**
+      * 获取上架物品的有效期（毫秒）
+      */
+     public static long getItemExpiryMillis() {
+         return itemExpiryTime * 24L * 60L * 60L * 1000L;
+     }
+     
      /**
       * 获取每个玩家最大上架数量
       */
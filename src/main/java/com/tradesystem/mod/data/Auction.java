@@ -0,0 +1,166 @@
+package com.tradesystem.mod.data;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * 拍卖数据类
+ * 一件物品限时竞价，结束时成交给最高出价者；当前最高出价在拍卖结束前从出价者余额中冻结
+ */
+public class Auction {
+    private UUID id;
+    private UUID sellerId;
+    private String sellerName;
+    private ItemStack itemStack;
+    private int startPrice;
+    private long highBid; // 当前最高出价，0表示还没有人出价
+    private UUID highBidderId;
+    private String highBidderName;
+    private int bidCount;
+    private long startTime;
+    private long endTime;
+    private long version; // 每次出价递增
+
+    /**
+     * 构造函数
+     */
+    public Auction(UUID sellerId, String sellerName, ItemStack itemStack, int startPrice, long durationMillis) {
+        this.id = UUID.randomUUID();
+        this.sellerId = sellerId;
+        this.sellerName = sellerName;
+        this.itemStack = itemStack.copy();
+        this.startPrice = startPrice;
+        this.startTime = System.currentTimeMillis();
+        this.endTime = startTime + durationMillis;
+    }
+
+    /**
+     * 从NBT数据构造
+     */
+    public Auction(CompoundTag tag) {
+        this.id = tag.getUUID("id");
+        this.sellerId = tag.getUUID("sellerId");
+        this.sellerName = tag.getString("sellerName");
+        this.itemStack = ItemStack.of(tag.getCompound("itemStack"));
+        this.startPrice = tag.getInt("startPrice");
+        this.highBid = tag.getLong("highBid");
+        if (tag.hasUUID("highBidderId")) {
+            this.highBidderId = tag.getUUID("highBidderId");
+            this.highBidderName = tag.getString("highBidderName");
+        }
+        this.bidCount = tag.getInt("bidCount");
+        this.startTime = tag.getLong("startTime");
+        this.endTime = tag.getLong("endTime");
+        this.version = tag.getLong("version");
+    }
+
+    private Auction() {}
+
+    /**
+     * 转换为NBT数据
+     */
+    public CompoundTag toNBT() {
+        CompoundTag tag = new CompoundTag();
+        tag.putUUID("id", this.id);
+        tag.putUUID("sellerId", this.sellerId);
+        tag.putString("sellerName", this.sellerName != null ? this.sellerName : "");
+        tag.put("itemStack", this.itemStack.save(new CompoundTag()));
+        tag.putInt("startPrice", this.startPrice);
+        tag.putLong("highBid", this.highBid);
+        if (this.highBidderId != null) {
+            tag.putUUID("highBidderId", this.highBidderId);
+            tag.putString("highBidderName", this.highBidderName != null ? this.highBidderName : "");
+        }
+        tag.putInt("bidCount", this.bidCount);
+        tag.putLong("startTime", this.startTime);
+        tag.putLong("endTime", this.endTime);
+        tag.putLong("version", this.version);
+        return tag;
+    }
+
+    /**
+     * 复制当前状态，用于事件和结果
+     */
+    public Auction copy() {
+        Auction copy = new Auction();
+        copy.id = id;
+        copy.sellerId = sellerId;
+        copy.sellerName = sellerName;
+        copy.itemStack = itemStack.copy();
+        copy.startPrice = startPrice;
+        copy.highBid = highBid;
+        copy.highBidderId = highBidderId;
+        copy.highBidderName = highBidderName;
+        copy.bidCount = bidCount;
+        copy.startTime = startTime;
+        copy.endTime = endTime;
+        copy.version = version;
+        return copy;
+    }
+
+    /**
+     * 下一次出价的最低金额：没有出价时为起拍价，否则比当前最高价至少高 5%（至少 1）
+     */
+    public long getMinimumBid() {
+        if (highBidderId == null) {
+            return startPrice;
+        }
+        return highBid + Math.max(1, (long) Math.ceil(highBid * 0.05));
+    }
+
+    /**
+     * 记录新的最高出价
+     */
+    public void placeBid(UUID bidderId, String bidderName, long amount) {
+        this.highBidderId = bidderId;
+        this.highBidderName = bidderName;
+        this.highBid = amount;
+        this.bidCount++;
+        this.version++;
+    }
+
+    // Getters
+    public UUID getId() { return id; }
+    public UUID getSellerId() { return sellerId; }
+    public String getSellerName() { return sellerName; }
+    public ItemStack getItemStack() { return itemStack.copy(); }
+    public int getStartPrice() { return startPrice; }
+    public long getHighBid() { return highBid; }
+    public UUID getHighBidderId() { return highBidderId; }
+    public String getHighBidderName() { return highBidderName; }
+    public int getBidCount() { return bidCount; }
+    public long getStartTime() { return startTime; }
+    public long getEndTime() { return endTime; }
+    public long getVersion() { return version; }
+    public boolean hasBids() { return highBidderId != null; }
+
+    // Setters
+    public void setEndTime(long endTime) { this.endTime = endTime; }
+
+    /**
+     * 获取物品显示名称
+     */
+    public String getDisplayName() {
+        return itemStack.getHoverName().getString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        return id.equals(((Auction) obj).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Auction{id=%s, seller=%s, item=%s, highBid=%d, endTime=%d}",
+                id, sellerName, getDisplayName(), highBid, endTime);
+    }
+}
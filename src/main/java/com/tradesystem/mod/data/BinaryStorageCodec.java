@@ -0,0 +1,408 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.world.item.ItemStack;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 紧凑二进制编解码器
+ *
+ * 文件格式：[magic:int][version:byte][kind:byte][flags:byte] 之后是数据体，
+ * flags 的最低位表示数据体是否经过 Deflate 压缩。读取时以文件中的 flags 为准，
+ * 因此切换压缩配置不影响读取已有文件。
+ *
+ * 数量、价格、时间使用变长整数；UUID 是随机值，变长编码没有收益，按16字节定长存储；
+ * 物品以原版 NBT 二进制格式存储
+ *
+ * 版本2：交易物品增加版本号字段；版本1的文件仍可读取，交易物品的版本号按0处理
+ * 版本3：系统统计的每个值带类型标记（int/long/double/boolean/string），读回原来的类型；更早的文件中统计值都是字符串
+ */
+public class BinaryStorageCodec implements StorageCodec {
+
+    public static final String NAME = "binary";
+
+    private static final int MAGIC = 0x54534442; // "TSDB"
+    private static final int VERSION = 3;
+
+    // 交易物品带有版本号字段的最低文件版本
+    private static final int VERSION_ITEM_VERSION = 2;
+
+    // 系统统计值带有类型标记的最低文件版本
+    private static final int VERSION_TYPED_STATS = 3;
+
+    // 系统统计值的类型标记，其他类型按字符串保存
+    private static final int STAT_STRING = 0;
+    private static final int STAT_INT = 1;
+    private static final int STAT_LONG = 2;
+    private static final int STAT_DOUBLE = 3;
+    private static final int STAT_BOOLEAN = 4;
+
+    private static final int KIND_TRADE_ITEMS = 1;
+    private static final int KIND_PLAYER_CURRENCY = 2;
+    private static final int KIND_SYSTEM_STATS = 3;
+    private static final int KIND_BUY_ORDERS = 4;
+    private static final int KIND_AUCTIONS = 5;
+
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final int ITEM_ACTIVE = 1;
+    private static final int ITEM_SYSTEM = 2;
+
+    private final boolean compress;
+
+    public BinaryStorageCodec(boolean compress) {
+        this.compress = compress;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "bin";
+    }
+
+    @Override
+    public void writeTradeItems(Map<UUID, TradeItem> items, OutputStream output) throws IOException {
+        writeBody(output, KIND_TRADE_ITEMS, data -> {
+            writeVarInt(data, items.size());
+            for (TradeItem item : items.values()) {
+                writeUUID(data, item.getId());
+                writeUUID(data, item.getSellerId());
+                data.writeUTF(item.getSellerName() != null ? item.getSellerName() : "");
+                data.writeByte((item.isActive() ? ITEM_ACTIVE : 0) | (item.isSystemItem() ? ITEM_SYSTEM : 0));
+                writeVarInt(data, item.getPrice());
+                writeVarLong(data, item.getListTime());
+                writeVarLong(data, item.getVersion());
+                NbtIo.write(item.getItemStack().save(new CompoundTag()), data);
+            }
+        });
+    }
+
+    @Override
+    public Map<UUID, TradeItem> readTradeItems(InputStream input) throws IOException {
+        return readBody(input, KIND_TRADE_ITEMS, (data, fileVersion) -> {
+            int count = readVarInt(data);
+            Map<UUID, TradeItem> result = new HashMap<>(Math.max(16, count * 4 / 3));
+            for (int i = 0; i < count; i++) {
+                UUID id = readUUID(data);
+                UUID sellerId = readUUID(data);
+                String sellerName = data.readUTF();
+                int flags = data.readUnsignedByte();
+                int price = readVarInt(data);
+                long listTime = readVarLong(data);
+                long version = fileVersion >= VERSION_ITEM_VERSION ? readVarLong(data) : 0L;
+                ItemStack itemStack = ItemStack.of(NbtIo.read(data));
+
+                if (itemStack.isEmpty()) {
+                    TradeMod.getLogger().warn("跳过物品无效的交易物品: {}", id);
+                    continue;
+                }
+
+                TradeItem item = new TradeItem(id, sellerId, sellerName, itemStack, price, listTime,
+                        (flags & ITEM_ACTIVE) != 0);
+                item.setSystemItem((flags & ITEM_SYSTEM) != 0);
+                item.setVersion(version);
+                result.put(id, item);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void writeBuyOrders(Map<UUID, BuyOrder> orders, OutputStream output) throws IOException {
+        writeBody(output, KIND_BUY_ORDERS, data -> {
+            writeVarInt(data, orders.size());
+            for (BuyOrder order : orders.values()) {
+                writeUUID(data, order.getId());
+                writeUUID(data, order.getBuyerId());
+                data.writeUTF(order.getBuyerName() != null ? order.getBuyerName() : "");
+                writeVarInt(data, order.getPrice());
+                writeVarInt(data, order.getQuantity());
+                writeVarLong(data, order.getCreateTime());
+                writeVarLong(data, order.getVersion());
+                NbtIo.write(order.getItemStack().save(new CompoundTag()), data);
+            }
+        });
+    }
+
+    @Override
+    public Map<UUID, BuyOrder> readBuyOrders(InputStream input) throws IOException {
+        return readBody(input, KIND_BUY_ORDERS, (data, fileVersion) -> {
+            int count = readVarInt(data);
+            Map<UUID, BuyOrder> result = new HashMap<>(Math.max(16, count * 4 / 3));
+            for (int i = 0; i < count; i++) {
+                UUID id = readUUID(data);
+                UUID buyerId = readUUID(data);
+                String buyerName = data.readUTF();
+                int price = readVarInt(data);
+                int quantity = readVarInt(data);
+                long createTime = readVarLong(data);
+                long version = readVarLong(data);
+                ItemStack itemStack = ItemStack.of(NbtIo.read(data));
+
+                if (itemStack.isEmpty()) {
+                    TradeMod.getLogger().warn("跳过物品无效的求购订单: {}", id);
+                    continue;
+                }
+
+                BuyOrder order = new BuyOrder(id, buyerId, buyerName, itemStack, price, quantity, createTime);
+                order.setVersion(version);
+                result.put(id, order);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 拍卖数量少、字段多，每条直接以 NBT 二进制格式存储
+     */
+    @Override
+    public void writeAuctions(Map<UUID, Auction> auctions, OutputStream output) throws IOException {
+        writeBody(output, KIND_AUCTIONS, data -> {
+            writeVarInt(data, auctions.size());
+            for (Auction auction : auctions.values()) {
+                NbtIo.write(auction.toNBT(), data);
+            }
+        });
+    }
+
+    @Override
+    public Map<UUID, Auction> readAuctions(InputStream input) throws IOException {
+        return readBody(input, KIND_AUCTIONS, (data, fileVersion) -> {
+            int count = readVarInt(data);
+            Map<UUID, Auction> result = new HashMap<>(Math.max(16, count * 4 / 3));
+            for (int i = 0; i < count; i++) {
+                Auction auction = new Auction(NbtIo.read(data));
+                if (auction.getItemStack().isEmpty()) {
+                    TradeMod.getLogger().warn("跳过物品无效的拍卖: {}", auction.getId());
+                    continue;
+                }
+                result.put(auction.getId(), auction);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void writePlayerCurrency(Map<UUID, Long> currency, OutputStream output) throws IOException {
+        writeBody(output, KIND_PLAYER_CURRENCY, data -> {
+            writeVarInt(data, currency.size());
+            for (Map.Entry<UUID, Long> entry : currency.entrySet()) {
+                writeUUID(data, entry.getKey());
+                writeVarLong(data, zigZag(entry.getValue()));
+            }
+        });
+    }
+
+    @Override
+    public Map<UUID, Long> readPlayerCurrency(InputStream input) throws IOException {
+        return readBody(input, KIND_PLAYER_CURRENCY, (data, fileVersion) -> {
+            int count = readVarInt(data);
+            Map<UUID, Long> result = new HashMap<>(Math.max(16, count * 4 / 3));
+            for (int i = 0; i < count; i++) {
+                UUID playerId = readUUID(data);
+                result.put(playerId, unZigZag(readVarLong(data)));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void writeSystemStats(Map<String, Object> stats, OutputStream output) throws IOException {
+        writeBody(output, KIND_SYSTEM_STATS, data -> {
+            writeVarInt(data, stats.size());
+            for (Map.Entry<String, Object> entry : stats.entrySet()) {
+                data.writeUTF(entry.getKey());
+                writeStatValue(data, entry.getValue());
+            }
+        });
+    }
+
+    private static void writeStatValue(DataOutputStream data, Object value) throws IOException {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            data.writeByte(STAT_INT);
+            data.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            data.writeByte(STAT_LONG);
+            data.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            data.writeByte(STAT_DOUBLE);
+            data.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            data.writeByte(STAT_BOOLEAN);
+            data.writeBoolean((Boolean) value);
+        } else {
+            data.writeByte(STAT_STRING);
+            data.writeUTF(String.valueOf(value));
+        }
+    }
+
+    private static Object readStatValue(DataInputStream data) throws IOException {
+        int type = data.readUnsignedByte();
+        switch (type) {
+            case STAT_STRING:
+                return data.readUTF();
+            case STAT_INT:
+                return data.readInt();
+            case STAT_LONG:
+                return data.readLong();
+            case STAT_DOUBLE:
+                return data.readDouble();
+            case STAT_BOOLEAN:
+                return data.readBoolean();
+            default:
+                throw new IOException("未知的统计值类型: " + type);
+        }
+    }
+
+    @Override
+    public Map<String, Object> readSystemStats(InputStream input) throws IOException {
+        return readBody(input, KIND_SYSTEM_STATS, (data, fileVersion) -> {
+            int count = readVarInt(data);
+            Map<String, Object> result = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = data.readUTF();
+                result.put(key, fileVersion >= VERSION_TYPED_STATS ? readStatValue(data) : data.readUTF());
+            }
+            return result;
+        });
+    }
+
+    // ==================== 文件头与数据体 ====================
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(DataInputStream data, int fileVersion) throws IOException;
+    }
+
+    private void writeBody(OutputStream output, int kind, BodyWriter writer) throws IOException {
+        DataOutputStream header = new DataOutputStream(output);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(kind);
+        header.writeByte(compress ? FLAG_DEFLATE : 0);
+        header.flush();
+
+        if (!compress) {
+            writer.write(header);
+            header.flush();
+            return;
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(output, deflater, 64 * 1024);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(deflated, 64 * 1024));
+            writer.write(data);
+            data.flush();
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static <T> T readBody(InputStream input, int kind, BodyReader<T> reader) throws IOException {
+        DataInputStream header = new DataInputStream(input);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("不是交易系统二进制数据文件");
+        }
+        int version = header.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("不支持的数据文件版本: " + version);
+        }
+        int fileKind = header.readUnsignedByte();
+        if (fileKind != kind) {
+            throw new IOException("数据文件类型不匹配: " + fileKind);
+        }
+        int flags = header.readUnsignedByte();
+
+        if ((flags & FLAG_DEFLATE) == 0) {
+            return reader.read(header, version);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            return reader.read(new DataInputStream(new BufferedInputStream(
+                    new InflaterInputStream(input, inflater, 64 * 1024), 64 * 1024)), version);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ==================== 基础类型 ====================
+
+    private static void writeUUID(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
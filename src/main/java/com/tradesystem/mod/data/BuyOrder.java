@@ -0,0 +1,140 @@
+package com.tradesystem.mod.data;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * 求购订单数据类
+ * 买家按物品规范键（注册名+NBT）挂出的限价买单，挂单期间冻结 单价×剩余数量 的金币
+ */
+public class BuyOrder {
+    private UUID id;
+    private UUID buyerId;
+    private String buyerName;
+    private ItemStack itemStack; // 物品模板，数量固定为1
+    private int price;
+    private int quantity; // 剩余求购数量
+    private long createTime;
+    private long version; // 每次部分成交递增
+    private transient ItemKey itemKey;
+
+    /**
+     * 构造函数
+     */
+    public BuyOrder(UUID buyerId, String buyerName, ItemStack itemStack, int price, int quantity) {
+        this(UUID.randomUUID(), buyerId, buyerName, itemStack, price, quantity, System.currentTimeMillis());
+    }
+
+    /**
+     * 从已保存的字段构造（用于二进制数据文件）
+     */
+    public BuyOrder(UUID id, UUID buyerId, String buyerName, ItemStack itemStack, int price, int quantity,
+                    long createTime) {
+        this.id = id;
+        this.buyerId = buyerId;
+        this.buyerName = buyerName;
+        this.itemStack = itemStack.copy();
+        this.itemStack.setCount(1);
+        this.price = price;
+        this.quantity = quantity;
+        this.createTime = createTime;
+    }
+
+    /**
+     * 从NBT数据构造
+     */
+    public BuyOrder(CompoundTag tag) {
+        this(tag.getUUID("id"), tag.getUUID("buyerId"), tag.getString("buyerName"),
+                ItemStack.of(tag.getCompound("itemStack")), tag.getInt("price"), tag.getInt("quantity"),
+                tag.getLong("createTime"));
+        this.version = tag.getLong("version");
+    }
+
+    /**
+     * 转换为NBT数据
+     */
+    public CompoundTag toNBT() {
+        CompoundTag tag = new CompoundTag();
+        tag.putUUID("id", this.id);
+        tag.putUUID("buyerId", this.buyerId);
+        tag.putString("buyerName", this.buyerName != null ? this.buyerName : "");
+        tag.put("itemStack", this.itemStack.save(new CompoundTag()));
+        tag.putInt("price", this.price);
+        tag.putInt("quantity", this.quantity);
+        tag.putLong("createTime", this.createTime);
+        tag.putLong("version", this.version);
+        return tag;
+    }
+
+    /**
+     * 复制当前状态，用于事件和结果
+     */
+    public BuyOrder copy() {
+        BuyOrder copy = new BuyOrder(id, buyerId, buyerName, itemStack, price, quantity, createTime);
+        copy.version = version;
+        return copy;
+    }
+
+    // Getters
+    public UUID getId() { return id; }
+    public UUID getBuyerId() { return buyerId; }
+    public String getBuyerName() { return buyerName; }
+    public ItemStack getItemStack() { return itemStack.copy(); }
+    public int getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+    public long getCreateTime() { return createTime; }
+    public long getVersion() { return version; }
+
+    /**
+     * 物品规范键，与订单簿中上架物品的键比较判断能否成交
+     */
+    public ItemKey getItemKey() {
+        if (itemKey == null) {
+            itemKey = ItemKey.of(itemStack);
+        }
+        return itemKey;
+    }
+
+    /**
+     * 当前冻结的金币：单价×剩余数量
+     */
+    public long getEscrow() {
+        return (long) price * quantity;
+    }
+
+    // Setters
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+    public void setVersion(long version) { this.version = version; }
+
+    /**
+     * 版本号加一并返回新版本
+     */
+    public long bumpVersion() { return ++version; }
+
+    /**
+     * 获取物品显示名称
+     */
+    public String getDisplayName() {
+        return itemStack.getHoverName().getString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        return id.equals(((BuyOrder) obj).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BuyOrder{id=%s, buyer=%s, item=%s, price=%d, quantity=%d}",
+                id, buyerName, getDisplayName(), price, quantity);
+    }
+}
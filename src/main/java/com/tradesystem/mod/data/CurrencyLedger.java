@@ -0,0 +1,370 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.config.TradeConfig;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 货币账本
+ * 以玩家UUID为键集中保存所有余额（long），在线和离线玩家使用同一份账本。
+ * 写操作按UUID分段加锁，转账同时锁住双方所在的段（按段序号加锁避免死锁），
+ * 扣款、入账、转账都是检查与修改一步完成，不会透支也不会溢出；读余额无锁
+ *
+ * 余额变化只记录到待刷新表中，由服务器tick调用 flush() 统一写入 JsonDataManager
+ * 并返回每个玩家在这一tick内的净变化，用于合并同步和提示消息
+ */
+public class CurrencyLedger {
+    private static CurrencyLedger instance;
+
+    private static final int STRIPES = 64;
+
+    // 最近处理过的转账ID，用于丢弃重复提交的同一笔转账
+    private static final int RECENT_TRANSFER_LIMIT = 4096;
+
+    private final Map<UUID, Account> accounts = new ConcurrentHashMap<>();
+    // 自上次flush以来余额有变化的玩家及其净变化
+    private final Map<UUID, Long> pendingChanges = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final Set<UUID> recentTransfers = Collections.newSetFromMap(new LinkedHashMap<UUID, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+            return size() > RECENT_TRANSFER_LIMIT;
+        }
+    });
+
+    /**
+     * 转账结果
+     */
+    public enum TransferResult {
+        SUCCESS,
+        INSUFFICIENT_FUNDS,
+        LIMIT_EXCEEDED,
+        DUPLICATE,
+        INVALID
+    }
+
+    private CurrencyLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public static CurrencyLedger getInstance() {
+        if (instance == null) {
+            instance = new CurrencyLedger();
+        }
+        return instance;
+    }
+
+    /**
+     * 获取余额
+     */
+    public long getBalance(UUID playerId) {
+        return account(playerId).balance;
+    }
+
+    /**
+     * 检查余额是否足够
+     */
+    public boolean hasBalance(UUID playerId, long amount) {
+        return amount >= 0 && getBalance(playerId) >= amount;
+    }
+
+    /**
+     * 设置余额，超出范围时截断到 [0, 上限]
+     */
+    public long setBalance(UUID playerId, long amount) {
+        long value = Math.max(0, Math.min(amount, getMaxBalance()));
+        Account account = account(playerId);
+        ReentrantLock lock = lockFor(playerId);
+        lock.lock();
+        try {
+            long change = value - account.balance;
+            account.balance = value;
+            recordChange(playerId, change);
+        } finally {
+            lock.unlock();
+        }
+        return value;
+    }
+
+    /**
+     * 入账
+     * @return 是否成功；入账后超过上限时不做任何修改并返回false
+     */
+    public boolean credit(UUID playerId, long amount) {
+        if (amount < 0) {
+            return false;
+        }
+        Account account = account(playerId);
+        ReentrantLock lock = lockFor(playerId);
+        lock.lock();
+        try {
+            if (account.balance > getMaxBalance() - amount) {
+                return false;
+            }
+            account.balance += amount;
+            recordChange(playerId, amount);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 扣款
+     * @return 余额不足时不做任何修改并返回false
+     */
+    public boolean debit(UUID playerId, long amount) {
+        if (amount < 0) {
+            return false;
+        }
+        Account account = account(playerId);
+        ReentrantLock lock = lockFor(playerId);
+        lock.lock();
+        try {
+            if (account.balance < amount) {
+                return false;
+            }
+            account.balance -= amount;
+            recordChange(playerId, -amount);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按交易ID扣款，同一个 transactionId 只会生效一次；收款方由调用方另行入账
+     */
+    public TransferResult debit(UUID playerId, long amount, UUID transactionId) {
+        if (playerId == null || amount <= 0) {
+            return TransferResult.INVALID;
+        }
+        Account account = account(playerId);
+        ReentrantLock lock = lockFor(playerId);
+        lock.lock();
+        try {
+            if (transactionId != null && isRecentTransfer(transactionId)) {
+                return TransferResult.DUPLICATE;
+            }
+            if (account.balance < amount) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            account.balance -= amount;
+            recordChange(playerId, -amount);
+            if (transactionId != null) {
+                rememberTransfer(transactionId);
+            }
+            return TransferResult.SUCCESS;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 转账
+     */
+    public TransferResult transfer(UUID from, UUID to, long amount, UUID transactionId) {
+        return transfer(from, to, amount, 0, transactionId);
+    }
+
+    /**
+     * 转账，付款方支付 amount，收款方收到 amount - fee，手续费由调用方记入系统收入
+     * 同一个 transactionId 只会生效一次
+     */
+    public TransferResult transfer(UUID from, UUID to, long amount, long fee, UUID transactionId) {
+        if (from == null || to == null || from.equals(to) || amount <= 0 || fee < 0 || fee > amount) {
+            return TransferResult.INVALID;
+        }
+
+        Account payer = account(from);
+        Account payee = account(to);
+
+        int first = stripeIndex(from);
+        int second = stripeIndex(to);
+        ReentrantLock lockA = stripes[Math.min(first, second)];
+        ReentrantLock lockB = stripes[Math.max(first, second)];
+
+        lockA.lock();
+        if (lockB != lockA) {
+            lockB.lock();
+        }
+        try {
+            if (transactionId != null && isRecentTransfer(transactionId)) {
+                return TransferResult.DUPLICATE;
+            }
+            if (payer.balance < amount) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            long received = amount - fee;
+            if (payee.balance > getMaxBalance() - received) {
+                return TransferResult.LIMIT_EXCEEDED;
+            }
+
+            payer.balance -= amount;
+            payee.balance += received;
+            if (transactionId != null) {
+                rememberTransfer(transactionId);
+            }
+
+            recordChange(from, -amount);
+            recordChange(to, received);
+            return TransferResult.SUCCESS;
+        } finally {
+            if (lockB != lockA) {
+                lockB.unlock();
+            }
+            lockA.unlock();
+        }
+    }
+
+    /**
+     * 一次结算多笔收款：付款方支付所有收款金额之和加上 fee，每个收款方收到各自的金额，
+     * 手续费由调用方记入系统收入。所有涉及的分段按序号升序加锁，任何一方不满足条件时不做任何修改
+     */
+    public TransferResult settle(UUID from, Map<UUID, Long> credits, long fee, UUID transactionId) {
+        if (from == null || credits == null || credits.isEmpty() || credits.containsKey(from) || fee < 0) {
+            return TransferResult.INVALID;
+        }
+        long total = fee;
+        for (Long amount : credits.values()) {
+            if (amount == null || amount < 0) {
+                return TransferResult.INVALID;
+            }
+            total += amount;
+        }
+        if (total <= 0) {
+            return TransferResult.INVALID;
+        }
+
+        Account payer = account(from);
+        Map<UUID, Account> payees = new HashMap<>();
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        stripeIndexes.add(stripeIndex(from));
+        for (UUID to : credits.keySet()) {
+            payees.put(to, account(to));
+            stripeIndexes.add(stripeIndex(to));
+        }
+
+        List<ReentrantLock> held = new ArrayList<>(stripeIndexes.size());
+        for (int index : stripeIndexes) {
+            stripes[index].lock();
+            held.add(stripes[index]);
+        }
+        try {
+            if (transactionId != null && isRecentTransfer(transactionId)) {
+                return TransferResult.DUPLICATE;
+            }
+            if (payer.balance < total) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            for (Map.Entry<UUID, Long> credit : credits.entrySet()) {
+                if (payees.get(credit.getKey()).balance > getMaxBalance() - credit.getValue()) {
+                    return TransferResult.LIMIT_EXCEEDED;
+                }
+            }
+
+            payer.balance -= total;
+            recordChange(from, -total);
+            for (Map.Entry<UUID, Long> credit : credits.entrySet()) {
+                payees.get(credit.getKey()).balance += credit.getValue();
+                recordChange(credit.getKey(), credit.getValue());
+            }
+            if (transactionId != null) {
+                rememberTransfer(transactionId);
+            }
+            return TransferResult.SUCCESS;
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * 余额上限
+     */
+    public long getMaxBalance() {
+        return TradeConfig.maxPlayerMoney;
+    }
+
+    /**
+     * 把有变化的余额写入 JsonDataManager，每个tick调用一次
+     * @return 本次刷新的玩家及其自上次刷新以来的净变化（余额被重新设置为相同值时为0）
+     */
+    public Map<UUID, Long> flush() {
+        if (pendingChanges.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<UUID, Long> flushed = new HashMap<>();
+        for (UUID playerId : pendingChanges.keySet()) {
+            Long change = pendingChanges.remove(playerId);
+            if (change == null) {
+                continue;
+            }
+            // 先移除再读余额，之后发生的变化会重新进入待刷新表，不会丢失
+            JsonDataManager.getInstance().setPlayerCurrency(playerId, getBalance(playerId));
+            flushed.put(playerId, change);
+        }
+        return flushed;
+    }
+
+    /**
+     * 服务器关闭时写入剩余的变化并清空账本，下次启动重新从数据文件加载
+     */
+    public void shutdown() {
+        flush();
+        accounts.clear();
+        synchronized (recentTransfers) {
+            recentTransfers.clear();
+        }
+        TradeMod.getLogger().info("货币账本已关闭");
+    }
+
+    private Account account(UUID playerId) {
+        return accounts.computeIfAbsent(playerId,
+                id -> new Account(JsonDataManager.getInstance().getPlayerCurrency(id)));
+    }
+
+    private ReentrantLock lockFor(UUID playerId) {
+        return stripes[stripeIndex(playerId)];
+    }
+
+    private static int stripeIndex(UUID playerId) {
+        int h = playerId.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private boolean isRecentTransfer(UUID transactionId) {
+        synchronized (recentTransfers) {
+            return recentTransfers.contains(transactionId);
+        }
+    }
+
+    private void rememberTransfer(UUID transactionId) {
+        synchronized (recentTransfers) {
+            recentTransfers.add(transactionId);
+        }
+    }
+
+    private void recordChange(UUID playerId, long change) {
+        pendingChanges.merge(playerId, change, Long::sum);
+    }
+
+    /**
+     * 账户余额，只在持有对应分段锁时修改
+     */
+    private static final class Account {
+        volatile long balance;
+
+        Account(long balance) {
+            this.balance = balance;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.tradesystem.mod.data;
 import com.tradesystem.mod.TradeMod;
 import com.tradesystem.mod.network.NetworkHandler;
 import com.tradesystem.mod.network.packet.DataSyncPacket;
+import com.tradesystem.mod.util.PersistentMap;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.server.MinecraftServer;
@@ -10,11 +11,15 @@ import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.network.PacketDistributor;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 数据服务类
- * 提供高级的数据操作接口，管理缓存和同步
+ * 提供高级的数据操作接口，管理同步
+ *
+ * 市场数据保存为不可变快照（PersistentMap），用于向客户端同步：写入时发布新版本，
+ * 同步和查询直接读取同一个快照，读取时不复制；返回的 CompoundTag 只能读，不能修改。
+ * 上架物品的持久化只由上架物品仓库（JsonDataManager.getTradeItems）负责，这里的快照不写入世界存档
  */
 public class DataService {
     
@@ -22,14 +27,22 @@ public class DataService {
     private MinecraftServer server;
     private TradeSavedData savedData;
     
-    // 缓存数据
-    private final Map<UUID, CompoundTag> playerDataCache = new ConcurrentHashMap<>();
-    private final Map<String, CompoundTag> marketItemsCache = new ConcurrentHashMap<>();
-    private volatile CompoundTag systemStatsCache = new CompoundTag();
+    // 当前市场快照（修改时整体替换引用）
+    private volatile PersistentMap<String, CompoundTag> marketItems = PersistentMap.empty();
     
-    // 缓存更新标记
-    private volatile boolean marketCacheDirty = true;
-    private volatile boolean statsCacheDirty = true;
+    // 市场版本号，每次广播增量后递增，客户端据此判断本地缓存是否过期
+    private final AtomicLong marketVersion = new AtomicLong(0);
+    
+    // 等待广播的市场增量操作，同一物品的多次修改合并为一条
+    private final Map<String, CompoundTag> pendingMarketOps = new LinkedHashMap<>();
+    
+    // 批量更新的嵌套深度，大于0时暂不广播，批量结束后合并为一个增量（只在主线程修改）
+    private int marketBatchDepth = 0;
+    
+    // 最近一次构建的完整快照数据包及其对应的市场快照和版本号，未变化时多个玩家共用（受 pendingMarketOps 锁保护）
+    private PersistentMap<String, CompoundTag> snapshotSource;
+    private long snapshotSeq = -1;
+    private CompoundTag snapshotTag;
     
     private DataService() {}
     
@@ -54,69 +67,16 @@ public class DataService {
         this.server = server;
         this.savedData = TradeSavedData.get(server);
         
-        // 初始化缓存
-        refreshAllCaches();
-        
         TradeMod.getLogger().info("数据服务初始化完成");
     }
     
-    /**
-     * 刷新所有缓存
-     */
-    public void refreshAllCaches() {
-        refreshMarketCache();
-        refreshStatsCache();
-        TradeMod.getLogger().debug("所有缓存已刷新");
-    }
-    
-    /**
-     * 刷新市场缓存
-     */
-    private void refreshMarketCache() {
-        if (savedData != null) {
-            marketItemsCache.clear();
-            
-            // 直接从持久化存储获取市场物品数据，避免循环依赖
-            Map<String, CompoundTag> storedItems = savedData.getAllMarketItems();
-            for (Map.Entry<String, CompoundTag> entry : storedItems.entrySet()) {
-                marketItemsCache.put(entry.getKey(), entry.getValue().copy());
-            }
-            
-            marketCacheDirty = false;
-            TradeMod.getLogger().debug("市场缓存已刷新，共 {} 个物品", marketItemsCache.size());
-        }
-    }
-    
-    /**
-     * 刷新统计缓存
-     */
-    private void refreshStatsCache() {
-        if (savedData != null) {
-            systemStatsCache = savedData.getSystemStats();
-            statsCacheDirty = false;
-        }
-    }
-    
     // === 玩家数据操作 ===
     
     /**
      * 获取玩家数据
      */
     public CompoundTag getPlayerData(UUID playerId) {
-        // 先从缓存获取
-        CompoundTag cached = playerDataCache.get(playerId);
-        if (cached != null) {
-            return cached.copy();
-        }
-        
-        // 从存储获取并缓存
-        if (savedData != null) {
-            CompoundTag data = savedData.getPlayerData(playerId);
-            playerDataCache.put(playerId, data.copy());
-            return data;
-        }
-        
-        return new CompoundTag();
+        return savedData != null ? savedData.getPlayerData(playerId) : new CompoundTag();
     }
     
     /**
@@ -125,67 +85,83 @@ public class DataService {
     public void setPlayerData(UUID playerId, CompoundTag data) {
         if (savedData != null) {
             savedData.setPlayerData(playerId, data);
-            playerDataCache.put(playerId, data.copy());
             
             // 同步到客户端
             syncPlayerDataToClient(playerId, data);
         }
     }
     
+    // === 市场数据操作 ===
+    
     /**
-     * 清除玩家数据缓存
+     * 当前市场快照，取得后可以随意遍历，不受之后的修改影响
      */
-    public void clearPlayerDataCache(UUID playerId) {
-        playerDataCache.remove(playerId);
+    public PersistentMap<String, CompoundTag> getMarketSnapshot() {
+        return marketItems;
     }
     
-    // === 市场数据操作 ===
+    /**
+     * 启动时用订单簿中的上架物品建立市场快照，不广播
+     */
+    public void loadMarketItems(Collection<TradeItem> items) {
+        PersistentMap<String, CompoundTag> loaded = PersistentMap.empty();
+        for (TradeItem item : items) {
+            loaded = loaded.put(item.getId().toString(), item.toNBT());
+        }
+        marketItems = loaded;
+    }
     
     /**
-     * 获取所有市场物品
+     * 获取所有市场物品（当前快照的只读视图，不复制）
      */
     public Map<String, CompoundTag> getAllMarketItems() {
-        if (marketCacheDirty) {
-            refreshMarketCache();
-        }
-        return new HashMap<>(marketItemsCache);
+        return getMarketSnapshot().asMap();
     }
     
     /**
-     * 添加市场物品
+     * 添加市场物品，itemData 交给数据服务保存，调用方之后不能再修改
      */
     public void addMarketItem(String itemId, CompoundTag itemData) {
-        if (savedData != null) {
-            savedData.addMarketItem(itemId, itemData);
-            marketItemsCache.put(itemId, itemData.copy());
-            
-            // 同步到所有客户端
-            syncMarketDataToAllClients();
-        }
+        boolean existed = marketItems.containsKey(itemId);
+        marketItems = marketItems.put(itemId, itemData);
+        recordMarketOp(existed ? DataSyncPacket.MarketOp.UPDATE : DataSyncPacket.MarketOp.ADD,
+                itemId, itemData);
+        
+        // 同步到所有客户端
+        syncMarketDataToAllClients();
+    }
+    
+    /**
+     * 部分成交后更新市场物品的剩余数量
+     * 服务端快照保存完整数据，客户端只收到 (id, count, version) 的紧凑增量
+     */
+    public void fillMarketItem(String itemId, CompoundTag itemData, int count, long version) {
+        marketItems = marketItems.put(itemId, itemData);
+        recordFillOp(itemId, itemData, count, version);
+        
+        // 同步到所有客户端
+        syncMarketDataToAllClients();
     }
     
     /**
      * 移除市场物品
      */
     public void removeMarketItem(String itemId) {
-        if (savedData != null) {
-            savedData.removeMarketItem(itemId);
-            marketItemsCache.remove(itemId);
-            
-            // 同步到所有客户端
-            syncMarketDataToAllClients();
+        PersistentMap<String, CompoundTag> updated = marketItems.remove(itemId);
+        if (updated != marketItems) {
+            marketItems = updated;
+            recordMarketOp(DataSyncPacket.MarketOp.REMOVE, itemId, null);
         }
+        
+        // 同步到所有客户端
+        syncMarketDataToAllClients();
     }
     
     /**
-     * 获取市场物品
+     * 获取市场物品（只读）
      */
     public CompoundTag getMarketItem(String itemId) {
-        if (marketCacheDirty) {
-            refreshMarketCache();
-        }
-        CompoundTag item = marketItemsCache.get(itemId);
-        return item != null ? item.copy() : null;
+        return getMarketSnapshot().get(itemId);
     }
     
     // === 交易历史操作 ===
@@ -203,7 +179,6 @@ public class DataService {
             record.putLong("timestamp", System.currentTimeMillis());
             
             savedData.addTradeHistory(record);
-            statsCacheDirty = true; // 标记统计缓存需要更新
             
             TradeMod.getLogger().info("添加交易记录: {} -> {}, 物品: {}, 价格: {}", 
                     sellerId, buyerId, itemId, price);
@@ -220,13 +195,10 @@ public class DataService {
     // === 统计数据操作 ===
     
     /**
-     * 获取系统统计
+     * 获取系统统计（只读）
      */
     public CompoundTag getSystemStats() {
-        if (statsCacheDirty) {
-            refreshStatsCache();
-        }
-        return systemStatsCache.copy();
+        return savedData != null ? savedData.getSystemStats() : new CompoundTag();
     }
     
     /**
@@ -258,41 +230,164 @@ public class DataService {
         }
     }
     
+    /**
+     * 记录一条市场增量操作，与同一物品尚未广播的操作合并
+     */
+    private void recordMarketOp(DataSyncPacket.MarketOp op, String itemId, CompoundTag itemData) {
+        synchronized (pendingMarketOps) {
+            CompoundTag pending = pendingMarketOps.remove(itemId);
+            DataSyncPacket.MarketOp mergedOp = op;
+            
+            if (pending != null) {
+                DataSyncPacket.MarketOp pendingOp = DataSyncPacket.MarketOp.valueOf(pending.getString("op"));
+                if (pendingOp == DataSyncPacket.MarketOp.ADD) {
+                    // 客户端还没见过这个物品：新增后删除等于没有变化，新增后修改仍是新增
+                    if (op == DataSyncPacket.MarketOp.REMOVE) {
+                        return;
+                    }
+                    mergedOp = DataSyncPacket.MarketOp.ADD;
+                } else if (pendingOp == DataSyncPacket.MarketOp.REMOVE && op == DataSyncPacket.MarketOp.ADD) {
+                    // 客户端仍持有旧数据：删除后重新添加等于修改
+                    mergedOp = DataSyncPacket.MarketOp.UPDATE;
+                }
+            }
+            
+            CompoundTag entry = new CompoundTag();
+            entry.putString("op", mergedOp.name());
+            entry.putString("id", itemId);
+            if (itemData != null && mergedOp != DataSyncPacket.MarketOp.REMOVE) {
+                entry.put("item", itemData);
+            }
+            pendingMarketOps.put(itemId, entry);
+        }
+    }
+    
+    /**
+     * 记录一条剩余数量增量
+     * 客户端还没收到同一物品的新增或修改时，直接把完整数据合并进那条操作
+     */
+    private void recordFillOp(String itemId, CompoundTag itemData, int count, long version) {
+        synchronized (pendingMarketOps) {
+            CompoundTag pending = pendingMarketOps.get(itemId);
+            if (pending != null && pending.contains("item")) {
+                pending.put("item", itemData);
+                return;
+            }
+            
+            CompoundTag entry = new CompoundTag();
+            entry.putString("op", DataSyncPacket.MarketOp.FILL.name());
+            entry.putString("id", itemId);
+            entry.putInt("count", count);
+            entry.putLong("version", version);
+            pendingMarketOps.put(itemId, entry);
+        }
+    }
+    
+    /**
+     * 获取当前市场版本号
+     */
+    public long getMarketVersion() {
+        return marketVersion.get();
+    }
+    
+    /**
+     * 构建完整的市场快照（带版本号），调用时需持有 pendingMarketOps 锁
+     * 物品数据直接引用快照中的 CompoundTag；市场快照和版本号都没变时复用上次构建的结果
+     */
+    private CompoundTag buildMarketSnapshot() {
+        PersistentMap<String, CompoundTag> market = getMarketSnapshot();
+        long seq = marketVersion.get();
+        if (snapshotTag != null && snapshotSource == market && snapshotSeq == seq) {
+            return snapshotTag;
+        }
+        
+        CompoundTag items = new CompoundTag();
+        market.forEach(items::put);
+        
+        CompoundTag snapshot = new CompoundTag();
+        snapshot.putLong("seq", seq);
+        snapshot.put("items", items);
+        
+        snapshotSource = market;
+        snapshotSeq = seq;
+        snapshotTag = snapshot;
+        return snapshot;
+    }
+    
+    /**
+     * 批量修改市场数据，期间的所有修改在结束时作为一个增量广播
+     */
+    public void batchMarketUpdates(Runnable updates) {
+        marketBatchDepth++;
+        try {
+            updates.run();
+        } finally {
+            marketBatchDepth--;
+            if (marketBatchDepth == 0) {
+                syncMarketDataToAllClients();
+            }
+        }
+    }
+    
     /**
      * 同步市场数据到所有客户端
+     * 只广播自上次同步以来的增量操作，没有变化时不发送任何数据包
      */
     public void syncMarketDataToAllClients() {
-        if (server != null) {
-            // 先刷新市场缓存以确保数据是最新的
-            refreshMarketCache();
-            
-            CompoundTag marketData = new CompoundTag();
-            for (Map.Entry<String, CompoundTag> entry : marketItemsCache.entrySet()) {
-                marketData.put(entry.getKey(), entry.getValue());
+        if (server == null || marketBatchDepth > 0) {
+            return;
+        }
+        
+        CompoundTag delta = new CompoundTag();
+        int opCount;
+        synchronized (pendingMarketOps) {
+            if (pendingMarketOps.isEmpty()) {
+                return;
             }
             
-            TradeMod.getLogger().info("同步市场数据到所有客户端，共 {} 个物品", marketItemsCache.size());
+            ListTag ops = new ListTag();
+            ops.addAll(pendingMarketOps.values());
+            opCount = ops.size();
+            pendingMarketOps.clear();
             
-            DataSyncPacket packet = new DataSyncPacket(DataSyncPacket.DataType.MARKET_ITEMS, marketData);
-            NetworkHandler.INSTANCE.send(PacketDistributor.ALL.noArg(), packet);
+            long base = marketVersion.get();
+            delta.putLong("base", base);
+            delta.putLong("seq", marketVersion.incrementAndGet());
+            delta.put("ops", ops);
         }
+        
+        TradeMod.getLogger().debug("广播市场增量到所有客户端，版本 {}，共 {} 条操作", delta.getLong("seq"), opCount);
+        
+        DataSyncPacket packet = new DataSyncPacket(DataSyncPacket.DataType.MARKET_DELTA, delta);
+        NetworkHandler.INSTANCE.send(PacketDistributor.ALL.noArg(), packet);
     }
     
     /**
-     * 同步市场数据到指定玩家
+     * 同步完整市场数据到指定玩家
      */
     public void syncMarketDataToPlayer(ServerPlayer player) {
         if (server != null) {
-            CompoundTag marketData = new CompoundTag();
-            for (Map.Entry<String, CompoundTag> entry : marketItemsCache.entrySet()) {
-                marketData.put(entry.getKey(), entry.getValue());
+            CompoundTag snapshot;
+            synchronized (pendingMarketOps) {
+                snapshot = buildMarketSnapshot();
             }
             
-            DataSyncPacket packet = new DataSyncPacket(DataSyncPacket.DataType.MARKET_ITEMS, marketData);
+            DataSyncPacket packet = new DataSyncPacket(DataSyncPacket.DataType.MARKET_ITEMS, snapshot);
             NetworkHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), packet);
-            TradeMod.getLogger().debug("同步市场数据到玩家: {} (共 {} 个物品)", 
-                    player.getName().getString(), marketItemsCache.size());
+            TradeMod.getLogger().debug("同步市场快照到玩家: {} (版本 {}，共 {} 个物品)", 
+                    player.getName().getString(), snapshot.getLong("seq"), snapshot.getCompound("items").size());
+        }
+    }
+    
+    /**
+     * 处理客户端的市场同步请求，仅当客户端版本过期时才发送完整快照
+     */
+    public void handleMarketSyncRequest(ServerPlayer player, long clientVersion) {
+        if (clientVersion == marketVersion.get()) {
+            TradeMod.getLogger().debug("玩家 {} 的市场数据已是最新版本 {}", player.getName().getString(), clientVersion);
+            return;
         }
+        syncMarketDataToPlayer(player);
     }
     
     /**
@@ -382,7 +477,6 @@ public class DataService {
     public void cleanupOldData() {
         if (savedData != null) {
             savedData.clearOldData();
-            refreshAllCaches();
         }
     }
     
@@ -391,7 +485,7 @@ public class DataService {
      */
     public void forceSave() {
         if (savedData != null) {
-            savedData.setDirty();
+            savedData.markAllDirty();
             TradeMod.getLogger().info("强制保存交易数据");
         }
     }
@@ -400,12 +494,12 @@ public class DataService {
      * 关闭数据服务
      */
     public void shutdown() {
-        playerDataCache.clear();
-        marketItemsCache.clear();
-        systemStatsCache = new CompoundTag();
-        
-        if (savedData != null) {
-            savedData.setDirty();
+        marketItems = PersistentMap.empty();
+        synchronized (pendingMarketOps) {
+            pendingMarketOps.clear();
+            snapshotSource = null;
+            snapshotTag = null;
+            snapshotSeq = -1;
         }
         
         TradeMod.getLogger().info("数据服务已关闭");
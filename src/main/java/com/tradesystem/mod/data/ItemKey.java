@@ -0,0 +1,81 @@
+package com.tradesystem.mod.data;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 物品规范键
+ * 由物品注册名和NBT摘要组成，与物品数量无关；相同物品总是得到同一个键实例，
+ * 可以直接作为Map的键使用
+ */
+public final class ItemKey {
+
+    // 弱引用驻留池，不再被引用的键会被回收
+    private static final Interner<ItemKey> INTERNER = Interners.newWeakInterner();
+
+    private final String itemId;
+    private final HashCode nbtDigest;
+    private final int hash;
+
+    private ItemKey(String itemId, HashCode nbtDigest) {
+        this.itemId = itemId;
+        this.nbtDigest = nbtDigest;
+        this.hash = 31 * itemId.hashCode() + (nbtDigest != null ? nbtDigest.hashCode() : 0);
+    }
+
+    /**
+     * 获取物品的规范键
+     */
+    public static ItemKey of(ItemStack itemStack) {
+        ResourceLocation key = ForgeRegistries.ITEMS.getKey(itemStack.getItem());
+        String itemId = key != null ? key.toString() : itemStack.getItem().toString();
+
+        CompoundTag tag = itemStack.getTag();
+        HashCode digest = tag != null && !tag.isEmpty() ? digest(tag) : null;
+
+        return INTERNER.intern(new ItemKey(itemId, digest));
+    }
+
+    /**
+     * NBT的稳定摘要
+     * CompoundTag的字符串形式按键名排序，与写入顺序无关
+     */
+    private static HashCode digest(CompoundTag tag) {
+        return Hashing.murmur3_128().hashString(tag.toString(), StandardCharsets.UTF_8);
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public boolean hasTag() {
+        return nbtDigest != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ItemKey)) return false;
+        ItemKey other = (ItemKey) o;
+        return hash == other.hash && itemId.equals(other.itemId)
+                && (nbtDigest == null ? other.nbtDigest == null : nbtDigest.equals(other.nbtDigest));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return nbtDigest != null ? itemId + "#" + nbtDigest : itemId;
+    }
+}
@@ -1,6 +1,8 @@
 package com.tradesystem.mod.data;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.tradesystem.mod.TradeMod;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.MinecraftServer;
@@ -11,11 +13,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * JSON数据管理器
- * 使用JSON格式持久化交易系统数据
+ * 持久化交易系统数据，磁盘格式由 StorageCodec 决定（JSON 或紧凑二进制）
+ * 上架物品、求购订单和拍卖通过各自的仓库（TradeRepository）读写，这里负责创建仓库并绑定数据文件
  */
 public class JsonDataManager {
     private static JsonDataManager instance;
@@ -23,17 +29,56 @@ public class JsonDataManager {
     private Path dataDirectory;
     
     // 数据缓存
-    private final Map<UUID, TradeItem> tradeItems = new ConcurrentHashMap<>();
-    private final Map<UUID, Integer> playerCurrency = new ConcurrentHashMap<>();
-    private final List<TransactionRecord> transactionHistory = new ArrayList<>();
+    private final Map<UUID, Long> playerCurrency = new ConcurrentHashMap<>();
+    private final Deque<TransactionRecord> transactionHistory = new ArrayDeque<>();
     private final Map<String, Object> systemStats = new ConcurrentHashMap<>();
     
+    // 数据文件对应的脏键
+    private static final String KEY_TRADE_ITEMS = "trade_items";
+    private static final String KEY_BUY_ORDERS = "buy_orders";
+    private static final String KEY_AUCTIONS = "auctions";
+    private static final String KEY_PLAYER_CURRENCY = "player_currency";
+    private static final String KEY_SYSTEM_STATS = "system_stats";
+    
+    // 延迟写入队列，修改只标记脏键，由写线程合并写盘
+    private final WriteBehindQueue writeBehind;
+    
+    // 上架物品、求购订单和拍卖的仓库
+    private final WriteBehindRepository<TradeItem> tradeItems;
+    private final WriteBehindRepository<BuyOrder> buyOrders;
+    private final WriteBehindRepository<Auction> auctions;
+    
+    // 内存中保留的交易历史条数
+    private static final int MAX_TRANSACTION_HISTORY = 10000;
+    
+    // 交易记录追加日志，每段2000条，保留6段
+    private static final int JOURNAL_RECORDS_PER_SEGMENT = 2000;
+    private static final int JOURNAL_MAX_SEGMENTS = 6;
+    private TransactionJournal transactionJournal;
+    
+    // 启动时并行加载数据文件的线程数
+    private static final int LOADER_THREADS = 4;
+    
+    // 数据文件编解码器，由配置 storage_format 选择
+    private StorageCodec codec;
+    
+    // 数据文件快照，原子替换并保留历史版本
+    private SnapshotStore playerCurrencyStore;
+    private SnapshotStore systemStatsStore;
+    
     private JsonDataManager() {
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
                 .registerTypeAdapter(ItemStack.class, new ItemStackSerializer())
                 .registerTypeAdapter(UUID.class, new UUIDSerializer())
                 .create();
+        
+        this.writeBehind = new WriteBehindQueue("JsonWriter", com.tradesystem.mod.config.TradeConfig.writeBehindInterval);
+        this.tradeItems = new WriteBehindRepository<>(KEY_TRADE_ITEMS, TradeItem::getId, writeBehind);
+        this.buyOrders = new WriteBehindRepository<>(KEY_BUY_ORDERS, BuyOrder::getId, writeBehind);
+        this.auctions = new WriteBehindRepository<>(KEY_AUCTIONS, Auction::getId, writeBehind);
+        writeBehind.register(KEY_PLAYER_CURRENCY, this::savePlayerCurrency);
+        writeBehind.register(KEY_SYSTEM_STATS, this::saveSystemStats);
     }
     
     public static JsonDataManager getInstance() {
@@ -51,81 +96,88 @@ public class JsonDataManager {
             dataDirectory = Paths.get(server.getServerDirectory().getAbsolutePath(), "tradesystem");
             Files.createDirectories(dataDirectory);
             
-            TradeMod.getLogger().info("JSON数据管理器初始化完成，数据目录: {}", dataDirectory);
+            int generations = com.tradesystem.mod.config.TradeConfig.snapshotGenerations;
+            codec = selectCodec(generations);
+            playerCurrencyStore = StorageMigrator.store(dataDirectory, KEY_PLAYER_CURRENCY, codec, generations);
+            systemStatsStore = StorageMigrator.store(dataDirectory, KEY_SYSTEM_STATS, codec, generations);
+            
+            TradeMod.getLogger().info("JSON数据管理器初始化完成，数据目录: {}，存储格式: {}", dataDirectory, codec.getName());
             
             // 加载所有数据
             loadAllData();
             
+            // 启动延迟写线程
+            writeBehind.start();
+            
         } catch (IOException e) {
             TradeMod.getLogger().error("初始化JSON数据管理器失败", e);
         }
     }
     
     /**
-     * 加载所有数据
+     * 按配置选择编解码器，并把另一种格式的已有数据迁移过来；迁移失败时本次继续使用旧格式
      */
-    private void loadAllData() {
-        loadTradeItems();
-        loadPlayerCurrency();
-        loadTransactionHistory();
-        loadSystemStats();
+    private StorageCodec selectCodec(int generations) {
+        StorageCodec json = new JsonStorageCodec(gson);
+        StorageCodec binary = new BinaryStorageCodec(com.tradesystem.mod.config.TradeConfig.enableDataCompression);
+        
+        boolean useBinary = BinaryStorageCodec.NAME.equals(com.tradesystem.mod.config.TradeConfig.storageFormat);
+        StorageCodec selected = useBinary ? binary : json;
+        StorageCodec other = useBinary ? json : binary;
+        
+        return StorageMigrator.migrate(dataDirectory, other, selected, generations) ? selected : other;
     }
     
     /**
-     * 保存所有数据
+     * 加载所有数据
+     * 各个文件互不依赖，由加载线程并行读取，全部完成后返回
      */
-    public void saveAllData() {
-        saveTradeItems();
-        savePlayerCurrency();
-        saveTransactionHistory();
-        saveSystemStats();
+    private void loadAllData() {
+        ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+            Thread thread = new Thread(r, "TradeSystem-Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> openRepository(tradeItems, KEY_TRADE_ITEMS,
+                            codec::readTradeItems, codec::writeTradeItems), loader),
+                    CompletableFuture.runAsync(() -> openRepository(buyOrders, KEY_BUY_ORDERS,
+                            codec::readBuyOrders, codec::writeBuyOrders), loader),
+                    CompletableFuture.runAsync(() -> openRepository(auctions, KEY_AUCTIONS,
+                            codec::readAuctions, codec::writeAuctions), loader),
+                    CompletableFuture.runAsync(this::loadPlayerCurrency, loader),
+                    CompletableFuture.runAsync(this::loadTransactionHistory, loader),
+                    CompletableFuture.runAsync(this::loadSystemStats, loader)
+            ).join();
+        } catch (Exception e) {
+            TradeMod.getLogger().error("并行加载数据时出错", e);
+        } finally {
+            loader.shutdown();
+        }
     }
     
     /**
-     * 加载交易物品数据
+     * 保存所有数据（在当前线程立即写盘）
      */
-    private void loadTradeItems() {
-        Path file = dataDirectory.resolve("trade_items.json");
-        if (!Files.exists(file)) {
-            TradeMod.getLogger().info("交易物品数据文件不存在，创建新文件");
-            return;
-        }
-        
-        try (FileReader reader = new FileReader(file.toFile())) {
-            JsonObject data = gson.fromJson(reader, JsonObject.class);
-            if (data != null) {
-                for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
-                    try {
-                        UUID id = UUID.fromString(entry.getKey());
-                        TradeItem item = gson.fromJson(entry.getValue(), TradeItem.class);
-                        if (item != null) {
-                            tradeItems.put(id, item);
-                        }
-                    } catch (Exception e) {
-                        TradeMod.getLogger().warn("加载交易物品数据失败: {}", entry.getKey(), e);
-                    }
-                }
-            }
-            TradeMod.getLogger().info("加载了 {} 个交易物品", tradeItems.size());
-        } catch (IOException e) {
-            TradeMod.getLogger().error("读取交易物品数据失败", e);
-        }
+    public void saveAllData() {
+        writeBehind.markAllDirty();
+        writeBehind.flushNow();
     }
     
     /**
-     * 保存交易物品数据
+     * 为仓库绑定当前格式的数据文件并读取已保存的数据
      */
-    private void saveTradeItems() {
-        Path file = dataDirectory.resolve("trade_items.json");
-        try (FileWriter writer = new FileWriter(file.toFile())) {
-            JsonObject data = new JsonObject();
-            for (Map.Entry<UUID, TradeItem> entry : tradeItems.entrySet()) {
-                data.add(entry.getKey().toString(), gson.toJsonTree(entry.getValue()));
-            }
-            gson.toJson(data, writer);
-            TradeMod.getLogger().debug("保存了 {} 个交易物品", tradeItems.size());
+    private <T> void openRepository(WriteBehindRepository<T> repository, String baseName,
+                                    SnapshotStore.ContentReader<Map<UUID, T>> reader,
+                                    RepositoryBackend.MapWriter<T> writer) {
+        SnapshotStore store = StorageMigrator.store(dataDirectory, baseName, codec,
+                com.tradesystem.mod.config.TradeConfig.snapshotGenerations);
+        try {
+            repository.open(RepositoryBackend.snapshot(store, reader, writer));
         } catch (IOException e) {
-            TradeMod.getLogger().error("保存交易物品数据失败", e);
+            TradeMod.getLogger().error("读取数据文件 {} 失败", store.getFile().getFileName(), e);
         }
     }
     
@@ -133,24 +185,15 @@ public class JsonDataManager {
      * 加载玩家货币数据
      */
     private void loadPlayerCurrency() {
-        Path file = dataDirectory.resolve("player_currency.json");
-        if (!Files.exists(file)) {
+        if (!playerCurrencyStore.exists()) {
             TradeMod.getLogger().info("玩家货币数据文件不存在，创建新文件");
             return;
         }
         
-        try (FileReader reader = new FileReader(file.toFile())) {
-            JsonObject data = gson.fromJson(reader, JsonObject.class);
-            if (data != null) {
-                for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
-                    try {
-                        UUID playerId = UUID.fromString(entry.getKey());
-                        int currency = entry.getValue().getAsInt();
-                        playerCurrency.put(playerId, currency);
-                    } catch (Exception e) {
-                        TradeMod.getLogger().warn("加载玩家货币数据失败: {}", entry.getKey(), e);
-                    }
-                }
+        try {
+            Map<UUID, Long> loaded = playerCurrencyStore.read(codec::readPlayerCurrency);
+            if (loaded != null) {
+                playerCurrency.putAll(loaded);
             }
             TradeMod.getLogger().info("加载了 {} 个玩家的货币数据", playerCurrency.size());
         } catch (IOException e) {
@@ -162,51 +205,125 @@ public class JsonDataManager {
      * 保存玩家货币数据
      */
     private void savePlayerCurrency() {
-        Path file = dataDirectory.resolve("player_currency.json");
-        try (FileWriter writer = new FileWriter(file.toFile())) {
-            JsonObject data = new JsonObject();
-            for (Map.Entry<UUID, Integer> entry : playerCurrency.entrySet()) {
-                data.addProperty(entry.getKey().toString(), entry.getValue());
-            }
-            gson.toJson(data, writer);
-            TradeMod.getLogger().debug("保存了 {} 个玩家的货币数据", playerCurrency.size());
-        } catch (IOException e) {
-            TradeMod.getLogger().error("保存玩家货币数据失败", e);
-        }
+        Map<UUID, Long> data = new HashMap<>(playerCurrency);
+        writeSnapshot(playerCurrencyStore, output -> codec.writePlayerCurrency(data, output));
+        TradeMod.getLogger().debug("保存了 {} 个玩家的货币数据", data.size());
     }
     
     /**
      * 加载交易历史数据
+     * 从追加日志回放；旧版 transaction_history.json 还在时先把它并入日志
      */
     private void loadTransactionHistory() {
-        Path file = dataDirectory.resolve("transaction_history.json");
-        if (!Files.exists(file)) {
-            TradeMod.getLogger().info("交易历史数据文件不存在，创建新文件");
-            return;
-        }
+        Path journalDirectory = dataDirectory.resolve("journal");
+        transactionJournal = new TransactionJournal(journalDirectory,
+                JOURNAL_RECORDS_PER_SEGMENT, JOURNAL_MAX_SEGMENTS);
         
-        try (FileReader reader = new FileReader(file.toFile())) {
-            TransactionRecord[] records = gson.fromJson(reader, TransactionRecord[].class);
-            if (records != null) {
+        try {
+            migrateLegacyTransactionHistory(journalDirectory);
+            transactionJournal.open();
+            
+            synchronized (transactionHistory) {
                 transactionHistory.clear();
-                Collections.addAll(transactionHistory, records);
+                transactionJournal.replay(this::appendToHistory);
+                TradeMod.getLogger().info("加载了 {} 条交易历史记录", transactionHistory.size());
             }
-            TradeMod.getLogger().info("加载了 {} 条交易历史记录", transactionHistory.size());
         } catch (IOException e) {
-            TradeMod.getLogger().error("读取交易历史数据失败", e);
+            TradeMod.getLogger().error("读取交易历史日志失败", e);
         }
     }
     
     /**
-     * 保存交易历史数据
+     * 将旧版 transaction_history.json 并入追加日志，旧文件只在迁移完成后重命名。
+     * 新日志先完整写到 journal.migrating：旧版记录在前，已有日志中的记录按交易ID去重后接在后面；
+     * 落盘后重命名为 journal.ready，再替换 journal 目录。
+     * 任何一步中断，重启后都从头重建或从 journal.ready 继续，不会留下只导入了一部分的日志，重复导入的记录也会被去重
      */
-    private void saveTransactionHistory() {
-        Path file = dataDirectory.resolve("transaction_history.json");
-        try (FileWriter writer = new FileWriter(file.toFile())) {
-            gson.toJson(transactionHistory, writer);
-            TradeMod.getLogger().debug("保存了 {} 条交易历史记录", transactionHistory.size());
-        } catch (IOException e) {
-            TradeMod.getLogger().error("保存交易历史数据失败", e);
+    private void migrateLegacyTransactionHistory(Path journalDirectory) throws IOException {
+        Path legacyFile = dataDirectory.resolve("transaction_history.json");
+        Path readyDirectory = dataDirectory.resolve("journal.ready");
+        
+        if (Files.exists(legacyFile) && !Files.isDirectory(readyDirectory)) {
+            Path stagingDirectory = dataDirectory.resolve("journal.migrating");
+            deleteDirectory(stagingDirectory);
+            
+            List<TransactionRecord> existing = new ArrayList<>();
+            new TransactionJournal(journalDirectory, JOURNAL_RECORDS_PER_SEGMENT, JOURNAL_MAX_SEGMENTS)
+                    .replay(existing::add);
+            
+            TransactionJournal staging = new TransactionJournal(stagingDirectory,
+                    JOURNAL_RECORDS_PER_SEGMENT, JOURNAL_MAX_SEGMENTS);
+            Set<UUID> seen = new HashSet<>();
+            int migrated = 0;
+            staging.open();
+            try {
+                // 逐条读取并写入日志，不把整个数组读进内存
+                try (JsonReader reader = new JsonReader(new InputStreamReader(
+                        new BufferedInputStream(Files.newInputStream(legacyFile)), java.nio.charset.StandardCharsets.UTF_8))) {
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            TransactionRecord record = gson.fromJson(reader, TransactionRecord.class);
+                            if (record != null && (record.getTransactionId() == null || seen.add(record.getTransactionId()))) {
+                                staging.append(record);
+                                migrated++;
+                            }
+                        }
+                        reader.endArray();
+                    }
+                }
+                for (TransactionRecord record : existing) {
+                    if (seen.add(record.getTransactionId())) {
+                        staging.append(record);
+                    }
+                }
+            } finally {
+                staging.close();
+            }
+            
+            TransactionJournal.sync(stagingDirectory);
+            moveDirectory(stagingDirectory, readyDirectory);
+            TradeMod.getLogger().info("已将 {} 条旧版交易历史写入新日志，另有 {} 条已有日志记录", migrated, existing.size());
+        }
+        
+        if (Files.isDirectory(readyDirectory)) {
+            deleteDirectory(journalDirectory);
+            moveDirectory(readyDirectory, journalDirectory);
+        }
+        
+        if (Files.exists(legacyFile)) {
+            Files.move(legacyFile, dataDirectory.resolve("transaction_history.json.migrated"),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            TradeMod.getLogger().info("旧版交易历史迁移完成");
+        }
+    }
+    
+    private static void moveDirectory(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+            Files.move(from, to);
+        }
+    }
+    
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (java.util.stream.Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(java.util.stream.Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+    
+    /**
+     * 添加到内存中的交易历史，超出上限时丢弃最旧的记录
+     */
+    private void appendToHistory(TransactionRecord record) {
+        transactionHistory.addLast(record);
+        if (transactionHistory.size() > MAX_TRANSACTION_HISTORY) {
+            transactionHistory.pollFirst();
         }
     }
     
@@ -214,20 +331,17 @@ public class JsonDataManager {
      * 加载系统统计数据
      */
     private void loadSystemStats() {
-        Path file = dataDirectory.resolve("system_stats.json");
-        if (!Files.exists(file)) {
+        if (!systemStatsStore.exists()) {
             TradeMod.getLogger().info("系统统计数据文件不存在，创建新文件");
             initializeDefaultStats();
             return;
         }
         
-        try (FileReader reader = new FileReader(file.toFile())) {
-            JsonObject data = gson.fromJson(reader, JsonObject.class);
-            if (data != null) {
+        try {
+            Map<String, Object> loaded = systemStatsStore.read(codec::readSystemStats);
+            if (loaded != null) {
                 systemStats.clear();
-                for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
-                    systemStats.put(entry.getKey(), entry.getValue().getAsString());
-                }
+                systemStats.putAll(loaded);
             }
             TradeMod.getLogger().info("加载了系统统计数据");
         } catch (IOException e) {
@@ -240,12 +354,19 @@ public class JsonDataManager {
      * 保存系统统计数据
      */
     private void saveSystemStats() {
-        Path file = dataDirectory.resolve("system_stats.json");
-        try (FileWriter writer = new FileWriter(file.toFile())) {
-            gson.toJson(systemStats, writer);
-            TradeMod.getLogger().debug("保存了系统统计数据");
+        Map<String, Object> data = new HashMap<>(systemStats);
+        writeSnapshot(systemStatsStore, output -> codec.writeSystemStats(data, output));
+        TradeMod.getLogger().debug("保存了系统统计数据");
+    }
+    
+    /**
+     * 写入数据文件快照；失败时抛出异常，由延迟写入队列重新标记并重试
+     */
+    private void writeSnapshot(SnapshotStore store, SnapshotStore.ContentWriter writer) {
+        try {
+            store.write(writer);
         } catch (IOException e) {
-            TradeMod.getLogger().error("保存系统统计数据失败", e);
+            throw new UncheckedIOException("写入数据文件失败: " + store.getFile().getFileName(), e);
         }
     }
     
@@ -262,60 +383,74 @@ public class JsonDataManager {
     // ==================== 数据访问方法 ====================
     
     /**
-     * 获取所有交易物品
+     * 上架物品仓库
      */
-    public Map<UUID, TradeItem> getAllTradeItems() {
-        return new HashMap<>(tradeItems);
+    public TradeRepository<TradeItem> getTradeItems() {
+        return tradeItems;
     }
     
     /**
-     * 保存交易物品
+     * 求购订单仓库
      */
-    public void saveTradeItem(TradeItem item) {
-        tradeItems.put(item.getId(), item);
-        saveTradeItems(); // 立即保存
+    public TradeRepository<BuyOrder> getBuyOrders() {
+        return buyOrders;
     }
     
     /**
-     * 删除交易物品
+     * 拍卖仓库
      */
-    public void removeTradeItem(UUID itemId) {
-        tradeItems.remove(itemId);
-        saveTradeItems(); // 立即保存
+    public TradeRepository<Auction> getAuctions() {
+        return auctions;
+    }
+    
+    /**
+     * 数据目录
+     */
+    public Path getDataDirectory() {
+        return dataDirectory;
     }
     
     /**
      * 获取玩家货币
      */
-    public int getPlayerCurrency(UUID playerId) {
-        return playerCurrency.getOrDefault(playerId, com.tradesystem.mod.config.TradeConfig.initialPlayerMoney);
+    public long getPlayerCurrency(UUID playerId) {
+        Long amount = playerCurrency.get(playerId);
+        return amount != null ? amount : com.tradesystem.mod.config.TradeConfig.initialPlayerMoney;
     }
     
     /**
      * 设置玩家货币
      */
-    public void setPlayerCurrency(UUID playerId, int amount) {
+    public void setPlayerCurrency(UUID playerId, long amount) {
         playerCurrency.put(playerId, amount);
-        savePlayerCurrency(); // 立即保存
+        writeBehind.markDirty(KEY_PLAYER_CURRENCY);
     }
     
     /**
      * 添加交易记录
      */
     public void addTransactionRecord(TransactionRecord record) {
-        transactionHistory.add(record);
-        // 限制历史记录数量，避免文件过大
-        if (transactionHistory.size() > 10000) {
-            transactionHistory.remove(0);
+        synchronized (transactionHistory) {
+            appendToHistory(record);
+        }
+        
+        // 每笔交易只追加一条记录，不再重写整个历史文件
+        if (transactionJournal != null) {
+            try {
+                transactionJournal.append(record);
+            } catch (IOException e) {
+                TradeMod.getLogger().error("写入交易日志失败: {}", record.getTransactionId(), e);
+            }
         }
-        saveTransactionHistory(); // 立即保存
     }
     
     /**
      * 获取交易历史
      */
     public List<TransactionRecord> getTransactionHistory() {
-        return new ArrayList<>(transactionHistory);
+        synchronized (transactionHistory) {
+            return new ArrayList<>(transactionHistory);
+        }
     }
     
     /**
@@ -323,7 +458,7 @@ public class JsonDataManager {
      */
     public void updateSystemStat(String key, Object value) {
         systemStats.put(key, value);
-        saveSystemStats(); // 立即保存
+        writeBehind.markDirty(KEY_SYSTEM_STATS);
     }
     
     /**
@@ -345,7 +480,12 @@ public class JsonDataManager {
      * 服务器关闭时的清理工作
      */
     public void shutdown() {
-        saveAllData();
+        // 停止写线程并把剩余的脏数据写盘
+        writeBehind.shutdown();
+        
+        if (transactionJournal != null) {
+            transactionJournal.close();
+        }
         TradeMod.getLogger().info("JSON数据管理器已保存所有数据并关闭");
     }
 }
\ No newline at end of file
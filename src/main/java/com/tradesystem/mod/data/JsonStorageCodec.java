@@ -0,0 +1,174 @@
+package com.tradesystem.mod.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.tradesystem.mod.TradeMod;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * JSON编解码器
+ * 可读的JSON格式，读取时按条目流式解析
+ */
+public class JsonStorageCodec implements StorageCodec {
+
+    public static final String NAME = "json";
+
+    private final Gson gson;
+
+    public JsonStorageCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "json";
+    }
+
+    @Override
+    public void writeTradeItems(Map<UUID, TradeItem> items, OutputStream output) throws IOException {
+        JsonObject data = new JsonObject();
+        for (Map.Entry<UUID, TradeItem> entry : items.entrySet()) {
+            data.add(entry.getKey().toString(), gson.toJsonTree(entry.getValue()));
+        }
+        writeJson(data, output);
+    }
+
+    @Override
+    public Map<UUID, TradeItem> readTradeItems(InputStream input) throws IOException {
+        return readUuidMap(input, "交易物品", value -> gson.fromJson(value, TradeItem.class));
+    }
+
+    @Override
+    public void writeBuyOrders(Map<UUID, BuyOrder> orders, OutputStream output) throws IOException {
+        JsonObject data = new JsonObject();
+        for (Map.Entry<UUID, BuyOrder> entry : orders.entrySet()) {
+            data.add(entry.getKey().toString(), gson.toJsonTree(entry.getValue()));
+        }
+        writeJson(data, output);
+    }
+
+    @Override
+    public Map<UUID, BuyOrder> readBuyOrders(InputStream input) throws IOException {
+        return readUuidMap(input, "求购订单", value -> gson.fromJson(value, BuyOrder.class));
+    }
+
+    @Override
+    public void writeAuctions(Map<UUID, Auction> auctions, OutputStream output) throws IOException {
+        JsonObject data = new JsonObject();
+        for (Map.Entry<UUID, Auction> entry : auctions.entrySet()) {
+            data.add(entry.getKey().toString(), gson.toJsonTree(entry.getValue()));
+        }
+        writeJson(data, output);
+    }
+
+    @Override
+    public Map<UUID, Auction> readAuctions(InputStream input) throws IOException {
+        return readUuidMap(input, "拍卖", value -> gson.fromJson(value, Auction.class));
+    }
+
+    @Override
+    public void writePlayerCurrency(Map<UUID, Long> currency, OutputStream output) throws IOException {
+        JsonObject data = new JsonObject();
+        for (Map.Entry<UUID, Long> entry : currency.entrySet()) {
+            data.addProperty(entry.getKey().toString(), entry.getValue());
+        }
+        writeJson(data, output);
+    }
+
+    @Override
+    public Map<UUID, Long> readPlayerCurrency(InputStream input) throws IOException {
+        return readUuidMap(input, "玩家货币", JsonElement::getAsLong);
+    }
+
+    @Override
+    public void writeSystemStats(Map<String, Object> stats, OutputStream output) throws IOException {
+        writeJson(gson.toJsonTree(stats), output);
+    }
+
+    @Override
+    public Map<String, Object> readSystemStats(InputStream input) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        JsonObject data = gson.fromJson(new InputStreamReader(input, StandardCharsets.UTF_8), JsonObject.class);
+        if (data != null) {
+            for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
+                result.put(entry.getKey(), statValue(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 统计值按JSON类型还原：整数为 Long，小数为 Double，布尔值为 Boolean，其余为字符串
+     */
+    private static Object statValue(JsonElement element) {
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                return primitive.getAsBoolean();
+            }
+            if (primitive.isNumber()) {
+                String text = primitive.getAsString();
+                if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+                    try {
+                        return Long.parseLong(text);
+                    } catch (NumberFormatException e) {
+                        // 超出 long 范围，按小数处理
+                    }
+                }
+                return primitive.getAsDouble();
+            }
+        }
+        return element.getAsString();
+    }
+
+    private void writeJson(JsonElement data, OutputStream output) throws IOException {
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        gson.toJson(data, writer);
+        writer.flush();
+    }
+
+    /**
+     * 以流的方式读取 {uuid: value} 格式的数据，每次只解析一个条目
+     * 单个条目解析失败时跳过该条目
+     */
+    private <V> Map<UUID, V> readUuidMap(InputStream input, String label, Function<JsonElement, V> binder)
+            throws IOException {
+        Map<UUID, V> result = new HashMap<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if (reader.peek() == JsonToken.NULL) {
+            return result;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            JsonElement value = JsonParser.parseReader(reader);
+            try {
+                V bound = binder.apply(value);
+                if (bound != null) {
+                    result.put(UUID.fromString(key), bound);
+                }
+            } catch (Exception e) {
+                TradeMod.getLogger().warn("加载{}数据失败: {}", label, key, e);
+            }
+        }
+        reader.endObject();
+        return result;
+    }
+}
@@ -0,0 +1,676 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.item.ItemStack;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 交易邮箱
+ * 保存暂时无法交给玩家的金币和物品（玩家离线、背包已满等）。
+ *
+ * 每个玩家一个文件 mailbox/&lt;uuid&gt;.dat，投递只在文件末尾追加一条记录并fsync，
+ * 按玩家UUID直接定位文件，不需要扫描全局数据；领取时一次读出全部记录，
+ * 先把剩余记录原子地重写回去，再把金币和物品交给玩家。
+ *
+ * 文件格式：[magic:int][version:int] 之后是若干条 [length:int][crc32:int][NBT]。
+ * 追加或领取前发现无法读取的部分（崩溃留下的不完整记录或损坏的数据）时，
+ * 先把这部分原样另存为 &lt;uuid&gt;.dat.&lt;时间&gt;.damaged，再截断到最后一条完整记录。
+ * 没有文件头的旧格式文件（[length:int][NBT]）在第一次追加或领取时转换为新格式
+ */
+public class OfflineMailbox {
+    private static OfflineMailbox instance;
+
+    private static final String FILE_SUFFIX = ".dat";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String DAMAGED_SUFFIX = ".damaged";
+    private static final int MAGIC = 0x54534D42; // "TSMB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 2 * 1024 * 1024;
+
+    private Path directory;
+
+    // 有邮件的玩家，启动时从文件名得到，用于登录时O(1)判断
+    private final Set<UUID> recipients = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Object> locks = new ConcurrentHashMap<>();
+    // 已确认完整的文件长度，长度不变时追加前不需要重新扫描文件
+    private final Map<UUID, Long> verifiedLengths = new ConcurrentHashMap<>();
+
+    private OfflineMailbox() {}
+
+    public static OfflineMailbox getInstance() {
+        if (instance == null) {
+            instance = new OfflineMailbox();
+        }
+        return instance;
+    }
+
+    /**
+     * 邮件
+     * 一封邮件要么是金币（amount > 0），要么是物品
+     */
+    public static final class Parcel {
+        private final UUID id;
+        private final long amount;
+        private final ItemStack itemStack;
+        private final String source;
+        private final long time;
+
+        private Parcel(UUID id, long amount, ItemStack itemStack, String source, long time) {
+            this.id = id;
+            this.amount = amount;
+            this.itemStack = itemStack;
+            this.source = source;
+            this.time = time;
+        }
+
+        public static Parcel currency(long amount, String source) {
+            return new Parcel(UUID.randomUUID(), amount, ItemStack.EMPTY, source, System.currentTimeMillis());
+        }
+
+        public static Parcel item(ItemStack itemStack, String source) {
+            return new Parcel(UUID.randomUUID(), 0, itemStack.copy(), source, System.currentTimeMillis());
+        }
+
+        public UUID getId() { return id; }
+        public long getAmount() { return amount; }
+        public ItemStack getItemStack() { return itemStack.copy(); }
+        public String getSource() { return source; }
+        public long getTime() { return time; }
+        public boolean isCurrency() { return amount > 0; }
+
+        private Parcel withItemStack(ItemStack remaining) {
+            return new Parcel(id, 0, remaining.copy(), source, time);
+        }
+
+        public CompoundTag toNBT() {
+            CompoundTag tag = new CompoundTag();
+            tag.putUUID("id", id);
+            tag.putLong("amount", amount);
+            if (!itemStack.isEmpty()) {
+                tag.put("item", itemStack.save(new CompoundTag()));
+            }
+            tag.putString("source", source != null ? source : "");
+            tag.putLong("time", time);
+            return tag;
+        }
+
+        public static Parcel fromNBT(CompoundTag tag) {
+            ItemStack stack = tag.contains("item") ? ItemStack.of(tag.getCompound("item")) : ItemStack.EMPTY;
+            return new Parcel(tag.getUUID("id"), tag.getLong("amount"), stack,
+                    tag.getString("source"), tag.getLong("time"));
+        }
+    }
+
+    /**
+     * 领取结果
+     */
+    public static final class ClaimResult {
+        public static final ClaimResult EMPTY = new ClaimResult(0, 0, 0, false);
+        // 邮箱文件无法读取或更新，什么都没有交付，邮件仍在邮箱中
+        public static final ClaimResult FAILED = new ClaimResult(0, 0, 0, true);
+
+        private final long currency;
+        private final int itemsDelivered;
+        private final int itemsRemaining;
+        private final boolean failed;
+
+        ClaimResult(long currency, int itemsDelivered, int itemsRemaining, boolean failed) {
+            this.currency = currency;
+            this.itemsDelivered = itemsDelivered;
+            this.itemsRemaining = itemsRemaining;
+            this.failed = failed;
+        }
+
+        public long getCurrency() { return currency; }
+        public int getItemsDelivered() { return itemsDelivered; }
+        public int getItemsRemaining() { return itemsRemaining; }
+        public boolean isFailed() { return failed; }
+    }
+
+    /**
+     * 初始化邮箱目录，只列出文件名，不读取邮件内容
+     */
+    public void initialize(Path directory) {
+        this.directory = directory;
+        recipients.clear();
+        verifiedLengths.clear();
+
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    if (!name.endsWith(FILE_SUFFIX)) {
+                        return;
+                    }
+                    try {
+                        recipients.add(UUID.fromString(name.substring(0, name.length() - FILE_SUFFIX.length())));
+                    } catch (IllegalArgumentException e) {
+                        TradeMod.getLogger().warn("忽略无法识别的邮箱文件: {}", name);
+                    }
+                });
+            }
+            TradeMod.getLogger().info("交易邮箱初始化完成，{} 个玩家有待领取的邮件", recipients.size());
+        } catch (IOException e) {
+            TradeMod.getLogger().error("初始化交易邮箱失败", e);
+        }
+    }
+
+    /**
+     * 投递金币
+     * @throws IOException 没有写入磁盘，调用方需要自己保留这笔金币
+     */
+    public void depositCurrency(UUID playerId, long amount, String source) throws IOException {
+        if (amount > 0) {
+            deposit(playerId, Collections.singletonList(Parcel.currency(amount, source)));
+        }
+    }
+
+    /**
+     * 投递物品
+     * @throws IOException 没有写入磁盘，调用方需要自己保留这件物品
+     */
+    public void depositItem(UUID playerId, ItemStack itemStack, String source) throws IOException {
+        if (!itemStack.isEmpty()) {
+            deposit(playerId, Collections.singletonList(Parcel.item(itemStack, source)));
+        }
+    }
+    
+    /**
+     * 一次投递多件物品给同一个玩家，只追加写入并刷盘一次
+     * @throws IOException 一件都没有写入磁盘，调用方需要自己保留这些物品
+     */
+    public void depositItems(UUID playerId, List<ItemStack> itemStacks, String source) throws IOException {
+        List<Parcel> parcels = new ArrayList<>(itemStacks.size());
+        for (ItemStack itemStack : itemStacks) {
+            if (!itemStack.isEmpty()) {
+                parcels.add(Parcel.item(itemStack, source));
+            }
+        }
+        if (!parcels.isEmpty()) {
+            deposit(playerId, parcels);
+        }
+    }
+
+    /**
+     * 把物品交给在线玩家，背包放不下的部分投递到邮箱；邮箱写入失败时掉落在玩家脚下
+     * @return 是否全部放入了背包
+     */
+    public boolean giveOrDeposit(ServerPlayer player, ItemStack itemStack, String source) {
+        ItemStack remaining = itemStack.copy();
+        player.getInventory().add(remaining);
+        if (remaining.isEmpty()) {
+            return true;
+        }
+
+        storeOrDrop(player, Collections.singletonList(remaining), source);
+        return false;
+    }
+    
+    /**
+     * 把多件物品交给在线玩家，背包放不下的部分一次投递到邮箱；邮箱写入失败时掉落在玩家脚下
+     */
+    public void giveOrDepositAll(ServerPlayer player, List<ItemStack> itemStacks, String source) {
+        List<ItemStack> leftovers = new ArrayList<>();
+        for (ItemStack itemStack : itemStacks) {
+            ItemStack remaining = itemStack.copy();
+            player.getInventory().add(remaining);
+            if (!remaining.isEmpty()) {
+                leftovers.add(remaining);
+            }
+        }
+        if (!leftovers.isEmpty()) {
+            storeOrDrop(player, leftovers, source);
+        }
+    }
+
+    /**
+     * 是否有待领取的邮件
+     */
+    public boolean hasMail(UUID playerId) {
+        return recipients.contains(playerId);
+    }
+
+    /**
+     * 查看玩家的全部邮件，只读取不修复文件
+     */
+    public List<Parcel> getParcels(UUID playerId) {
+        if (!hasMail(playerId)) {
+            return Collections.emptyList();
+        }
+        synchronized (lockFor(playerId)) {
+            Path file = fileFor(playerId);
+            if (!Files.exists(file)) {
+                recipients.remove(playerId);
+                return Collections.emptyList();
+            }
+            try {
+                return scan(file).parcels;
+            } catch (IOException e) {
+                TradeMod.getLogger().error("读取玩家 {} 的邮箱失败", playerId, e);
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    /**
+     * 领取全部邮件
+     * 先在背包副本上确定能交付哪些邮件，把剩余邮件写回磁盘后才记入金币、放入物品；
+     * 文件无法读取或写回时什么都不交付，返回 {@link ClaimResult#FAILED}
+     */
+    public ClaimResult claim(ServerPlayer player) {
+        UUID playerId = player.getUUID();
+        if (!hasMail(playerId)) {
+            return ClaimResult.EMPTY;
+        }
+
+        synchronized (lockFor(playerId)) {
+            List<Parcel> parcels;
+            try {
+                parcels = load(playerId);
+            } catch (IOException e) {
+                TradeMod.getLogger().error("读取玩家 {} 的邮箱失败，本次不领取", playerId, e);
+                return ClaimResult.FAILED;
+            }
+
+            CurrencyLedger ledger = CurrencyLedger.getInstance();
+            long headroom = Math.max(0, ledger.getMaxBalance() - ledger.getBalance(playerId));
+            Inventory inventory = player.getInventory();
+            Inventory simulated = new Inventory(player);
+            for (int i = 0; i < inventory.getContainerSize(); i++) {
+                simulated.setItem(i, inventory.getItem(i).copy());
+            }
+
+            List<Parcel> credits = new ArrayList<>();
+            List<Parcel> deliveries = new ArrayList<>();
+            List<Parcel> remaining = new ArrayList<>();
+            int delivered = 0;
+
+            for (Parcel parcel : parcels) {
+                if (parcel.isCurrency()) {
+                    if (parcel.getAmount() <= headroom) {
+                        headroom -= parcel.getAmount();
+                        credits.add(parcel);
+                    } else {
+                        remaining.add(parcel);
+                    }
+                    continue;
+                }
+
+                ItemStack stack = parcel.getItemStack();
+                if (stack.isEmpty()) {
+                    continue;
+                }
+                int count = stack.getCount();
+                simulated.add(stack);
+                if (stack.getCount() < count) {
+                    ItemStack fitted = parcel.getItemStack();
+                    fitted.setCount(count - stack.getCount());
+                    deliveries.add(parcel.withItemStack(fitted));
+                }
+                if (stack.isEmpty()) {
+                    delivered++;
+                } else {
+                    remaining.add(parcel.withItemStack(stack));
+                }
+            }
+
+            if (credits.isEmpty() && deliveries.isEmpty() && !remaining.isEmpty()) {
+                return new ClaimResult(0, 0, remaining.size(), false);
+            }
+
+            // 剩余邮件落盘后才交付，写回失败时玩家什么都没拿到，邮件也都还在
+            try {
+                rewrite(playerId, remaining);
+            } catch (IOException e) {
+                TradeMod.getLogger().error("更新玩家 {} 的邮箱失败，本次不领取", playerId, e);
+                return ClaimResult.FAILED;
+            }
+
+            long currency = 0;
+            List<Parcel> returned = new ArrayList<>();
+            for (Parcel parcel : credits) {
+                if (ledger.credit(playerId, parcel.getAmount())) {
+                    currency += parcel.getAmount();
+                } else {
+                    // 模拟之后余额被其他交易推到了上限
+                    returned.add(parcel);
+                }
+            }
+            for (Parcel parcel : deliveries) {
+                ItemStack stack = parcel.getItemStack();
+                inventory.add(stack);
+                if (!stack.isEmpty()) {
+                    returned.add(parcel.withItemStack(stack));
+                }
+            }
+            if (!returned.isEmpty()) {
+                putBack(player, returned);
+            }
+
+            int waiting = remaining.size() + returned.size();
+            if (currency > 0 || delivered > 0) {
+                TradeMod.getLogger().info("玩家 {} 从邮箱领取了 {} 金币和 {} 件物品，剩余 {} 封",
+                        player.getName().getString(), currency, delivered, waiting);
+            }
+            return new ClaimResult(currency, delivered, waiting, false);
+        }
+    }
+
+    /**
+     * 服务器关闭时清空内存状态，邮件本身在投递时已经写入磁盘
+     */
+    public void shutdown() {
+        recipients.clear();
+        locks.clear();
+        verifiedLengths.clear();
+    }
+
+    /**
+     * 把背包放不下的物品投递到邮箱，邮箱写入失败时掉落在玩家脚下，物品不会凭空消失
+     */
+    private void storeOrDrop(ServerPlayer player, List<ItemStack> leftovers, String source) {
+        try {
+            depositItems(player.getUUID(), leftovers, source);
+            for (ItemStack stack : leftovers) {
+                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.mailbox_item_stored",
+                        stack.getHoverName(), stack.getCount()));
+            }
+        } catch (IOException e) {
+            TradeMod.getLogger().error("投递邮件给 {} 失败，物品掉落在玩家脚下", player.getName().getString(), e);
+            for (ItemStack stack : leftovers) {
+                player.drop(stack.copy(), false);
+                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.mailbox_item_dropped",
+                        stack.getHoverName(), stack.getCount()));
+            }
+        }
+    }
+
+    /**
+     * 领取时重写之后才发现无法交付的邮件放回邮箱
+     */
+    private void putBack(ServerPlayer player, List<Parcel> parcels) {
+        try {
+            deposit(player.getUUID(), parcels);
+        } catch (IOException e) {
+            TradeMod.getLogger().error("无法把 {} 封邮件放回玩家 {} 的邮箱", parcels.size(),
+                    player.getName().getString(), e);
+            for (Parcel parcel : parcels) {
+                if (parcel.isCurrency()) {
+                    TradeMod.getLogger().error("玩家 {} ({}) 的 {} 金币（来源 {}）无法入账也无法放回邮箱",
+                            player.getName().getString(), player.getUUID(), parcel.getAmount(), parcel.getSource());
+                } else {
+                    player.drop(parcel.getItemStack(), false);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把邮件追加到玩家的邮箱文件，多封邮件只打开文件和刷盘一次
+     * 追加前确认文件完整，写入失败时截回追加前的长度
+     */
+    private void deposit(UUID playerId, List<Parcel> parcels) throws IOException {
+        if (directory == null) {
+            throw new IOException("交易邮箱未初始化，无法投递邮件给 " + playerId);
+        }
+
+        synchronized (lockFor(playerId)) {
+            Path file = fileFor(playerId);
+            boolean exists = Files.exists(file);
+            if (exists) {
+                Long verified = verifiedLengths.get(playerId);
+                if (verified == null || verified != Files.size(file)) {
+                    repair(playerId, file, scan(file));
+                }
+                exists = Files.exists(file);
+            }
+
+            long start = exists ? Files.size(file) : 0;
+            ByteBuffer buffer = encode(parcels, start == 0);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                try {
+                    long position = start;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    channel.force(false);
+                    verifiedLengths.put(playerId, position);
+                } catch (IOException e) {
+                    verifiedLengths.remove(playerId);
+                    try {
+                        channel.truncate(start);
+                        channel.force(false);
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    throw e;
+                }
+            }
+            if (!exists) {
+                syncDirectory();
+            }
+            recipients.add(playerId);
+        }
+    }
+
+    /**
+     * 读出全部邮件，并把文件整理成完整的新格式
+     */
+    private List<Parcel> load(UUID playerId) throws IOException {
+        Path file = fileFor(playerId);
+        if (!Files.exists(file)) {
+            recipients.remove(playerId);
+            verifiedLengths.remove(playerId);
+            return new ArrayList<>();
+        }
+        MailboxScan scan = scan(file);
+        repair(playerId, file, scan);
+        return scan.parcels;
+    }
+
+    /**
+     * 把无法读取的部分另存后截断，旧格式文件转换为新格式
+     */
+    private void repair(UUID playerId, Path file, MailboxScan scan) throws IOException {
+        if (!scan.complete) {
+            quarantine(file, scan.validLength);
+        }
+        if (scan.legacy) {
+            rewrite(playerId, scan.parcels);
+            TradeMod.getLogger().info("玩家 {} 的邮箱文件已转换为新格式", playerId);
+        } else {
+            verifiedLengths.put(playerId, scan.validLength);
+        }
+    }
+
+    /**
+     * 把 validLength 之后的内容原样另存一份并同步到磁盘，然后截断原文件
+     */
+    private void quarantine(Path file, long validLength) throws IOException {
+        Path damaged = file.resolveSibling(file.getFileName().toString() + "."
+                + System.currentTimeMillis() + DAMAGED_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            try (FileChannel copy = FileChannel.open(damaged, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long position = validLength;
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, copy);
+                }
+                copy.force(true);
+            }
+            syncDirectory();
+            channel.truncate(validLength);
+            channel.force(true);
+            TradeMod.getLogger().warn("邮箱文件 {} 中有 {} 字节无法读取，已另存为 {} 并截断",
+                    file.getFileName(), size - validLength, damaged.getFileName());
+        }
+    }
+
+    /**
+     * 扫描邮箱文件，读到第一条不完整、校验失败或无法解析的记录为止
+     */
+    private static MailboxScan scan(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        MailboxScan scan = new MailboxScan();
+
+        if (buffer.remaining() < HEADER_SIZE) {
+            // 创建文件时崩溃留下的不完整文件头
+            scan.complete = buffer.remaining() == 0;
+            return scan;
+        }
+        if (buffer.getInt(0) == MAGIC) {
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("不支持的邮箱文件版本: " + buffer.getInt(4));
+            }
+            buffer.position(HEADER_SIZE);
+        } else {
+            scan.legacy = true;
+        }
+        scan.validLength = buffer.position();
+
+        int prefix = scan.legacy ? 4 : 8;
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < prefix) {
+                scan.complete = false;
+                break;
+            }
+            int length = buffer.getInt();
+            int expectedCrc = scan.legacy ? 0 : buffer.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || buffer.remaining() < length) {
+                scan.complete = false;
+                break;
+            }
+
+            byte[] record = new byte[length];
+            buffer.get(record);
+            if (!scan.legacy && crc(record) != expectedCrc) {
+                scan.complete = false;
+                break;
+            }
+            try {
+                scan.parcels.add(decode(record));
+            } catch (IOException | RuntimeException e) {
+                scan.complete = false;
+                break;
+            }
+            scan.validLength = buffer.position();
+        }
+        return scan;
+    }
+
+    /**
+     * 原子地用给定的邮件替换玩家的邮箱文件，返回时新内容已经同步到磁盘
+     */
+    private void rewrite(UUID playerId, List<Parcel> parcels) throws IOException {
+        Path file = fileFor(playerId);
+        if (parcels.isEmpty()) {
+            Files.deleteIfExists(file);
+            syncDirectory();
+            verifiedLengths.remove(playerId);
+            recipients.remove(playerId);
+            return;
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName().toString() + TMP_SUFFIX);
+        ByteBuffer buffer = encode(parcels, true);
+        long length = buffer.remaining();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+        verifiedLengths.put(playerId, length);
+        recipients.add(playerId);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows 等平台不支持对目录fsync
+        }
+    }
+
+    /**
+     * 把邮件编码为 [length][crc32][NBT] 记录，newFile 为 true 时在最前面写入文件头
+     */
+    private static ByteBuffer encode(List<Parcel> parcels, boolean newFile) throws IOException {
+        List<byte[]> records = new ArrayList<>(parcels.size());
+        int size = newFile ? HEADER_SIZE : 0;
+        for (Parcel parcel : parcels) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+                NbtIo.write(parcel.toNBT(), output);
+            }
+            byte[] record = bytes.toByteArray();
+            if (record.length > MAX_RECORD_SIZE) {
+                throw new IOException("邮件过大: " + record.length + " 字节");
+            }
+            records.add(record);
+            size += 8 + record.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (newFile) {
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+        for (byte[] record : records) {
+            buffer.putInt(record.length).putInt(crc(record)).put(record);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static Parcel decode(byte[] record) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(record))) {
+            return Parcel.fromNBT(NbtIo.read(input));
+        }
+    }
+
+    private static int crc(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private Path fileFor(UUID playerId) {
+        return directory.resolve(playerId + FILE_SUFFIX);
+    }
+
+    private Object lockFor(UUID playerId) {
+        return locks.computeIfAbsent(playerId, id -> new Object());
+    }
+
+    /**
+     * 邮箱文件扫描结果
+     */
+    private static class MailboxScan {
+        final List<Parcel> parcels = new ArrayList<>();
+        boolean legacy = false;
+        boolean complete = true;
+        long validLength = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.tradesystem.mod.data;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 编译后的回收价格表
+ * 按物品的注册数字ID索引的数组，查价只是一次数组访问，不构造字符串也不查哈希表；0表示不可回收。
+ * 表创建后不再修改，重新加载时整体替换。
+ * 物品的数字ID由Forge在进入服务器时同步，因此可以直接按ID发送给客户端
+ */
+public final class RecyclePriceTable {
+    public static final RecyclePriceTable EMPTY = new RecyclePriceTable(new int[0]);
+
+    private final int[] prices;
+    private final int size;
+
+    /**
+     * @param prices 物品注册ID -> 基础回收价格，数组归本表所有，调用方之后不能再修改
+     */
+    public RecyclePriceTable(int[] prices) {
+        this.prices = prices;
+        int count = 0;
+        for (int price : prices) {
+            if (price > 0) {
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+     * 物品的基础回收价格，不可回收时返回0
+     */
+    public int getPrice(Item item) {
+        int id = Item.getId(item);
+        return id >= 0 && id < prices.length ? prices[id] : 0;
+    }
+
+    /**
+     * 物品是否在价格表中
+     */
+    public boolean contains(Item item) {
+        return getPrice(item) > 0;
+    }
+
+    /**
+     * 可回收物品的种类数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 所有可回收物品
+     */
+    public List<Item> getItems() {
+        List<Item> items = new ArrayList<>(size);
+        for (int id = 0; id < prices.length; id++) {
+            if (prices[id] > 0) {
+                items.add(Item.byId(id));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 写入网络缓冲区：只写有价格的物品（ID和价格）
+     */
+    public void write(FriendlyByteBuf buffer) {
+        buffer.writeVarInt(size);
+        for (int id = 0; id < prices.length; id++) {
+            if (prices[id] > 0) {
+                buffer.writeVarInt(id);
+                buffer.writeVarInt(prices[id]);
+            }
+        }
+    }
+
+    /**
+     * 从网络缓冲区读取，数组长度取本地物品注册表的大小，忽略本地不存在的ID
+     */
+    public static RecyclePriceTable read(FriendlyByteBuf buffer) {
+        int[] prices = new int[BuiltInRegistries.ITEM.size()];
+        int count = buffer.readVarInt();
+        for (int i = 0; i < count; i++) {
+            int id = buffer.readVarInt();
+            int price = buffer.readVarInt();
+            if (id >= 0 && id < prices.length) {
+                prices[id] = price;
+            }
+        }
+        return new RecyclePriceTable(prices);
+    }
+}
@@ -0,0 +1,66 @@
+package com.tradesystem.mod.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 仓库的存储后端
+ * 负责整体读取和写入一类数据；仓库只在启动时读取一次，之后由写线程把内存中的快照交给后端写入
+ *
+ * @param <T> 数据类型
+ */
+public interface RepositoryBackend<T> {
+
+    /**
+     * 后端名称，用于日志
+     */
+    String getName();
+
+    /**
+     * 读取所有数据，没有已保存的数据时返回空Map
+     */
+    Map<UUID, T> load() throws IOException;
+
+    /**
+     * 写入所有数据
+     */
+    void store(Map<UUID, T> values) throws IOException;
+
+    /**
+     * 按编解码器写入
+     */
+    @FunctionalInterface
+    interface MapWriter<T> {
+        void write(Map<UUID, T> values, OutputStream output) throws IOException;
+    }
+
+    /**
+     * 基于数据文件快照的后端，磁盘格式由编解码器决定
+     */
+    static <T> RepositoryBackend<T> snapshot(SnapshotStore store,
+                                             SnapshotStore.ContentReader<Map<UUID, T>> reader,
+                                             MapWriter<T> writer) {
+        return new RepositoryBackend<T>() {
+            @Override
+            public String getName() {
+                return store.getFile().getFileName().toString();
+            }
+
+            @Override
+            public Map<UUID, T> load() throws IOException {
+                if (!store.exists()) {
+                    return Map.of();
+                }
+                Map<UUID, T> loaded = store.read(reader);
+                return loaded != null ? loaded : Map.of();
+            }
+
+            @Override
+            public void store(Map<UUID, T> values) throws IOException {
+                store.write(output -> writer.write(values, output));
+            }
+        };
+    }
+}
@@ -0,0 +1,290 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 数据文件快照存储
+ * 写入时先写临时文件并fsync，再原子重命名覆盖，不会出现写了一半的数据文件；
+ * 每个版本旁边有一个 .crc 校验文件，并保留最近的若干个历史版本（file.1、file.2 ...）。
+ * 读取时依次尝试当前版本和历史版本，返回第一个校验通过且能解析的版本
+ */
+public class SnapshotStore {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String CRC_SUFFIX = ".crc";
+
+    private final Path file;
+    private final int generations;
+
+    /**
+     * @param file 数据文件
+     * @param generations 保留的版本数（包括当前版本）
+     */
+    public SnapshotStore(Path file, int generations) {
+        this.file = file;
+        this.generations = Math.max(1, generations);
+    }
+
+    /**
+     * 写入内容
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    /**
+     * 读取内容
+     */
+    @FunctionalInterface
+    public interface ContentReader<T> {
+        T read(InputStream input) throws IOException;
+    }
+
+    /**
+     * 当前版本的文件路径
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * 是否存在任何版本
+     */
+    public boolean exists() {
+        for (int i = 0; i < generations; i++) {
+            if (Files.exists(generation(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 写入新版本
+     */
+    public synchronized void write(ContentWriter writer) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        Path tmp = sibling(file, TMP_SUFFIX);
+        Path crcTmp = sibling(crcFile(file), TMP_SUFFIX);
+
+        // 1. 写临时文件并计算校验和
+        CRC32 crc = new CRC32();
+        long length;
+        try (FileOutputStream fileOutput = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(fileOutput, crc);
+            CountingOutputStream counting = new CountingOutputStream(checked);
+            BufferedOutputStream buffered = new BufferedOutputStream(counting, 64 * 1024);
+
+            // 有的序列化方法会关闭传入的流，这里屏蔽close以便后续fsync
+            writer.write(new NonClosingOutputStream(buffered));
+            buffered.flush();
+            length = counting.count;
+
+            fileOutput.getFD().sync();
+        }
+
+        // 2. 写校验文件
+        try (FileOutputStream crcOutput = new FileOutputStream(crcTmp.toFile())) {
+            crcOutput.write((Long.toHexString(crc.getValue()) + " " + length).getBytes(StandardCharsets.US_ASCII));
+            crcOutput.getFD().sync();
+        }
+
+        // 3. 旧版本后移，再原子替换当前版本
+        rotate();
+        move(crcTmp, crcFile(file));
+        move(tmp, file);
+        syncDirectory();
+    }
+
+    /**
+     * 读取最新的完好版本，没有任何可用版本时返回null
+     */
+    public synchronized <T> T read(ContentReader<T> reader) throws IOException {
+        IOException lastError = null;
+
+        for (int i = 0; i < generations; i++) {
+            Path candidate = generation(i);
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+
+            try {
+                if (!verify(candidate)) {
+                    TradeMod.getLogger().warn("数据文件 {} 校验失败，尝试上一个版本", candidate.getFileName());
+                    continue;
+                }
+
+                T result;
+                try (InputStream input = new BufferedInputStream(Files.newInputStream(candidate), 64 * 1024)) {
+                    result = reader.read(input);
+                }
+                if (i > 0) {
+                    TradeMod.getLogger().warn("数据文件 {} 不可用，已从历史版本 {} 恢复", file.getFileName(), candidate.getFileName());
+                }
+                return result;
+            } catch (IOException | RuntimeException e) {
+                TradeMod.getLogger().warn("读取数据文件 {} 失败: {}，尝试上一个版本", candidate.getFileName(), e.getMessage());
+                lastError = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        }
+
+        if (lastError != null) {
+            throw lastError;
+        }
+        return null;
+    }
+
+    /**
+     * 将所有版本及其校验文件加上后缀改名归档，之后 exists() 返回 false
+     */
+    public synchronized void archive(String suffix) throws IOException {
+        for (int i = 0; i < generations; i++) {
+            Path candidate = generation(i);
+            if (Files.exists(candidate)) {
+                move(candidate, sibling(candidate, suffix));
+            }
+            Path crcPath = crcFile(candidate);
+            if (Files.exists(crcPath)) {
+                move(crcPath, sibling(crcPath, suffix));
+            }
+        }
+    }
+
+    /**
+     * 校验版本内容；没有校验文件的旧数据文件视为可用
+     */
+    private boolean verify(Path candidate) throws IOException {
+        Path crcPath = crcFile(candidate);
+        if (!Files.exists(crcPath)) {
+            return true;
+        }
+
+        String[] parts = new String(Files.readAllBytes(crcPath), StandardCharsets.US_ASCII).trim().split(" ");
+        if (parts.length != 2) {
+            return false;
+        }
+        long expectedCrc;
+        long expectedLength;
+        try {
+            expectedCrc = Long.parseLong(parts[0], 16);
+            expectedLength = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        if (Files.size(candidate) != expectedLength) {
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        try (CheckedInputStream input = new CheckedInputStream(Files.newInputStream(candidate), crc)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (input.read(buffer) != -1) {
+                // 只计算校验和
+            }
+        }
+        return crc.getValue() == expectedCrc;
+    }
+
+    /**
+     * file.(n-2) -> file.(n-1) ... file -> file.1，最旧的版本被覆盖
+     */
+    private void rotate() throws IOException {
+        for (int i = generations - 1; i >= 1; i--) {
+            Path from = generation(i - 1);
+            Path to = generation(i);
+            if (Files.exists(from)) {
+                move(from, to);
+                Path fromCrc = crcFile(from);
+                if (Files.exists(fromCrc)) {
+                    move(fromCrc, crcFile(to));
+                } else {
+                    Files.deleteIfExists(crcFile(to));
+                }
+            }
+        }
+    }
+
+    private Path generation(int index) {
+        return index == 0 ? file : sibling(file, "." + index);
+    }
+
+    private static Path crcFile(Path path) {
+        return sibling(path, CRC_SUFFIX);
+    }
+
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName().toString() + suffix);
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 同步目录，保证重命名本身落盘；部分平台不支持打开目录，忽略失败
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows 等平台不支持对目录fsync
+        }
+    }
+
+    /**
+     * 统计写入的字节数
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * close时只flush，不关闭底层流
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.tradesystem.mod.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 数据文件编解码器
+ * 决定交易物品、求购订单、拍卖、玩家货币和系统统计在磁盘上的格式，由配置 storage_format 选择
+ */
+public interface StorageCodec {
+
+    /**
+     * 格式名称，与配置值一致
+     */
+    String getName();
+
+    /**
+     * 数据文件扩展名
+     */
+    String getFileExtension();
+
+    void writeTradeItems(Map<UUID, TradeItem> items, OutputStream output) throws IOException;
+
+    Map<UUID, TradeItem> readTradeItems(InputStream input) throws IOException;
+
+    void writeBuyOrders(Map<UUID, BuyOrder> orders, OutputStream output) throws IOException;
+
+    Map<UUID, BuyOrder> readBuyOrders(InputStream input) throws IOException;
+
+    void writeAuctions(Map<UUID, Auction> auctions, OutputStream output) throws IOException;
+
+    Map<UUID, Auction> readAuctions(InputStream input) throws IOException;
+
+    void writePlayerCurrency(Map<UUID, Long> currency, OutputStream output) throws IOException;
+
+    Map<UUID, Long> readPlayerCurrency(InputStream input) throws IOException;
+
+    void writeSystemStats(Map<String, Object> stats, OutputStream output) throws IOException;
+
+    Map<String, Object> readSystemStats(InputStream input) throws IOException;
+}
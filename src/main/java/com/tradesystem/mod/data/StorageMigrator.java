@@ -0,0 +1,117 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 存储格式迁移
+ * 启动时如果当前格式的数据文件不存在、而另一种格式的文件存在，
+ * 则用旧格式读取、以新格式写入，成功后把旧文件改名为 *.migrated
+ */
+public final class StorageMigrator {
+
+    public static final String[] DATA_FILES = {"trade_items", "buy_orders", "auctions", "player_currency", "system_stats"};
+
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final String FAILED_SUFFIX = ".failed";
+
+    private StorageMigrator() {}
+
+    /**
+     * 数据文件对应的快照存储
+     */
+    public static SnapshotStore store(Path directory, String baseName, StorageCodec codec, int generations) {
+        return new SnapshotStore(directory.resolve(baseName + "." + codec.getFileExtension()), generations);
+    }
+
+    /**
+     * 把 from 格式的数据文件迁移到 to 格式
+     * 先写出所有新文件，全部成功后才归档旧文件；任何一个失败都会撤销已写出的新文件，
+     * 保证数据要么全部是旧格式、要么全部是新格式
+     * @return 迁移成功或无需迁移时返回true；失败时调用方应继续使用旧格式
+     */
+    public static boolean migrate(Path directory, StorageCodec from, StorageCodec to, int generations) {
+        List<SnapshotStore> sources = new ArrayList<>();
+        List<SnapshotStore> targets = new ArrayList<>();
+
+        try {
+            for (String baseName : DATA_FILES) {
+                SnapshotStore source = store(directory, baseName, from, generations);
+                SnapshotStore target = store(directory, baseName, to, generations);
+                if (target.exists() || !source.exists()) {
+                    continue;
+                }
+
+                migrateFile(baseName, source, from, target, to);
+                sources.add(source);
+                targets.add(target);
+            }
+        } catch (IOException | RuntimeException e) {
+            TradeMod.getLogger().error("迁移数据文件失败，继续使用 {} 格式，下次启动时重试", from.getName(), e);
+            for (SnapshotStore target : targets) {
+                try {
+                    target.archive(FAILED_SUFFIX);
+                } catch (IOException ex) {
+                    TradeMod.getLogger().error("撤销迁移文件 {} 失败", target.getFile().getFileName(), ex);
+                }
+            }
+            return false;
+        }
+
+        for (SnapshotStore source : sources) {
+            try {
+                source.archive(MIGRATED_SUFFIX);
+                TradeMod.getLogger().info("已将 {} 从 {} 格式迁移到 {} 格式",
+                        source.getFile().getFileName(), from.getName(), to.getName());
+            } catch (IOException e) {
+                // 新文件已经写好并优先使用，旧文件残留不影响读取
+                TradeMod.getLogger().warn("归档旧数据文件 {} 失败", source.getFile().getFileName(), e);
+            }
+        }
+        return true;
+    }
+
+    private static void migrateFile(String baseName, SnapshotStore source, StorageCodec from,
+                                    SnapshotStore target, StorageCodec to) throws IOException {
+        switch (baseName) {
+            case "trade_items":
+                Map<UUID, TradeItem> items = source.read(from::readTradeItems);
+                if (items != null) {
+                    target.write(output -> to.writeTradeItems(items, output));
+                }
+                break;
+            case "buy_orders":
+                Map<UUID, BuyOrder> orders = source.read(from::readBuyOrders);
+                if (orders != null) {
+                    target.write(output -> to.writeBuyOrders(orders, output));
+                }
+                break;
+            case "auctions":
+                Map<UUID, Auction> auctions = source.read(from::readAuctions);
+                if (auctions != null) {
+                    target.write(output -> to.writeAuctions(auctions, output));
+                }
+                break;
+            case "player_currency":
+                Map<UUID, Long> currency = source.read(from::readPlayerCurrency);
+                if (currency != null) {
+                    target.write(output -> to.writePlayerCurrency(currency, output));
+                }
+                break;
+            case "system_stats":
+                Map<String, Object> stats = source.read(from::readSystemStats);
+                if (stats != null) {
+                    target.write(output -> to.writeSystemStats(stats, output));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知的数据文件: " + baseName);
+        }
+    }
+}
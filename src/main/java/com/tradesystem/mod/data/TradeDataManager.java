@@ -30,12 +30,6 @@ public class TradeDataManager {
     // 玩家交易数据缓存
     private final Map<UUID, Object> playerTradeCache = new HashMap<>();
     
-    // 离线玩家货币缓存
-    private final Map<UUID, Integer> offlinePlayerCurrency = new HashMap<>();
-    
-    // 离线玩家物品缓存
-    private final Map<UUID, java.util.List<net.minecraft.world.item.ItemStack>> offlinePlayerItems = new HashMap<>();
-    
     // 系统收入统计
     private long systemRevenue = 0;
     
@@ -144,57 +138,19 @@ public class TradeDataManager {
     }
     
     /**
-     * 添加离线玩家货币
+     * 添加离线玩家货币（投递到交易邮箱，登录时领取）
+     * @throws java.io.IOException 没有写入邮箱，调用方需要保留这笔金币
      */
-    public void addOfflinePlayerCurrency(UUID playerId, int amount) {
-        synchronized (offlinePlayerCurrency) {
-            offlinePlayerCurrency.merge(playerId, amount, Integer::sum);
-        }
+    public void addOfflinePlayerCurrency(UUID playerId, int amount) throws java.io.IOException {
+        OfflineMailbox.getInstance().depositCurrency(playerId, amount, "offline");
     }
     
     /**
-     * 获取离线玩家货币
+     * 添加离线玩家物品（投递到交易邮箱，登录时领取）
+     * @throws java.io.IOException 没有写入邮箱，调用方需要保留这件物品
      */
-    public int getOfflinePlayerCurrency(UUID playerId) {
-        synchronized (offlinePlayerCurrency) {
-            return offlinePlayerCurrency.getOrDefault(playerId, 0);
-        }
-    }
-    
-    /**
-     * 清除离线玩家货币
-     */
-    public void clearOfflinePlayerCurrency(UUID playerId) {
-        synchronized (offlinePlayerCurrency) {
-            offlinePlayerCurrency.remove(playerId);
-        }
-    }
-    
-    /**
-     * 添加离线玩家物品
-     */
-    public void addOfflinePlayerItem(UUID playerId, net.minecraft.world.item.ItemStack itemStack) {
-        synchronized (offlinePlayerItems) {
-            offlinePlayerItems.computeIfAbsent(playerId, k -> new java.util.ArrayList<>()).add(itemStack);
-        }
-    }
-    
-    /**
-     * 获取离线玩家物品
-     */
-    public java.util.List<net.minecraft.world.item.ItemStack> getOfflinePlayerItems(UUID playerId) {
-        synchronized (offlinePlayerItems) {
-            return new java.util.ArrayList<>(offlinePlayerItems.getOrDefault(playerId, new java.util.ArrayList<>()));
-        }
-    }
-    
-    /**
-     * 清除离线玩家物品
-     */
-    public void clearOfflinePlayerItems(UUID playerId) {
-        synchronized (offlinePlayerItems) {
-            offlinePlayerItems.remove(playerId);
-        }
+    public void addOfflinePlayerItem(UUID playerId, net.minecraft.world.item.ItemStack itemStack) throws java.io.IOException {
+        OfflineMailbox.getInstance().depositItem(playerId, itemStack, "offline");
     }
     
     /**
@@ -229,60 +185,23 @@ public class TradeDataManager {
     }
     
     /**
-     * 获取所有交易物品
+     * 取出旧版世界存档中的上架物品，取出后旧版存档被清空，再次调用返回空列表
      */
-    public java.util.List<com.tradesystem.mod.data.TradeItem> getAllTradeItems() {
+    public java.util.List<com.tradesystem.mod.data.TradeItem> takeLegacyTradeItems() {
         java.util.List<com.tradesystem.mod.data.TradeItem> items = new java.util.ArrayList<>();
         
-        // 从数据服务获取数据
-        DataService dataService = DataService.getInstance();
-        if (dataService != null) {
-            // 获取所有市场物品
-            var marketItems = dataService.getAllMarketItems();
-            for (var entry : marketItems.entrySet()) {
-                try {
-                    // 从NBT数据重建TradeItem对象
-                    com.tradesystem.mod.data.TradeItem item = new com.tradesystem.mod.data.TradeItem(entry.getValue());
-                    if (item != null && item.isActive()) {
-                        items.add(item);
-                    }
-                } catch (Exception e) {
-                    TradeMod.getLogger().error("加载交易物品时出错: {}", e.getMessage());
+        for (var entry : TradeSavedData.get(server).takeLegacyMarketItems().entrySet()) {
+            try {
+                // 从NBT数据重建TradeItem对象
+                com.tradesystem.mod.data.TradeItem item = new com.tradesystem.mod.data.TradeItem(entry.getValue());
+                if (item.isActive()) {
+                    items.add(item);
                 }
+            } catch (Exception e) {
+                TradeMod.getLogger().error("加载交易物品时出错: {}", e.getMessage());
             }
         }
         
-        TradeMod.getLogger().info("从数据存储加载了 {} 个交易物品", items.size());
         return items;
     }
-    
-    /**
-     * 保存交易物品
-     */
-    public void saveTradeItem(com.tradesystem.mod.data.TradeItem item) {
-        if (item == null) {
-            return;
-        }
-        
-        // 保存到数据服务
-        DataService dataService = DataService.getInstance();
-        if (dataService != null) {
-            try {
-                // 将TradeItem转换为NBT数据
-                net.minecraft.nbt.CompoundTag itemData = item.toNBT();
-                dataService.addMarketItem(item.getId().toString(), itemData);
-                TradeMod.getLogger().debug("保存交易物品: {} - {}", item.getId(), item.getItemStack().getHoverName().getString());
-            } catch (Exception e) {
-                TradeMod.getLogger().error("保存交易物品时出错: {}", e.getMessage());
-            }
-        }
-    }
-    
-    /**
-     * 移除交易物品
-     */
-    public void removeTradeItem(UUID itemId) {
-        // 从数据存储中移除交易物品
-        TradeMod.getLogger().debug("移除交易物品: {}", itemId);
-    }
 }
\ No newline at end of file
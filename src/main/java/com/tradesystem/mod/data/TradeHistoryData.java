@@ -0,0 +1,77 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 交易历史存储
+ * 单独保存为 tradesystem_history，只在有新交易或清理旧记录时重写
+ */
+public class TradeHistoryData extends SavedData {
+
+    public static final String DATA_NAME = "tradesystem_history";
+
+    // 保留的历史记录条数
+    private static final int MAX_HISTORY = 1000;
+
+    private final Deque<CompoundTag> tradeHistory = new ArrayDeque<>();
+
+    /**
+     * 从NBT加载，格式与旧版合并存档中的 trade_history 部分相同
+     */
+    public static TradeHistoryData load(CompoundTag nbt) {
+        TradeHistoryData data = new TradeHistoryData();
+        ListTag historyList = nbt.getList("trade_history", Tag.TAG_COMPOUND);
+        for (int i = 0; i < historyList.size(); i++) {
+            data.append(historyList.getCompound(i));
+        }
+        return data;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag nbt) {
+        ListTag historyList = new ListTag();
+        historyList.addAll(tradeHistory);
+        nbt.put("trade_history", historyList);
+        return nbt;
+    }
+
+    public void addTradeHistory(CompoundTag tradeRecord) {
+        append(tradeRecord);
+        setDirty();
+    }
+
+    private void append(CompoundTag tradeRecord) {
+        tradeHistory.addLast(tradeRecord);
+        while (tradeHistory.size() > MAX_HISTORY) {
+            tradeHistory.pollFirst();
+        }
+    }
+
+    public List<CompoundTag> getTradeHistory() {
+        return new ArrayList<>(tradeHistory);
+    }
+
+    public int size() {
+        return tradeHistory.size();
+    }
+
+    /**
+     * 清理一周前的交易记录
+     */
+    public void clearOldData() {
+        long oneWeekAgo = System.currentTimeMillis() - (7 * 24 * 60 * 60 * 1000L);
+        if (tradeHistory.removeIf(record -> record.getLong("timestamp") < oneWeekAgo)) {
+            setDirty();
+        }
+        TradeMod.getLogger().info("清理旧数据完成，剩余历史记录: {}", tradeHistory.size());
+    }
+}
@@ -18,6 +18,7 @@ public class TradeItem {
     private long listTime;
     private boolean active;
     private boolean isSystemItem = false; // 标记是否为系统商品
+    private long version; // 每次部分成交或改价递增，客户端据此丢弃过期的数量更新
     
     /**
      * 构造函数
@@ -49,6 +50,7 @@ public class TradeItem {
         this.listTime = tag.getLong("listTime");
         this.active = tag.getBoolean("active");
         this.isSystemItem = tag.getBoolean("isSystemItem");
+        this.version = tag.getLong("version");
         
         // 调试日志：检查TradeItem从NBT加载时的物品数据
         System.out.println("TradeItem从NBT加载 - 物品类型: " + itemStack.getItem().toString() + 
@@ -56,6 +58,20 @@ public class TradeItem {
                           ", NBT: " + (itemStack.getTag() != null ? itemStack.getTag().toString() : "null"));
     }
     
+    /**
+     * 从已保存的字段构造（用于二进制数据文件）
+     */
+    public TradeItem(UUID id, UUID sellerId, String sellerName, ItemStack itemStack, int price,
+                     long listTime, boolean active) {
+        this.id = id;
+        this.sellerId = sellerId;
+        this.sellerName = sellerName;
+        this.itemStack = itemStack;
+        this.price = price;
+        this.listTime = listTime;
+        this.active = active;
+    }
+
     /**
      * 默认构造函数
      */
@@ -68,6 +84,16 @@ public class TradeItem {
         this.isSystemItem = false;
     }
     
+    /**
+     * 复制当前状态，仓库与订单簿之间只传递副本
+     */
+    public TradeItem copy() {
+        TradeItem copy = new TradeItem(id, sellerId, sellerName, itemStack.copy(), price, listTime, active);
+        copy.isSystemItem = isSystemItem;
+        copy.version = version;
+        return copy;
+    }
+    
     /**
      * 转换为NBT数据
      */
@@ -80,6 +106,7 @@ public class TradeItem {
         tag.putInt("price", this.price);
         tag.putLong("listTime", this.listTime);
         tag.putBoolean("active", this.active);
+        tag.putLong("version", this.version);
         return tag;
     }
     
@@ -91,6 +118,7 @@ public class TradeItem {
     public int getPrice() { return price; }
     public long getListTime() { return listTime; }
     public boolean isActive() { return active; }
+    public long getVersion() { return version; }
     
     // Setters
     public void setActive(boolean active) { this.active = active; }
@@ -100,6 +128,12 @@ public class TradeItem {
     public void setQuantity(int quantity) { this.itemStack.setCount(quantity); }
     public void setSellerName(String sellerName) { this.sellerName = sellerName; }
     public void setSellerId(UUID sellerId) { this.sellerId = sellerId; }
+    public void setVersion(long version) { this.version = version; }
+    
+    /**
+     * 版本号加一并返回新版本
+     */
+    public long bumpVersion() { return ++version; }
     
     // 系统商品相关方法
     public boolean isSystemItem() { return isSystemItem; }
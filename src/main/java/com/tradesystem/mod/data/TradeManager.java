@@ -1,21 +1,20 @@
 package com.tradesystem.mod.data;
 
+import com.tradesystem.mod.manager.MarketEngine;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 交易管理器
  * 负责管理所有交易相关的操作
  */
-public class TradeManager {
+public class TradeManager implements MarketEngine.Listener {
     private static TradeManager instance;
     
-    // 存储所有活跃的交易项目
-    private final Map<UUID, TradeItem> activeTradeItems = new ConcurrentHashMap<>();
-    
     // 存储交易历史记录
     private final Map<UUID, List<TransactionRecord>> playerTransactionHistory = new ConcurrentHashMap<>();
     
@@ -29,150 +28,63 @@ public class TradeManager {
     }
     
     /**
-     * 下架物品
-     */
-    public boolean unlistItem(UUID tradeItemId, ServerPlayer player) {
-        try {
-            TradeItem tradeItem = activeTradeItems.get(tradeItemId);
-            if (tradeItem == null || !tradeItem.getSellerId().equals(player.getUUID())) {
-                return false;
-            }
-            
-            // 将物品返还给玩家
-            giveItemToPlayer(player, tradeItem.getItemStack());
-            
-            // 从活跃交易中移除
-            activeTradeItems.remove(tradeItemId);
-            
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    /**
-     * 上架物品
+     * 购买物品
      */
-    public boolean listItem(ServerPlayer player, ItemStack itemStack, int price) {
-        try {
-            // 验证物品和价格
-            if (itemStack.isEmpty() || price <= 0) {
-                return false;
-            }
-            
-            // 检查玩家是否有足够的物品
-            if (!hasEnoughItems(player, itemStack)) {
-                return false;
-            }
-            
-            // 从玩家背包中移除物品
-            removeItemFromInventory(player, itemStack);
-            
-            // 创建交易项目
-            TradeItem tradeItem = new TradeItem(
-                player.getUUID(),
-                player.getName().getString(),
-                itemStack,
-                price
-            );
-            
-            // 添加到活跃交易列表
-            activeTradeItems.put(tradeItem.getId(), tradeItem);
-            
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    public CompletableFuture<MarketEngine.Result> purchaseItem(UUID tradeItemId, ServerPlayer buyer) {
+        return purchaseItem(tradeItemId, buyer, 1);
     }
     
     /**
-     * 购买物品
+     * 购买指定数量的物品
+     * 由市场引擎按提交顺序执行，付款、扣减上架数量和发放物品在同一条命令内完成；
+     * 部分购买时原上架物品保留原ID、原地扣减数量，卖完才移出市场
      */
-    public boolean purchaseItem(UUID tradeItemId, ServerPlayer buyer) {
-        return purchaseItem(tradeItemId, buyer, 1);
+    public CompletableFuture<MarketEngine.Result> purchaseItem(UUID tradeItemId, ServerPlayer buyer, int quantity) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.buy(buyer.getUUID(), buyer.getName().getString(), tradeItemId, quantity)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            break;
+                        case OWN_LISTING:
+                            buyer.sendSystemMessage(net.minecraft.network.chat.Component.translatable("gui.tradesystem.message.cannot_buy_own_item"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            buyer.sendSystemMessage(net.minecraft.network.chat.Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            com.tradesystem.mod.TradeMod.getLogger().debug("购买失败: {} (买家: {}, 物品: {})",
+                                    result.getStatus(), buyer.getName().getString(), tradeItemId);
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
     }
     
     /**
-     * 购买指定数量的物品
+     * 市场事件：成交（包括拍卖成交）后记录交易历史、系统税收，并通知在线的卖家
      */
-    public boolean purchaseItem(UUID tradeItemId, ServerPlayer buyer, int quantity) {
-        try {
-            // 从ItemListingManager获取交易物品
-            TradeItem tradeItem = com.tradesystem.mod.manager.ItemListingManager.getInstance()
-                    .getAllActiveListings().stream()
-                    .filter(item -> item.getId().equals(tradeItemId))
-                    .findFirst()
-                    .orElse(null);
-                    
-            if (tradeItem == null || !tradeItem.isActive()) {
-                return false;
-            }
-            
-            // 检查是否是自己的物品
-            if (tradeItem.getSellerId().equals(buyer.getUUID())) {
-                buyer.sendSystemMessage(net.minecraft.network.chat.Component.translatable("gui.tradesystem.message.cannot_buy_own_item"));
-                return false;
-            }
-            
-            // 检查购买数量是否有效
-            if (quantity <= 0 || quantity > tradeItem.getItemStack().getCount()) {
-                return false;
-            }
-            
-            // 计算总价格
-            int totalPrice = tradeItem.getPrice() * quantity;
-            
-            // 检查买家是否有足够的金币
-            if (!hasEnoughMoney(buyer, totalPrice)) {
-                return false;
-            }
-            
-            // 扣除买家金币
-            deductMoney(buyer, totalPrice);
-            
-            // 给卖家添加金币
-            addMoney(tradeItem.getSellerId(), totalPrice);
-            
-            // 创建购买的物品副本
-            ItemStack purchasedItem = tradeItem.getItemStack().copy();
-            purchasedItem.setCount(quantity);
-            
-            // 给买家添加物品
-            giveItemToPlayer(buyer, purchasedItem);
-            
-            // 记录交易历史
-            recordTransaction(tradeItem, buyer, quantity, totalPrice);
-            
-            // 如果购买了全部数量，移除交易物品（不返还给卖家）
-            if (quantity >= tradeItem.getItemStack().getCount()) {
-                com.tradesystem.mod.manager.ItemListingManager.getInstance()
-                        .removeItemFromListing(tradeItemId, tradeItem.getSellerId());
-            } else {
-                // 否则减少物品数量
-                ItemStack remainingItem = tradeItem.getItemStack().copy();
-                remainingItem.setCount(remainingItem.getCount() - quantity);
-                
-                // 更新交易物品的数量
-                // 注意：这里需要ItemListingManager支持更新物品数量的方法
-                // 暂时先移除再重新上架
-                com.tradesystem.mod.manager.ItemListingManager.getInstance()
-                        .removeItemFromListing(tradeItemId, tradeItem.getSellerId());
-                
-                // 创建新的交易物品来替代剩余物品
-                TradeItem newTradeItem = new TradeItem(
-                    tradeItem.getSellerId(),
-                    tradeItem.getSellerName(),
-                    remainingItem,
-                    tradeItem.getPrice()
-                );
-                
-                // 添加到活跃交易列表
-                activeTradeItems.put(newTradeItem.getId(), newTradeItem);
-            }
-            
-            return true;
-        } catch (Exception e) {
-            return false;
+    @Override
+    public void onMarketEvent(MarketEngine.Event event) {
+        boolean traded = event.getType() == MarketEngine.EventType.FILLED
+                || event.getType() == MarketEngine.EventType.AUCTION_CLOSED;
+        if (!traded || event.getFill() == null) {
+            return;
+        }
+        
+        MarketEngine.Fill fill = event.getFill();
+        recordTransaction(fill);
+        
+        if (fill.getTax() > 0) {
+            TradeDataManager.getInstance().addSystemRevenue(fill.getTax());
+        }
+        
+        ServerPlayer seller = net.minecraftforge.server.ServerLifecycleHooks.getCurrentServer()
+                .getPlayerList().getPlayer(fill.getSellerId());
+        if (seller != null) {
+            seller.sendSystemMessage(net.minecraft.network.chat.Component.translatable("gui.tradesystem.message.item_sold",
+                    fill.getItemStack().getHoverName(), fill.getTotal(), fill.getBuyerName()));
         }
     }
     
@@ -211,44 +123,10 @@ public class TradeManager {
     }
     
     // 辅助方法
-    private boolean hasEnoughItems(ServerPlayer player, ItemStack required) {
-        // 简化实现，实际应该检查背包
-        return true;
-    }
-    
-    private void removeItemFromInventory(ServerPlayer player, ItemStack itemStack) {
-        // 简化实现，实际应该从背包移除物品
-    }
-    
-    private boolean hasEnoughMoney(ServerPlayer player, int amount) {
-        return com.tradesystem.mod.util.CurrencyUtil.getPlayerMoney(player) >= amount;
-    }
-    
-    private void deductMoney(ServerPlayer player, int amount) {
-        com.tradesystem.mod.util.CurrencyUtil.removePlayerMoney(player, amount);
-    }
-    
     private void addMoney(UUID playerId, int amount) {
-        // 如果玩家在线，直接添加金币
-        net.minecraft.server.MinecraftServer server = net.minecraftforge.server.ServerLifecycleHooks.getCurrentServer();
-        if (server != null) {
-            ServerPlayer player = server.getPlayerList().getPlayer(playerId);
-            if (player != null) {
-                // 在线玩家，直接添加金币
-                com.tradesystem.mod.util.CurrencyUtil.addPlayerMoney(player, amount);
-            } else {
-                // 离线玩家，保存到离线数据中
-                com.tradesystem.mod.data.TradeDataManager.getInstance().addOfflinePlayerCurrency(playerId, amount);
-                com.tradesystem.mod.TradeMod.getLogger().info("卖家离线，金币已保存到离线数据: 玩家ID={}, 金额={}", playerId, amount);
-            }
-        }
-    }
-    
-    private void giveItemToPlayer(ServerPlayer player, ItemStack itemStack) {
-        // 尝试添加到玩家背包
-        if (!player.getInventory().add(itemStack)) {
-            // 如果背包满了，掉落在地上
-            player.drop(itemStack, false);
+        // 离线玩家同样直接记入账本，登录时即可看到；在线玩家在tick结束时同步
+        if (!CurrencyLedger.getInstance().credit(playerId, amount)) {
+            com.tradesystem.mod.TradeMod.getLogger().warn("入账失败，已达金币上限: 玩家ID={}, 金额={}", playerId, amount);
         }
     }
     
@@ -258,39 +136,28 @@ public class TradeManager {
     }
     
     /**
-     * 记录交易历史
+     * 记录一笔成交的交易历史
      */
-    private void recordTransaction(TradeItem tradeItem, ServerPlayer buyer) {
-        recordTransaction(tradeItem, buyer, 1, tradeItem.getPrice());
-    }
-    
-    /**
-     * 记录交易历史（带数量和总价）
-     */
-    private void recordTransaction(TradeItem tradeItem, ServerPlayer buyer, int quantity, int totalPrice) {
-        ItemStack itemStack = tradeItem.getItemStack().copy();
-        
-        // 调试：检查TradeItem的物品数据
-        System.out.println("TradeManager.recordTransaction - 物品类型: " + itemStack.getItem().toString() + 
-                          ", 数量: " + itemStack.getCount() + 
-                          ", NBT: " + (itemStack.getTag() != null ? itemStack.getTag().toString() : "null"));
-        
+    private void recordTransaction(MarketEngine.Fill fill) {
         TransactionRecord record = new TransactionRecord(
-            tradeItem.getSellerId(),
-            tradeItem.getSellerName(),
-            buyer.getUUID(),
-            buyer.getName().getString(),
-            itemStack,
-            totalPrice,
+            fill.getSellerId(),
+            fill.getSellerName(),
+            fill.getBuyerId(),
+            fill.getBuyerName(),
+            fill.getItemStack(),
+            (int) Math.min(fill.getTotal(), Integer.MAX_VALUE),
             TransactionRecord.Type.SELL
         );
         
         // 添加到内存中的交易历史
-        addTransactionRecord(tradeItem.getSellerId(), record);
-        addTransactionRecord(buyer.getUUID(), record);
+        addTransactionRecord(fill.getSellerId(), record);
+        addTransactionRecord(fill.getBuyerId(), record);
         
         // 持久化存储交易记录到服务端
         saveTransactionToServer(record);
+        
+        // 追加到交易日志
+        JsonDataManager.getInstance().addTransactionRecord(record);
     }
     
     /**
@@ -332,38 +199,7 @@ public class TradeManager {
     }
     
     // Getters
-    public Collection<TradeItem> getActiveTradeItems() {
-        return activeTradeItems.values();
-    }
-    
     public List<TransactionRecord> getPlayerTransactionHistory(UUID playerId) {
         return playerTransactionHistory.getOrDefault(playerId, new ArrayList<>());
     }
-    
-    /**
-     * 更新交易物品的价格
-     */
-    public boolean updateItemPrice(UUID tradeItemId, ServerPlayer player, int newPrice) {
-        try {
-            // 验证价格
-            if (newPrice <= 0) {
-                return false;
-            }
-            
-            TradeItem tradeItem = activeTradeItems.get(tradeItemId);
-            if (tradeItem == null || !tradeItem.getSellerId().equals(player.getUUID())) {
-                return false;
-            }
-            
-            // 更新价格
-            tradeItem.setPrice(newPrice);
-            
-            // 同时更新ItemListingManager中的数据
-            com.tradesystem.mod.manager.ItemListingManager.getInstance().updateItemPrice(tradeItemId, newPrice);
-            
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
-    }
 }
\ No newline at end of file
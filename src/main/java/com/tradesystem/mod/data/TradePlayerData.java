@@ -0,0 +1,62 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 玩家交易数据存储
+ * 单独保存为 tradesystem_players，玩家数据的修改只会让这个文件在下次世界保存时重写
+ */
+public class TradePlayerData extends SavedData {
+
+    public static final String DATA_NAME = "tradesystem_players";
+
+    private final Map<UUID, CompoundTag> playerTradeData = new HashMap<>();
+
+    /**
+     * 从NBT加载，格式与旧版合并存档中的 player_data 部分相同
+     */
+    public static TradePlayerData load(CompoundTag nbt) {
+        TradePlayerData data = new TradePlayerData();
+        CompoundTag playerTag = nbt.getCompound("player_data");
+        for (String key : playerTag.getAllKeys()) {
+            try {
+                data.playerTradeData.put(UUID.fromString(key), playerTag.getCompound(key));
+            } catch (IllegalArgumentException e) {
+                TradeMod.getLogger().warn("无效的玩家UUID: {}", key);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag nbt) {
+        CompoundTag playerTag = new CompoundTag();
+        for (Map.Entry<UUID, CompoundTag> entry : playerTradeData.entrySet()) {
+            playerTag.put(entry.getKey().toString(), entry.getValue());
+        }
+        nbt.put("player_data", playerTag);
+        return nbt;
+    }
+
+    public void setPlayerData(UUID playerId, CompoundTag data) {
+        playerTradeData.put(playerId, data);
+        setDirty();
+    }
+
+    /**
+     * 玩家数据，只读；没有数据时返回空标签
+     */
+    public CompoundTag getPlayerData(UUID playerId) {
+        return playerTradeData.getOrDefault(playerId, new CompoundTag());
+    }
+
+    public int size() {
+        return playerTradeData.size();
+    }
+}
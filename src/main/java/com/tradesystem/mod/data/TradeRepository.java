@@ -0,0 +1,47 @@
+package com.tradesystem.mod.data;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * 交易数据仓库
+ * 上架物品、求购订单和拍卖各有一个仓库，是这类数据唯一的持久化入口：管理器只通过仓库读写，
+ * 不再分别写入多个存储。仓库在内存中保存当前数据，修改后由后端（RepositoryBackend）写盘，
+ * 批量操作不管涉及多少条数据都只触发一次写盘
+ *
+ * @param <T> 数据类型，以UUID为主键
+ */
+public interface TradeRepository<T> {
+
+    /**
+     * 按ID获取，不存在时返回null
+     */
+    T get(UUID id);
+
+    /**
+     * 所有数据的只读视图
+     */
+    Collection<T> getAll();
+
+    int size();
+
+    /**
+     * 保存或替换一条数据
+     */
+    void save(T value);
+
+    /**
+     * 批量保存
+     */
+    void saveAll(Collection<? extends T> values);
+
+    /**
+     * 删除一条数据，不存在时不做任何事
+     */
+    void remove(UUID id);
+
+    /**
+     * 批量删除
+     */
+    void removeAll(Collection<UUID> ids);
+}
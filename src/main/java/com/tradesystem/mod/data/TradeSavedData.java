@@ -2,220 +2,176 @@ package com.tradesystem.mod.data;
 
 import com.tradesystem.mod.TradeMod;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.level.saveddata.SavedData;
+import net.minecraft.world.level.storage.DimensionDataStorage;
 
 import java.util.*;
 
 /**
  * 交易数据存储类
  * 负责持久化存储所有交易相关数据
+ *
+ * 玩家数据、交易历史和系统统计分别保存在各自的 SavedData 中（tradesystem_players、tradesystem_history、
+ * tradesystem_stats），各有独立的脏标记：世界保存时只重写有修改的部分，例如货币变化不会导致历史和统计被重写。
+ * 上架物品由上架物品仓库持久化，不在世界存档中。
+ *
+ * 旧版把所有数据合并保存在 tradesystem_data 中：新文件不存在时从旧文件导入对应部分，
+ * 旧文件中的上架物品由 takeLegacyMarketItems 取出一次后清空旧文件
  */
-public class TradeSavedData extends SavedData {
+public class TradeSavedData {
     
-    private static final String DATA_NAME = "tradesystem_data";
+    private static final String LEGACY_DATA_NAME = "tradesystem_data";
     
-    // 全局市场数据
-    private final Map<String, CompoundTag> globalMarketItems = new HashMap<>();
+    private final DimensionDataStorage storage;
+    private final TradePlayerData players;
+    private final TradeHistoryData history;
+    private final TradeStatsData stats;
     
-    // 玩家交易数据
-    private final Map<UUID, CompoundTag> playerTradeData = new HashMap<>();
-    
-    // 交易历史记录
-    private final List<CompoundTag> tradeHistory = new ArrayList<>();
-    
-    // 系统统计数据
-    private CompoundTag systemStats = new CompoundTag();
-    
-    public TradeSavedData() {
-        initializeSystemStats();
-    }
-    
-    /**
-     * 初始化系统统计数据
-     */
-    private void initializeSystemStats() {
-        systemStats.putLong("total_trades", 0L);
-        systemStats.putLong("total_money_traded", 0L);
-        systemStats.putLong("creation_time", System.currentTimeMillis());
-        systemStats.putLong("last_update", System.currentTimeMillis());
+    private TradeSavedData(DimensionDataStorage storage, TradePlayerData players,
+                           TradeHistoryData history, TradeStatsData stats) {
+        this.storage = storage;
+        this.players = players;
+        this.history = history;
+        this.stats = stats;
     }
     
     /**
      * 获取或创建数据实例
      */
     public static TradeSavedData get(MinecraftServer server) {
-        return server.getLevel(net.minecraft.server.level.ServerLevel.OVERWORLD)
-                .getDataStorage()
-                .computeIfAbsent(
-                        TradeSavedData::load,
-                        TradeSavedData::new,
-                        DATA_NAME
-                );
+        DimensionDataStorage storage = server.getLevel(net.minecraft.server.level.ServerLevel.OVERWORLD)
+                .getDataStorage();
+    
+        return new TradeSavedData(storage,
+                storage.computeIfAbsent(TradePlayerData::load,
+                        () -> migrate(storage, TradePlayerData::load, TradePlayerData::new), TradePlayerData.DATA_NAME),
+                storage.computeIfAbsent(TradeHistoryData::load,
+                        () -> migrate(storage, TradeHistoryData::load, TradeHistoryData::new), TradeHistoryData.DATA_NAME),
+                storage.computeIfAbsent(TradeStatsData::load,
+                        () -> migrate(storage, TradeStatsData::load, TradeStatsData::new), TradeStatsData.DATA_NAME));
     }
     
     /**
-     * 从NBT加载数据
+     * 新文件不存在时：有旧版合并存档就从中读取对应部分并标记为脏，使其在下次世界保存时写入新文件
      */
-    public static TradeSavedData load(CompoundTag nbt) {
-        TradeSavedData data = new TradeSavedData();
-        
-        // 加载全局市场数据
-        if (nbt.contains("global_market", Tag.TAG_COMPOUND)) {
-            CompoundTag marketTag = nbt.getCompound("global_market");
-            for (String key : marketTag.getAllKeys()) {
-                data.globalMarketItems.put(key, marketTag.getCompound(key));
-            }
-        }
-        
-        // 加载玩家交易数据
-        if (nbt.contains("player_data", Tag.TAG_COMPOUND)) {
-            CompoundTag playerTag = nbt.getCompound("player_data");
-            for (String key : playerTag.getAllKeys()) {
-                try {
-                    UUID playerId = UUID.fromString(key);
-                    data.playerTradeData.put(playerId, playerTag.getCompound(key));
-                } catch (IllegalArgumentException e) {
-                    TradeMod.getLogger().warn("无效的玩家UUID: {}", key);
-                }
-            }
-        }
-        
-        // 加载交易历史
-        if (nbt.contains("trade_history", Tag.TAG_LIST)) {
-            ListTag historyList = nbt.getList("trade_history", Tag.TAG_COMPOUND);
-            for (int i = 0; i < historyList.size(); i++) {
-                data.tradeHistory.add(historyList.getCompound(i));
-            }
-        }
-        
-        // 加载系统统计
-        if (nbt.contains("system_stats", Tag.TAG_COMPOUND)) {
-            data.systemStats = nbt.getCompound("system_stats");
+    private static <T extends SavedData> T migrate(DimensionDataStorage storage,
+                                                   java.util.function.Function<CompoundTag, T> loader,
+                                                   java.util.function.Supplier<T> factory) {
+        LegacyData legacy = storage.get(LegacyData::load, LEGACY_DATA_NAME);
+        if (legacy == null || legacy.root.isEmpty()) {
+            return factory.get();
         }
-        
-        TradeMod.getLogger().info("交易数据加载完成，市场物品: {}, 玩家数据: {}, 历史记录: {}",
-                data.globalMarketItems.size(), data.playerTradeData.size(), data.tradeHistory.size());
-        
+        T data = loader.apply(legacy.root);
+        data.setDirty();
+        TradeMod.getLogger().info("从旧版交易存档导入了 {}", data.getClass().getSimpleName());
         return data;
     }
     
-    @Override
-    public CompoundTag save(CompoundTag nbt) {
-        // 保存全局市场数据
-        CompoundTag marketTag = new CompoundTag();
-        for (Map.Entry<String, CompoundTag> entry : globalMarketItems.entrySet()) {
-            marketTag.put(entry.getKey(), entry.getValue());
-        }
-        nbt.put("global_market", marketTag);
-        
-        // 保存玩家交易数据
-        CompoundTag playerTag = new CompoundTag();
-        for (Map.Entry<UUID, CompoundTag> entry : playerTradeData.entrySet()) {
-            playerTag.put(entry.getKey().toString(), entry.getValue());
-        }
-        nbt.put("player_data", playerTag);
-        
-        // 保存交易历史
-        ListTag historyList = new ListTag();
-        for (CompoundTag historyEntry : tradeHistory) {
-            historyList.add(historyEntry);
-        }
-        nbt.put("trade_history", historyList);
-        
-        // 保存系统统计
-        systemStats.putLong("last_update", System.currentTimeMillis());
-        nbt.put("system_stats", systemStats);
-        
-        return nbt;
-    }
-    
-    // === 全局市场数据操作 ===
+    // === 旧版市场数据 ===
     
-    public void addMarketItem(String itemId, CompoundTag itemData) {
-        globalMarketItems.put(itemId, itemData);
-        setDirty();
-    }
-    
-    public void removeMarketItem(String itemId) {
-        globalMarketItems.remove(itemId);
-        setDirty();
-    }
+    /**
+     * 取出旧版存档中的上架物品（物品ID -> 数据）供导入上架物品仓库，之后清空旧版存档。
+     * 其余部分此时已经导入各自的新文件
+     */
+    public Map<String, CompoundTag> takeLegacyMarketItems() {
+        LegacyData legacy = storage.get(LegacyData::load, LEGACY_DATA_NAME);
+        if (legacy == null || legacy.root.isEmpty()) {
+            return Collections.emptyMap();
+        }
     
-    public CompoundTag getMarketItem(String itemId) {
-        return globalMarketItems.get(itemId);
-    }
+        Map<String, CompoundTag> items = new HashMap<>();
+        if (legacy.root.contains("global_market", Tag.TAG_COMPOUND)) {
+            CompoundTag marketTag = legacy.root.getCompound("global_market");
+            for (String key : marketTag.getAllKeys()) {
+                items.put(key, marketTag.getCompound(key));
+            }
+        }
     
-    public Map<String, CompoundTag> getAllMarketItems() {
-        return new HashMap<>(globalMarketItems);
+        legacy.discard();
+        TradeMod.getLogger().info("旧版交易存档已导入，其中上架物品 {} 个", items.size());
+        return items;
     }
     
     // === 玩家数据操作 ===
     
     public void setPlayerData(UUID playerId, CompoundTag data) {
-        playerTradeData.put(playerId, data);
-        setDirty();
+        players.setPlayerData(playerId, data);
     }
     
     public CompoundTag getPlayerData(UUID playerId) {
-        return playerTradeData.getOrDefault(playerId, new CompoundTag());
+        return players.getPlayerData(playerId);
     }
     
     // === 交易历史操作 ===
     
+    /**
+     * 添加交易记录并更新统计，只有历史和统计两个文件变脏
+     */
     public void addTradeHistory(CompoundTag tradeRecord) {
-        tradeHistory.add(tradeRecord);
-        
-        // 限制历史记录数量
-        while (tradeHistory.size() > 1000) {
-            tradeHistory.remove(0);
-        }
-        
-        // 更新统计数据
-        long totalTrades = systemStats.getLong("total_trades") + 1;
-        systemStats.putLong("total_trades", totalTrades);
-        
-        if (tradeRecord.contains("price")) {
-            long totalMoney = systemStats.getLong("total_money_traded") + tradeRecord.getLong("price");
-            systemStats.putLong("total_money_traded", totalMoney);
-        }
-        
-        setDirty();
+        history.addTradeHistory(tradeRecord);
+        stats.recordTrade(tradeRecord);
     }
     
     public List<CompoundTag> getTradeHistory() {
-        return new ArrayList<>(tradeHistory);
+        return history.getTradeHistory();
     }
     
     // === 系统统计操作 ===
     
+    /**
+     * 系统统计，只读
+     */
     public CompoundTag getSystemStats() {
-        return systemStats.copy();
+        return stats.getSystemStats();
     }
     
     public long getTotalTrades() {
-        return systemStats.getLong("total_trades");
+        return stats.getTotalTrades();
     }
     
     public long getTotalMoneyTraded() {
-        return systemStats.getLong("total_money_traded");
+        return stats.getTotalMoneyTraded();
     }
     
-    // === 数据清理操作 ===
+    // === 数据维护操作 ===
     
     public void clearOldData() {
-        long currentTime = System.currentTimeMillis();
-        long oneWeekAgo = currentTime - (7 * 24 * 60 * 60 * 1000L); // 一周前
-        
-        // 清理旧的交易历史
-        tradeHistory.removeIf(record -> {
-            long timestamp = record.getLong("timestamp");
-            return timestamp < oneWeekAgo;
-        });
-        
-        setDirty();
-        TradeMod.getLogger().info("清理旧数据完成，剩余历史记录: {}", tradeHistory.size());
+        history.clearOldData();
+    }
+    
+    /**
+     * 把所有部分标记为脏，下次世界保存时全部重写
+     */
+    public void markAllDirty() {
+        players.setDirty();
+        history.setDirty();
+        stats.setDirty();
+    }
+    
+    /**
+     * 旧版合并存档，只读；导入完成后清空内容，下次世界保存时写成空文件
+     */
+    private static final class LegacyData extends SavedData {
+        private CompoundTag root;
+    
+        private LegacyData(CompoundTag root) {
+            this.root = root;
+        }
+    
+        static LegacyData load(CompoundTag nbt) {
+            return new LegacyData(nbt);
+        }
+    
+        void discard() {
+            root = new CompoundTag();
+            setDirty();
+        }
+    
+        @Override
+        public CompoundTag save(CompoundTag nbt) {
+            return nbt.merge(root);
+        }
     }
-}
\ No newline at end of file
+}
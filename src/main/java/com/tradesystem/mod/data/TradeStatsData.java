@@ -0,0 +1,72 @@
+package com.tradesystem.mod.data;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.saveddata.SavedData;
+
+/**
+ * 系统统计存储
+ * 单独保存为 tradesystem_stats。统计标签写时复制：发布后不再修改，读取方直接拿引用，也只能读
+ */
+public class TradeStatsData extends SavedData {
+
+    public static final String DATA_NAME = "tradesystem_stats";
+
+    private volatile CompoundTag systemStats;
+
+    public TradeStatsData() {
+        CompoundTag stats = new CompoundTag();
+        stats.putLong("total_trades", 0L);
+        stats.putLong("total_money_traded", 0L);
+        stats.putLong("creation_time", System.currentTimeMillis());
+        stats.putLong("last_update", System.currentTimeMillis());
+        this.systemStats = stats;
+    }
+
+    /**
+     * 从NBT加载，格式与旧版合并存档中的 system_stats 部分相同
+     */
+    public static TradeStatsData load(CompoundTag nbt) {
+        TradeStatsData data = new TradeStatsData();
+        if (nbt.contains("system_stats", Tag.TAG_COMPOUND)) {
+            data.systemStats = nbt.getCompound("system_stats");
+        }
+        return data;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag nbt) {
+        CompoundTag stats = systemStats.copy();
+        stats.putLong("last_update", System.currentTimeMillis());
+        nbt.put("system_stats", stats);
+        return nbt;
+    }
+
+    /**
+     * 记入一笔交易：修改副本后替换，已经交给读取方的统计不受影响
+     */
+    public void recordTrade(CompoundTag tradeRecord) {
+        CompoundTag stats = systemStats.copy();
+        stats.putLong("total_trades", stats.getLong("total_trades") + 1);
+        if (tradeRecord.contains("price")) {
+            stats.putLong("total_money_traded", stats.getLong("total_money_traded") + tradeRecord.getLong("price"));
+        }
+        systemStats = stats;
+        setDirty();
+    }
+
+    /**
+     * 系统统计，只读
+     */
+    public CompoundTag getSystemStats() {
+        return systemStats;
+    }
+
+    public long getTotalTrades() {
+        return systemStats.getLong("total_trades");
+    }
+
+    public long getTotalMoneyTraded() {
+        return systemStats.getLong("total_money_traded");
+    }
+}
@@ -0,0 +1,285 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 交易记录日志
+ * 以追加方式写入长度前缀的二进制记录，按段轮转，只保留最近的若干段
+ *
+ * 段文件格式：[magic:int][version:int] 之后是若干条 [length:int][crc32:int][payload]
+ * payload 为 TransactionRecord 的 NBT 数据
+ */
+public class TransactionJournal {
+
+    private static final int MAGIC = 0x54534A4C; // "TSJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "txn-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+
+    private DataOutputStream output;
+    private long currentSegment = 0;
+    private int currentSegmentRecords = 0;
+
+    /**
+     * @param directory 日志目录
+     * @param recordsPerSegment 每段最多记录数
+     * @param maxSegments 最多保留的段数，超出时删除最旧的段
+     */
+    public TransactionJournal(Path directory, int recordsPerSegment, int maxSegments) {
+        this.directory = directory;
+        this.recordsPerSegment = Math.max(1, recordsPerSegment);
+        this.maxSegments = Math.max(1, maxSegments);
+    }
+
+    /**
+     * 打开日志，准备在最后一段末尾追加
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            startSegment(1);
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        currentSegment = parseSegmentIndex(last);
+
+        // 截掉上次崩溃留下的不完整尾部，保证后续追加的记录能被正常回放
+        SegmentScan scan = scanSegment(last, null);
+        if (!scan.headerValid) {
+            Files.delete(last);
+            startSegment(currentSegment);
+            return;
+        }
+        if (scan.validLength < Files.size(last)) {
+            try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+                channel.truncate(scan.validLength);
+            }
+            TradeMod.getLogger().warn("交易日志段 {} 尾部损坏，已截断到 {} 字节", last.getFileName(), scan.validLength);
+        }
+
+        currentSegmentRecords = scan.records;
+        output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(last, StandardOpenOption.APPEND)));
+
+        if (currentSegmentRecords >= recordsPerSegment) {
+            rotate();
+        }
+    }
+
+    /**
+     * 追加一条交易记录
+     */
+    public synchronized void append(TransactionRecord record) throws IOException {
+        if (output == null) {
+            throw new IOException("交易日志未打开");
+        }
+
+        byte[] payload = encode(record);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        output.writeInt(payload.length);
+        output.writeInt((int) crc.getValue());
+        output.write(payload);
+        output.flush();
+
+        currentSegmentRecords++;
+        if (currentSegmentRecords >= recordsPerSegment) {
+            rotate();
+        }
+    }
+
+    /**
+     * 按写入顺序回放所有保留的记录
+     */
+    public synchronized int replay(Consumer<TransactionRecord> consumer) throws IOException {
+        int total = 0;
+        for (Path segment : listSegments()) {
+            total += scanSegment(segment, consumer).records;
+        }
+        return total;
+    }
+
+    /**
+     * 关闭日志
+     */
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                TradeMod.getLogger().error("关闭交易日志失败", e);
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * 把目录中的所有段和目录本身同步到磁盘，用于关闭后整体替换日志目录之前
+     */
+    public static void sync(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows 等平台不支持对目录fsync
+        }
+    }
+
+    /**
+     * 切换到新的段并清理超出保留窗口的旧段
+     */
+    private void rotate() throws IOException {
+        output.close();
+        startSegment(currentSegment + 1);
+
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+            TradeMod.getLogger().debug("删除过期的交易日志段: {}", segments.get(i).getFileName());
+        }
+    }
+
+    private void startSegment(long index) throws IOException {
+        currentSegment = index;
+        currentSegmentRecords = 0;
+
+        Path file = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.flush();
+    }
+
+    /**
+     * 扫描一个段，返回有效记录数和有效长度；consumer 不为空时回放记录
+     */
+    private SegmentScan scanSegment(Path segment, Consumer<TransactionRecord> consumer) throws IOException {
+        SegmentScan scan = new SegmentScan();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                TradeMod.getLogger().warn("交易日志段 {} 文件头无效，已跳过", segment.getFileName());
+                return scan;
+            }
+            scan.headerValid = true;
+            scan.validLength = HEADER_SIZE;
+
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    TradeMod.getLogger().warn("交易日志段 {} 记录长度无效: {}", segment.getFileName(), length);
+                    break;
+                }
+
+                int expectedCrc = input.readInt();
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    TradeMod.getLogger().warn("交易日志段 {} 记录校验失败，停止读取该段", segment.getFileName());
+                    break;
+                }
+
+                if (consumer != null) {
+                    try {
+                        consumer.accept(decode(payload));
+                    } catch (Exception e) {
+                        TradeMod.getLogger().warn("解析交易日志记录失败: {}", e.getMessage());
+                    }
+                }
+
+                scan.records++;
+                scan.validLength += 8L + length;
+            }
+        } catch (EOFException e) {
+            // 文件头或最后一条记录不完整，之前的记录仍然有效
+        }
+
+        return scan;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long parseSegmentIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] encode(TransactionRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            NbtIo.write(record.toNBT(), data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TransactionRecord decode(byte[] payload) throws IOException {
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload))) {
+            CompoundTag tag = NbtIo.read(data);
+            return new TransactionRecord(tag);
+        }
+    }
+
+    /**
+     * 段扫描结果
+     */
+    private static class SegmentScan {
+        boolean headerValid = false;
+        long validLength = 0;
+        int records = 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟写入队列
+ * 数据修改时只标记脏键，由独立的写线程按固定间隔合并写盘，
+ * 同一个键在一个间隔内的多次修改只会触发一次写入
+ */
+public class WriteBehindQueue {
+
+    private final String name;
+    private final long flushIntervalMillis;
+
+    // 每个键对应的写盘操作
+    private final Map<String, Runnable> flushers = new ConcurrentHashMap<>();
+
+    // 等待写盘的脏键
+    private final Set<String> dirtyKeys = ConcurrentHashMap.newKeySet();
+
+    // 保证写线程与手动刷盘不会同时写同一个文件
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService writer;
+    private volatile boolean running = false;
+
+    public WriteBehindQueue(String name, long flushIntervalMillis) {
+        this.name = name;
+        this.flushIntervalMillis = Math.max(1L, flushIntervalMillis);
+    }
+
+    /**
+     * 注册键对应的写盘操作
+     */
+    public void register(String key, Runnable flusher) {
+        flushers.put(key, flusher);
+    }
+
+    /**
+     * 标记键为脏，等待写线程写盘
+     */
+    public void markDirty(String key) {
+        if (!flushers.containsKey(key)) {
+            TradeMod.getLogger().warn("{} 标记了未注册的键: {}", name, key);
+            return;
+        }
+        dirtyKeys.add(key);
+    }
+
+    /**
+     * 标记所有键为脏
+     */
+    public void markAllDirty() {
+        dirtyKeys.addAll(flushers.keySet());
+    }
+
+    /**
+     * 是否还有未写盘的数据
+     */
+    public boolean hasPendingWrites() {
+        return !dirtyKeys.isEmpty();
+    }
+
+    /**
+     * 启动写线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TradeSystem-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushDirty, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        running = true;
+        TradeMod.getLogger().info("{} 写线程已启动，写盘间隔: {} 毫秒", name, flushIntervalMillis);
+    }
+
+    /**
+     * 在当前线程立即写入所有脏键
+     */
+    public void flushNow() {
+        flushDirty();
+    }
+
+    /**
+     * 写入所有脏键，写入失败的键重新标记为脏等待下次重试
+     */
+    private void flushDirty() {
+        if (dirtyKeys.isEmpty()) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            for (Map.Entry<String, Runnable> entry : flushers.entrySet()) {
+                // 先移除再写盘，写盘期间的新修改会重新标记并在下一轮写入
+                if (!dirtyKeys.remove(entry.getKey())) {
+                    continue;
+                }
+
+                try {
+                    entry.getValue().run();
+                } catch (Exception e) {
+                    dirtyKeys.add(entry.getKey());
+                    TradeMod.getLogger().error("{} 写入 {} 失败，将在下次重试", name, entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止写线程并执行最后一次写盘
+     */
+    public synchronized void shutdown() {
+        if (running && writer != null) {
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                    writer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writer.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        running = false;
+        writer = null;
+
+        // 无论写线程是否正常结束，都保证最后一次写盘
+        flushDirty();
+        TradeMod.getLogger().info("{} 写线程已停止，所有数据已写盘", name);
+    }
+}
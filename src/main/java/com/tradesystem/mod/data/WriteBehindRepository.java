@@ -0,0 +1,116 @@
+package com.tradesystem.mod.data;
+
+import com.tradesystem.mod.TradeMod;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 延迟写盘的仓库
+ * 数据保存在内存中，修改只标记延迟写入队列中的脏键，写线程按间隔把整个快照交给后端写入一次。
+ * 因此 saveAll/removeAll 与单条修改的写盘代价相同，与条数无关
+ *
+ * @param <T> 数据类型
+ */
+public class WriteBehindRepository<T> implements TradeRepository<T> {
+
+    private final String key;
+    private final Function<T, UUID> idOf;
+    private final WriteBehindQueue writeBehind;
+
+    private final Map<UUID, T> values = new ConcurrentHashMap<>();
+    private final Collection<T> view = Collections.unmodifiableCollection(values.values());
+
+    private volatile RepositoryBackend<T> backend;
+
+    /**
+     * @param key 延迟写入队列中的键
+     * @param idOf 取数据的主键
+     */
+    public WriteBehindRepository(String key, Function<T, UUID> idOf, WriteBehindQueue writeBehind) {
+        this.key = key;
+        this.idOf = idOf;
+        this.writeBehind = writeBehind;
+        writeBehind.register(key, this::flush);
+    }
+
+    /**
+     * 绑定存储后端并读取已保存的数据，在写线程启动之前调用
+     */
+    public void open(RepositoryBackend<T> backend) throws IOException {
+        this.backend = backend;
+        values.clear();
+        values.putAll(backend.load());
+        TradeMod.getLogger().info("从 {} 加载了 {} 条数据", backend.getName(), values.size());
+    }
+
+    @Override
+    public T get(UUID id) {
+        return values.get(id);
+    }
+
+    @Override
+    public Collection<T> getAll() {
+        return view;
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public void save(T value) {
+        values.put(idOf.apply(value), value);
+        writeBehind.markDirty(key);
+    }
+
+    @Override
+    public void saveAll(Collection<? extends T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (T value : batch) {
+            values.put(idOf.apply(value), value);
+        }
+        writeBehind.markDirty(key);
+    }
+
+    @Override
+    public void remove(UUID id) {
+        if (values.remove(id) != null) {
+            writeBehind.markDirty(key);
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<UUID> ids) {
+        boolean changed = false;
+        for (UUID id : ids) {
+            changed |= values.remove(id) != null;
+        }
+        if (changed) {
+            writeBehind.markDirty(key);
+        }
+    }
+
+    /**
+     * 由写线程调用：把当前数据整体写入后端；失败时抛出异常，由延迟写入队列重新标记并重试
+     */
+    private void flush() {
+        RepositoryBackend<T> target = backend;
+        if (target == null) {
+            return;
+        }
+        Map<UUID, T> snapshot = new HashMap<>(values);
+        try {
+            target.store(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入数据文件失败: " + target.getName(), e);
+        }
+        TradeMod.getLogger().debug("保存了 {} 条数据到 {}", snapshot.size(), target.getName());
+    }
+}
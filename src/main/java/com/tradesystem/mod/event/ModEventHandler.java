@@ -9,6 +9,8 @@ import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.common.capabilities.RegisterCapabilitiesEvent;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
@@ -27,13 +29,39 @@ public class ModEventHandler {
      */
     @SubscribeEvent
     public static void onAttachCapabilitiesPlayer(AttachCapabilitiesEvent<Entity> event) {
-        if (event.getObject() instanceof Player) {
+        if (event.getObject() instanceof Player player) {
             if (!event.getObject().getCapability(ModCapabilities.PLAYER_CURRENCY).isPresent()) {
-                event.addCapability(ModCapabilities.PLAYER_CURRENCY_LOCATION, new PlayerCurrencyProvider());
+                event.addCapability(ModCapabilities.PLAYER_CURRENCY_LOCATION, new PlayerCurrencyProvider(player));
             }
         }
     }
     
+    /**
+     * 服务器tick结束时推进市场定时器，并统一保存和同步本tick内的金币变化
+     */
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            com.tradesystem.mod.manager.MarketScheduler.getInstance().tick();
+            com.tradesystem.mod.manager.MarketEngine.getInstance().retryUndelivered();
+            com.tradesystem.mod.util.CurrencyUtil.flushCurrencyChanges(
+                    net.minecraftforge.server.ServerLifecycleHooks.getCurrentServer());
+        }
+    }
+    
+    /**
+     * 标签更新事件
+     * 服务器加载数据包（启动和 /reload）后标签才绑定完成，此时编译回收价格表并同步给在线玩家
+     */
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        if (event.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+            com.tradesystem.mod.manager.RecycleManager recycleManager = com.tradesystem.mod.manager.RecycleManager.getInstance();
+            recycleManager.rebuildPriceTable();
+            recycleManager.syncPriceTableToAll(net.minecraftforge.server.ServerLifecycleHooks.getCurrentServer());
+        }
+    }
+    
     /**
      * 玩家登录事件
      */
@@ -42,45 +70,41 @@ public class ModEventHandler {
         if (event.getEntity() instanceof ServerPlayer player) {
             UUID playerId = player.getUUID();
             
-            // 检查并处理离线期间收到的金币
-            int offlineCurrency = com.tradesystem.mod.data.TradeDataManager.getInstance().getOfflinePlayerCurrency(playerId);
-            if (offlineCurrency > 0) {
-                // 将离线金币添加到玩家账户
-                com.tradesystem.mod.util.CurrencyUtil.addPlayerMoney(player, offlineCurrency);
-                // 清除离线金币记录
-                com.tradesystem.mod.data.TradeDataManager.getInstance().clearOfflinePlayerCurrency(playerId);
-                TradeMod.getLogger().info("玩家 {} 登录时收到离线金币: {}", player.getName().getString(), offlineCurrency);
+            // 领取交易邮箱中的金币和物品，只读取该玩家自己的邮箱文件
+            com.tradesystem.mod.data.OfflineMailbox mailbox = com.tradesystem.mod.data.OfflineMailbox.getInstance();
+            if (mailbox.hasMail(playerId)) {
+                com.tradesystem.mod.data.OfflineMailbox.ClaimResult mail = mailbox.claim(player);
                 
-                // 通知玩家收到离线金币
-                player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(
-                    "gui.tradesystem.message.offline_currency_received", 
-                    com.tradesystem.mod.util.CurrencyUtil.formatMoney(offlineCurrency)));
+                if (mail.isFailed()) {
+                    player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(
+                        "gui.tradesystem.message.mailbox_unavailable"));
+                }
+                if (mail.getCurrency() > 0) {
+                    player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(
+                        "gui.tradesystem.message.offline_currency_received", 
+                        com.tradesystem.mod.util.CurrencyUtil.formatMoney(mail.getCurrency())));
+                }
+                if (mail.getItemsDelivered() > 0) {
+                    player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(
+                        "gui.tradesystem.message.mailbox_items_delivered", mail.getItemsDelivered()));
+                }
+                if (mail.getItemsRemaining() > 0) {
+                    player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(
+                        "gui.tradesystem.message.mailbox_items_waiting", mail.getItemsRemaining()));
+                }
             }
             
-            // 从持久化存储加载玩家金币
-            int savedCurrency = com.tradesystem.mod.util.CurrencyUtil.loadPlayerCurrencyFromDisk(player);
-            
-            player.getCapability(ModCapabilities.PLAYER_CURRENCY).ifPresent(currency -> {
-                // 设置从磁盘加载的金币数量
-                currency.setMoney(savedCurrency);
-                
-                TradeMod.getLogger().info("玩家 {} 登录，从磁盘加载金币: {}", player.getName().getString(), savedCurrency);
-                
-                // 如果玩家金币为0或异常，重置为初始金币
-                if (currency.getMoney() < 0) {
-                    TradeMod.getLogger().warn("玩家 {} 金币异常 ({}), 重置为初始金币", player.getName().getString(), currency.getMoney());
-                    currency.setMoney(com.tradesystem.mod.config.TradeConfig.initialPlayerMoney);
-                    // 立即保存修正后的金币
-                    com.tradesystem.mod.util.CurrencyUtil.savePlayerCurrencyToDisk(player, currency.getMoney());
-                }
-                
-                // 同步金币到客户端
-                com.tradesystem.mod.util.CurrencyUtil.syncCurrencyToClient(player);
-            });
+            // 金币以账本为准，Capability只是账本的视图，这里只需同步到客户端
+            long balance = com.tradesystem.mod.util.CurrencyUtil.loadPlayerCurrencyFromDisk(player);
+            TradeMod.getLogger().info("玩家 {} 登录，当前金币: {}", player.getName().getString(), balance);
+            com.tradesystem.mod.util.CurrencyUtil.syncCurrencyToClient(player);
             
             // 同步市场数据到新登录的玩家
             com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToPlayer(player);
             TradeMod.getLogger().debug("已为玩家 {} 同步市场数据", player.getName().getString());
+            
+            // 同步回收价格表，客户端预览使用服务器的价格
+            com.tradesystem.mod.manager.RecycleManager.getInstance().syncPriceTable(player);
         }
     }
     
@@ -90,10 +114,9 @@ public class ModEventHandler {
     @SubscribeEvent
     public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
         if (event.getEntity() instanceof ServerPlayer player) {
-            // 保存玩家金币到持久化存储
+            // 每次金币变化都已经由账本写入，这里不需要再保存
             player.getCapability(ModCapabilities.PLAYER_CURRENCY).ifPresent(currency -> {
-                com.tradesystem.mod.util.CurrencyUtil.savePlayerCurrencyToDisk(player, currency.getMoney());
-                TradeMod.getLogger().info("玩家 {} 登出，已保存金币: {}", player.getName().getString(), currency.getMoney());
+                TradeMod.getLogger().info("玩家 {} 登出，当前金币: {}", player.getName().getString(), currency.getBalance());
             });
         }
     }
@@ -106,22 +129,11 @@ public class ModEventHandler {
         if (event.isWasDeath()) {
             TradeMod.getLogger().info("玩家 {} 死亡重生，正在保持金币数据", event.getEntity().getName().getString());
             
-            // 先从磁盘加载玩家的真实金币数据
+            // 服务端新旧玩家实体的Capability指向同一个账本账户，金币无需复制
             if (event.getEntity() instanceof ServerPlayer serverPlayer) {
-                int savedMoney = com.tradesystem.mod.util.CurrencyUtil.loadPlayerCurrencyFromDisk(serverPlayer);
-                TradeMod.getLogger().info("从磁盘加载玩家 {} 死亡前的金币: {}", serverPlayer.getName().getString(), savedMoney);
-                
-                // 直接设置从磁盘加载的金币数据
-                event.getEntity().getCapability(ModCapabilities.PLAYER_CURRENCY).ifPresent(newCurrency -> {
-                    newCurrency.setMoney(savedMoney);
-                    TradeMod.getLogger().info("玩家 {} 死亡重生后金币设置为: {}", serverPlayer.getName().getString(), savedMoney);
-                    
-                    // 立即保存到磁盘确保数据一致性
-                    com.tradesystem.mod.util.CurrencyUtil.savePlayerCurrencyToDisk(serverPlayer, savedMoney);
-                    
-                    // 立即同步到客户端
-                    com.tradesystem.mod.util.CurrencyUtil.syncCurrencyToClient(serverPlayer);
-                });
+                TradeMod.getLogger().info("玩家 {} 死亡重生后金币: {}", serverPlayer.getName().getString(),
+                        com.tradesystem.mod.util.CurrencyUtil.loadPlayerCurrencyFromDisk(serverPlayer));
+                com.tradesystem.mod.util.CurrencyUtil.syncCurrencyToClient(serverPlayer);
             } else {
                 // 如果不是服务端玩家，使用原来的逻辑作为备用
                 event.getOriginal().getCapability(ModCapabilities.PLAYER_CURRENCY).ifPresent(oldCurrency -> {
@@ -0,0 +1,85 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.data.Auction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 拍卖簿
+ * 以拍卖ID为主索引保存进行中的拍卖，并按卖家建立二级索引；结束时间由 MarketScheduler 的时间轮跟踪。
+ * 写操作串行执行，读操作无锁；服务器运行期间只由 MarketEngine 的写线程修改
+ */
+public class AuctionBook {
+
+    // 主索引：拍卖ID -> 拍卖
+    private final Map<UUID, Auction> byId = new ConcurrentHashMap<>();
+
+    // 卖家 -> 拍卖ID
+    private final Map<UUID, Set<UUID>> bySeller = new ConcurrentHashMap<>();
+
+    /**
+     * 添加拍卖，已存在相同ID时覆盖
+     */
+    public synchronized void add(Auction auction) {
+        byId.put(auction.getId(), auction);
+        bySeller.computeIfAbsent(auction.getSellerId(), k -> ConcurrentHashMap.newKeySet()).add(auction.getId());
+    }
+
+    /**
+     * 移除拍卖
+     * @return 被移除的拍卖，不存在时返回null
+     */
+    public synchronized Auction remove(UUID auctionId) {
+        Auction auction = byId.remove(auctionId);
+        if (auction == null) {
+            return null;
+        }
+
+        Set<UUID> ids = bySeller.get(auction.getSellerId());
+        if (ids != null) {
+            ids.remove(auctionId);
+            if (ids.isEmpty()) {
+                bySeller.remove(auction.getSellerId());
+            }
+        }
+        return auction;
+    }
+
+    /**
+     * 按ID获取拍卖
+     */
+    public Auction get(UUID auctionId) {
+        return auctionId != null ? byId.get(auctionId) : null;
+    }
+
+    /**
+     * 卖家进行中的拍卖数量
+     */
+    public int countBySeller(UUID sellerId) {
+        Set<UUID> ids = bySeller.get(sellerId);
+        return ids != null ? ids.size() : 0;
+    }
+
+    /**
+     * 所有拍卖（只读视图）
+     */
+    public Collection<Auction> values() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * 拍卖总数
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * 清空所有拍卖
+     */
+    public synchronized void clear() {
+        byId.clear();
+        bySeller.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.data.Auction;
+import com.tradesystem.mod.data.JsonDataManager;
+import com.tradesystem.mod.data.TradeRepository;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.server.ServerLifecycleHooks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 拍卖管理器
+ * 负责拍卖的发起、出价、加载和持久化，以及出价被超过、成交和流拍的通知；
+ * 竞价、冻结金币和结算由 MarketEngine 完成，结束时间由 MarketScheduler 触发
+ */
+public class AuctionManager implements MarketEngine.Listener {
+    private static AuctionManager instance;
+
+    // 服务端拍卖簿；服务器运行期间只由 MarketEngine 修改
+    private final AuctionBook auctionBook = new AuctionBook();
+
+    private AuctionManager() {}
+
+    public static AuctionManager getInstance() {
+        if (instance == null) {
+            instance = new AuctionManager();
+        }
+        return instance;
+    }
+
+    /**
+     * 发起拍卖
+     * 物品必须已经从卖家背包中取出，失败时由市场引擎退还给卖家
+     */
+    public CompletableFuture<MarketEngine.Result> startAuction(ServerPlayer seller, ItemStack itemStack, int startPrice,
+                                                               int durationMinutes) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.startAuction(seller.getUUID(), seller.getName().getString(), itemStack, startPrice,
+                        durationMinutes * 60L * 1000L)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.auction_started",
+                                    itemStack.getHoverName(), startPrice, durationMinutes));
+                            TradeMod.getLogger().info("玩家 {} 发起拍卖: {} x{} 起拍价: {} 时长: {} 分钟",
+                                    seller.getName().getString(), itemStack.getHoverName().getString(),
+                                    itemStack.getCount(), startPrice, durationMinutes);
+                            break;
+                        case INVALID:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.auction_invalid"));
+                            break;
+                        case LISTING_LIMIT:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.max_listings_reached"));
+                            break;
+                        case BLACKLISTED:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_blacklisted"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
+    }
+
+    /**
+     * 出价，出价金额在被超过或拍卖结束前冻结
+     */
+    public CompletableFuture<MarketEngine.Result> placeBid(ServerPlayer bidder, UUID auctionId, long amount) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.bidAuction(bidder.getUUID(), bidder.getName().getString(), auctionId, amount)
+                .thenApplyAsync(result -> {
+                    Auction auction = result.getAuction();
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            bidder.sendSystemMessage(Component.translatable("gui.tradesystem.message.auction_bid_placed",
+                                    auction.getItemStack().getHoverName(), amount));
+                            break;
+                        case NOT_FOUND:
+                            bidder.sendSystemMessage(Component.translatable("gui.tradesystem.message.auction_not_found"));
+                            break;
+                        case OWN_LISTING:
+                            bidder.sendSystemMessage(Component.translatable("gui.tradesystem.message.cannot_buy_own_item"));
+                            break;
+                        case INVALID:
+                            bidder.sendSystemMessage(Component.translatable("gui.tradesystem.message.auction_bid_too_low",
+                                    auction != null ? auction.getMinimumBid() : amount));
+                            break;
+                        case INSUFFICIENT_FUNDS:
+                            bidder.sendSystemMessage(Component.translatable("gui.tradesystem.buy.insufficient_money", amount));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            bidder.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
+    }
+
+    /**
+     * 进行中的拍卖，按结束时间排列
+     */
+    public List<Auction> getActiveAuctions() {
+        List<Auction> result = new ArrayList<>(auctionBook.values());
+        result.sort(Comparator.comparingLong(Auction::getEndTime).thenComparing(Auction::getId));
+        return result;
+    }
+
+    /**
+     * 拍卖簿
+     */
+    public AuctionBook getAuctionBook() {
+        return auctionBook;
+    }
+
+    /**
+     * 市场事件：把拍卖的变化写入拍卖仓库，并通知相关玩家
+     */
+    @Override
+    public void onMarketEvent(MarketEngine.Event event) {
+        Auction auction = event.getAuction();
+        if (auction == null) {
+            return;
+        }
+
+        TradeRepository<Auction> data = JsonDataManager.getInstance().getAuctions();
+        switch (event.getType()) {
+            case AUCTION_STARTED:
+                data.save(auction);
+                break;
+            case AUCTION_BID:
+                // 已保存的是上一次事件后的状态，据此通知被超过的出价者
+                Auction previous = data.get(auction.getId());
+                if (previous != null && previous.hasBids() && !previous.getHighBidderId().equals(auction.getHighBidderId())) {
+                    notify(previous.getHighBidderId(), Component.translatable("gui.tradesystem.message.auction_outbid",
+                            auction.getItemStack().getHoverName(), auction.getHighBid()));
+                }
+                data.save(auction);
+                break;
+            case AUCTION_CLOSED:
+                data.remove(auction.getId());
+                if (auction.hasBids()) {
+                    notify(auction.getHighBidderId(), Component.translatable("gui.tradesystem.message.auction_won",
+                            auction.getItemStack().getHoverName(), auction.getHighBid()));
+                } else {
+                    notify(auction.getSellerId(), Component.translatable("gui.tradesystem.message.auction_no_bids",
+                            auction.getItemStack().getHoverName()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void notify(UUID playerId, Component message) {
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        ServerPlayer player = server != null ? server.getPlayerList().getPlayer(playerId) : null;
+        if (player != null) {
+            player.sendSystemMessage(message);
+        }
+    }
+
+    /**
+     * 从拍卖仓库加载，必须在市场引擎启动之前调用；已过结束时间的拍卖由 MarketScheduler 在下一个tick结束。
+     * 拍卖簿放入副本，不与仓库共用实例
+     */
+    public void loadData() {
+        auctionBook.clear();
+        for (Auction auction : JsonDataManager.getInstance().getAuctions().getAll()) {
+            if (!auction.getItemStack().isEmpty()) {
+                auctionBook.add(auction.copy());
+            }
+        }
+        TradeMod.getLogger().info("加载了 {} 个拍卖", auctionBook.size());
+    }
+}
@@ -0,0 +1,163 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.data.BuyOrder;
+import com.tradesystem.mod.data.ItemKey;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 求购订单簿
+ * 按物品规范键分组，每组按 (单价降序, 挂单时间, 订单ID) 排序，第一个即为最优买价。
+ * 与 OrderBook 相同：写操作串行执行，读操作无锁；服务器运行期间只由 MarketEngine 的写线程修改
+ */
+public class BidBook {
+
+    // 价格高者优先，同价先挂单者优先；单价、时间和ID在订单生命周期内不变，数量变化不影响排序
+    private static final Comparator<BuyOrder> PRIORITY = Comparator
+            .comparingInt(BuyOrder::getPrice).reversed()
+            .thenComparingLong(BuyOrder::getCreateTime)
+            .thenComparing(BuyOrder::getId);
+
+    // 主索引：订单ID -> 求购订单
+    private final Map<UUID, BuyOrder> byId = new ConcurrentHashMap<>();
+
+    // 物品规范键 -> 按优先级排序的订单
+    private final Map<ItemKey, NavigableSet<BuyOrder>> byItemKey = new ConcurrentHashMap<>();
+
+    // 买家 -> 订单ID
+    private final Map<UUID, Set<UUID>> byBuyer = new ConcurrentHashMap<>();
+
+    /**
+     * 添加订单，已存在相同ID时先移除旧索引
+     */
+    public synchronized void add(BuyOrder order) {
+        if (byId.containsKey(order.getId())) {
+            remove(order.getId());
+        }
+
+        byId.put(order.getId(), order);
+        byItemKey.computeIfAbsent(order.getItemKey(), k -> new ConcurrentSkipListSet<>(PRIORITY)).add(order);
+        byBuyer.computeIfAbsent(order.getBuyerId(), k -> ConcurrentHashMap.newKeySet()).add(order.getId());
+    }
+
+    /**
+     * 移除订单
+     * @return 被移除的订单，不存在时返回null
+     */
+    public synchronized BuyOrder remove(UUID orderId) {
+        BuyOrder order = byId.remove(orderId);
+        if (order == null) {
+            return null;
+        }
+
+        NavigableSet<BuyOrder> bids = byItemKey.get(order.getItemKey());
+        if (bids != null) {
+            bids.remove(order);
+            if (bids.isEmpty()) {
+                byItemKey.remove(order.getItemKey());
+            }
+        }
+        Set<UUID> ids = byBuyer.get(order.getBuyerId());
+        if (ids != null) {
+            ids.remove(orderId);
+            if (ids.isEmpty()) {
+                byBuyer.remove(order.getBuyerId());
+            }
+        }
+        return order;
+    }
+
+    /**
+     * 按ID获取订单
+     */
+    public BuyOrder get(UUID orderId) {
+        return orderId != null ? byId.get(orderId) : null;
+    }
+
+    /**
+     * 单价不低于 minPrice 的订单，按优先级排列
+     */
+    public List<BuyOrder> getMatching(ItemKey itemKey, int minPrice) {
+        NavigableSet<BuyOrder> bids = byItemKey.get(itemKey);
+        if (bids == null) {
+            return Collections.emptyList();
+        }
+
+        List<BuyOrder> result = new ArrayList<>();
+        for (BuyOrder order : bids) {
+            if (order.getPrice() < minPrice) {
+                break;
+            }
+            result.add(order);
+        }
+        return result;
+    }
+
+    /**
+     * 最优买单（最高单价中最早挂出的），没有时返回null
+     */
+    public BuyOrder getBest(ItemKey itemKey) {
+        NavigableSet<BuyOrder> bids = byItemKey.get(itemKey);
+        if (bids == null) {
+            return null;
+        }
+        try {
+            return bids.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 买家的所有订单，按挂单时间排列
+     */
+    public List<BuyOrder> getByBuyer(UUID buyerId) {
+        Set<UUID> ids = byBuyer.get(buyerId);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+
+        List<BuyOrder> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            BuyOrder order = byId.get(id);
+            if (order != null) {
+                result.add(order);
+            }
+        }
+        result.sort(Comparator.comparingLong(BuyOrder::getCreateTime).thenComparing(BuyOrder::getId));
+        return result;
+    }
+
+    /**
+     * 买家的订单数量
+     */
+    public int countByBuyer(UUID buyerId) {
+        Set<UUID> ids = byBuyer.get(buyerId);
+        return ids != null ? ids.size() : 0;
+    }
+
+    /**
+     * 所有订单（只读视图）
+     */
+    public Collection<BuyOrder> values() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * 订单总数
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * 清空所有订单
+     */
+    public synchronized void clear() {
+        byId.clear();
+        byItemKey.clear();
+        byBuyer.clear();
+    }
+}
@@ -0,0 +1,171 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.data.BuyOrder;
+import com.tradesystem.mod.data.JsonDataManager;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.server.ServerLifecycleHooks;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 求购订单管理器
+ * 负责求购订单的挂出、撤销、加载和持久化；撮合与金币冻结由 MarketEngine 完成
+ */
+public class BuyOrderManager implements MarketEngine.Listener {
+    private static BuyOrderManager instance;
+
+    // 服务端求购订单簿；服务器运行期间只由 MarketEngine 修改
+    private final BidBook bidBook = new BidBook();
+
+    private BuyOrderManager() {}
+
+    public static BuyOrderManager getInstance() {
+        if (instance == null) {
+            instance = new BuyOrderManager();
+        }
+        return instance;
+    }
+
+    /**
+     * 挂出求购订单，先与已有的上架物品成交，剩余数量挂单等待
+     * @param itemStack 物品模板，数量无关
+     */
+    public CompletableFuture<MarketEngine.Result> placeOrder(ServerPlayer buyer, ItemStack itemStack, int price,
+                                                             int quantity) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.placeOrder(buyer.getUUID(), buyer.getName().getString(), itemStack, price, quantity)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            if (!result.getFills().isEmpty()) {
+                                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.buy_order_matched",
+                                        itemStack.getHoverName(), result.getFilledQuantity(), result.getTotalPrice()));
+                            }
+                            if (result.getOrder() != null) {
+                                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.buy_order_placed",
+                                        itemStack.getHoverName(), result.getOrder().getQuantity(), price));
+                            }
+                            TradeMod.getLogger().info("玩家 {} 求购物品: {} x{} 单价: {}，立即成交 {} 个",
+                                    buyer.getName().getString(), itemStack.getHoverName().getString(),
+                                    quantity, price, result.getFilledQuantity());
+                            break;
+                        case INSUFFICIENT_FUNDS:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.buy.insufficient_money",
+                                    (long) price * quantity));
+                            break;
+                        case ORDER_LIMIT:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.max_buy_orders_reached"));
+                            break;
+                        case BLACKLISTED:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_blacklisted"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
+    }
+
+    /**
+     * 撤销求购订单，剩余的冻结金币退回买家
+     */
+    public CompletableFuture<MarketEngine.Result> cancelOrder(ServerPlayer player, UUID orderId) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.cancelOrder(player.getUUID(), orderId)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            BuyOrder order = result.getOrder();
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.buy_order_cancelled",
+                                    order.getDisplayName(), order.getEscrow()));
+                            break;
+                        case NOT_FOUND:
+                        case NOT_OWNER:
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.buy_order_not_found"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
+    }
+
+    /**
+     * 买家的求购订单，按挂单时间排列
+     */
+    public List<BuyOrder> getOrders(UUID buyerId) {
+        return bidBook.getByBuyer(buyerId);
+    }
+
+    /**
+     * 求购订单簿
+     */
+    public BidBook getBidBook() {
+        return bidBook;
+    }
+
+    /**
+     * 市场事件：把求购订单的变化写入求购订单仓库，并通知在线的买家成交情况
+     */
+    @Override
+    public void onMarketEvent(MarketEngine.Event event) {
+        BuyOrder order = event.getOrder();
+        if (order == null) {
+            return;
+        }
+
+        switch (event.getType()) {
+            case ORDER_PLACED:
+                JsonDataManager.getInstance().getBuyOrders().save(order);
+                break;
+            case ORDER_FILLED:
+                if (order.getQuantity() > 0) {
+                    JsonDataManager.getInstance().getBuyOrders().save(order);
+                } else {
+                    JsonDataManager.getInstance().getBuyOrders().remove(order.getId());
+                }
+                notifyFilled(order, event.getFill());
+                break;
+            case ORDER_CANCELLED:
+                JsonDataManager.getInstance().getBuyOrders().remove(order.getId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void notifyFilled(BuyOrder order, MarketEngine.Fill fill) {
+        ServerPlayer buyer = ServerLifecycleHooks.getCurrentServer() != null
+                ? ServerLifecycleHooks.getCurrentServer().getPlayerList().getPlayer(order.getBuyerId()) : null;
+        if (buyer != null && fill != null) {
+            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.buy_order_filled",
+                    fill.getItemStack().getHoverName(), fill.getQuantity(), fill.getUnitPrice(), order.getQuantity()));
+        }
+    }
+
+    /**
+     * 从求购订单仓库加载，必须在市场引擎启动之前调用；求购簿放入副本，不与仓库共用实例
+     */
+    public void loadData() {
+        bidBook.clear();
+        for (BuyOrder order : JsonDataManager.getInstance().getBuyOrders().getAll()) {
+            if (order.getQuantity() > 0 && !order.getItemStack().isEmpty()) {
+                bidBook.add(order.copy());
+            }
+        }
+        TradeMod.getLogger().info("加载了 {} 个求购订单", bidBook.size());
+    }
+}
@@ -13,6 +13,7 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.fml.DistExecutor;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -20,14 +21,18 @@ import java.util.stream.Collectors;
  * 商品上架管理器
  * 负责处理商品的上架、下架、搜索等功能
  */
-public class ItemListingManager {
+public class ItemListingManager implements MarketEngine.Listener {
     private static ItemListingManager instance;
-    private final Map<UUID, TradeItem> activeListings = new ConcurrentHashMap<>();
-    private final Map<UUID, Set<UUID>> playerListings = new ConcurrentHashMap<>();
+    
+    // 服务端订单簿，按ID、物品类型、卖家和价格索引所有上架物品；服务器运行期间只由 MarketEngine 修改
+    private final OrderBook orderBook = new OrderBook();
     
     // 客户端缓存（仅在客户端使用）
     private final Map<UUID, TradeItem> clientCache = new ConcurrentHashMap<>();
     
+    // 客户端已应用的市场版本号，-1表示尚未收到快照
+    private volatile long clientMarketVersion = -1;
+    
     private ItemListingManager() {}
     
     public static ItemListingManager getInstance() {
@@ -39,232 +44,241 @@ public class ItemListingManager {
     
     /**
      * 上架物品
+     * 物品必须已经从卖家背包中取出（ListItemPacket已经处理），上架失败时由市场引擎退还给卖家
      */
-    public boolean listItem(ServerPlayer seller, ItemStack itemStack, int price) {
-        try {
-            // 验证输入参数
-            if (seller == null || itemStack.isEmpty() || price <= 0) {
-                return false;
-            }
-            
-            // 检查玩家上架数量限制
-            if (!canPlayerListMore(seller.getUUID())) {
-                seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.max_listings_reached"));
-                return false;
-            }
-            
-            // 检查物品是否在黑名单中
-            if (isItemBlacklisted(itemStack)) {
-                seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_blacklisted"));
-                return false;
-            }
-            
-            // 从玩家背包中移除物品（在listItem方法中不需要移除，因为ListItemPacket已经处理了）
-            // if (!removeItemFromInventory(seller, itemStack)) {
-            //     seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.insufficient_items"));
-            //     return false;
-            // }
-            
-            // 创建交易物品
-            TradeItem tradeItem = new TradeItem(
-                seller.getUUID(),
-                seller.getName().getString(),
-                itemStack,
-                price
-            );
-            
-            // 添加到活跃列表
-            activeListings.put(tradeItem.getId(), tradeItem);
-            playerListings.computeIfAbsent(seller.getUUID(), k -> new HashSet<>()).add(tradeItem.getId());
-            
-            // 保存到数据管理器
-            TradeDataManager.getInstance().saveTradeItem(tradeItem);
-            
-            // 同步市场数据到所有客户端
-            com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToAllClients();
-            
-            // 发送成功消息
-            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_listed_success",
-                    itemStack.getHoverName(), price));
-            
-            TradeMod.getLogger().info("玩家 {} 上架物品: {} x{} 价格: {}",
-                    seller.getName().getString(), itemStack.getHoverName().getString(),
-                    itemStack.getCount(), price);
-            
-            return true;
-            
-        } catch (Exception e) {
-            TradeMod.getLogger().error("上架物品时发生错误: {}", e.getMessage());
-            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.listing_error"));
-            return false;
-        }
+    public CompletableFuture<MarketEngine.Result> listItem(ServerPlayer seller, ItemStack itemStack, int price) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.list(seller.getUUID(), seller.getName().getString(), itemStack, price)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_listed_success",
+                                    itemStack.getHoverName(), price));
+                            if (!result.getFills().isEmpty()) {
+                                seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.sold_to_buy_orders",
+                                        result.getFilledQuantity(), result.getTotalPrice()));
+                            }
+                            TradeMod.getLogger().info("玩家 {} 上架物品: {} x{} 价格: {}",
+                                    seller.getName().getString(), itemStack.getHoverName().getString(),
+                                    itemStack.getCount(), price);
+                            break;
+                        case LISTING_LIMIT:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.max_listings_reached"));
+                            break;
+                        case BLACKLISTED:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_blacklisted"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
     }
     
     /**
-     * 下架物品
+     * 批量上架背包中多个槽位的物品，全部上架或全部不上架
+     * 先检查所有槽位、黑名单和上架数量上限，通过后一次性从背包取出，再作为一条命令交给市场引擎；
+     * 整批物品只产生一批事件，数据文件写入一次，客户端只收到一个市场增量
+     * @param slotQuantities 槽位 -> 上架数量，同一槽位只能出现一次
      */
-    public boolean unlistItem(ServerPlayer player, UUID itemId) {
-        try {
-            TradeItem tradeItem = activeListings.get(itemId);
-            if (tradeItem == null) {
-                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_found"));
-                return false;
-            }
-            
-            // 检查是否是物品的所有者
-            if (!tradeItem.getSellerId().equals(player.getUUID())) {
-                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.not_owner"));
-                return false;
-            }
-            
-            // 将物品返还给玩家
-            if (!giveItemToPlayer(player, tradeItem.getItemStack())) {
-                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.inventory_full"));
-                return false;
-            }
-            
-            // 从列表中移除
-            activeListings.remove(itemId);
-            Set<UUID> playerItems = playerListings.get(player.getUUID());
-            if (playerItems != null) {
-                playerItems.remove(itemId);
+    public CompletableFuture<MarketEngine.Result> listItems(ServerPlayer seller, Map<Integer, Integer> slotQuantities, int price) {
+        MarketEngine engine = MarketEngine.getInstance();
+        MarketEngine.Status status = MarketEngine.Status.SUCCESS;
+        String message = null;
+        
+        if (slotQuantities.isEmpty() || price <= 0) {
+            status = MarketEngine.Status.INVALID;
+            message = "gui.tradesystem.message.invalid_item_or_price";
+        } else if (orderBook.countBySeller(seller.getUUID()) + slotQuantities.size() > TradeConfig.getMaxListingsPerPlayer()) {
+            status = MarketEngine.Status.LISTING_LIMIT;
+            message = "gui.tradesystem.message.max_listings_reached";
+        } else {
+            for (Map.Entry<Integer, Integer> entry : slotQuantities.entrySet()) {
+                int slot = entry.getKey();
+                if (slot < 0 || slot >= seller.getInventory().getContainerSize()) {
+                    status = MarketEngine.Status.INVALID;
+                    message = "gui.tradesystem.message.invalid_slot";
+                    break;
+                }
+                ItemStack slotStack = seller.getInventory().getItem(slot);
+                if (slotStack.isEmpty() || entry.getValue() <= 0 || slotStack.getCount() < entry.getValue()) {
+                    status = MarketEngine.Status.INVALID;
+                    message = "gui.tradesystem.message.insufficient_items";
+                    break;
+                }
+                if (MarketEngine.isBlacklisted(slotStack)) {
+                    status = MarketEngine.Status.BLACKLISTED;
+                    message = "gui.tradesystem.message.item_blacklisted";
+                    break;
+                }
             }
-            
-            // 从数据管理器中删除
-            com.tradesystem.mod.data.JsonDataManager.getInstance().removeTradeItem(itemId);
-            TradeDataManager.getInstance().removeTradeItem(itemId);
-            
-            // 从DataService中移除物品数据
-            com.tradesystem.mod.data.DataService.getInstance().removeMarketItem(itemId.toString());
-            
-            // 同步市场数据到所有客户端
-            com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToAllClients();
-            
-            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_unlisted_success",
-                    tradeItem.getDisplayName()));
-            
-            TradeMod.getLogger().info("玩家 {} 下架物品: {}",
-                    player.getName().getString(), tradeItem.getDisplayName());
-            
-            return true;
-            
-        } catch (Exception e) {
-            TradeMod.getLogger().error("下架物品时发生错误: {}", e.getMessage());
-            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.unlisting_error"));
-            return false;
         }
+        
+        if (status != MarketEngine.Status.SUCCESS) {
+            seller.sendSystemMessage(Component.translatable(message));
+            return CompletableFuture.completedFuture(new MarketEngine.Result(status, 0, null, Collections.emptyList()));
+        }
+        
+        List<ItemStack> itemStacks = com.tradesystem.mod.util.InventoryScanner.takeFromSlots(seller.getInventory(), slotQuantities);
+        if (itemStacks == null) {
+            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.insufficient_items"));
+            return CompletableFuture.completedFuture(new MarketEngine.Result(MarketEngine.Status.INVALID, 0, null,
+                    Collections.emptyList()));
+        }
+        
+        // 引擎执行时会再次检查上限和黑名单，失败时把取出的物品全部退还
+        return engine.listBatch(seller.getUUID(), seller.getName().getString(), itemStacks, price)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.items_listed_success",
+                                    itemStacks.size(), price));
+                            if (!result.getFills().isEmpty()) {
+                                seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.sold_to_buy_orders",
+                                        result.getFilledQuantity(), result.getTotalPrice()));
+                            }
+                            TradeMod.getLogger().info("玩家 {} 批量上架 {} 组物品，单价: {}",
+                                    seller.getName().getString(), itemStacks.size(), price);
+                            break;
+                        case LISTING_LIMIT:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.max_listings_reached"));
+                            break;
+                        case BLACKLISTED:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_blacklisted"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.list_failed"));
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
     }
     
     /**
-     * 下架物品（通过物品ID和玩家ID）
+     * 下架物品，物品退还给卖家（背包放不下的部分放入交易邮箱）
      */
+    public CompletableFuture<MarketEngine.Result> unlistItem(ServerPlayer player, UUID itemId) {
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.unlist(player.getUUID(), itemId)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_unlisted_success",
+                                    result.getListing().getDisplayName()));
+                            TradeMod.getLogger().info("玩家 {} 下架物品: {}",
+                                    player.getName().getString(), result.getListing().getDisplayName());
+                            break;
+                        case NOT_FOUND:
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_found"));
+                            break;
+                        case NOT_OWNER:
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.not_owner"));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
+    }
+    
     /**
-     * 下架物品（用于购买完成后，不返还物品给卖家）
+     * 下架物品（通过物品ID和玩家ID），卖家离线时物品放入交易邮箱
      */
-    public boolean removeItemFromListing(UUID itemId, UUID playerId) {
-        try {
-            // 添加调试日志
-            TradeMod.getLogger().info("ItemListingManager.removeItemFromListing: 物品ID={}, 玩家ID={}", itemId, playerId);
-            
-            TradeItem tradeItem = activeListings.get(itemId);
-            if (tradeItem == null) {
-                TradeMod.getLogger().warn("物品不存在: {}", itemId);
-                return false;
-            }
-            
-            // 检查是否是物品的所有者
-            if (!tradeItem.getSellerId().equals(playerId)) {
-                TradeMod.getLogger().warn("玩家 {} 不是物品 {} 的所有者", playerId, itemId);
-                return false;
-            }
-            
-            // 从列表中移除（不返还物品）
-            activeListings.remove(itemId);
-            Set<UUID> playerItems = playerListings.get(playerId);
-            if (playerItems != null) {
-                playerItems.remove(itemId);
+    public CompletableFuture<MarketEngine.Result> unlistItem(UUID itemId, UUID playerId) {
+        return MarketEngine.getInstance().unlist(playerId, itemId);
+    }
+    
+    /**
+     * 同一条命令的多个事件（批量购买、批量上架、过期下架）合并为一个市场增量广播，
+     * 并一次性写入上架物品仓库
+     */
+    @Override
+    public void onMarketEvents(List<MarketEngine.Event> events) {
+        List<TradeItem> saved = new ArrayList<>();
+        List<UUID> removed = new ArrayList<>();
+        com.tradesystem.mod.data.DataService.getInstance().batchMarketUpdates(() -> {
+            for (MarketEngine.Event event : events) {
+                applyMarketEvent(event, saved, removed);
             }
-            
-            // 从数据管理器中删除
-            com.tradesystem.mod.data.JsonDataManager.getInstance().removeTradeItem(itemId);
-            TradeDataManager.getInstance().removeTradeItem(itemId);
-            
-            // 从DataService中移除物品数据
-            com.tradesystem.mod.data.DataService.getInstance().removeMarketItem(itemId.toString());
-            
-            // 同步市场数据到所有客户端
-            com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToAllClients();
-            
-            TradeMod.getLogger().info("物品已从市场移除: {} (玩家ID: {})",
-                    tradeItem.getDisplayName(), playerId);
-            
-            return true;
-            
-        } catch (Exception e) {
-            TradeMod.getLogger().error("从市场移除物品时发生错误: {}", e.getMessage());
-            return false;
+        });
+        
+        com.tradesystem.mod.data.TradeRepository<TradeItem> repository =
+                com.tradesystem.mod.data.JsonDataManager.getInstance().getTradeItems();
+        repository.saveAll(saved);
+        repository.removeAll(removed);
+        
+        if (events.get(0).getType() == MarketEngine.EventType.EXPIRED) {
+            notifyExpired(events);
         }
     }
-
-    public boolean unlistItem(UUID itemId, UUID playerId) {
-        try {
-            // 添加调试日志
-            TradeMod.getLogger().info("ItemListingManager.unlistItem: 物品ID={}, 玩家ID={}", itemId, playerId);
-            
-            TradeItem tradeItem = activeListings.get(itemId);
-            if (tradeItem == null) {
-                TradeMod.getLogger().warn("物品不存在: {}", itemId);
-                return false;
-            }
-            
-            // 检查是否是物品的所有者
-            if (!tradeItem.getSellerId().equals(playerId)) {
-                TradeMod.getLogger().warn("玩家 {} 不是物品 {} 的所有者", playerId, itemId);
-                return false;
-            }
-            
-            // 尝试获取在线玩家并返还物品
-            ServerPlayer player = net.minecraftforge.server.ServerLifecycleHooks.getCurrentServer()
-                    .getPlayerList().getPlayer(playerId);
-            if (player != null) {
-                // 玩家在线，直接返还物品
-                TradeMod.getLogger().info("玩家在线，直接返还物品: {}", player.getName().getString());
-                if (!giveItemToPlayer(player, tradeItem.getItemStack())) {
-                    // 如果背包满了，掉落在地上
-                    player.drop(tradeItem.getItemStack(), false);
-                }
-                
-                // 发送成功消息
-                player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(
-                        "gui.tradesystem.message.item_unlisted_success", tradeItem.getDisplayName()));
-            } else {
-                // 玩家离线，将物品保存到离线存储
-                TradeMod.getLogger().info("玩家离线，保存到离线存储: {}", playerId);
-                TradeDataManager.getInstance().addOfflinePlayerItem(playerId, tradeItem.getItemStack());
-            }
-            
-            // 从列表中移除
-            activeListings.remove(itemId);
-            Set<UUID> playerItems = playerListings.get(playerId);
-            if (playerItems != null) {
-                playerItems.remove(itemId);
+    
+    /**
+     * 过期下架的一批物品：按卖家汇总通知在线卖家，物品已由市场引擎退回背包或交易邮箱
+     */
+    private void notifyExpired(List<MarketEngine.Event> events) {
+        Map<UUID, Integer> countBySeller = new HashMap<>();
+        for (MarketEngine.Event event : events) {
+            countBySeller.merge(event.getListing().getSellerId(), 1, Integer::sum);
+        }
+        TradeMod.getLogger().info("{} 个上架物品已过期下架，退还给 {} 位卖家", events.size(), countBySeller.size());
+        
+        net.minecraft.server.MinecraftServer server = net.minecraftforge.server.ServerLifecycleHooks.getCurrentServer();
+        if (server == null) {
+            return;
+        }
+        for (Map.Entry<UUID, Integer> entry : countBySeller.entrySet()) {
+            ServerPlayer seller = server.getPlayerList().getPlayer(entry.getKey());
+            if (seller != null) {
+                seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.listings_expired", entry.getValue()));
             }
-            
-            // 从数据管理器中删除
-            com.tradesystem.mod.data.JsonDataManager.getInstance().removeTradeItem(itemId);
-            TradeDataManager.getInstance().removeTradeItem(itemId);
-            
-            // 同步市场数据到所有客户端
-            com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToAllClients();
-            
-            TradeMod.getLogger().info("物品已下架: {} (玩家ID: {})",
-                    tradeItem.getDisplayName(), playerId);
-            
-            return true;
-            
-        } catch (Exception e) {
-            TradeMod.getLogger().error("下架物品时发生错误: {}", e.getMessage());
-            return false;
+        }
+    }
+    
+    /**
+     * 单个市场事件，按一批处理
+     */
+    @Override
+    public void onMarketEvent(MarketEngine.Event event) {
+        onMarketEvents(Collections.singletonList(event));
+    }
+    
+    /**
+     * 市场事件：通过DataService增量同步到客户端，并记录需要写入或删除的上架物品
+     * 部分成交只广播剩余数量
+     */
+    private void applyMarketEvent(MarketEngine.Event event, List<TradeItem> saved, List<UUID> removed) {
+        TradeItem item = event.getListing();
+        if (item == null) {
+            // 求购订单事件由 BuyOrderManager 处理
+            return;
+        }
+        
+        boolean depleted = event.getType() == MarketEngine.EventType.UNLISTED
+                || event.getType() == MarketEngine.EventType.EXPIRED
+                || (event.getType() == MarketEngine.EventType.FILLED && event.getFill().isDepleted());
+        
+        if (depleted) {
+            removed.add(item.getId());
+            com.tradesystem.mod.data.DataService.getInstance().removeMarketItem(item.getId().toString());
+        } else if (event.getType() == MarketEngine.EventType.FILLED) {
+            saved.add(item);
+            com.tradesystem.mod.data.DataService.getInstance().fillMarketItem(item.getId().toString(),
+                    item.toNBT(), item.getCount(), item.getVersion());
+        } else {
+            saved.add(item);
+            com.tradesystem.mod.data.DataService.getInstance().addMarketItem(item.getId().toString(), item.toNBT());
         }
     }
     
@@ -282,17 +296,56 @@ public class ItemListingManager {
                     .collect(Collectors.toList());
         } catch (Exception e) {
             // 如果失败，说明在服务端，使用实际数据
-            return activeListings.values().stream()
-                    .filter(TradeItem::isActive)
-                    .collect(Collectors.toList());
+            return activeCopies(orderBook.values());
         }
     }
     
+    /**
+     * 按ID获取上架物品的副本（服务端订单簿，O(1)）
+     */
+    public TradeItem getListing(UUID itemId) {
+        TradeItem item = orderBook.get(itemId);
+        return item != null && item.isActive() ? item.copy() : null;
+    }
+    
+    /**
+     * 检查物品是否仍在上架中
+     */
+    public boolean isListed(UUID itemId) {
+        TradeItem item = orderBook.get(itemId);
+        return item != null && item.isActive();
+    }
+    
+    /**
+     * 获取指定物品类型的所有上架物品
+     */
+    public List<TradeItem> getListingsByItem(ItemStack itemStack) {
+        return activeCopies(orderBook.getByItemKey(OrderBook.itemKey(itemStack)));
+    }
+    
+    /**
+     * 订单簿中的物品由引擎写线程原地修改（部分成交、改价），对外只返回副本
+     */
+    private static List<TradeItem> activeCopies(Collection<TradeItem> items) {
+        return items.stream()
+                .filter(TradeItem::isActive)
+                .map(TradeItem::copy)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * 获取服务端订单簿，只供市场引擎和持久化使用
+     */
+    public OrderBook getOrderBook() {
+        return orderBook;
+    }
+    
     /**
      * 清空客户端缓存（仅客户端使用）
      */
     public void clearClientCache() {
         clientCache.clear();
+        clientMarketVersion = -1;
     }
     
     /**
@@ -300,7 +353,7 @@ public class ItemListingManager {
      */
     public void addClientItem(TradeItem item) {
         if (item != null) {
-            clientCache.put(item.getId(), item);
+            putClientItem(item);
         }
     }
     
@@ -309,18 +362,25 @@ public class ItemListingManager {
      */
     public void updateClientCache(net.minecraft.nbt.CompoundTag data) {
         try {
-            TradeMod.getLogger().info("开始更新客户端缓存，接收到 {} 个物品数据", data.size());
+            // 快照格式为 {seq, items}，兼容旧的直接以物品ID为键的格式
+            net.minecraft.nbt.CompoundTag items = data;
+            if (data.contains("items", net.minecraft.nbt.Tag.TAG_COMPOUND)) {
+                items = data.getCompound("items");
+                clientMarketVersion = data.getLong("seq");
+            }
+            
+            TradeMod.getLogger().info("开始更新客户端缓存，接收到 {} 个物品数据", items.size());
             
             // 清空现有缓存
             clientCache.clear();
             
             // 从NBT数据重建TradeItem对象
-            for (String key : data.getAllKeys()) {
-                net.minecraft.nbt.CompoundTag itemTag = data.getCompound(key);
+            for (String key : items.getAllKeys()) {
+                net.minecraft.nbt.CompoundTag itemTag = items.getCompound(key);
                 try {
                     TradeItem item = new TradeItem(itemTag);
                     if (item != null) {
-                        clientCache.put(item.getId(), item);
+                        putClientItem(item);
                         TradeMod.getLogger().debug("添加物品到客户端缓存: {} - {} (卖家: {})", 
                                 item.getId(), item.getItemStack().getDisplayName().getString(), item.getSellerName());
                     }
@@ -341,6 +401,68 @@ public class ItemListingManager {
         }
     }
     
+    /**
+     * 应用服务器广播的市场增量（仅客户端使用）
+     * 增量与本地版本不连续时丢弃，并向服务器请求完整快照
+     */
+    public void applyClientDelta(net.minecraft.nbt.CompoundTag delta) {
+        long base = delta.getLong("base");
+        long seq = delta.getLong("seq");
+        
+        if (seq <= clientMarketVersion) {
+            // 已经包含在之前收到的快照中
+            return;
+        }
+        
+        if (base != clientMarketVersion) {
+            TradeMod.getLogger().debug("市场增量不连续 (本地版本 {}，增量基于 {})，请求完整快照", clientMarketVersion, base);
+            com.tradesystem.mod.network.NetworkHandler.sendToServer(
+                    new com.tradesystem.mod.network.packet.RequestMarketSyncPacket(clientMarketVersion));
+            return;
+        }
+        
+        net.minecraft.nbt.ListTag ops = delta.getList("ops", net.minecraft.nbt.Tag.TAG_COMPOUND);
+        for (int i = 0; i < ops.size(); i++) {
+            net.minecraft.nbt.CompoundTag op = ops.getCompound(i);
+            String key = op.getString("id");
+            try {
+                switch (com.tradesystem.mod.network.packet.DataSyncPacket.MarketOp.valueOf(op.getString("op"))) {
+                    case ADD:
+                    case UPDATE:
+                        putClientItem(new TradeItem(op.getCompound("item")));
+                        break;
+                    case REMOVE:
+                        clientCache.remove(UUID.fromString(key));
+                        break;
+                    case FILL:
+                        // 只更新剩余数量
+                        TradeItem cached = clientCache.get(UUID.fromString(key));
+                        long version = op.getLong("version");
+                        if (cached != null && version > cached.getVersion()) {
+                            cached.setQuantity(op.getInt("count"));
+                            cached.setVersion(version);
+                        }
+                        break;
+                }
+            } catch (Exception e) {
+                TradeMod.getLogger().warn("无法应用市场增量: {} - {}", key, e.getMessage());
+            }
+        }
+        
+        clientMarketVersion = seq;
+        TradeMod.getLogger().debug("已应用市场增量，版本 {}，共 {} 条操作", seq, ops.size());
+        
+        notifyBuyScreenRefresh();
+        notifyItemManagementScreenRefresh();
+    }
+    
+    /**
+     * 写入客户端缓存
+     */
+    private void putClientItem(TradeItem item) {
+        clientCache.put(item.getId(), item);
+    }
+    
     /**
      * 通知BuyScreen刷新显示
      */
@@ -386,222 +508,105 @@ public class ItemListingManager {
             return playerItems;
         }
         
-        // 在服务端环境下，从活跃列表获取
-        Set<UUID> playerItems = playerListings.get(playerId);
-        if (playerItems == null) {
-            return new ArrayList<>();
-        }
-        
-        return playerItems.stream()
-                .map(activeListings::get)
-                .filter(Objects::nonNull)
-                .filter(TradeItem::isActive)
-                .collect(Collectors.toList());
+        // 在服务端环境下，从订单簿的卖家索引获取
+        return activeCopies(orderBook.getBySeller(playerId));
     }
     
     /**
-     * 检查是否在客户端环境
+     * 检查是否在客户端环境；按物理端判断，不在专用服务器上加载客户端类
      */
     private boolean isClientSide() {
-        try {
-            net.minecraft.client.Minecraft.getInstance();
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return net.minecraftforge.fml.loading.FMLEnvironment.dist.isClient();
     }
     
     /**
-     * 搜索物品
+     * 搜索物品（服务端），使用订单簿的全文索引，结果按相关度排序；客户端界面在自己显示的物品中搜索
      */
     public List<TradeItem> searchItems(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllActiveListings();
         }
         
-        String lowerKeyword = keyword.toLowerCase();
-        return activeListings.values().stream()
-                .filter(TradeItem::isActive)
-                .filter(item -> item.getDisplayName().toLowerCase().contains(lowerKeyword) ||
-                               item.getSellerName().toLowerCase().contains(lowerKeyword))
-                .collect(Collectors.toList());
+        return activeCopies(orderBook.search(keyword));
     }
     
     /**
      * 按价格范围搜索
      */
     public List<TradeItem> searchByPriceRange(int minPrice, int maxPrice) {
-        return activeListings.values().stream()
-                .filter(TradeItem::isActive)
-                .filter(item -> item.getPrice() >= minPrice && item.getPrice() <= maxPrice)
-                .collect(Collectors.toList());
+        return activeCopies(orderBook.getByPriceRange(minPrice, maxPrice));
     }
-    
+
     /**
-     * 更新物品价格（带权限验证）
+     * 按价格范围搜索指定物品类型，按单价升序
      */
-    public boolean updateItemPrice(UUID itemId, int newPrice, UUID playerId) {
-        TradeItem item = activeListings.get(itemId);
-        if (item != null && item.isActive() && item.getSellerId().equals(playerId)) {
-            item.setPrice(newPrice);
-            // 保存到数据管理器
-            TradeDataManager.getInstance().saveTradeItem(item);
-            // 同步数据到DataService
-            com.tradesystem.mod.data.DataService.getInstance().addMarketItem(itemId.toString(), item.toNBT());
-            
-            // 触发数据同步到所有客户端
-            com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToAllClients();
-            return true;
-        }
-        return false;
+    public List<TradeItem> searchByPriceRange(ItemStack itemStack, int minPrice, int maxPrice) {
+        return activeCopies(orderBook.getByPriceRange(OrderBook.itemKey(itemStack), minPrice, maxPrice));
     }
-    
+
     /**
-     * 更新物品价格（兼容旧版本，无权限验证）
+     * 获取指定物品类型单价最低的若干个上架物品
      */
-    public boolean updateItemPrice(UUID itemId, int newPrice) {
-        TradeItem item = activeListings.get(itemId);
-        if (item != null && item.isActive()) {
-            item.setPrice(newPrice);
-            // 保存到数据管理器
-            TradeDataManager.getInstance().saveTradeItem(item);
-            // 同步数据到DataService
-            com.tradesystem.mod.data.DataService.getInstance().addMarketItem(itemId.toString(), item.toNBT());
-            return true;
-        }
-        return false;
+    public List<TradeItem> getCheapestListings(ItemStack itemStack, int limit) {
+        return activeCopies(orderBook.getCheapest(OrderBook.itemKey(itemStack), limit));
     }
-    
+
     /**
-     * 检查玩家是否可以上架更多物品
+     * 获取指定物品类型当前的最低单价上架物品，无上架时返回null
      */
-    private boolean canPlayerListMore(UUID playerId) {
-        Set<UUID> playerItems = playerListings.get(playerId);
-        int currentCount = playerItems != null ? playerItems.size() : 0;
-        return currentCount < TradeConfig.getMaxListingsPerPlayer();
+    public TradeItem getBestAsk(ItemStack itemStack) {
+        TradeItem item = orderBook.getBestAsk(OrderBook.itemKey(itemStack));
+        return item != null ? item.copy() : null;
     }
-    
+
     /**
-     * 检查物品是否在黑名单中
+     * 更新物品价格（带权限验证）
      */
-    private boolean isItemBlacklisted(ItemStack itemStack) {
-        String itemName = itemStack.getItem().toString();
-        return TradeConfig.getBlacklistedItems().contains(itemName);
+    public CompletableFuture<MarketEngine.Result> updateItemPrice(UUID itemId, int newPrice, UUID playerId) {
+        return MarketEngine.getInstance().updatePrice(playerId, itemId, newPrice);
     }
     
     /**
-     * 从玩家背包中移除物品
+     * 更新物品价格（兼容旧版本，无权限验证）
      */
-    private boolean removeItemFromInventory(ServerPlayer player, ItemStack itemStack) {
-        // 检查玩家是否有足够的物品
-        if (!hasEnoughItems(player, itemStack)) {
-            return false;
-        }
-        
-        // 移除物品
-        int remainingCount = itemStack.getCount();
-        for (int i = 0; i < player.getInventory().getContainerSize() && remainingCount > 0; i++) {
-            ItemStack slotStack = player.getInventory().getItem(i);
-            if (ItemStack.isSameItemSameTags(slotStack, itemStack)) {
-                int removeCount = Math.min(remainingCount, slotStack.getCount());
-                slotStack.shrink(removeCount);
-                remainingCount -= removeCount;
-            }
-        }
-        
-        return remainingCount == 0;
+    public CompletableFuture<MarketEngine.Result> updateItemPrice(UUID itemId, int newPrice) {
+        return MarketEngine.getInstance().updatePrice(null, itemId, newPrice);
     }
     
     /**
-     * 检查玩家是否有足够的物品
+     * 从上架物品仓库加载数据，必须在市场引擎启动之前调用
+     * 旧版世界存档中的上架物品只取出一次，仓库为空时导入，之后只使用仓库。
+     * 订单簿放入的是副本：引擎在写线程上原地修改订单簿中的物品，仓库在后台序列化自己持有的对象，两者不能共用实例
      */
-    private boolean hasEnoughItems(ServerPlayer player, ItemStack required) {
-        int totalCount = 0;
-        for (int i = 0; i < player.getInventory().getContainerSize(); i++) {
-            ItemStack stack = player.getInventory().getItem(i);
-            if (ItemStack.isSameItemSameTags(stack, required)) {
-                totalCount += stack.getCount();
-                if (totalCount >= required.getCount()) {
-                    return true;
-                }
-            }
+    public void loadData() {
+        orderBook.clear();
+        com.tradesystem.mod.data.TradeRepository<TradeItem> repository =
+                com.tradesystem.mod.data.JsonDataManager.getInstance().getTradeItems();
+        List<TradeItem> legacyItems = TradeDataManager.getInstance().takeLegacyTradeItems();
+        if (repository.size() == 0 && !legacyItems.isEmpty()) {
+            repository.saveAll(legacyItems);
+            TradeMod.getLogger().info("从旧版世界存档导入了 {} 个交易物品", legacyItems.size());
         }
-        return false;
-    }
-    
-    /**
-     * 给玩家物品
-     */
-    private boolean giveItemToPlayer(ServerPlayer player, ItemStack itemStack) {
-        return player.getInventory().add(itemStack);
-    }
-    
-    /**
-     * 清理过期物品
-     */
-    public void cleanupExpiredItems() {
-        long maxAge = TradeConfig.ITEM_EXPIRY_TIME.get() * 24 * 60 * 60 * 1000L; // 转换为毫秒
-        
-        List<UUID> expiredItems = activeListings.values().stream()
-                .filter(item -> item.isExpired(maxAge))
-                .map(TradeItem::getId)
-                .collect(Collectors.toList());
         
-        for (UUID itemId : expiredItems) {
-            TradeItem item = activeListings.remove(itemId);
-            if (item != null) {
-                // 从玩家列表中移除
-                Set<UUID> playerItems = playerListings.get(item.getSellerId());
-                if (playerItems != null) {
-                    playerItems.remove(itemId);
-                }
-                
-                // 从数据管理器中删除
-                com.tradesystem.mod.data.JsonDataManager.getInstance().removeTradeItem(itemId);
-                TradeDataManager.getInstance().removeTradeItem(itemId);
-                
-                TradeMod.getLogger().info("清理过期物品: {} (卖家: {})",
-                        item.getDisplayName(), item.getSellerName());
-            }
-        }
-    }
-    
-    /**
-     * 加载数据
-     */
-    public void loadData() {
-        // 优先从JSON数据管理器加载
-        Map<UUID, TradeItem> jsonItems = com.tradesystem.mod.data.JsonDataManager.getInstance().getAllTradeItems();
-        if (!jsonItems.isEmpty()) {
-            for (TradeItem item : jsonItems.values()) {
-                if (item.isActive()) {
-                    activeListings.put(item.getId(), item);
-                    playerListings.computeIfAbsent(item.getSellerId(), k -> new HashSet<>()).add(item.getId());
-                }
-            }
-            TradeMod.getLogger().info("从JSON加载了 {} 个活跃的交易物品", activeListings.size());
-        } else {
-            // 回退到原有的数据管理器
-            List<TradeItem> items = TradeDataManager.getInstance().getAllTradeItems();
-            for (TradeItem item : items) {
-                if (item.isActive()) {
-                    activeListings.put(item.getId(), item);
-                    playerListings.computeIfAbsent(item.getSellerId(), k -> new HashSet<>()).add(item.getId());
-                }
+        for (TradeItem item : repository.getAll()) {
+            if (item.isActive()) {
+                orderBook.add(item.copy());
             }
-            TradeMod.getLogger().info("从传统数据源加载了 {} 个活跃的交易物品", activeListings.size());
         }
+        com.tradesystem.mod.data.DataService.getInstance().loadMarketItems(orderBook.values());
+        TradeMod.getLogger().info("加载了 {} 个活跃的交易物品", orderBook.size());
     }
     
     /**
      * 保存数据
+     * 每次市场事件都已写入仓库，这里只把订单簿中物品的副本整体交给仓库一次，必须在数据管理器关闭之前调用
      */
     public void saveData() {
-        // 同时保存到JSON和传统数据管理器
-        for (TradeItem item : activeListings.values()) {
-            com.tradesystem.mod.data.JsonDataManager.getInstance().saveTradeItem(item);
-            TradeDataManager.getInstance().saveTradeItem(item);
+        List<TradeItem> snapshot = new ArrayList<>(orderBook.size());
+        for (TradeItem item : orderBook.values()) {
+            snapshot.add(item.copy());
         }
-        TradeMod.getLogger().info("保存了 {} 个交易物品到JSON和传统数据源", activeListings.size());
+        com.tradesystem.mod.data.JsonDataManager.getInstance().getTradeItems().saveAll(snapshot);
+        TradeMod.getLogger().info("保存了 {} 个交易物品", orderBook.size());
     }
 }
\ No newline at end of file
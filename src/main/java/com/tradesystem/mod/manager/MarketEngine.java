@@ -0,0 +1,1498 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.Auction;
+import com.tradesystem.mod.data.BuyOrder;
+import com.tradesystem.mod.data.CurrencyLedger;
+import com.tradesystem.mod.data.ItemKey;
+import com.tradesystem.mod.data.OfflineMailbox;
+import com.tradesystem.mod.data.TradeItem;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 市场引擎
+ * 服务器运行期间订单簿只由引擎的写线程修改：上架、购买、下架、改价都作为命令放入有界队列，
+ * 按提交顺序逐条执行，同一个上架物品不会被两个请求同时处理，结果只取决于命令的先后顺序。
+ * 按物品类型购买时按价格-时间优先依次成交
+ *
+ * 求购订单（限价买单）同样由引擎维护：挂单时先冻结 单价×数量 的金币，与已有的上架物品成交后
+ * 剩余部分挂入求购订单簿；新上架的物品先与最优买单成交。成交价取先挂出的一方的价格，
+ * 货款从冻结的金币中支付，撤单时退回剩余的冻结金币
+ *
+ * 拍卖的出价、结束也是命令：每次出价冻结出价金额并退回上一位最高出价者，
+ * 结束时最高出价支付给卖家、物品交给买家，无人出价则退还卖家。结束时间由 MarketScheduler 的时间轮触发
+ *
+ * 引擎线程只修改订单簿和账本；物品发放、事件通知和结果回调都转回服务器主线程执行，
+ * 背包、存档和网络同步仍然只在主线程访问
+ */
+public class MarketEngine {
+    private static MarketEngine instance;
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+    private static final long DELIVERY_RETRY_MS = 5000;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // 等待在主线程执行的任务（物品发放、事件、结果回调），按加入顺序执行
+    private final Queue<Runnable> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Executor serverExecutor = this::runOnServer;
+
+    // 既无法交给玩家也无法写入交易邮箱的金币和物品，保留在内存中由主线程定期重试
+    private final Queue<Undelivered> undelivered = new ConcurrentLinkedQueue<>();
+    private long nextDeliveryRetry;
+
+    private volatile BlockingQueue<Command> queue;
+    private volatile Thread writer;
+    private volatile MinecraftServer server;
+    private volatile boolean running;
+
+    // 只由写线程修改
+    private long sequence;
+
+    // 统计
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private volatile long maxLatencyNanos;
+    private volatile int peakDepth;
+
+    /**
+     * 命令结果状态
+     */
+    public enum Status {
+        SUCCESS,
+        NOT_FOUND,
+        NOT_OWNER,
+        OWN_LISTING,
+        INVALID,
+        INSUFFICIENT_FUNDS,
+        LIMIT_EXCEEDED,
+        LISTING_LIMIT,
+        ORDER_LIMIT,
+        BLACKLISTED,
+        NOT_DUE,
+        QUEUE_FULL,
+        STOPPED,
+        ERROR
+    }
+
+    /**
+     * 市场事件类型
+     */
+    public enum EventType {
+        LISTED,
+        FILLED,
+        UNLISTED,
+        EXPIRED,
+        PRICE_CHANGED,
+        ORDER_PLACED,
+        ORDER_FILLED,
+        ORDER_CANCELLED,
+        AUCTION_STARTED,
+        AUCTION_BID,
+        AUCTION_CLOSED
+    }
+
+    /**
+     * 市场事件监听器，在服务器主线程按事件序号顺序调用
+     */
+    public interface Listener {
+        void onMarketEvent(Event event);
+
+        /**
+         * 同一条命令产生的一组事件（例如批量购买），默认逐个处理
+         */
+        default void onMarketEvents(List<Event> events) {
+            for (Event event : events) {
+                onMarketEvent(event);
+            }
+        }
+    }
+
+    private MarketEngine() {}
+
+    public static MarketEngine getInstance() {
+        if (instance == null) {
+            instance = new MarketEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * 启动写线程
+     */
+    public synchronized void start(MinecraftServer server) {
+        if (running) {
+            return;
+        }
+        this.server = server;
+        this.drainScheduled.set(false);
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, TradeConfig.marketQueueCapacity));
+        this.running = true;
+
+        Thread thread = new Thread(this::run, "TradeSystem-Market");
+        thread.setDaemon(true);
+        this.writer = thread;
+        thread.start();
+
+        TradeMod.getLogger().info("市场引擎已启动，命令队列容量 {}", queue.remainingCapacity());
+    }
+
+    /**
+     * 停止接收新命令，执行完队列中剩余的命令，再在当前线程（主线程）执行所有待处理的发放和事件
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        // 写线程会执行完队列中的所有命令后退出；命令执行到一半时不能放弃等待，
+        // 否则下面把剩余命令判为失败时写线程可能仍在执行它们
+        Thread thread = writer;
+        if (thread != null) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join(SHUTDOWN_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                }
+                if (thread.isAlive()) {
+                    TradeMod.getLogger().warn("市场引擎写线程未能在 {} 毫秒内结束，队列中还有 {} 条命令，继续等待",
+                            SHUTDOWN_TIMEOUT_MS, queue.size());
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // 写线程已经结束，剩下的只有停止前最后一刻提交、没有被写线程取走的命令
+        Command leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.fail(this, Status.STOPPED);
+        }
+
+        drainOutbox();
+
+        nextDeliveryRetry = 0;
+        retryUndelivered();
+        Undelivered lost;
+        while ((lost = undelivered.poll()) != null) {
+            TradeMod.getLogger().error("关闭时仍无法投递给玩家 {} 的{}（来源 {}）: {}",
+                    lost.playerId, lost.describe(), lost.source, lost.itemStacks);
+        }
+
+        server = null;
+        writer = null;
+        listeners.clear();
+
+        TradeMod.getLogger().info("市场引擎已关闭: {}", getStats());
+    }
+
+    /**
+     * 注册事件监听器
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 在服务器主线程执行结果回调的执行器，例如 engine.buy(...).thenAcceptAsync(..., engine.serverExecutor())
+     * 回调一定在同一命令产生的物品发放和事件之后执行
+     */
+    public Executor serverExecutor() {
+        return serverExecutor;
+    }
+
+    /**
+     * 上架物品，物品必须已经从卖家背包中取出；失败时物品会退还给卖家（背包或交易邮箱）
+     */
+    public CompletableFuture<Result> list(UUID sellerId, String sellerName, ItemStack itemStack, int price) {
+        return submit(new ListCommand(sellerId, sellerName, itemStack.copy(), price));
+    }
+
+    /**
+     * 批量上架，全部上架或全部不上架：数量上限和黑名单对整批检查，通过后在同一条命令内加入订单簿，
+     * 结果只产生一批事件。物品必须已经从卖家背包中取出；失败时全部退还给卖家（背包或交易邮箱）
+     */
+    public CompletableFuture<Result> listBatch(UUID sellerId, String sellerName, List<ItemStack> itemStacks, int price) {
+        List<ItemStack> copies = new ArrayList<>(itemStacks.size());
+        for (ItemStack itemStack : itemStacks) {
+            copies.add(itemStack.copy());
+        }
+        return submit(new BatchListCommand(sellerId, sellerName, copies, price));
+    }
+
+    /**
+     * 购买指定上架物品的一部分或全部
+     */
+    public CompletableFuture<Result> buy(UUID buyerId, String buyerName, UUID listingId, int quantity) {
+        return submit(new BuyCommand(buyerId, buyerName, listingId, quantity));
+    }
+
+    /**
+     * 按物品类型购买，按价格-时间优先从单价不超过 maxPrice 的上架物品中依次成交，
+     * 直到买满数量、没有符合条件的物品或余额不足为止
+     */
+    public CompletableFuture<Result> buyBest(UUID buyerId, String buyerName, String itemKey, int quantity, int maxPrice) {
+        return submit(new BuyBestCommand(buyerId, buyerName, itemKey, quantity, maxPrice));
+    }
+
+    /**
+     * 批量购买，全部成交或全部不成交
+     * 所有上架物品在同一条命令内检查，买家对每个卖家只结算一次，结果只产生一批事件
+     * @param quantities 上架ID -> 购买数量，同一ID只能出现一次
+     */
+    public CompletableFuture<Result> buyBatch(UUID buyerId, String buyerName, Map<UUID, Integer> quantities) {
+        return submit(new BatchBuyCommand(buyerId, buyerName, new LinkedHashMap<>(quantities)));
+    }
+
+    /**
+     * 挂出求购订单：冻结 单价×数量 的金币，先按价格-时间优先买入单价不超过 price 的同种物品，
+     * 剩余数量挂入求购订单簿，等待之后上架的物品成交
+     * @param itemStack 物品模板，按注册名和NBT匹配，数量无关
+     */
+    public CompletableFuture<Result> placeOrder(UUID buyerId, String buyerName, ItemStack itemStack, int price,
+                                                int quantity) {
+        return submit(new OrderCommand(buyerId, buyerName, itemStack.copy(), price, quantity));
+    }
+
+    /**
+     * 撤销求购订单，退回剩余的冻结金币
+     * @param requesterId 请求者，必须是买家；为null时表示系统操作，不检查所有者
+     */
+    public CompletableFuture<Result> cancelOrder(UUID requesterId, UUID orderId) {
+        return submit(new CancelOrderCommand(requesterId, orderId));
+    }
+
+    /**
+     * 开始拍卖，物品必须已经从卖家背包中取出；失败时物品会退还给卖家（背包或交易邮箱）
+     */
+    public CompletableFuture<Result> startAuction(UUID sellerId, String sellerName, ItemStack itemStack,
+                                                  int startPrice, long durationMillis) {
+        return submit(new StartAuctionCommand(sellerId, sellerName, itemStack.copy(), startPrice, durationMillis));
+    }
+
+    /**
+     * 对拍卖出价，冻结出价金额并退回上一位最高出价者的冻结金额；
+     * 在防狙击时间内出价会把结束时间顺延
+     */
+    public CompletableFuture<Result> bidAuction(UUID bidderId, String bidderName, UUID auctionId, long amount) {
+        return submit(new AuctionBidCommand(bidderId, bidderName, auctionId, amount));
+    }
+
+    /**
+     * 结束已到时间的拍卖，还没到结束时间时返回 INVALID
+     */
+    public CompletableFuture<Result> closeAuction(UUID auctionId) {
+        return submit(new CloseAuctionCommand(auctionId));
+    }
+
+    /**
+     * 卖家下架物品，物品退还给卖家（背包或交易邮箱）
+     * @param requesterId 请求者，必须是卖家；为null时表示系统操作，不检查所有者
+     */
+    public CompletableFuture<Result> unlist(UUID requesterId, UUID listingId) {
+        return submit(new CancelCommand(requesterId, listingId));
+    }
+
+    /**
+     * 批量下架已过期的上架物品，物品退还给卖家（背包或交易邮箱）
+     * 执行时按上架时间重新检查是否过期，已经卖完、下架的物品跳过；还没到期的物品（例如改价刷新了上架时间）
+     * 保留，快照放在结果的 {@link Result#getNotDue()} 中，由调用方按新的到期时间重新安排；整批只发出一组事件。
+     * 有物品下架时状态为 SUCCESS，否则有未到期物品时为 NOT_DUE，都没有时为 NOT_FOUND。
+     * 退还物品按卖家合并（离线卖家每人只写一次邮箱），和事件一起作为一个主线程任务执行
+     * @param serverCost 接收这个主线程任务的耗时（纳秒），调用方据此调整下一批的大小；整批都跳过时不调用
+     */
+    public CompletableFuture<Result> expire(Collection<UUID> listingIds, java.util.function.LongConsumer serverCost) {
+        return submit(new ExpireCommand(new ArrayList<>(listingIds), serverCost));
+    }
+
+    /**
+     * 修改价格
+     * @param requesterId 请求者，必须是卖家；为null时表示系统操作，不检查所有者
+     */
+    public CompletableFuture<Result> updatePrice(UUID requesterId, UUID listingId, int newPrice) {
+        return submit(new PriceCommand(requesterId, listingId, newPrice));
+    }
+
+    /**
+     * 是否正在运行
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 当前排队的命令数
+     */
+    public int getQueueDepth() {
+        BlockingQueue<Command> current = queue;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * 运行统计：已处理命令数、被拒绝数、队列深度、平均和最大处理延迟（从提交到完成）
+     */
+    public String getStats() {
+        long count = processed.sum();
+        long avgMicros = count > 0 ? totalLatencyNanos.sum() / count / 1000 : 0;
+        BlockingQueue<Command> current = queue;
+        int capacity = current != null ? current.size() + current.remainingCapacity() : 0;
+        return String.format("processed=%d rejected=%d queue=%d/%d peak=%d avg=%dus max=%dus",
+                count, rejected.sum(), getQueueDepth(), capacity, peakDepth, avgMicros, maxLatencyNanos / 1000);
+    }
+
+    private CompletableFuture<Result> submit(Command command) {
+        BlockingQueue<Command> current = queue;
+        if (!running || current == null) {
+            command.fail(this, Status.STOPPED);
+            return command.future;
+        }
+        if (!current.offer(command)) {
+            rejected.increment();
+            command.fail(this, Status.QUEUE_FULL);
+            return command.future;
+        }
+
+        int depth = current.size();
+        if (depth > peakDepth) {
+            peakDepth = depth;
+        }
+        return command.future;
+    }
+
+    /**
+     * 写线程主循环，停止后继续执行完已排队的命令
+     */
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            Command command;
+            try {
+                command = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (command != null) {
+                execute(command);
+            }
+        }
+    }
+
+    private void execute(Command command) {
+        long seq = ++sequence;
+        Result result;
+        try {
+            result = command.execute(this, seq);
+        } catch (RuntimeException e) {
+            TradeMod.getLogger().error("执行市场命令 {} 时出错", command.getClass().getSimpleName(), e);
+            command.fail(this, Status.ERROR);
+            result = null;
+        }
+        if (result != null) {
+            command.future.complete(result);
+        }
+
+        long latency = System.nanoTime() - command.submitTime;
+        processed.increment();
+        totalLatencyNanos.add(latency);
+        if (latency > maxLatencyNanos) {
+            maxLatencyNanos = latency;
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 主线程任务
+    // ---------------------------------------------------------------
+
+    private void runOnServer(Runnable task) {
+        outbox.add(task);
+        MinecraftServer current = server;
+        if (current == null) {
+            drainOutbox();
+        } else if (!running || !current.isRunning()) {
+            // 服务器正在关闭，主线程可能不再执行新任务，留给 shutdown() 在主线程统一执行
+        } else if (drainScheduled.compareAndSet(false, true)) {
+            current.execute(() -> {
+                drainScheduled.set(false);
+                drainOutbox();
+            });
+        }
+    }
+
+    private void drainOutbox() {
+        Runnable task;
+        while ((task = outbox.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                TradeMod.getLogger().error("执行市场任务时出错", e);
+            }
+        }
+    }
+
+    private void publish(Event event) {
+        publish(Collections.singletonList(event));
+    }
+
+    private void publish(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        runOnServer(() -> dispatch(events));
+    }
+
+    /**
+     * 把一组事件交给所有监听器，只在主线程调用
+     */
+    private void dispatch(List<Event> events) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onMarketEvents(events);
+            } catch (RuntimeException e) {
+                TradeMod.getLogger().error("处理市场事件 {} 时出错", events.get(0).getType(), e);
+            }
+        }
+    }
+
+    /**
+     * 把物品交给玩家：在线时放入背包，放不下或离线时放入交易邮箱
+     */
+    private void deliver(UUID playerId, ItemStack itemStack, String source) {
+        runOnServer(() -> deliverNow(playerId, Collections.singletonList(itemStack), source));
+    }
+
+    /**
+     * 把多件物品交给同一个玩家，放不下或离线时一次放入交易邮箱；只在主线程调用
+     */
+    private void deliverNow(UUID playerId, List<ItemStack> itemStacks, String source) {
+        deliverOrHold(new Undelivered(playerId, 0, itemStacks, source));
+    }
+
+    /**
+     * 把冻结或成交的金币交给玩家，余额达到上限时放入交易邮箱
+     */
+    private void payOut(UUID playerId, long amount, String source) {
+        if (amount <= 0) {
+            return;
+        }
+        if (!CurrencyLedger.getInstance().credit(playerId, amount)) {
+            runOnServer(() -> deliverOrHold(new Undelivered(playerId, amount, Collections.emptyList(), source)));
+        }
+    }
+
+    /**
+     * 重试之前无法投递的金币和物品，由主线程每个tick调用，实际最多每 DELIVERY_RETRY_MS 尝试一次
+     */
+    public void retryUndelivered() {
+        long now = System.currentTimeMillis();
+        if (undelivered.isEmpty() || now < nextDeliveryRetry) {
+            return;
+        }
+        nextDeliveryRetry = now + DELIVERY_RETRY_MS;
+
+        for (int i = undelivered.size(); i > 0; i--) {
+            Undelivered parcel = undelivered.poll();
+            if (parcel == null) {
+                break;
+            }
+            deliverOrHold(parcel);
+        }
+    }
+
+    /**
+     * 交付金币或物品；交易邮箱写入失败时留在内存中等待重试，不会丢弃
+     */
+    private void deliverOrHold(Undelivered parcel) {
+        OfflineMailbox mailbox = OfflineMailbox.getInstance();
+        try {
+            if (parcel.amount > 0) {
+                if (!CurrencyLedger.getInstance().credit(parcel.playerId, parcel.amount)) {
+                    mailbox.depositCurrency(parcel.playerId, parcel.amount, parcel.source);
+                }
+                return;
+            }
+
+            MinecraftServer current = server;
+            ServerPlayer player = current != null ? current.getPlayerList().getPlayer(parcel.playerId) : null;
+            if (player != null) {
+                mailbox.giveOrDepositAll(player, parcel.itemStacks, parcel.source);
+            } else {
+                mailbox.depositItems(parcel.playerId, parcel.itemStacks, parcel.source);
+            }
+        } catch (IOException e) {
+            TradeMod.getLogger().error("无法把{}投递给玩家 {}，保留在内存中稍后重试", parcel.describe(), parcel.playerId, e);
+            undelivered.add(parcel);
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 命令执行（只在写线程调用）
+    // ---------------------------------------------------------------
+
+    private OrderBook book() {
+        return ItemListingManager.getInstance().getOrderBook();
+    }
+
+    private BidBook bids() {
+        return BuyOrderManager.getInstance().getBidBook();
+    }
+
+    private AuctionBook auctions() {
+        return AuctionManager.getInstance().getAuctionBook();
+    }
+
+    /**
+     * 与一个上架物品成交 quantity 个，成功时原地扣减剩余数量，卖完则移出订单簿
+     * 只扣买家的款；卖家的货款通过 payOut 入账，余额达到上限时进入交易邮箱，不会让物品无法被购买
+     */
+    private Status fill(long seq, TradeItem listing, UUID buyerId, String buyerName, int quantity, List<Fill> fills) {
+        long total = (long) listing.getPrice() * quantity;
+        long tax = taxFor(total);
+
+        Status status = toStatus(CurrencyLedger.getInstance().debit(buyerId, total,
+                transactionId("fill:" + listing.getId() + ":" + listing.getVersion())));
+        if (status != Status.SUCCESS) {
+            return status;
+        }
+
+        payOut(listing.getSellerId(), total - tax, "sale");
+        publish(applyFill(seq, listing, buyerId, buyerName, quantity, listing.getPrice(), total, tax, fills));
+        return Status.SUCCESS;
+    }
+
+    /**
+     * 由上架物品ID和版本得到的交易ID，同一版本的同一个物品只会被扣款一次
+     */
+    private static UUID transactionId(String key) {
+        return UUID.nameUUIDFromBytes(key.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 货款已经结算后修改订单簿、记录成交并安排发放物品，返回对应的事件
+     */
+    private Event applyFill(long seq, TradeItem listing, UUID buyerId, String buyerName, int quantity,
+                            int unitPrice, long total, long tax, List<Fill> fills) {
+        ItemStack goods = listing.getItemStack().copy();
+        goods.setCount(quantity);
+
+        // 部分成交原地扣减数量并递增版本，ID和上架时间（时间优先级）保持不变
+        int remaining = listing.getItemStack().getCount() - quantity;
+        boolean depleted = remaining <= 0;
+        if (depleted) {
+            book().remove(listing.getId());
+        } else {
+            listing.setQuantity(remaining);
+            listing.bumpVersion();
+        }
+
+        Fill fill = new Fill(listing.getId(), listing.getSellerId(), listing.getSellerName(), buyerId, buyerName,
+                goods, unitPrice, quantity, total, tax, depleted);
+        fills.add(fill);
+
+        deliver(buyerId, goods.copy(), "purchase");
+        return new Event(EventType.FILLED, seq, snapshot(listing), fill);
+    }
+
+    /**
+     * 新上架或改价的物品按 (单价降序, 挂单时间) 与单价不低于上架价格的求购订单成交，成交价为买单价格，
+     * 货款从买家冻结的金币中支付
+     */
+    private void matchOrders(long seq, TradeItem listing, List<Fill> fills, List<Event> events) {
+        ItemKey key = ItemKey.of(listing.getItemStack());
+        for (BuyOrder order : bids().getMatching(key, listing.getPrice())) {
+            int available = listing.getItemStack().getCount();
+            if (available <= 0 || !book().contains(listing.getId())) {
+                break;
+            }
+            if (order.getBuyerId().equals(listing.getSellerId())) {
+                continue;
+            }
+
+            int take = Math.min(available, order.getQuantity());
+            long total = (long) order.getPrice() * take;
+            long tax = taxFor(total);
+            payOut(listing.getSellerId(), total - tax, "sale");
+            Event filled = applyFill(seq, listing, order.getBuyerId(), order.getBuyerName(), take, order.getPrice(),
+                    total, tax, fills);
+            events.add(filled);
+
+            order.setQuantity(order.getQuantity() - take);
+            order.bumpVersion();
+            if (order.getQuantity() <= 0) {
+                bids().remove(order.getId());
+            }
+            events.add(new Event(EventType.ORDER_FILLED, seq, null, filled.getFill(), order.copy()));
+        }
+    }
+
+    private static long taxFor(long total) {
+        return Math.min(total, (long) Math.ceil(total * TradeConfig.transactionTaxRate));
+    }
+
+    private static Status toStatus(CurrencyLedger.TransferResult transfer) {
+        switch (transfer) {
+            case SUCCESS:
+                return Status.SUCCESS;
+            case INSUFFICIENT_FUNDS:
+                return Status.INSUFFICIENT_FUNDS;
+            case LIMIT_EXCEEDED:
+                return Status.LIMIT_EXCEEDED;
+            default:
+                return Status.INVALID;
+        }
+    }
+
+    private static TradeItem snapshot(TradeItem item) {
+        TradeItem copy = new TradeItem(item.getId(), item.getSellerId(), item.getSellerName(), item.getItemStack().copy(),
+                item.getPrice(), item.getListTime(), item.isActive());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+
+    /**
+     * 黑名单中是物品注册名（如 minecraft:diamond），按注册名比较
+     */
+    static boolean isBlacklisted(ItemStack itemStack) {
+        List<? extends String> blacklist = TradeConfig.getBlacklistedItems();
+        return blacklist != null && blacklist.contains(OrderBook.itemKey(itemStack));
+    }
+
+    /**
+     * 命令基类
+     */
+    private abstract static class Command {
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+        final long submitTime = System.nanoTime();
+
+        abstract Result execute(MarketEngine engine, long seq);
+
+        /**
+         * 命令未执行或执行出错时结束命令
+         */
+        void fail(MarketEngine engine, Status status) {
+            future.complete(new Result(status, 0, null, Collections.emptyList()));
+        }
+    }
+
+    private static final class ListCommand extends Command {
+        final UUID sellerId;
+        final String sellerName;
+        final ItemStack itemStack;
+        final int price;
+        boolean accepted;
+
+        ListCommand(UUID sellerId, String sellerName, ItemStack itemStack, int price) {
+            this.sellerId = sellerId;
+            this.sellerName = sellerName;
+            this.itemStack = itemStack;
+            this.price = price;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            Status status = Status.SUCCESS;
+            if (sellerId == null || itemStack.isEmpty() || price <= 0) {
+                status = Status.INVALID;
+            } else if (engine.book().countBySeller(sellerId) >= TradeConfig.getMaxListingsPerPlayer()) {
+                status = Status.LISTING_LIMIT;
+            } else if (isBlacklisted(itemStack)) {
+                status = Status.BLACKLISTED;
+            }
+            if (status != Status.SUCCESS) {
+                engine.returnGoods(sellerId, itemStack);
+                return new Result(status, seq, null, Collections.emptyList());
+            }
+
+            TradeItem listing = new TradeItem(sellerId, sellerName, itemStack, price);
+            engine.book().add(listing);
+            accepted = true;
+
+            // 上架后立即与求购订单撮合，上架和成交作为一批事件发出
+            List<Event> events = new ArrayList<>();
+            List<Fill> fills = new ArrayList<>();
+            events.add(new Event(EventType.LISTED, seq, snapshot(listing), null));
+            engine.matchOrders(seq, listing, fills, events);
+            engine.publish(events);
+            return new Result(Status.SUCCESS, seq, snapshot(listing), fills);
+        }
+
+        @Override
+        void fail(MarketEngine engine, Status status) {
+            if (!accepted) {
+                engine.returnGoods(sellerId, itemStack);
+            }
+            super.fail(engine, status);
+        }
+    }
+
+    private static final class BatchListCommand extends Command {
+        final UUID sellerId;
+        final String sellerName;
+        final List<ItemStack> itemStacks;
+        final int price;
+        boolean accepted;
+
+        BatchListCommand(UUID sellerId, String sellerName, List<ItemStack> itemStacks, int price) {
+            this.sellerId = sellerId;
+            this.sellerName = sellerName;
+            this.itemStacks = itemStacks;
+            this.price = price;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            Status status = Status.SUCCESS;
+            if (sellerId == null || itemStacks.isEmpty() || price <= 0) {
+                status = Status.INVALID;
+            } else if (engine.book().countBySeller(sellerId) + itemStacks.size() > TradeConfig.getMaxListingsPerPlayer()) {
+                status = Status.LISTING_LIMIT;
+            } else {
+                for (ItemStack itemStack : itemStacks) {
+                    if (itemStack.isEmpty()) {
+                        status = Status.INVALID;
+                        break;
+                    }
+                    if (isBlacklisted(itemStack)) {
+                        status = Status.BLACKLISTED;
+                        break;
+                    }
+                }
+            }
+            if (status != Status.SUCCESS) {
+                for (ItemStack itemStack : itemStacks) {
+                    engine.returnGoods(sellerId, itemStack);
+                }
+                return new Result(status, seq, null, Collections.emptyList());
+            }
+
+            accepted = true;
+            List<Event> events = new ArrayList<>();
+            List<Fill> fills = new ArrayList<>();
+            for (ItemStack itemStack : itemStacks) {
+                TradeItem listing = new TradeItem(sellerId, sellerName, itemStack, price);
+                engine.book().add(listing);
+                events.add(new Event(EventType.LISTED, seq, snapshot(listing), null));
+                engine.matchOrders(seq, listing, fills, events);
+            }
+            engine.publish(events);
+            return new Result(Status.SUCCESS, seq, null, fills);
+        }
+
+        @Override
+        void fail(MarketEngine engine, Status status) {
+            if (!accepted) {
+                for (ItemStack itemStack : itemStacks) {
+                    engine.returnGoods(sellerId, itemStack);
+                }
+            }
+            super.fail(engine, status);
+        }
+    }
+
+    private void returnGoods(UUID sellerId, ItemStack itemStack) {
+        if (sellerId != null && !itemStack.isEmpty()) {
+            deliver(sellerId, itemStack.copy(), "list");
+        }
+    }
+
+    private static final class BuyCommand extends Command {
+        final UUID buyerId;
+        final String buyerName;
+        final UUID listingId;
+        final int quantity;
+
+        BuyCommand(UUID buyerId, String buyerName, UUID listingId, int quantity) {
+            this.buyerId = buyerId;
+            this.buyerName = buyerName;
+            this.listingId = listingId;
+            this.quantity = quantity;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            TradeItem listing = engine.book().get(listingId);
+            if (listing == null || !listing.isActive()) {
+                return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+            }
+            if (listing.getSellerId().equals(buyerId)) {
+                return new Result(Status.OWN_LISTING, seq, snapshot(listing), Collections.emptyList());
+            }
+            if (quantity <= 0 || quantity > listing.getItemStack().getCount()) {
+                return new Result(Status.INVALID, seq, snapshot(listing), Collections.emptyList());
+            }
+
+            List<Fill> fills = new ArrayList<>(1);
+            Status status = engine.fill(seq, listing, buyerId, buyerName, quantity, fills);
+            return new Result(status, seq, snapshot(listing), fills);
+        }
+    }
+
+    private static final class BuyBestCommand extends Command {
+        final UUID buyerId;
+        final String buyerName;
+        final String itemKey;
+        final int quantity;
+        final int maxPrice;
+
+        BuyBestCommand(UUID buyerId, String buyerName, String itemKey, int quantity, int maxPrice) {
+            this.buyerId = buyerId;
+            this.buyerName = buyerName;
+            this.itemKey = itemKey;
+            this.quantity = quantity;
+            this.maxPrice = maxPrice;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            if (quantity <= 0 || maxPrice <= 0) {
+                return new Result(Status.INVALID, seq, null, Collections.emptyList());
+            }
+
+            List<Fill> fills = new ArrayList<>();
+            Status last = Status.NOT_FOUND;
+            int wanted = quantity;
+            // 订单簿只由本线程修改，按价格-时间顺序取出的列表在成交过程中仍然有效
+            for (TradeItem listing : engine.book().getByPriceRange(itemKey, 1, maxPrice)) {
+                if (wanted <= 0) {
+                    break;
+                }
+                if (!listing.isActive() || listing.getSellerId().equals(buyerId)) {
+                    continue;
+                }
+                int take = Math.min(wanted, listing.getItemStack().getCount());
+                last = engine.fill(seq, listing, buyerId, buyerName, take, fills);
+                if (last == Status.INSUFFICIENT_FUNDS) {
+                    // 单价升序，后面的物品同样付不起这个数量，但可能买得起更少的数量，这里不再拆分
+                    break;
+                }
+                if (last == Status.SUCCESS) {
+                    wanted -= take;
+                }
+            }
+
+            Status status = fills.isEmpty() ? last : Status.SUCCESS;
+            return new Result(status, seq, null, fills);
+        }
+    }
+
+    private static final class BatchBuyCommand extends Command {
+        final UUID buyerId;
+        final String buyerName;
+        final Map<UUID, Integer> quantities;
+
+        BatchBuyCommand(UUID buyerId, String buyerName, Map<UUID, Integer> quantities) {
+            this.buyerId = buyerId;
+            this.buyerName = buyerName;
+            this.quantities = quantities;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            if (buyerId == null || quantities.isEmpty()) {
+                return new Result(Status.INVALID, seq, null, Collections.emptyList());
+            }
+
+            // 1. 检查所有物品，任何一个不可买都不做任何修改
+            List<TradeItem> listings = new ArrayList<>(quantities.size());
+            for (Map.Entry<UUID, Integer> line : quantities.entrySet()) {
+                TradeItem listing = engine.book().get(line.getKey());
+                if (listing == null || !listing.isActive()) {
+                    return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+                }
+                if (listing.getSellerId().equals(buyerId)) {
+                    return new Result(Status.OWN_LISTING, seq, snapshot(listing), Collections.emptyList());
+                }
+                int quantity = line.getValue() != null ? line.getValue() : 0;
+                if (quantity <= 0 || quantity > listing.getItemStack().getCount()) {
+                    return new Result(Status.INVALID, seq, snapshot(listing), Collections.emptyList());
+                }
+                listings.add(listing);
+            }
+
+            // 2. 按卖家汇总货款，买家一次付清
+            long[] totals = new long[listings.size()];
+            long[] taxes = new long[listings.size()];
+            Map<UUID, Long> credits = new LinkedHashMap<>();
+            long total = 0;
+            StringBuilder key = new StringBuilder("batch:");
+            for (int i = 0; i < listings.size(); i++) {
+                TradeItem listing = listings.get(i);
+                totals[i] = (long) listing.getPrice() * quantities.get(listing.getId());
+                taxes[i] = taxFor(totals[i]);
+                total += totals[i];
+                credits.merge(listing.getSellerId(), totals[i] - taxes[i], Long::sum);
+                key.append(listing.getId()).append(':').append(listing.getVersion()).append(';');
+            }
+
+            Status status = toStatus(CurrencyLedger.getInstance().debit(buyerId, total, transactionId(key.toString())));
+            if (status != Status.SUCCESS) {
+                return new Result(status, seq, null, Collections.emptyList());
+            }
+            // 卖家余额达到上限时货款进入交易邮箱
+            for (Map.Entry<UUID, Long> credit : credits.entrySet()) {
+                engine.payOut(credit.getKey(), credit.getValue(), "sale");
+            }
+
+            // 3. 结算成功后再修改订单簿，所有成交作为一批事件发出
+            List<Fill> fills = new ArrayList<>(listings.size());
+            List<Event> events = new ArrayList<>(listings.size());
+            for (int i = 0; i < listings.size(); i++) {
+                TradeItem listing = listings.get(i);
+                events.add(engine.applyFill(seq, listing, buyerId, buyerName, quantities.get(listing.getId()),
+                        listing.getPrice(), totals[i], taxes[i], fills));
+            }
+            engine.publish(events);
+            return new Result(Status.SUCCESS, seq, null, fills);
+        }
+    }
+
+    private static final class OrderCommand extends Command {
+        final UUID buyerId;
+        final String buyerName;
+        final ItemStack itemStack;
+        final int price;
+        final int quantity;
+
+        OrderCommand(UUID buyerId, String buyerName, ItemStack itemStack, int price, int quantity) {
+            this.buyerId = buyerId;
+            this.buyerName = buyerName;
+            this.itemStack = itemStack;
+            this.price = price;
+            this.quantity = quantity;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            if (buyerId == null || itemStack.isEmpty() || price <= 0 || quantity <= 0) {
+                return new Result(Status.INVALID, seq, null, Collections.emptyList());
+            }
+            if (isBlacklisted(itemStack)) {
+                return new Result(Status.BLACKLISTED, seq, null, Collections.emptyList());
+            }
+            if (engine.bids().countByBuyer(buyerId) >= TradeConfig.maxBuyOrdersPerPlayer) {
+                return new Result(Status.ORDER_LIMIT, seq, null, Collections.emptyList());
+            }
+
+            long escrow = (long) price * quantity;
+            if (!CurrencyLedger.getInstance().debit(buyerId, escrow)) {
+                return new Result(Status.INSUFFICIENT_FUNDS, seq, null, Collections.emptyList());
+            }
+
+            // 先买入已有的上架物品，成交价为上架价格，货款从冻结的金币中支付
+            ItemKey key = ItemKey.of(itemStack);
+            List<Fill> fills = new ArrayList<>();
+            List<Event> events = new ArrayList<>();
+            int remaining = quantity;
+            long spent = 0;
+            for (TradeItem listing : engine.book().getByPriceRange(OrderBook.itemKey(itemStack), 1, price)) {
+                if (remaining <= 0) {
+                    break;
+                }
+                if (!listing.isActive() || listing.getSellerId().equals(buyerId)
+                        || !key.equals(ItemKey.of(listing.getItemStack()))) {
+                    continue;
+                }
+                int take = Math.min(remaining, listing.getItemStack().getCount());
+                long total = (long) listing.getPrice() * take;
+                long tax = taxFor(total);
+                engine.payOut(listing.getSellerId(), total - tax, "sale");
+                events.add(engine.applyFill(seq, listing, buyerId, buyerName, take, listing.getPrice(),
+                        total, tax, fills));
+                remaining -= take;
+                spent += total;
+            }
+
+            // 以低于买价成交的差额退回，剩余数量的冻结金币留在订单中
+            engine.payOut(buyerId, escrow - spent - (long) price * remaining, "buy_order");
+
+            BuyOrder snapshot = null;
+            if (remaining > 0) {
+                BuyOrder order = new BuyOrder(buyerId, buyerName, itemStack, price, remaining);
+                engine.bids().add(order);
+                snapshot = order.copy();
+                events.add(new Event(EventType.ORDER_PLACED, seq, null, null, snapshot));
+            }
+            engine.publish(events);
+            return new Result(Status.SUCCESS, seq, null, fills, snapshot);
+        }
+    }
+
+    private static final class CancelOrderCommand extends Command {
+        final UUID requesterId;
+        final UUID orderId;
+
+        CancelOrderCommand(UUID requesterId, UUID orderId) {
+            this.requesterId = requesterId;
+            this.orderId = orderId;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            BuyOrder order = engine.bids().get(orderId);
+            if (order == null) {
+                return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+            }
+            if (requesterId != null && !order.getBuyerId().equals(requesterId)) {
+                return new Result(Status.NOT_OWNER, seq, null, Collections.emptyList(), order.copy());
+            }
+
+            engine.bids().remove(orderId);
+            engine.payOut(order.getBuyerId(), order.getEscrow(), "buy_order");
+            BuyOrder snapshot = order.copy();
+            engine.publish(new Event(EventType.ORDER_CANCELLED, seq, null, null, snapshot));
+            return new Result(Status.SUCCESS, seq, null, Collections.emptyList(), snapshot);
+        }
+    }
+
+    private static final class StartAuctionCommand extends Command {
+        final UUID sellerId;
+        final String sellerName;
+        final ItemStack itemStack;
+        final int startPrice;
+        final long durationMillis;
+        boolean accepted;
+
+        StartAuctionCommand(UUID sellerId, String sellerName, ItemStack itemStack, int startPrice, long durationMillis) {
+            this.sellerId = sellerId;
+            this.sellerName = sellerName;
+            this.itemStack = itemStack;
+            this.startPrice = startPrice;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            Status status = Status.SUCCESS;
+            long maxDuration = TradeConfig.auctionMaxDuration * 60L * 60L * 1000L;
+            if (sellerId == null || itemStack.isEmpty() || startPrice <= 0
+                    || durationMillis <= 0 || durationMillis > maxDuration) {
+                status = Status.INVALID;
+            } else if (engine.book().countBySeller(sellerId) + engine.auctions().countBySeller(sellerId)
+                    >= TradeConfig.getMaxListingsPerPlayer()) {
+                status = Status.LISTING_LIMIT;
+            } else if (isBlacklisted(itemStack)) {
+                status = Status.BLACKLISTED;
+            }
+            if (status != Status.SUCCESS) {
+                engine.returnGoods(sellerId, itemStack);
+                return new Result(status, seq, null, Collections.emptyList());
+            }
+
+            Auction auction = new Auction(sellerId, sellerName, itemStack, startPrice, durationMillis);
+            engine.auctions().add(auction);
+            accepted = true;
+
+            Auction snapshot = auction.copy();
+            engine.publish(new Event(EventType.AUCTION_STARTED, seq, null, null, null, snapshot));
+            return new Result(Status.SUCCESS, seq, null, Collections.emptyList(), null, snapshot);
+        }
+
+        @Override
+        void fail(MarketEngine engine, Status status) {
+            if (!accepted) {
+                engine.returnGoods(sellerId, itemStack);
+            }
+            super.fail(engine, status);
+        }
+    }
+
+    private static final class AuctionBidCommand extends Command {
+        final UUID bidderId;
+        final String bidderName;
+        final UUID auctionId;
+        final long amount;
+
+        AuctionBidCommand(UUID bidderId, String bidderName, UUID auctionId, long amount) {
+            this.bidderId = bidderId;
+            this.bidderName = bidderName;
+            this.auctionId = auctionId;
+            this.amount = amount;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            long now = System.currentTimeMillis();
+            Auction auction = engine.auctions().get(auctionId);
+            if (bidderId == null || auction == null || auction.getEndTime() <= now) {
+                return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+            }
+            if (auction.getSellerId().equals(bidderId)) {
+                return new Result(Status.OWN_LISTING, seq, null, Collections.emptyList(), null, auction.copy());
+            }
+            if (amount < auction.getMinimumBid()) {
+                return new Result(Status.INVALID, seq, null, Collections.emptyList(), null, auction.copy());
+            }
+
+            UUID previousBidder = auction.getHighBidderId();
+            long previousBid = auction.getHighBid();
+            if (bidderId.equals(previousBidder)) {
+                // 最高出价者自己加价，只冻结差额
+                if (!CurrencyLedger.getInstance().debit(bidderId, amount - previousBid)) {
+                    return new Result(Status.INSUFFICIENT_FUNDS, seq, null, Collections.emptyList(), null, auction.copy());
+                }
+            } else {
+                if (!CurrencyLedger.getInstance().debit(bidderId, amount)) {
+                    return new Result(Status.INSUFFICIENT_FUNDS, seq, null, Collections.emptyList(), null, auction.copy());
+                }
+                if (previousBidder != null) {
+                    engine.payOut(previousBidder, previousBid, "auction");
+                }
+            }
+
+            auction.placeBid(bidderId, bidderName, amount);
+            long window = TradeConfig.auctionSnipeWindow * 1000L;
+            if (window > 0 && auction.getEndTime() - now < window) {
+                auction.setEndTime(now + window);
+            }
+
+            Auction snapshot = auction.copy();
+            engine.publish(new Event(EventType.AUCTION_BID, seq, null, null, null, snapshot));
+            return new Result(Status.SUCCESS, seq, null, Collections.emptyList(), null, snapshot);
+        }
+    }
+
+    private static final class CloseAuctionCommand extends Command {
+        final UUID auctionId;
+
+        CloseAuctionCommand(UUID auctionId) {
+            this.auctionId = auctionId;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            Auction auction = engine.auctions().get(auctionId);
+            if (auction == null) {
+                return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+            }
+            if (auction.getEndTime() > System.currentTimeMillis()) {
+                // 结束前有人出价顺延了结束时间
+                return new Result(Status.INVALID, seq, null, Collections.emptyList(), null, auction.copy());
+            }
+
+            engine.auctions().remove(auctionId);
+            ItemStack goods = auction.getItemStack();
+            List<Fill> fills = new ArrayList<>(1);
+            Fill fill = null;
+            if (auction.hasBids()) {
+                long total = auction.getHighBid();
+                long tax = taxFor(total);
+                engine.payOut(auction.getSellerId(), total - tax, "auction");
+                engine.deliver(auction.getHighBidderId(), goods.copy(), "auction");
+                int unitPrice = (int) Math.min(Integer.MAX_VALUE, total / Math.max(1, goods.getCount()));
+                fill = new Fill(auction.getId(), auction.getSellerId(), auction.getSellerName(),
+                        auction.getHighBidderId(), auction.getHighBidderName(), goods, unitPrice, goods.getCount(),
+                        total, tax, true);
+                fills.add(fill);
+            } else {
+                // 流拍，物品退还卖家
+                engine.deliver(auction.getSellerId(), goods.copy(), "auction");
+            }
+
+            Auction snapshot = auction.copy();
+            engine.publish(new Event(EventType.AUCTION_CLOSED, seq, null, fill, null, snapshot));
+            return new Result(Status.SUCCESS, seq, null, fills, null, snapshot);
+        }
+    }
+
+    private static final class CancelCommand extends Command {
+        final UUID requesterId;
+        final UUID listingId;
+
+        CancelCommand(UUID requesterId, UUID listingId) {
+            this.requesterId = requesterId;
+            this.listingId = listingId;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            TradeItem listing = engine.book().get(listingId);
+            if (listing == null) {
+                return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+            }
+            if (requesterId != null && !listing.getSellerId().equals(requesterId)) {
+                return new Result(Status.NOT_OWNER, seq, snapshot(listing), Collections.emptyList());
+            }
+
+            engine.book().remove(listingId);
+            TradeItem snapshot = snapshot(listing);
+            engine.deliver(listing.getSellerId(), listing.getItemStack().copy(), "unlist");
+            engine.publish(new Event(EventType.UNLISTED, seq, snapshot, null));
+            return new Result(Status.SUCCESS, seq, snapshot, Collections.emptyList());
+        }
+    }
+
+    private static final class ExpireCommand extends Command {
+        final List<UUID> listingIds;
+        final java.util.function.LongConsumer serverCost;
+
+        ExpireCommand(List<UUID> listingIds, java.util.function.LongConsumer serverCost) {
+            this.listingIds = listingIds;
+            this.serverCost = serverCost;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            long deadline = System.currentTimeMillis() - TradeConfig.getItemExpiryMillis();
+            List<Event> events = new ArrayList<>();
+            List<TradeItem> notDue = new ArrayList<>();
+            Map<UUID, List<ItemStack>> returned = new LinkedHashMap<>();
+            for (UUID listingId : listingIds) {
+                TradeItem listing = engine.book().get(listingId);
+                if (listing == null) {
+                    continue;
+                }
+                if (listing.getListTime() > deadline) {
+                    notDue.add(snapshot(listing));
+                    continue;
+                }
+
+                engine.book().remove(listingId);
+                returned.computeIfAbsent(listing.getSellerId(), id -> new ArrayList<>()).add(listing.getItemStack().copy());
+                events.add(new Event(EventType.EXPIRED, seq, snapshot(listing), null));
+            }
+
+            if (!events.isEmpty()) {
+                // 退还物品和事件在同一个主线程任务中执行并计时
+                engine.runOnServer(() -> {
+                    long start = System.nanoTime();
+                    returned.forEach((sellerId, stacks) -> {
+                        try {
+                            engine.deliverNow(sellerId, stacks, "expired");
+                        } catch (RuntimeException e) {
+                            TradeMod.getLogger().error("退还过期物品给 {} 时出错", sellerId, e);
+                        }
+                    });
+                    engine.dispatch(events);
+                    serverCost.accept(System.nanoTime() - start);
+                });
+            }
+            Status status = !events.isEmpty() ? Status.SUCCESS : !notDue.isEmpty() ? Status.NOT_DUE : Status.NOT_FOUND;
+            return new Result(status, seq, null, Collections.emptyList(), null, null, notDue);
+        }
+    }
+
+    private static final class PriceCommand extends Command {
+        final UUID requesterId;
+        final UUID listingId;
+        final int newPrice;
+
+        PriceCommand(UUID requesterId, UUID listingId, int newPrice) {
+            this.requesterId = requesterId;
+            this.listingId = listingId;
+            this.newPrice = newPrice;
+        }
+
+        @Override
+        Result execute(MarketEngine engine, long seq) {
+            if (newPrice <= 0) {
+                return new Result(Status.INVALID, seq, null, Collections.emptyList());
+            }
+            TradeItem listing = engine.book().get(listingId);
+            if (listing == null || !listing.isActive()) {
+                return new Result(Status.NOT_FOUND, seq, null, Collections.emptyList());
+            }
+            if (requesterId != null && !listing.getSellerId().equals(requesterId)) {
+                return new Result(Status.NOT_OWNER, seq, snapshot(listing), Collections.emptyList());
+            }
+
+            engine.book().updatePrice(listingId, newPrice);
+            listing.bumpVersion();
+
+            // 降价后可能低于最高求购价，与上架一样立即撮合，改价和成交作为一批事件发出
+            List<Event> events = new ArrayList<>();
+            List<Fill> fills = new ArrayList<>();
+            events.add(new Event(EventType.PRICE_CHANGED, seq, snapshot(listing), null));
+            engine.matchOrders(seq, listing, fills, events);
+            engine.publish(events);
+            return new Result(Status.SUCCESS, seq, snapshot(listing), fills);
+        }
+    }
+
+    /**
+     * 命令结果
+     */
+    public static final class Result {
+        private final Status status;
+        private final long sequence;
+        private final TradeItem listing;
+        private final List<Fill> fills;
+        private final BuyOrder order;
+        private final Auction auction;
+        private final List<TradeItem> notDue;
+
+        Result(Status status, long sequence, TradeItem listing, List<Fill> fills) {
+            this(status, sequence, listing, fills, null, null);
+        }
+
+        Result(Status status, long sequence, TradeItem listing, List<Fill> fills, BuyOrder order) {
+            this(status, sequence, listing, fills, order, null);
+        }
+
+        Result(Status status, long sequence, TradeItem listing, List<Fill> fills, BuyOrder order, Auction auction) {
+            this(status, sequence, listing, fills, order, auction, Collections.emptyList());
+        }
+
+        Result(Status status, long sequence, TradeItem listing, List<Fill> fills, BuyOrder order, Auction auction,
+               List<TradeItem> notDue) {
+            this.status = status;
+            this.sequence = sequence;
+            this.listing = listing;
+            this.fills = fills;
+            this.order = order;
+            this.auction = auction;
+            this.notDue = notDue;
+        }
+
+        public Status getStatus() { return status; }
+        /** 命令的执行序号，拒绝或未执行的命令为0 */
+        public long getSequence() { return sequence; }
+        /** 命令执行后的上架物品快照，可能为null */
+        public TradeItem getListing() { return listing; }
+        public List<Fill> getFills() { return fills; }
+        /** 求购订单命令执行后的订单快照；挂单时全部立即成交则为null */
+        public BuyOrder getOrder() { return order; }
+        /** 拍卖命令执行后的拍卖快照，可能为null */
+        public Auction getAuction() { return auction; }
+        /** 过期下架命令执行时还没到期的上架物品快照，其他命令为空 */
+        public List<TradeItem> getNotDue() { return notDue; }
+        public boolean isSuccess() { return status == Status.SUCCESS; }
+
+        public int getFilledQuantity() {
+            int total = 0;
+            for (Fill fill : fills) {
+                total += fill.getQuantity();
+            }
+            return total;
+        }
+
+        public long getTotalPrice() {
+            long total = 0;
+            for (Fill fill : fills) {
+                total += fill.getTotal();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * 一笔成交
+     */
+    public static final class Fill {
+        private final UUID listingId;
+        private final UUID sellerId;
+        private final String sellerName;
+        private final UUID buyerId;
+        private final String buyerName;
+        private final ItemStack itemStack;
+        private final int unitPrice;
+        private final int quantity;
+        private final long total;
+        private final long tax;
+        private final boolean depleted;
+
+        Fill(UUID listingId, UUID sellerId, String sellerName, UUID buyerId, String buyerName, ItemStack itemStack,
+             int unitPrice, int quantity, long total, long tax, boolean depleted) {
+            this.listingId = listingId;
+            this.sellerId = sellerId;
+            this.sellerName = sellerName;
+            this.buyerId = buyerId;
+            this.buyerName = buyerName;
+            this.itemStack = itemStack;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+            this.total = total;
+            this.tax = tax;
+            this.depleted = depleted;
+        }
+
+        /** 上架物品ID，拍卖成交时为拍卖ID */
+        public UUID getListingId() { return listingId; }
+        public UUID getSellerId() { return sellerId; }
+        public String getSellerName() { return sellerName; }
+        public UUID getBuyerId() { return buyerId; }
+        public String getBuyerName() { return buyerName; }
+        public ItemStack getItemStack() { return itemStack.copy(); }
+        public int getUnitPrice() { return unitPrice; }
+        public int getQuantity() { return quantity; }
+        public long getTotal() { return total; }
+        public long getTax() { return tax; }
+        /** 成交后上架物品是否已经卖完并移出订单簿 */
+        public boolean isDepleted() { return depleted; }
+    }
+
+    /**
+     * 市场事件，listing 为事件发生后的上架物品快照（下架和卖完时为移除前的最后状态），
+     * 求购订单事件（ORDER_*）的 listing 为null，order 为事件发生后的订单快照；
+     * 拍卖事件（AUCTION_*）的 listing 为null，auction 为事件发生后的拍卖快照
+     */
+    public static final class Event {
+        private final EventType type;
+        private final long sequence;
+        private final TradeItem listing;
+        private final Fill fill;
+        private final BuyOrder order;
+        private final Auction auction;
+
+        Event(EventType type, long sequence, TradeItem listing, Fill fill) {
+            this(type, sequence, listing, fill, null, null);
+        }
+
+        Event(EventType type, long sequence, TradeItem listing, Fill fill, BuyOrder order) {
+            this(type, sequence, listing, fill, order, null);
+        }
+
+        Event(EventType type, long sequence, TradeItem listing, Fill fill, BuyOrder order, Auction auction) {
+            this.type = type;
+            this.sequence = sequence;
+            this.listing = listing;
+            this.fill = fill;
+            this.order = order;
+            this.auction = auction;
+        }
+
+        public EventType getType() { return type; }
+        public long getSequence() { return sequence; }
+        public TradeItem getListing() { return listing; }
+        /** FILLED、ORDER_FILLED 和有人出价的 AUCTION_CLOSED 事件的成交信息，其他事件为null */
+        public Fill getFill() { return fill; }
+        /** 求购订单事件的订单快照，其他事件为null */
+        public BuyOrder getOrder() { return order; }
+        /** 拍卖事件的拍卖快照，其他事件为null */
+        public Auction getAuction() { return auction; }
+    }
+
+    /**
+     * 等待重试的发放：金币（amount &gt; 0）或一组物品
+     */
+    private static final class Undelivered {
+        final UUID playerId;
+        final long amount;
+        final List<ItemStack> itemStacks;
+        final String source;
+
+        Undelivered(UUID playerId, long amount, List<ItemStack> itemStacks, String source) {
+            this.playerId = playerId;
+            this.amount = amount;
+            this.itemStacks = itemStacks;
+            this.source = source;
+        }
+
+        String describe() {
+            return amount > 0 ? " " + amount + " 金币" : " " + itemStacks.size() + " 组物品";
+        }
+    }
+}
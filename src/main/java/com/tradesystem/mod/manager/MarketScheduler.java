@@ -0,0 +1,226 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.Auction;
+import com.tradesystem.mod.data.TradeItem;
+import com.tradesystem.mod.util.TimingWheel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 市场定时器
+ * 用分层时间轮跟踪拍卖结束时间和上架物品的过期时间，每个服务器tick推进一次，
+ * 只处理这一刻到期的条目，代价与到期数量成正比，不扫描全部上架物品和拍卖。
+ *
+ * 到期时间随市场事件更新：上架、开拍、出价顺延时加入或修改，卖完、下架、拍卖结束时取消。
+ * 到期后提交给市场引擎处理，引擎会再次检查状态，因此重复或过早的触发不会产生错误结果。
+ *
+ * 过期的上架物品先进入等待队列，每次取出一批交给引擎整批下架，上一批处理完之前不提交下一批。
+ * 下架的主要代价在主线程（退还物品、写离线卖家的邮箱、广播），引擎会测量这部分的耗时，
+ * 批大小按测得的每件耗时取时间预算能容纳的数量（不超过 expiry_batch_size），
+ * 停服期间积压的大量过期物品因此会分摊到之后的多个tick。
+ *
+ * 提交被拒绝（队列已满、引擎停止或出错）的条目不会丢失：拍卖按下一个刻度重新加入时间轮，过期物品放回等待队列头部
+ */
+public class MarketScheduler implements MarketEngine.Listener {
+    private static MarketScheduler instance;
+
+    // 时间轮刻度，与服务器tick一致
+    private static final long TICK_MILLIS = 50;
+
+    // 还没有测量结果时第一批的大小
+    private static final int INITIAL_EXPIRY_BATCH = 16;
+
+    private volatile TimingWheel<UUID> listingExpiries;
+    private volatile TimingWheel<UUID> auctionCloses;
+
+    // 已到期、等待下架的上架物品，只在主线程访问
+    private final Deque<UUID> pendingExpiries = new ArrayDeque<>();
+    private final AtomicBoolean expiryInFlight = new AtomicBoolean();
+
+    // 每件过期物品在主线程上的平均耗时（纳秒，指数平均），0表示还没有测量结果；只在主线程访问
+    private long expiryCostNanos;
+
+    private MarketScheduler() {}
+
+    public static MarketScheduler getInstance() {
+        if (instance == null) {
+            instance = new MarketScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * 为已加载的上架物品和拍卖建立时间轮，必须在加载数据之后、市场引擎启动之前调用
+     */
+    public void start() {
+        long now = System.currentTimeMillis();
+        TimingWheel<UUID> listings = new TimingWheel<>(TICK_MILLIS, now);
+        TimingWheel<UUID> auctions = new TimingWheel<>(TICK_MILLIS, now);
+
+        for (TradeItem item : ItemListingManager.getInstance().getOrderBook().values()) {
+            listings.schedule(item.getId(), expiryTime(item));
+        }
+        for (Auction auction : AuctionManager.getInstance().getAuctionBook().values()) {
+            auctions.schedule(auction.getId(), auction.getEndTime());
+        }
+
+        this.pendingExpiries.clear();
+        this.expiryInFlight.set(false);
+        this.expiryCostNanos = 0;
+        this.listingExpiries = listings;
+        this.auctionCloses = auctions;
+        TradeMod.getLogger().info("市场定时器已启动: {} 个上架物品, {} 个拍卖", listings.size(), auctions.size());
+    }
+
+    /**
+     * 服务器关闭时停止触发
+     */
+    public void stop() {
+        listingExpiries = null;
+        auctionCloses = null;
+        pendingExpiries.clear();
+    }
+
+    /**
+     * 每个服务器tick调用一次，把到期的条目提交给市场引擎
+     */
+    public void tick() {
+        TimingWheel<UUID> listings = listingExpiries;
+        TimingWheel<UUID> auctions = auctionCloses;
+        if (listings == null || auctions == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        MarketEngine engine = MarketEngine.getInstance();
+
+        for (UUID auctionId : auctions.advance(now)) {
+            // 回调在主线程执行，时间轮只在主线程修改
+            engine.closeAuction(auctionId).whenCompleteAsync((result, error) -> {
+                MarketEngine.Status status = error == null ? result.getStatus() : MarketEngine.Status.ERROR;
+                if (status == MarketEngine.Status.SUCCESS || status == MarketEngine.Status.NOT_FOUND) {
+                    return;
+                }
+                if (status == MarketEngine.Status.INVALID && result.getAuction() != null) {
+                    // 触发后、结束前有人出价顺延了结束时间，按新的结束时间重新加入
+                    auctions.schedule(auctionId, result.getAuction().getEndTime());
+                } else {
+                    // 没有执行（队列已满、引擎停止或出错），下一个刻度重试
+                    auctions.schedule(auctionId, System.currentTimeMillis() + TICK_MILLIS);
+                }
+            }, engine.serverExecutor());
+        }
+
+        pendingExpiries.addAll(listings.advance(now));
+        if (pendingExpiries.isEmpty() || !expiryInFlight.compareAndSet(false, true)) {
+            return;
+        }
+
+        int size = Math.min(nextExpiryBatchSize(), pendingExpiries.size());
+        List<UUID> batch = new ArrayList<>(size);
+        while (batch.size() < size) {
+            batch.add(pendingExpiries.poll());
+        }
+
+        // 物品退还和事件由引擎转回主线程执行并计时，这一批处理完之后才提交下一批
+        engine.expire(batch, cost -> recordExpiryCost(cost, batch.size()))
+                .whenCompleteAsync((result, error) -> {
+                    MarketEngine.Status status = error == null ? result.getStatus() : MarketEngine.Status.ERROR;
+                    if (status == MarketEngine.Status.SUCCESS || status == MarketEngine.Status.NOT_DUE) {
+                        // 触发后上架时间被刷新（例如改价）的物品没有下架，按新的到期时间重新加入时间轮
+                        for (TradeItem listing : result.getNotDue()) {
+                            listings.schedule(listing.getId(), expiryTime(listing));
+                        }
+                    } else if (status != MarketEngine.Status.NOT_FOUND) {
+                        requeueExpiries(batch);
+                    }
+                    expiryInFlight.set(false);
+                }, engine.serverExecutor());
+    }
+
+    /**
+     * 下一批的大小：时间预算除以每件的平均耗时，限制在 1 到 expiry_batch_size 之间
+     */
+    private int nextExpiryBatchSize() {
+        int limit = Math.max(1, TradeConfig.expiryBatchSize);
+        if (expiryCostNanos <= 0) {
+            return Math.min(limit, INITIAL_EXPIRY_BATCH);
+        }
+        long budgetNanos = TradeConfig.expiryTickBudget * 1000L;
+        return (int) Math.max(1, Math.min(limit, budgetNanos / expiryCostNanos));
+    }
+
+    /**
+     * 记录一批过期物品在主线程上的耗时，由引擎在主线程调用
+     */
+    private void recordExpiryCost(long nanos, int count) {
+        long perItem = Math.max(1, nanos / Math.max(1, count));
+        expiryCostNanos = expiryCostNanos <= 0 ? perItem : (expiryCostNanos * 3 + perItem) / 4;
+    }
+
+    /**
+     * 提交被拒绝的一批按原顺序放回等待队列头部；定时器已停止时丢弃
+     */
+    private void requeueExpiries(List<UUID> batch) {
+        if (listingExpiries == null) {
+            return;
+        }
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            pendingExpiries.addFirst(batch.get(i));
+        }
+    }
+
+    /**
+     * 等待下架的过期物品数量
+     */
+    public int getPendingExpiries() {
+        return pendingExpiries.size();
+    }
+
+    /**
+     * 市场事件：维护到期时间
+     */
+    @Override
+    public void onMarketEvent(MarketEngine.Event event) {
+        TimingWheel<UUID> listings = listingExpiries;
+        TimingWheel<UUID> auctions = auctionCloses;
+        if (listings == null || auctions == null) {
+            return;
+        }
+
+        switch (event.getType()) {
+            case LISTED:
+                listings.schedule(event.getListing().getId(), expiryTime(event.getListing()));
+                break;
+            case FILLED:
+                if (event.getFill().isDepleted()) {
+                    listings.cancel(event.getListing().getId());
+                }
+                break;
+            case UNLISTED:
+            case EXPIRED:
+                listings.cancel(event.getListing().getId());
+                break;
+            case AUCTION_STARTED:
+            case AUCTION_BID:
+                auctions.schedule(event.getAuction().getId(), event.getAuction().getEndTime());
+                break;
+            case AUCTION_CLOSED:
+                auctions.cancel(event.getAuction().getId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static long expiryTime(TradeItem item) {
+        return item.getListTime() + TradeConfig.getItemExpiryMillis();
+    }
+}
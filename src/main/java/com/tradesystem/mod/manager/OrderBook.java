@@ -0,0 +1,217 @@
+package com.tradesystem.mod.manager;
+
+import com.tradesystem.mod.data.TradeItem;
+import com.tradesystem.mod.util.SearchIndex;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 市场订单簿
+ * 以物品ID为主索引保存所有上架物品，并维护按物品类型、卖家和价格的二级索引
+ * 写操作串行执行以保证各索引一致，读操作无锁；服务器运行期间只由 MarketEngine 的写线程修改
+ */
+public class OrderBook {
+
+    // 主索引：物品ID -> 上架物品
+    private final Map<UUID, TradeItem> byId = new ConcurrentHashMap<>();
+
+    // 物品注册名 -> 上架物品ID
+    private final Map<String, Set<UUID>> byItemKey = new ConcurrentHashMap<>();
+
+    // 卖家 -> 上架物品ID
+    private final Map<UUID, Set<UUID>> bySeller = new ConcurrentHashMap<>();
+
+    // (单价, 上架时间, 上架ID) 有序索引
+    private final PriceIndex priceIndex = new PriceIndex();
+
+    // 显示名称、卖家、注册名和附魔的全文索引
+    private final SearchIndex<UUID, TradeItem> searchIndex = new SearchIndex<>();
+
+    /**
+     * 添加上架物品，已存在相同ID时先移除旧索引
+     */
+    public synchronized void add(TradeItem item) {
+        if (byId.containsKey(item.getId())) {
+            remove(item.getId());
+        }
+
+        String key = itemKey(item.getItemStack());
+        byId.put(item.getId(), item);
+        byItemKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(item.getId());
+        bySeller.computeIfAbsent(item.getSellerId(), k -> ConcurrentHashMap.newKeySet()).add(item.getId());
+        priceIndex.put(key, item.getPrice(), item.getListTime(), item.getId());
+        searchIndex.put(item.getId(), item, searchFields(item));
+    }
+
+    /**
+     * 移除上架物品
+     * @return 被移除的物品，不存在时返回null
+     */
+    public synchronized TradeItem remove(UUID itemId) {
+        TradeItem item = byId.remove(itemId);
+        if (item == null) {
+            return null;
+        }
+
+        removeFromIndex(byItemKey, itemKey(item.getItemStack()), itemId);
+        removeFromIndex(bySeller, item.getSellerId(), itemId);
+        priceIndex.remove(itemId);
+        searchIndex.remove(itemId);
+        return item;
+    }
+
+    /**
+     * 修改价格并同步价格索引
+     */
+    public synchronized boolean updatePrice(UUID itemId, int newPrice) {
+        TradeItem item = byId.get(itemId);
+        if (item == null) {
+            return false;
+        }
+
+        item.setPrice(newPrice);
+        priceIndex.put(itemKey(item.getItemStack()), newPrice, item.getListTime(), itemId);
+        return true;
+    }
+
+    /**
+     * 按ID获取上架物品
+     */
+    public TradeItem get(UUID itemId) {
+        return itemId != null ? byId.get(itemId) : null;
+    }
+
+    /**
+     * 是否包含指定ID的物品
+     */
+    public boolean contains(UUID itemId) {
+        return itemId != null && byId.containsKey(itemId);
+    }
+
+    /**
+     * 所有上架物品（只读视图）
+     */
+    public Collection<TradeItem> values() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * 上架物品总数
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * 卖家的上架数量
+     */
+    public int countBySeller(UUID sellerId) {
+        Set<UUID> ids = bySeller.get(sellerId);
+        return ids != null ? ids.size() : 0;
+    }
+
+    /**
+     * 获取卖家的所有上架物品
+     */
+    public List<TradeItem> getBySeller(UUID sellerId) {
+        return resolve(bySeller.get(sellerId));
+    }
+
+    /**
+     * 获取指定物品类型的所有上架物品
+     */
+    public List<TradeItem> getByItemKey(String itemKey) {
+        return resolve(byItemKey.get(itemKey));
+    }
+
+    /**
+     * 获取单价在 [minPrice, maxPrice] 内的上架物品，按价格升序
+     */
+    public List<TradeItem> getByPriceRange(int minPrice, int maxPrice) {
+        return resolve(priceIndex.range(minPrice, maxPrice));
+    }
+
+    /**
+     * 获取指定物品类型单价在 [minPrice, maxPrice] 内的上架物品，按价格升序，同价按上架先后
+     */
+    public List<TradeItem> getByPriceRange(String itemKey, int minPrice, int maxPrice) {
+        return resolve(priceIndex.range(itemKey, minPrice, maxPrice));
+    }
+
+    /**
+     * 获取指定物品类型价格最低的 limit 个上架物品
+     */
+    public List<TradeItem> getCheapest(String itemKey, int limit) {
+        return resolve(priceIndex.cheapest(itemKey, limit));
+    }
+
+    /**
+     * 获取指定物品类型的最优卖价物品（单价最低），无上架时返回null
+     */
+    public TradeItem getBestAsk(String itemKey) {
+        UUID bestId = priceIndex.bestAsk(itemKey);
+        return bestId != null ? byId.get(bestId) : null;
+    }
+
+    /**
+     * 按关键词搜索上架物品，按相关度排序
+     */
+    public List<TradeItem> search(String keyword) {
+        return searchIndex.search(keyword);
+    }
+
+    /**
+     * 清空订单簿
+     */
+    public synchronized void clear() {
+        byId.clear();
+        byItemKey.clear();
+        bySeller.clear();
+        priceIndex.clear();
+        searchIndex.clear();
+    }
+
+    /**
+     * 获取物品类型的索引键（物品注册名）
+     */
+    public static String itemKey(ItemStack itemStack) {
+        ResourceLocation key = ForgeRegistries.ITEMS.getKey(itemStack.getItem());
+        return key != null ? key.toString() : itemStack.getItem().toString();
+    }
+
+    /**
+     * 上架物品的搜索字段，按重要性排列
+     */
+    public static List<String> searchFields(TradeItem item) {
+        List<String> fields = new ArrayList<>();
+        fields.add(item.getDisplayName());
+        fields.add(item.getSellerName());
+        fields.addAll(SearchIndex.itemTerms(item.getItemStack()));
+        return fields;
+    }
+
+    private List<TradeItem> resolve(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<UUID>> index, K key, UUID itemId) {
+        Set<UUID> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(itemId);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
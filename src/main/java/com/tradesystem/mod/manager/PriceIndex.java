@@ -0,0 +1,171 @@
+package com.tradesystem.mod.manager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 价格索引
+ * 以 (单价, 上架时间, 上架ID) 为键的有序跳表，同时维护全市场索引和按物品类型划分的索引，
+ * 价格区间、最低价N个和最优卖价查询均为对数时间；同价的物品按上架先后排列（价格-时间优先）
+ */
+public class PriceIndex {
+
+    private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID MAX_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    // 全市场价格索引
+    private final ConcurrentSkipListSet<Entry> all = new ConcurrentSkipListSet<>();
+
+    // 物品类型 -> 该类型的价格索引
+    private final Map<String, ConcurrentSkipListSet<Entry>> byItemKey = new ConcurrentHashMap<>();
+
+    // 上架ID -> 当前索引项，移除时不依赖物品上可能已被修改的价格
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 添加或更新索引项，调用方负责串行化写操作
+     */
+    public void put(String itemKey, int price, long listTime, UUID listingId) {
+        remove(listingId);
+
+        Entry entry = new Entry(itemKey, price, listTime, listingId);
+        entries.put(listingId, entry);
+        all.add(entry);
+        byItemKey.computeIfAbsent(itemKey, k -> new ConcurrentSkipListSet<>()).add(entry);
+    }
+
+    /**
+     * 移除索引项
+     */
+    public void remove(UUID listingId) {
+        Entry entry = entries.remove(listingId);
+        if (entry == null) {
+            return;
+        }
+
+        all.remove(entry);
+        ConcurrentSkipListSet<Entry> typed = byItemKey.get(entry.itemKey);
+        if (typed != null) {
+            typed.remove(entry);
+            if (typed.isEmpty()) {
+                byItemKey.remove(entry.itemKey);
+            }
+        }
+    }
+
+    /**
+     * 全市场单价在 [minPrice, maxPrice] 内的上架ID，按价格升序
+     */
+    public List<UUID> range(int minPrice, int maxPrice) {
+        return collect(rangeOf(all, minPrice, maxPrice), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 指定物品类型单价在 [minPrice, maxPrice] 内的上架ID，按价格升序
+     */
+    public List<UUID> range(String itemKey, int minPrice, int maxPrice) {
+        ConcurrentSkipListSet<Entry> typed = byItemKey.get(itemKey);
+        if (typed == null) {
+            return new ArrayList<>();
+        }
+        return collect(rangeOf(typed, minPrice, maxPrice), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 指定物品类型价格最低的 limit 个上架ID
+     */
+    public List<UUID> cheapest(String itemKey, int limit) {
+        ConcurrentSkipListSet<Entry> typed = byItemKey.get(itemKey);
+        if (typed == null) {
+            return new ArrayList<>();
+        }
+        return collect(typed, limit);
+    }
+
+    /**
+     * 指定物品类型的最优卖价（最低单价）对应的上架ID，无上架时返回null
+     */
+    public UUID bestAsk(String itemKey) {
+        ConcurrentSkipListSet<Entry> typed = byItemKey.get(itemKey);
+        if (typed == null) {
+            return null;
+        }
+        // 并发移除时集合可能在检查后变空，因此不用 first()
+        Entry best = typed.ceiling(new Entry(itemKey, Integer.MIN_VALUE, Long.MIN_VALUE, MIN_ID));
+        return best != null ? best.listingId : null;
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        all.clear();
+        byItemKey.clear();
+        entries.clear();
+    }
+
+    private static NavigableSet<Entry> rangeOf(ConcurrentSkipListSet<Entry> set, int minPrice, int maxPrice) {
+        if (minPrice > maxPrice) {
+            return Collections.emptyNavigableSet();
+        }
+        return set.subSet(new Entry(null, minPrice, Long.MIN_VALUE, MIN_ID), true,
+                new Entry(null, maxPrice, Long.MAX_VALUE, MAX_ID), true);
+    }
+
+    private static List<UUID> collect(Set<Entry> set, int limit) {
+        List<UUID> result = new ArrayList<>();
+        for (Entry entry : set) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(entry.listingId);
+        }
+        return result;
+    }
+
+    /**
+     * 索引项，依次按单价、上架时间、上架ID排序，保证同价同时间的物品也能共存
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final String itemKey;
+        final int price;
+        final long listTime;
+        final UUID listingId;
+
+        Entry(String itemKey, int price, long listTime, UUID listingId) {
+            this.itemKey = itemKey;
+            this.price = price;
+            this.listTime = listTime;
+            this.listingId = listingId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            // 显式按有符号位比较，与 MIN_ID/MAX_ID 哨兵保持一致
+            int cmp = Integer.compare(price, other.price);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Long.compare(listTime, other.listTime);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Long.compare(listingId.getMostSignificantBits(), other.listingId.getMostSignificantBits());
+            return cmp != 0 ? cmp : Long.compare(listingId.getLeastSignificantBits(), other.listingId.getLeastSignificantBits());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry entry = (Entry) o;
+            return price == entry.price && listTime == entry.listTime && listingId.equals(entry.listingId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * price + listingId.hashCode();
+        }
+    }
+}
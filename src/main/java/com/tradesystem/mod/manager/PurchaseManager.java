@@ -1,17 +1,17 @@
 package com.tradesystem.mod.manager;
 
 import com.tradesystem.mod.TradeMod;
-import com.tradesystem.mod.capability.ModCapabilities;
 import com.tradesystem.mod.capability.PlayerCurrencyProvider;
-import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.CurrencyLedger;
 import com.tradesystem.mod.data.TradeItem;
-import com.tradesystem.mod.data.TradeDataManager;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
-import net.minecraftforge.server.ServerLifecycleHooks;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 购买管理器
@@ -30,129 +30,56 @@ public class PurchaseManager {
     }
     
     /**
-     * 购买物品
+     * 购买物品（整件购买）
+     * 由市场引擎执行，两个玩家同时购买同一物品时只有先提交的一方成交
      */
-    public boolean purchaseItem(ServerPlayer buyer, UUID itemId) {
-        try {
-            // 获取交易物品
-            TradeItem tradeItem = ItemListingManager.getInstance().getAllActiveListings().stream()
-                    .filter(item -> item.getId().equals(itemId))
-                    .findFirst()
-                    .orElse(null);
-            
-            if (tradeItem == null) {
-                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_available"));
-                return false;
-            }
-            
-            // 检查是否是自己的物品
-            if (tradeItem.getSellerId().equals(buyer.getUUID())) {
-                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.cannot_buy_own_item"));
-                return false;
-            }
-            
-            // 检查买家是否有足够的货币
-            if (!hasEnoughCurrency(buyer, tradeItem.getPrice())) {
-                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.insufficient_currency",
-                        tradeItem.getPrice()));
-                return false;
-            }
-            
-            // 检查买家背包是否有空间
-            if (!hasInventorySpace(buyer, tradeItem.getItemStack())) {
-                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.inventory_full"));
-                return false;
-            }
-            
-            // 获取卖家
-            ServerPlayer seller = ServerLifecycleHooks.getCurrentServer().getPlayerList()
-                    .getPlayer(tradeItem.getSellerId());
-            
-            // 执行交易
-            if (executeTransaction(buyer, seller, tradeItem)) {
-                // 从上架列表中移除物品 - 不返还给卖家（因为已经卖出）
-                ItemListingManager.getInstance().removeItemFromListing(itemId, tradeItem.getSellerId());
-                
-                // 记录交易历史
-                recordTransaction(buyer, tradeItem);
-                
-                // 发送成功消息
-                buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.purchase_success",
-                        tradeItem.getDisplayName(), tradeItem.getPrice()));
-                
-                if (seller != null && seller.isAlive()) {
-                    seller.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_sold",
-                            tradeItem.getDisplayName(), tradeItem.getPrice(), buyer.getName().getString()));
-                }
-                
-                TradeMod.getLogger().info("交易完成: {} 购买了 {} 的 {} (价格: {})",
-                        buyer.getName().getString(), tradeItem.getSellerName(),
-                        tradeItem.getDisplayName(), tradeItem.getPrice());
-                
-                return true;
-            }
-            
-        } catch (Exception e) {
-            TradeMod.getLogger().error("购买物品时发生错误: {}", e.getMessage());
-            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.purchase_error"));
+    public CompletableFuture<MarketEngine.Result> purchaseItem(ServerPlayer buyer, UUID itemId) {
+        TradeItem tradeItem = ItemListingManager.getInstance().getListing(itemId);
+        if (tradeItem == null) {
+            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_available"));
+            return CompletableFuture.completedFuture(null);
         }
         
-        return false;
-    }
-    
-    /**
-     * 执行交易
-     */
-    private boolean executeTransaction(ServerPlayer buyer, ServerPlayer seller, TradeItem tradeItem) {
-        try {
-            // 扣除买家货币
-            if (!deductCurrency(buyer, tradeItem.getPrice())) {
-                return false;
-            }
-            
-            // 给买家物品
-            if (!giveItemToPlayer(buyer, tradeItem.getItemStack().copy())) {
-                // 如果给物品失败，退还货币
-                addCurrency(buyer, tradeItem.getPrice());
-                return false;
-            }
-            
-            // 同步买家背包到客户端
-            buyer.inventoryMenu.broadcastChanges();
-            
-            // 计算税费
-            int tax = calculateTax(tradeItem.getPrice());
-            int sellerEarnings = tradeItem.getPrice() - tax;
-            
-            // 给卖家货币（如果在线）
-            if (seller != null && seller.isAlive()) {
-                addCurrency(seller, sellerEarnings);
-            } else {
-                // 离线玩家，保存到数据中
-                addOfflinePlayerCurrency(tradeItem.getSellerId(), sellerEarnings);
-            }
-            
-            // 系统收取税费
-            if (tax > 0) {
-                TradeDataManager.getInstance().addSystemRevenue(tax);
-                TradeMod.getLogger().info("系统收取税费: {} (交易金额: {})", tax, tradeItem.getPrice());
-            }
-            
-            return true;
-            
-        } catch (Exception e) {
-            TradeMod.getLogger().error("执行交易时发生错误: {}", e.getMessage());
-            return false;
-        }
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.buy(buyer.getUUID(), buyer.getName().getString(), itemId, tradeItem.getItemStack().getCount())
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.purchase_success",
+                                    tradeItem.getDisplayName(), result.getTotalPrice()));
+                            TradeMod.getLogger().info("交易完成: {} 购买了 {} 的 {} (价格: {})",
+                                    buyer.getName().getString(), tradeItem.getSellerName(),
+                                    tradeItem.getDisplayName(), result.getTotalPrice());
+                            break;
+                        case NOT_FOUND:
+                        case INVALID:
+                            // 已被其他玩家买走或数量已变化
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_available"));
+                            break;
+                        case OWN_LISTING:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.cannot_buy_own_item"));
+                            break;
+                        case INSUFFICIENT_FUNDS:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.insufficient_currency",
+                                    tradeItem.getPrice()));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.purchase_error"));
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
     }
     
     /**
      * 检查玩家是否有足够的货币
      */
-    private boolean hasEnoughCurrency(ServerPlayer player, int amount) {
-        return player.getCapability(ModCapabilities.PLAYER_CURRENCY).map(cap -> {
-            return cap.hasMoney(amount);
-        }).orElse(false);
+    private boolean hasEnoughCurrency(ServerPlayer player, long amount) {
+        return CurrencyLedger.getInstance().hasBalance(player.getUUID(), amount);
     }
     
     /**
@@ -179,61 +106,6 @@ public class PurchaseManager {
         return false;
     }
     
-    /**
-     * 扣除玩家货币
-     */
-    private boolean deductCurrency(ServerPlayer player, int amount) {
-        return player.getCapability(ModCapabilities.PLAYER_CURRENCY).map(cap -> {
-            return cap.removeMoney(amount);
-        }).orElse(false);
-    }
-    
-    /**
-     * 给玩家添加货币
-     */
-    private boolean addCurrency(ServerPlayer player, int amount) {
-        return player.getCapability(ModCapabilities.PLAYER_CURRENCY).map(cap -> {
-            return cap.addMoney(amount);
-        }).orElse(false);
-    }
-    
-    /**
-     * 给离线玩家添加货币
-     */
-    private void addOfflinePlayerCurrency(UUID playerId, int amount) {
-        TradeDataManager.getInstance().addOfflinePlayerCurrency(playerId, amount);
-    }
-    
-    /**
-     * 给玩家物品
-     */
-    private boolean giveItemToPlayer(ServerPlayer player, ItemStack itemStack) {
-        return player.getInventory().add(itemStack);
-    }
-    
-    /**
-     * 计算税费
-     */
-    private int calculateTax(int price) {
-        double taxRate = TradeConfig.TRANSACTION_TAX_RATE.get();
-        return (int) Math.ceil(price * taxRate);
-    }
-    
-    /**
-     * 记录交易历史
-     */
-    private void recordTransaction(ServerPlayer buyer, TradeItem tradeItem) {
-        TradeDataManager.getInstance().recordTransaction(
-                buyer.getUUID(),
-                buyer.getName().getString(),
-                tradeItem.getSellerId(),
-                tradeItem.getSellerName(),
-                tradeItem.getItemStack(),
-                tradeItem.getPrice(),
-                System.currentTimeMillis()
-        );
-    }
-    
     /**
      * 创建离线玩家（用于处理离线卖家的情况）
      */
@@ -243,60 +115,83 @@ public class PurchaseManager {
     }
     
     /**
-     * 批量购买物品
+     * 批量购买物品（每个物品整件购买）
      */
-    public boolean purchaseMultipleItems(ServerPlayer buyer, UUID[] itemIds) {
+    public CompletableFuture<MarketEngine.Result> purchaseMultipleItems(ServerPlayer buyer, UUID[] itemIds) {
         if (itemIds == null || itemIds.length == 0) {
-            return false;
+            return CompletableFuture.completedFuture(null);
         }
         
-        // 计算总价格
-        int totalPrice = 0;
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
         for (UUID itemId : itemIds) {
-            TradeItem item = ItemListingManager.getInstance().getAllActiveListings().stream()
-                    .filter(tradeItem -> tradeItem.getId().equals(itemId))
-                    .findFirst()
-                    .orElse(null);
-            
+            TradeItem item = ItemListingManager.getInstance().getListing(itemId);
             if (item == null) {
                 buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.some_items_unavailable"));
-                return false;
+                return CompletableFuture.completedFuture(null);
             }
-            
-            totalPrice += item.getPrice();
+            quantities.put(itemId, item.getItemStack().getCount());
         }
         
-        // 检查是否有足够的货币
-        if (!hasEnoughCurrency(buyer, totalPrice)) {
-            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.insufficient_currency", totalPrice));
-            return false;
+        return purchaseBatch(buyer, quantities);
+    }
+    
+    /**
+     * 批量购买指定数量的物品，全部成交或全部不成交
+     * 所有物品在市场引擎的同一条命令中检查和扣减，买家对每个卖家只结算一次，只产生一个市场增量
+     * @param quantities 上架ID -> 购买数量
+     */
+    public CompletableFuture<MarketEngine.Result> purchaseBatch(ServerPlayer buyer, Map<UUID, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
         
-        // 逐个购买
-        int successCount = 0;
-        for (UUID itemId : itemIds) {
-            if (purchaseItem(buyer, itemId)) {
-                successCount++;
+        // 按当前价格估算总价，仅用于余额不足时的提示
+        long estimatedTotal = 0;
+        for (Map.Entry<UUID, Integer> line : quantities.entrySet()) {
+            TradeItem item = ItemListingManager.getInstance().getListing(line.getKey());
+            if (item != null) {
+                estimatedTotal += (long) item.getPrice() * line.getValue();
             }
         }
+        long total = estimatedTotal;
         
-        if (successCount > 0) {
-            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.batch_purchase_success",
-                    successCount, itemIds.length));
-            return true;
-        }
-        
-        return false;
+        MarketEngine engine = MarketEngine.getInstance();
+        return engine.buyBatch(buyer.getUUID(), buyer.getName().getString(), quantities)
+                .thenApplyAsync(result -> {
+                    switch (result.getStatus()) {
+                        case SUCCESS:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.batch_purchase_success",
+                                    result.getFills().size(), quantities.size()));
+                            TradeMod.getLogger().info("批量购买完成: {} 购买了 {} 件物品 (总价: {})",
+                                    buyer.getName().getString(), result.getFills().size(), result.getTotalPrice());
+                            break;
+                        case NOT_FOUND:
+                        case INVALID:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.some_items_unavailable"));
+                            break;
+                        case OWN_LISTING:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.cannot_buy_own_item"));
+                            break;
+                        case INSUFFICIENT_FUNDS:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.insufficient_currency", total));
+                            break;
+                        case QUEUE_FULL:
+                        case STOPPED:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.market_busy"));
+                            break;
+                        default:
+                            buyer.sendSystemMessage(Component.translatable("gui.tradesystem.message.purchase_error"));
+                            break;
+                    }
+                    return result;
+                }, engine.serverExecutor());
     }
     
     /**
      * 获取物品的实时价格（考虑市场波动）
      */
     public int getItemPrice(UUID itemId) {
-        TradeItem item = ItemListingManager.getInstance().getAllActiveListings().stream()
-                .filter(tradeItem -> tradeItem.getId().equals(itemId))
-                .findFirst()
-                .orElse(null);
+        TradeItem item = ItemListingManager.getInstance().getListing(itemId);
         
         return item != null ? item.getPrice() : 0;
     }
@@ -305,7 +200,6 @@ public class PurchaseManager {
      * 检查物品是否仍然可购买
      */
     public boolean isItemAvailable(UUID itemId) {
-        return ItemListingManager.getInstance().getAllActiveListings().stream()
-                .anyMatch(item -> item.getId().equals(itemId) && item.isActive());
+        return ItemListingManager.getInstance().isListed(itemId);
     }
 }
\ No newline at end of file
@@ -3,28 +3,43 @@ package com.tradesystem.mod.manager;
 import com.tradesystem.mod.TradeMod;
 import com.tradesystem.mod.capability.ModCapabilities;
 import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.RecyclePriceTable;
 import com.tradesystem.mod.data.TradeDataManager;
+import com.tradesystem.mod.network.NetworkHandler;
+import com.tradesystem.mod.network.packet.RecyclePriceSyncPacket;
+import com.tradesystem.mod.util.InventoryScanner;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
 import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.item.Items;
 import net.minecraft.world.item.enchantment.EnchantmentHelper;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 系统回收管理器
  * 负责处理物品的系统回收、价格计算等功能
+ *
+ * 回收价格来自数据包（见 RecyclePriceLoader），在标签更新后编译成按物品注册ID索引的价格表，
+ * /reload 时重新编译并同步给所有在线玩家；客户端只使用服务器同步过来的价格表
  */
 public class RecycleManager {
     private static RecycleManager instance;
-    private final Map<String, Integer> baseRecyclePrices = new ConcurrentHashMap<>();
-    private final Set<String> recyclableItems = new HashSet<>();
     
-    private RecycleManager() {
-        initializeRecyclePrices();
-    }
+    // 数据包中的原始定义：物品ID/标签ID -> 基础价格
+    private volatile Map<ResourceLocation, Integer> itemPriceDefinitions = Collections.emptyMap();
+    private volatile Map<ResourceLocation, Integer> tagPriceDefinitions = Collections.emptyMap();
+    
+    // 编译后的价格表，整体替换
+    private volatile RecyclePriceTable priceTable = RecyclePriceTable.EMPTY;
+    
+    private RecycleManager() {}
     
     public static RecycleManager getInstance() {
         if (instance == null) {
@@ -34,72 +49,80 @@ public class RecycleManager {
     }
     
     /**
-     * 初始化回收价格表
+     * 设置数据包中读取的价格定义，标签绑定之后再调用 rebuildPriceTable 编译
      */
-    private void initializeRecyclePrices() {
-        // 基础材料
-        baseRecyclePrices.put("minecraft:diamond", 100);
-        baseRecyclePrices.put("minecraft:emerald", 80);
-        baseRecyclePrices.put("minecraft:gold_ingot", 50);
-        baseRecyclePrices.put("minecraft:iron_ingot", 20);
-        baseRecyclePrices.put("minecraft:copper_ingot", 10);
-        baseRecyclePrices.put("minecraft:coal", 5);
-        baseRecyclePrices.put("minecraft:redstone", 8);
-        baseRecyclePrices.put("minecraft:lapis_lazuli", 12);
-        
-        // 稀有材料
-        baseRecyclePrices.put("minecraft:netherite_ingot", 500);
-        baseRecyclePrices.put("minecraft:ancient_debris", 400);
-        baseRecyclePrices.put("minecraft:netherite_scrap", 100);
-        baseRecyclePrices.put("minecraft:nether_star", 1000);
-        baseRecyclePrices.put("minecraft:dragon_egg", 5000);
-        baseRecyclePrices.put("minecraft:elytra", 2000);
-        
-        // 工具和武器
-        baseRecyclePrices.put("minecraft:diamond_sword", 200);
-        baseRecyclePrices.put("minecraft:diamond_pickaxe", 300);
-        baseRecyclePrices.put("minecraft:diamond_axe", 300);
-        baseRecyclePrices.put("minecraft:diamond_shovel", 100);
-        baseRecyclePrices.put("minecraft:diamond_hoe", 200);
-        
-        baseRecyclePrices.put("minecraft:netherite_sword", 600);
-        baseRecyclePrices.put("minecraft:netherite_pickaxe", 700);
-        baseRecyclePrices.put("minecraft:netherite_axe", 700);
-        baseRecyclePrices.put("minecraft:netherite_shovel", 500);
-        baseRecyclePrices.put("minecraft:netherite_hoe", 600);
-        
-        // 装备
-        baseRecyclePrices.put("minecraft:diamond_helmet", 500);
-        baseRecyclePrices.put("minecraft:diamond_chestplate", 800);
-        baseRecyclePrices.put("minecraft:diamond_leggings", 700);
-        baseRecyclePrices.put("minecraft:diamond_boots", 400);
-        
-        baseRecyclePrices.put("minecraft:netherite_helmet", 1000);
-        baseRecyclePrices.put("minecraft:netherite_chestplate", 1300);
-        baseRecyclePrices.put("minecraft:netherite_leggings", 1200);
-        baseRecyclePrices.put("minecraft:netherite_boots", 900);
-        
-        // 食物
-        baseRecyclePrices.put("minecraft:golden_apple", 80);
-        baseRecyclePrices.put("minecraft:enchanted_golden_apple", 1000);
-        baseRecyclePrices.put("minecraft:cooked_beef", 3);
-        baseRecyclePrices.put("minecraft:bread", 2);
+    public void setPriceDefinitions(Map<ResourceLocation, Integer> itemPrices, Map<ResourceLocation, Integer> tagPrices) {
+        this.itemPriceDefinitions = Collections.unmodifiableMap(new LinkedHashMap<>(itemPrices));
+        this.tagPriceDefinitions = Collections.unmodifiableMap(new LinkedHashMap<>(tagPrices));
+    }
+    
+    /**
+     * 把价格定义编译成价格表：先展开标签，再用单个物品的价格覆盖，最后去掉回收黑名单中的物品
+     */
+    public void rebuildPriceTable() {
+        int[] prices = new int[BuiltInRegistries.ITEM.size()];
         
-        // 方块
-        baseRecyclePrices.put("minecraft:diamond_block", 900);
-        baseRecyclePrices.put("minecraft:emerald_block", 720);
-        baseRecyclePrices.put("minecraft:gold_block", 450);
-        baseRecyclePrices.put("minecraft:iron_block", 180);
-        baseRecyclePrices.put("minecraft:netherite_block", 4500);
+        for (Map.Entry<ResourceLocation, Integer> entry : tagPriceDefinitions.entrySet()) {
+            TagKey<Item> tag = TagKey.create(Registries.ITEM, entry.getKey());
+            for (Holder<Item> holder : BuiltInRegistries.ITEM.getTagOrEmpty(tag)) {
+                prices[Item.getId(holder.value())] = entry.getValue();
+            }
+        }
         
-        // 药水和附魔书
-        baseRecyclePrices.put("minecraft:experience_bottle", 15);
-        baseRecyclePrices.put("minecraft:enchanted_book", 50);
+        for (Map.Entry<ResourceLocation, Integer> entry : itemPriceDefinitions.entrySet()) {
+            Optional<Item> item = BuiltInRegistries.ITEM.getOptional(entry.getKey());
+            if (item.isPresent()) {
+                prices[Item.getId(item.get())] = entry.getValue();
+            } else {
+                TradeMod.getLogger().debug("回收价格表中的物品不存在: {}", entry.getKey());
+            }
+        }
         
-        // 将所有有价格的物品添加到可回收列表
-        recyclableItems.addAll(baseRecyclePrices.keySet());
+        List<? extends String> blacklist = TradeConfig.getRecycleBlacklist();
+        if (blacklist != null) {
+            for (String name : blacklist) {
+                ResourceLocation id = ResourceLocation.tryParse(name);
+                if (id != null) {
+                    BuiltInRegistries.ITEM.getOptional(id).ifPresent(item -> prices[Item.getId(item)] = 0);
+                }
+            }
+        }
         
-        TradeMod.getLogger().info("初始化了 {} 种可回收物品", recyclableItems.size());
+        this.priceTable = new RecyclePriceTable(prices);
+        TradeMod.getLogger().info("编译了 {} 种可回收物品的回收价格", priceTable.size());
+    }
+    
+    /**
+     * 替换价格表（客户端收到服务器同步时调用）
+     */
+    public void setPriceTable(RecyclePriceTable table) {
+        this.priceTable = table != null ? table : RecyclePriceTable.EMPTY;
+    }
+    
+    /**
+     * 当前价格表
+     */
+    public RecyclePriceTable getPriceTable() {
+        return priceTable;
+    }
+    
+    /**
+     * 把价格表同步给玩家
+     */
+    public void syncPriceTable(ServerPlayer player) {
+        NetworkHandler.sendToPlayer(new RecyclePriceSyncPacket(priceTable), player);
+    }
+    
+    /**
+     * 把价格表同步给所有在线玩家
+     */
+    public void syncPriceTableToAll(MinecraftServer server) {
+        if (server == null) {
+            return;
+        }
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            syncPriceTable(player);
+        }
     }
     
     /**
@@ -125,7 +148,7 @@ public class RecycleManager {
             }
             
             // 从玩家背包中移除物品
-            if (!removeItemFromInventory(player, itemStack)) {
+            if (!InventoryScanner.remove(player.getInventory(), itemStack)) {
                 player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_found_inventory"));
                 return false;
             }
@@ -159,24 +182,17 @@ public class RecycleManager {
     }
     
     /**
-     * 批量回收物品
+     * 批量回收物品，全部或全不：背包中任何一种物品数量不够时不回收任何物品
      */
     public boolean recycleMultipleItems(ServerPlayer player, List<ItemStack> itemStacks) {
         if (player == null || itemStacks == null || itemStacks.isEmpty()) {
             return false;
         }
         
-        int totalValue = 0;
         List<ItemStack> recyclableItems = new ArrayList<>();
-        
-        // 检查所有物品并计算总价值
         for (ItemStack itemStack : itemStacks) {
-            if (isItemRecyclable(itemStack)) {
-                int price = calculateRecyclePrice(itemStack);
-                if (price > 0) {
-                    totalValue += price;
-                    recyclableItems.add(itemStack.copy());
-                }
+            if (isItemRecyclable(itemStack) && calculateRecyclePrice(itemStack) > 0) {
+                recyclableItems.add(itemStack.copy());
             }
         }
         
@@ -185,32 +201,76 @@ public class RecycleManager {
             return false;
         }
         
-        // 移除所有可回收物品
-        int recycledCount = 0;
-        int actualValue = 0;
+        // 一次扫描背包检查并扣除所有物品
+        if (!InventoryScanner.removeAll(player.getInventory(), recyclableItems)) {
+            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_found_inventory"));
+            return false;
+        }
         
-        for (ItemStack itemStack : recyclableItems) {
-            if (removeItemFromInventory(player, itemStack)) {
-                actualValue += calculateRecyclePrice(itemStack);
-                recycledCount++;
-                recordRecycleTransaction(player, itemStack, calculateRecyclePrice(itemStack));
+        return payForRecycledItems(player, recyclableItems);
+    }
+    
+    /**
+     * 回收背包中指定槽位的整组物品，全部或全不；不可回收的槽位跳过
+     */
+    public boolean recycleSlots(ServerPlayer player, List<Integer> slotIndices) {
+        if (player == null || slotIndices == null || slotIndices.isEmpty()) {
+            return false;
+        }
+        
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (Integer slot : slotIndices) {
+            if (slot == null || slot < 0 || slot >= player.getInventory().getContainerSize()) {
+                continue;
+            }
+            ItemStack slotStack = player.getInventory().getItem(slot);
+            if (isItemRecyclable(slotStack) && calculateRecyclePrice(slotStack) > 0) {
+                quantities.put(slot, slotStack.getCount());
             }
         }
         
-        if (recycledCount > 0) {
-            // 给玩家货币
-            addCurrencyToPlayer(player, actualValue);
-            
-            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.batch_recycle_success",
-                    recycledCount, actualValue));
-            
-            TradeMod.getLogger().info("玩家 {} 批量回收了 {} 个物品，获得 {} 货币",
-                    player.getName().getString(), recycledCount, actualValue);
-            
-            return true;
+        if (quantities.isEmpty()) {
+            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.no_recyclable_items"));
+            return false;
         }
         
-        return false;
+        List<ItemStack> taken = InventoryScanner.takeFromSlots(player.getInventory(), quantities);
+        if (taken == null) {
+            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.item_not_found_inventory"));
+            return false;
+        }
+        
+        return payForRecycledItems(player, taken);
+    }
+    
+    /**
+     * 为已经从背包扣除的物品一次性支付回收金币，失败时把物品退还给玩家
+     */
+    private boolean payForRecycledItems(ServerPlayer player, List<ItemStack> items) {
+        int totalValue = 0;
+        for (ItemStack itemStack : items) {
+            totalValue += calculateRecyclePrice(itemStack);
+        }
+        
+        if (!addCurrencyToPlayer(player, totalValue)) {
+            for (ItemStack itemStack : items) {
+                com.tradesystem.mod.data.OfflineMailbox.getInstance().giveOrDeposit(player, itemStack, "recycle");
+            }
+            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.currency_add_failed"));
+            return false;
+        }
+        
+        for (ItemStack itemStack : items) {
+            recordRecycleTransaction(player, itemStack, calculateRecyclePrice(itemStack));
+        }
+        
+        player.sendSystemMessage(Component.translatable("gui.tradesystem.message.batch_recycle_success",
+                items.size(), totalValue));
+        
+        TradeMod.getLogger().info("玩家 {} 批量回收了 {} 个物品，获得 {} 货币",
+                player.getName().getString(), items.size(), totalValue);
+        
+        return true;
     }
     
     /**
@@ -221,8 +281,7 @@ public class RecycleManager {
             return 0;
         }
         
-        String itemName = itemStack.getItem().toString();
-        int basePrice = baseRecyclePrices.getOrDefault(itemName, 0);
+        int basePrice = priceTable.getPrice(itemStack.getItem());
         
         if (basePrice <= 0) {
             return 0;
@@ -238,7 +297,7 @@ public class RecycleManager {
         totalPrice = applyEnchantmentModifier(itemStack, totalPrice);
         
         // 应用回收率
-        double recycleRate = TradeConfig.RECYCLE_RATE.get();
+        double recycleRate = TradeConfig.recycleRate;
         totalPrice = (int) (totalPrice * recycleRate);
         
         return Math.max(1, totalPrice); // 至少值1货币
@@ -287,19 +346,8 @@ public class RecycleManager {
             return false;
         }
         
-        String itemName = itemStack.getItem().toString();
-        
-        // 检查是否在可回收列表中
-        if (!recyclableItems.contains(itemName)) {
-            return false;
-        }
-        
-        // 检查是否在黑名单中
-        if (TradeConfig.getRecycleBlacklist().contains(itemName)) {
-            return false;
-        }
-        
-        return true;
+        // 价格表编译时已经去掉了黑名单中的物品
+        return priceTable.contains(itemStack.getItem());
     }
     
     /**
@@ -309,46 +357,6 @@ public class RecycleManager {
         return calculateRecyclePrice(itemStack);
     }
     
-    /**
-     * 从玩家背包中移除物品
-     */
-    private boolean removeItemFromInventory(ServerPlayer player, ItemStack itemStack) {
-        // 检查玩家是否有足够的物品
-        if (!hasEnoughItems(player, itemStack)) {
-            return false;
-        }
-        
-        // 移除物品
-        int remainingCount = itemStack.getCount();
-        for (int i = 0; i < player.getInventory().getContainerSize() && remainingCount > 0; i++) {
-            ItemStack slotStack = player.getInventory().getItem(i);
-            if (ItemStack.isSameItemSameTags(slotStack, itemStack)) {
-                int removeCount = Math.min(remainingCount, slotStack.getCount());
-                slotStack.shrink(removeCount);
-                remainingCount -= removeCount;
-            }
-        }
-        
-        return remainingCount == 0;
-    }
-    
-    /**
-     * 检查玩家是否有足够的物品
-     */
-    private boolean hasEnoughItems(ServerPlayer player, ItemStack required) {
-        int totalCount = 0;
-        for (int i = 0; i < player.getInventory().getContainerSize(); i++) {
-            ItemStack stack = player.getInventory().getItem(i);
-            if (ItemStack.isSameItemSameTags(stack, required)) {
-                totalCount += stack.getCount();
-                if (totalCount >= required.getCount()) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-    
     /**
      * 给玩家添加货币
      */
@@ -378,45 +386,25 @@ public class RecycleManager {
         );
     }
     
-    /**
-     * 添加自定义回收价格
-     */
-    public void addCustomRecyclePrice(String itemName, int price) {
-        baseRecyclePrices.put(itemName, price);
-        recyclableItems.add(itemName);
-        TradeMod.getLogger().info("添加自定义回收价格: {} = {}", itemName, price);
-    }
-    
-    /**
-     * 移除回收价格
-     */
-    public void removeRecyclePrice(String itemName) {
-        baseRecyclePrices.remove(itemName);
-        recyclableItems.remove(itemName);
-        TradeMod.getLogger().info("移除回收价格: {}", itemName);
-    }
-    
     /**
      * 获取所有可回收物品
      */
     public Set<String> getRecyclableItems() {
-        return new HashSet<>(recyclableItems);
+        Set<String> names = new HashSet<>();
+        for (Item item : priceTable.getItems()) {
+            names.add(BuiltInRegistries.ITEM.getKey(item).toString());
+        }
+        return names;
     }
     
     /**
      * 获取物品的基础回收价格
      */
     public int getBaseRecyclePrice(String itemName) {
-        return baseRecyclePrices.getOrDefault(itemName, 0);
-    }
-    
-    /**
-     * 重新加载回收配置
-     */
-    public void reloadConfig() {
-        baseRecyclePrices.clear();
-        recyclableItems.clear();
-        initializeRecyclePrices();
-        TradeMod.getLogger().info("重新加载回收配置");
+        ResourceLocation id = ResourceLocation.tryParse(itemName);
+        if (id == null) {
+            return 0;
+        }
+        return BuiltInRegistries.ITEM.getOptional(id).map(priceTable::getPrice).orElse(0);
     }
-}
\ No newline at end of file
+}
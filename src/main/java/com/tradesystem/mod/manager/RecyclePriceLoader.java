@@ -0,0 +1,70 @@
+package com.tradesystem.mod.manager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.tradesystem.mod.TradeMod;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 回收价格数据加载器
+ * 读取数据包中 data/<命名空间>/recycle_prices/*.json，格式：
+ * <pre>
+ * {
+ *   "prices": {
+ *     "minecraft:diamond": 100,
+ *     "#forge:ingots/gold": 50
+ *   }
+ * }
+ * </pre>
+ * 以 # 开头的键是物品标签，标签内所有物品使用同一价格；单个物品的价格优先于标签，价格为0表示不可回收。
+ * 多个文件按资源ID顺序合并，后面的覆盖前面的；数据包可以用同名文件整体替换本MOD自带的价格表。
+ *
+ * 加载时标签还没有绑定，这里只解析出原始定义，标签更新后由 RecycleManager 编译成价格表
+ */
+public class RecyclePriceLoader extends SimpleJsonResourceReloadListener {
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final String DIRECTORY = "recycle_prices";
+
+    public RecyclePriceLoader() {
+        super(GSON, DIRECTORY);
+    }
+
+    @Override
+    protected void apply(Map<ResourceLocation, JsonElement> files, ResourceManager resourceManager, ProfilerFiller profiler) {
+        Map<ResourceLocation, Integer> itemPrices = new LinkedHashMap<>();
+        Map<ResourceLocation, Integer> tagPrices = new LinkedHashMap<>();
+
+        for (Map.Entry<ResourceLocation, JsonElement> file : new TreeMap<>(files).entrySet()) {
+            try {
+                JsonObject prices = GsonHelper.getAsJsonObject(GsonHelper.convertToJsonObject(file.getValue(), "root"), "prices");
+                for (Map.Entry<String, JsonElement> entry : prices.entrySet()) {
+                    String key = entry.getKey();
+                    int price = Math.max(0, GsonHelper.convertToInt(entry.getValue(), key));
+                    boolean isTag = key.startsWith("#");
+                    ResourceLocation id = ResourceLocation.tryParse(isTag ? key.substring(1) : key);
+                    if (id == null) {
+                        TradeMod.getLogger().warn("回收价格表 {} 中的物品ID无效: {}", file.getKey(), key);
+                        continue;
+                    }
+                    (isTag ? tagPrices : itemPrices).put(id, price);
+                }
+            } catch (RuntimeException e) {
+                TradeMod.getLogger().error("解析回收价格表 {} 失败: {}", file.getKey(), e.getMessage());
+            }
+        }
+
+        RecycleManager.getInstance().setPriceDefinitions(itemPrices, tagPrices);
+        TradeMod.getLogger().info("读取了 {} 个回收价格文件: {} 个物品, {} 个标签",
+                files.size(), itemPrices.size(), tagPrices.size());
+    }
+}
@@ -1,10 +1,14 @@
 package com.tradesystem.mod.manager;
 
 import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.CurrencyLedger;
+import com.tradesystem.mod.data.ItemKey;
+import com.tradesystem.mod.data.SnapshotStore;
 import com.tradesystem.mod.data.SystemItem;
 import com.tradesystem.mod.data.TradeItem;
-import com.tradesystem.mod.capability.IPlayerCurrency;
 import com.tradesystem.mod.capability.ModCapabilities;
+import com.tradesystem.mod.util.SearchIndex;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.NbtIo;
@@ -26,8 +30,10 @@ import java.util.stream.Collectors;
 public class SystemItemManager {
     
     private static SystemItemManager instance;
-    private final Map<String, SystemItem> systemItems = new ConcurrentHashMap<>();
-    private final File dataFile;
+    private final Map<ItemKey, SystemItem> systemItems = new ConcurrentHashMap<>();
+    private final Map<UUID, SystemItem> systemItemsById = new ConcurrentHashMap<>();
+    private final SearchIndex<UUID, SystemItem> searchIndex = new SearchIndex<>();
+    private final SnapshotStore dataStore;
     private boolean dirty = false;
     
     private SystemItemManager() {
@@ -36,7 +42,8 @@ public class SystemItemManager {
         if (!tradeDir.exists()) {
             tradeDir.mkdirs();
         }
-        this.dataFile = new File(tradeDir, "system_items.dat");
+        this.dataStore = new SnapshotStore(new File(tradeDir, "system_items.dat").toPath(),
+                TradeConfig.snapshotGenerations);
         loadData();
     }
     
@@ -55,7 +62,7 @@ public class SystemItemManager {
             return false;
         }
         
-        String itemKey = getItemKey(itemStack);
+        ItemKey itemKey = getItemKey(itemStack);
         
         // 检查是否已存在
         if (systemItems.containsKey(itemKey)) {
@@ -65,6 +72,8 @@ public class SystemItemManager {
         
         SystemItem systemItem = new SystemItem(itemStack, price, quantity, adminName);
         systemItems.put(itemKey, systemItem);
+        systemItemsById.put(systemItem.getId(), systemItem);
+        searchIndex.put(systemItem.getId(), systemItem, searchFields(systemItem));
         
         setDirty();
         TradeMod.getLogger().info("Added system item: {} by {}", itemKey, adminName);
@@ -75,14 +84,11 @@ public class SystemItemManager {
      * 移除系统商品（通过UUID）
      */
     public boolean removeSystemItem(UUID itemId) {
-        SystemItem systemItem = systemItems.values().stream()
-                .filter(item -> item.getId().equals(itemId))
-                .findFirst()
-                .orElse(null);
+        SystemItem systemItem = systemItemsById.remove(itemId);
         
         if (systemItem != null) {
-            String itemKey = getItemKey(systemItem.getItemStack());
-            systemItems.remove(itemKey);
+            systemItems.remove(getItemKey(systemItem.getItemStack()));
+            searchIndex.remove(itemId);
             setDirty();
             TradeMod.getLogger().info("Removed system item: {}", itemId);
             return true;
@@ -95,10 +101,12 @@ public class SystemItemManager {
      * 移除系统商品
      */
     public boolean removeSystemItem(ItemStack itemStack) {
-        String itemKey = getItemKey(itemStack);
+        ItemKey itemKey = getItemKey(itemStack);
         SystemItem removed = systemItems.remove(itemKey);
         
         if (removed != null) {
+            systemItemsById.remove(removed.getId());
+            searchIndex.remove(removed.getId());
             setDirty();
             TradeMod.getLogger().info("Removed system item: {}", itemKey);
             return true;
@@ -115,10 +123,7 @@ public class SystemItemManager {
             return false;
         }
         
-        SystemItem systemItem = systemItems.values().stream()
-                .filter(item -> item.getId().equals(itemId))
-                .findFirst()
-                .orElse(null);
+        SystemItem systemItem = systemItemsById.get(itemId);
         
         if (systemItem != null) {
             systemItem.setPrice(newPrice);
@@ -138,7 +143,7 @@ public class SystemItemManager {
             return false;
         }
         
-        String itemKey = getItemKey(itemStack);
+        ItemKey itemKey = getItemKey(itemStack);
         SystemItem systemItem = systemItems.get(itemKey);
         
         if (systemItem != null) {
@@ -159,10 +164,7 @@ public class SystemItemManager {
             return false;
         }
         
-        SystemItem systemItem = systemItems.values().stream()
-                .filter(item -> item.getId().equals(itemId))
-                .findFirst()
-                .orElse(null);
+        SystemItem systemItem = systemItemsById.get(itemId);
         
         if (systemItem != null) {
             systemItem.setQuantity(newQuantity);
@@ -182,7 +184,7 @@ public class SystemItemManager {
             return false;
         }
         
-        String itemKey = getItemKey(itemStack);
+        ItemKey itemKey = getItemKey(itemStack);
         SystemItem systemItem = systemItems.get(itemKey);
         
         if (systemItem != null) {
@@ -199,10 +201,7 @@ public class SystemItemManager {
      * 切换系统商品状态（通过UUID）
      */
     public boolean toggleSystemItemStatus(UUID itemId) {
-        SystemItem systemItem = systemItems.values().stream()
-                .filter(item -> item.getId().equals(itemId))
-                .findFirst()
-                .orElse(null);
+        SystemItem systemItem = systemItemsById.get(itemId);
         
         if (systemItem != null) {
             systemItem.toggleActive();
@@ -219,7 +218,7 @@ public class SystemItemManager {
      * 切换系统商品状态
      */
     public boolean toggleItemStatus(ItemStack itemStack) {
-        String itemKey = getItemKey(itemStack);
+        ItemKey itemKey = getItemKey(itemStack);
         SystemItem systemItem = systemItems.get(itemKey);
         
         if (systemItem != null) {
@@ -237,10 +236,17 @@ public class SystemItemManager {
      * 获取系统商品
      */
     public SystemItem getSystemItem(ItemStack itemStack) {
-        String itemKey = getItemKey(itemStack);
+        ItemKey itemKey = getItemKey(itemStack);
         return systemItems.get(itemKey);
     }
     
+    /**
+     * 通过ID获取系统商品
+     */
+    public SystemItem getSystemItemById(UUID itemId) {
+        return systemItemsById.get(itemId);
+    }
+    
     /**
      * 检查是否是系统商品
      */
@@ -281,12 +287,21 @@ public class SystemItemManager {
             return getActiveSystemItems();
         }
         
-        String lowerKeyword = keyword.toLowerCase();
-        return getActiveSystemItems().stream()
-                .filter(item -> item.getDisplayName().toLowerCase().contains(lowerKeyword))
+        return searchIndex.search(keyword).stream()
+                .filter(SystemItem::isActive)
                 .collect(Collectors.toList());
     }
     
+    /**
+     * 系统商品的搜索字段：显示名称、注册名和附魔
+     */
+    public static List<String> searchFields(SystemItem item) {
+        List<String> fields = new ArrayList<>();
+        fields.add(item.getDisplayName());
+        fields.addAll(SearchIndex.itemTerms(item.getItemStack()));
+        return fields;
+    }
+    
     /**
      * 购买系统商品
      */
@@ -346,21 +361,10 @@ public class SystemItemManager {
     }
     
     /**
-     * 生成物品键
+     * 生成物品键（注册名 + NBT摘要，与数量无关）
      */
-    private String getItemKey(ItemStack itemStack) {
-        StringBuilder key = new StringBuilder();
-        key.append(itemStack.getItem().toString());
-        
-        // 如果有NBT数据，也包含在键中
-        if (itemStack.hasTag()) {
-            key.append("_").append(itemStack.getTag().hashCode());
-        }
-        
-        // 添加时间戳确保唯一性
-        key.append("_").append(System.currentTimeMillis());
-        
-        return key.toString();
+    private ItemKey getItemKey(ItemStack itemStack) {
+        return ItemKey.of(itemStack);
     }
     
     /**
@@ -408,11 +412,7 @@ public class SystemItemManager {
      */
     private boolean deductCurrency(ServerPlayer player, int amount) {
         return player.getCapability(ModCapabilities.PLAYER_CURRENCY).map(cap -> {
-            if (cap.hasMoney(amount)) {
-                cap.removeMoney(amount);
-                return true;
-            }
-            return false;
+            return cap.removeMoney(amount);
         }).orElse(false);
     }
     
@@ -452,7 +452,7 @@ public class SystemItemManager {
             rootTag.put("systemItems", itemsTag);
             rootTag.putLong("lastSaved", System.currentTimeMillis());
             
-            NbtIo.writeCompressed(rootTag, dataFile);
+            dataStore.write(output -> NbtIo.writeCompressed(rootTag, output));
             dirty = false;
             
             TradeMod.getLogger().info("Saved {} system items to disk", systemItems.size());
@@ -466,13 +466,16 @@ public class SystemItemManager {
      * 加载数据
      */
     private void loadData() {
-        if (!dataFile.exists()) {
+        if (!dataStore.exists()) {
             TradeMod.getLogger().info("System items data file not found, starting with empty data");
             return;
         }
         
         try {
-            CompoundTag rootTag = NbtIo.readCompressed(dataFile);
+            CompoundTag rootTag = dataStore.read(NbtIo::readCompressed);
+            if (rootTag == null) {
+                return;
+            }
             
             if (rootTag.contains("systemItems")) {
                 ListTag itemsTag = rootTag.getList("systemItems", Tag.TAG_COMPOUND);
@@ -482,8 +485,20 @@ public class SystemItemManager {
                     SystemItem item = SystemItem.fromNBT(itemTag);
                     
                     if (!item.getItemStack().isEmpty()) {
-                        String itemKey = getItemKey(item.getItemStack());
-                        systemItems.put(itemKey, item);
+                        ItemKey itemKey = getItemKey(item.getItemStack());
+                        // 旧版本的键带时间戳，同一物品可能保存了多个商品：库存合并到第一个，价格和状态以第一个为准
+                        SystemItem existing = systemItems.putIfAbsent(itemKey, item);
+                        if (existing != null) {
+                            long merged = (long) existing.getQuantity() + item.getQuantity();
+                            existing.setQuantity((int) Math.min(Integer.MAX_VALUE, merged));
+                            TradeMod.getLogger().warn("Merged duplicate system item {} ({}, quantity {}, price {}) into {} (quantity now {}, price {})",
+                                    itemKey, item.getId(), item.getQuantity(), item.getPrice(),
+                                    existing.getId(), existing.getQuantity(), existing.getPrice());
+                            dirty = true;
+                            continue;
+                        }
+                        systemItemsById.put(item.getId(), item);
+                        searchIndex.put(item.getId(), item, searchFields(item));
                     }
                 }
             }
@@ -507,28 +522,22 @@ public class SystemItemManager {
      * 购买系统商品
      */
     public boolean purchaseSystemItem(ServerPlayer player, UUID itemId, int quantity) {
-        SystemItem systemItem = systemItems.values().stream()
-                .filter(item -> item.getId().equals(itemId))
-                .findFirst()
-                .orElse(null);
+        SystemItem systemItem = systemItemsById.get(itemId);
         
         if (systemItem == null || !systemItem.isActive()) {
             return false;
         }
         
-        int totalPrice = systemItem.getPrice() * quantity;
-        
-        // 检查玩家金钱
-        IPlayerCurrency cap = player.getCapability(ModCapabilities.PLAYER_CURRENCY).orElse(null);
-        if (cap == null || cap.getMoney() < totalPrice) {
+        if (quantity <= 0) {
             return false;
         }
         
-        // 扣除金钱
-        cap.removeMoney(totalPrice);
+        long totalPrice = (long) systemItem.getPrice() * quantity;
         
-        // 同步货币到客户端
-        com.tradesystem.mod.util.CurrencyUtil.syncCurrencyToClient(player);
+        // 检查并扣除金钱，余额不足时不做任何修改
+        if (!CurrencyLedger.getInstance().debit(player.getUUID(), totalPrice)) {
+            return false;
+        }
         
         // 系统商品为无限购买，不减少数量，不改变状态
         // 注释：保持原有的无限购买设计，quantity字段仅用于显示
@@ -537,10 +546,8 @@ public class SystemItemManager {
         ItemStack itemToGive = systemItem.getItemStack().copy();
         itemToGive.setCount(quantity);
         
-        if (!player.getInventory().add(itemToGive)) {
-            // 如果背包满了，掉落物品
-            player.drop(itemToGive, false);
-        }
+        // 背包放不下的部分放入交易邮箱
+        com.tradesystem.mod.data.OfflineMailbox.getInstance().giveOrDeposit(player, itemToGive, "system_shop");
         
         TradeMod.getLogger().info("Player {} purchased {} x{} for {} coins (infinite stock)", 
                 player.getName().getString(), systemItem.getDisplayName(), quantity, totalPrice);
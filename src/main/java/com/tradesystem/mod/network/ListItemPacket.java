@@ -72,14 +72,12 @@ public class ListItemPacket {
                             ItemStack itemCopy = itemStack.copy();
                             itemCopy.setCount(packet.quantity);
                             
-                            // 尝试上架物品
-                            if (ItemListingManager.getInstance().listItem(player, itemCopy, (int)packet.price)) {
-                                // 上架成功，从玩家背包中移除指定数量的物品
-                                itemStack.shrink(packet.quantity);
-                                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.list_success"));
-                            } else {
-                                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.list_failed"));
-                            }
+                            // 先从玩家背包中移除，再交给市场引擎上架；上架失败时引擎会把物品退还给玩家
+                            itemStack.shrink(packet.quantity);
+                            ItemListingManager.getInstance().listItem(player, itemCopy, (int)packet.price)
+                                    .thenAccept(result -> player.sendSystemMessage(Component.translatable(result.isSuccess()
+                                            ? "gui.tradesystem.message.list_success"
+                                            : "gui.tradesystem.message.list_failed")));
                         } else {
                             player.sendSystemMessage(Component.translatable("gui.tradesystem.message.invalid_item_or_price"));
                         }
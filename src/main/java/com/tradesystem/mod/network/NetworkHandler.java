@@ -2,8 +2,14 @@ package com.tradesystem.mod.network;
 
 import com.tradesystem.mod.TradeMod;
 import com.tradesystem.mod.network.packet.DataSyncPacket;
+import com.tradesystem.mod.network.packet.MailboxActionPacket;
+import com.tradesystem.mod.network.packet.MailboxSyncPacket;
+import com.tradesystem.mod.network.packet.BatchPurchasePacket;
+import com.tradesystem.mod.network.packet.BulkListItemsPacket;
+import com.tradesystem.mod.network.packet.RecyclePriceSyncPacket;
 import com.tradesystem.mod.network.packet.OpenTradeGuiPacket;
 import com.tradesystem.mod.network.packet.RequestCurrencySyncPacket;
+import com.tradesystem.mod.network.packet.RequestMarketSyncPacket;
 import com.tradesystem.mod.network.packet.RequestTradeHistorySyncPacket;
 import com.tradesystem.mod.network.packet.TestPacket;
 import com.tradesystem.mod.network.packet.UnlistItemPacket;
@@ -113,6 +119,30 @@ public class NetworkHandler {
         INSTANCE.registerMessage(nextId(), AdminPermissionResponsePacket.class,
                 AdminPermissionResponsePacket::toBytes, AdminPermissionResponsePacket::new, AdminPermissionResponsePacket::handle);
         
+        // 注册请求市场同步包
+        INSTANCE.registerMessage(nextId(), RequestMarketSyncPacket.class,
+                RequestMarketSyncPacket::encode, RequestMarketSyncPacket::decode, RequestMarketSyncPacket::handle);
+        
+        // 注册交易邮箱操作包
+        INSTANCE.registerMessage(nextId(), MailboxActionPacket.class,
+                MailboxActionPacket::encode, MailboxActionPacket::decode, MailboxActionPacket::handle);
+        
+        // 注册交易邮箱同步包
+        INSTANCE.registerMessage(nextId(), MailboxSyncPacket.class,
+                MailboxSyncPacket::encode, MailboxSyncPacket::decode, MailboxSyncPacket::handle);
+        
+        // 注册批量购买包
+        INSTANCE.registerMessage(nextId(), BatchPurchasePacket.class,
+                BatchPurchasePacket::encode, BatchPurchasePacket::decode, BatchPurchasePacket::handle);
+        
+        // 注册批量上架包
+        INSTANCE.registerMessage(nextId(), BulkListItemsPacket.class,
+                BulkListItemsPacket::encode, BulkListItemsPacket::decode, BulkListItemsPacket::handle);
+        
+        // 注册回收价格表同步包
+        INSTANCE.registerMessage(nextId(), RecyclePriceSyncPacket.class,
+                RecyclePriceSyncPacket::encode, RecyclePriceSyncPacket::decode, RecyclePriceSyncPacket::handle);
+        
         TradeMod.getLogger().info("网络包注册完成，已注册 {} 个包", packetId);
     }
     
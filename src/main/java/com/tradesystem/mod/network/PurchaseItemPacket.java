@@ -51,13 +51,10 @@ public class PurchaseItemPacket {
 
     private static void purchaseItem(UUID tradeItemId, ServerPlayer player, int quantity) {
         try {
-            boolean success = TradeManager.getInstance().purchaseItem(tradeItemId, player, quantity);
-            
-            if (success) {
-                player.sendSystemMessage(Component.translatable("message.tradesystem.purchase.success"));
-            } else {
-                player.sendSystemMessage(Component.translatable("message.tradesystem.purchase.failed"));
-            }
+            TradeManager.getInstance().purchaseItem(tradeItemId, player, quantity)
+                    .thenAccept(result -> player.sendSystemMessage(Component.translatable(result.isSuccess()
+                            ? "message.tradesystem.purchase.success"
+                            : "message.tradesystem.purchase.failed")));
         } catch (Exception e) {
             player.sendSystemMessage(Component.translatable("message.tradesystem.purchase.error"));
         }
@@ -76,25 +76,8 @@ public class RecycleItemPacket {
             if (player != null) {
                 try {
                     if (packet.slotIndices != null) {
-                        // 槽位索引模式 - 回收指定槽位的物品
-                        boolean success = true;
-                        for (Integer slotIndex : packet.slotIndices) {
-                            if (slotIndex >= 0 && slotIndex < player.getInventory().getContainerSize()) {
-                                ItemStack slotItem = player.getInventory().getItem(slotIndex);
-                                if (!slotItem.isEmpty()) {
-                                    if (!RecycleManager.getInstance().recycleItem(player, slotItem.copy())) {
-                                        success = false;
-                                    } else {
-                                        player.getInventory().setItem(slotIndex, ItemStack.EMPTY);
-                                    }
-                                }
-                            }
-                        }
-                        if (success) {
-                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.recycle_success"));
-                        } else {
-                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.recycle_partial"));
-                        }
+                        // 槽位索引模式 - 整批回收指定槽位的物品，结果消息由回收管理器发送
+                        RecycleManager.getInstance().recycleSlots(player, packet.slotIndices);
                     } else {
                         // 物品模式 - 回收指定物品
                         ItemStack recycleItem = packet.itemStack.copy();
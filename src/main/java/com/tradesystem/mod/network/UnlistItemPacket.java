@@ -1,6 +1,6 @@
 package com.tradesystem.mod.network;
 
-import com.tradesystem.mod.data.TradeManager;
+import com.tradesystem.mod.manager.ItemListingManager;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.network.chat.Component;
@@ -38,17 +38,13 @@ public class UnlistItemPacket {
         context.setPacketHandled(true);
     }
 
+    /**
+     * 由市场引擎下架，物品退还和结果提示都在引擎的回调中完成
+     */
     private static void unlistItem(UUID tradeItemId, ServerPlayer player) {
-        try {
-            boolean success = TradeManager.getInstance().unlistItem(tradeItemId, player);
-            
-            if (success) {
-                player.sendSystemMessage(Component.translatable("message.tradesystem.unlist.success"));
-            } else {
-                player.sendSystemMessage(Component.translatable("message.tradesystem.unlist.failed"));
-            }
-        } catch (Exception e) {
+        ItemListingManager.getInstance().unlistItem(player, tradeItemId).exceptionally(error -> {
             player.sendSystemMessage(Component.translatable("message.tradesystem.unlist.error"));
-        }
+            return null;
+        });
     }
 }
\ No newline at end of file
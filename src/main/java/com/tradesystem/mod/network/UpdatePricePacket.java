@@ -1,6 +1,5 @@
 package com.tradesystem.mod.network;
 
-import com.tradesystem.mod.data.TradeItem;
 import com.tradesystem.mod.manager.ItemListingManager;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.chat.Component;
@@ -66,28 +65,18 @@ public class UpdatePricePacket {
                 return;
             }
             
-            // 使用ItemListingManager更新价格（带权限验证）
-            boolean success = ItemListingManager.getInstance().updateItemPrice(itemId, newPrice, player.getUUID());
-            
-            if (success) {
-                // 获取更新后的物品信息
-                TradeItem tradeItem = ItemListingManager.getInstance().getAllActiveListings().stream()
-                        .filter(item -> item.getId().equals(itemId))
-                        .findFirst()
-                        .orElse(null);
-                
-                if (tradeItem != null) {
-                    // 触发数据同步到所有客户端
-                    com.tradesystem.mod.data.DataService.getInstance().syncMarketDataToAllClients();
-                    
-                    // 发送成功消息
-                    player.sendSystemMessage(Component.translatable("gui.tradesystem.message.price_updated_success",
-                            tradeItem.getDisplayName(), newPrice));
-                }
-            } else {
-                // 更新失败，可能是物品不存在或不是所有者
-                player.sendSystemMessage(Component.translatable("gui.tradesystem.message.price_update_failed"));
-            }
+            // 使用ItemListingManager更新价格（带权限验证），持久化和同步由市场事件完成
+            ItemListingManager.getInstance().updateItemPrice(itemId, newPrice, player.getUUID())
+                    .thenAcceptAsync(result -> {
+                        if (result.isSuccess()) {
+                            // 发送成功消息
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.price_updated_success",
+                                    result.getListing().getDisplayName(), newPrice));
+                        } else {
+                            // 更新失败，可能是物品不存在或不是所有者
+                            player.sendSystemMessage(Component.translatable("gui.tradesystem.message.price_update_failed"));
+                        }
+                    }, com.tradesystem.mod.manager.MarketEngine.getInstance().serverExecutor());
             
         } catch (Exception e) {
             // 记录错误并发送错误消息
@@ -0,0 +1,75 @@
+package com.tradesystem.mod.network.packet;
+
+import com.tradesystem.mod.manager.PurchaseManager;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * 批量购买数据包
+ * 一次提交多个上架物品及购买数量，服务端全部成交或全部不成交
+ */
+public class BatchPurchasePacket {
+
+    // 单次批量购买的最大物品数
+    public static final int MAX_ITEMS = 64;
+
+    private final Map<UUID, Integer> quantities;
+
+    public BatchPurchasePacket(Map<UUID, Integer> quantities) {
+        this.quantities = quantities;
+    }
+
+    /**
+     * 编码数据包
+     */
+    public static void encode(BatchPurchasePacket packet, FriendlyByteBuf buffer) {
+        buffer.writeVarInt(packet.quantities.size());
+        for (Map.Entry<UUID, Integer> line : packet.quantities.entrySet()) {
+            buffer.writeUUID(line.getKey());
+            buffer.writeVarInt(line.getValue());
+        }
+    }
+
+    /**
+     * 解码数据包，同一物品出现多次时数量累加
+     */
+    public static BatchPurchasePacket decode(FriendlyByteBuf buffer) {
+        int size = buffer.readVarInt();
+        if (size < 0 || size > MAX_ITEMS) {
+            throw new IllegalArgumentException("批量购买物品数超出限制: " + size);
+        }
+
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            UUID itemId = buffer.readUUID();
+            int quantity = buffer.readVarInt();
+            quantities.merge(itemId, quantity, Integer::sum);
+        }
+        return new BatchPurchasePacket(quantities);
+    }
+
+    /**
+     * 处理数据包
+     */
+    public static void handle(BatchPurchasePacket packet, Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> {
+            ServerPlayer player = context.getSender();
+            if (player != null && !packet.quantities.isEmpty()) {
+                PurchaseManager.getInstance().purchaseBatch(player, packet.quantities);
+            }
+        });
+        context.setPacketHandled(true);
+    }
+
+    // Getter
+    public Map<UUID, Integer> getQuantities() {
+        return quantities;
+    }
+}
@@ -0,0 +1,82 @@
+package com.tradesystem.mod.network.packet;
+
+import com.tradesystem.mod.manager.ItemListingManager;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 批量上架数据包
+ * 一次提交背包中多个槽位的上架数量和统一单价，服务端全部上架或全部不上架
+ */
+public class BulkListItemsPacket {
+
+    // 单次批量上架的最大槽位数
+    public static final int MAX_SLOTS = 64;
+
+    private final Map<Integer, Integer> slotQuantities;
+    private final int price;
+
+    public BulkListItemsPacket(Map<Integer, Integer> slotQuantities, int price) {
+        this.slotQuantities = slotQuantities;
+        this.price = price;
+    }
+
+    /**
+     * 编码数据包
+     */
+    public static void encode(BulkListItemsPacket packet, FriendlyByteBuf buffer) {
+        buffer.writeVarInt(packet.price);
+        buffer.writeVarInt(packet.slotQuantities.size());
+        for (Map.Entry<Integer, Integer> entry : packet.slotQuantities.entrySet()) {
+            buffer.writeVarInt(entry.getKey());
+            buffer.writeVarInt(entry.getValue());
+        }
+    }
+
+    /**
+     * 解码数据包，同一槽位出现多次时只保留最后一次
+     */
+    public static BulkListItemsPacket decode(FriendlyByteBuf buffer) {
+        int price = buffer.readVarInt();
+        int size = buffer.readVarInt();
+        if (size < 0 || size > MAX_SLOTS) {
+            throw new IllegalArgumentException("批量上架槽位数超出限制: " + size);
+        }
+
+        Map<Integer, Integer> slotQuantities = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            int slot = buffer.readVarInt();
+            int quantity = buffer.readVarInt();
+            slotQuantities.put(slot, quantity);
+        }
+        return new BulkListItemsPacket(slotQuantities, price);
+    }
+
+    /**
+     * 处理数据包
+     */
+    public static void handle(BulkListItemsPacket packet, Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> {
+            ServerPlayer player = context.getSender();
+            if (player != null && !packet.slotQuantities.isEmpty()) {
+                ItemListingManager.getInstance().listItems(player, packet.slotQuantities, packet.price);
+            }
+        });
+        context.setPacketHandled(true);
+    }
+
+    // Getter
+    public Map<Integer, Integer> getSlotQuantities() {
+        return slotQuantities;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+}
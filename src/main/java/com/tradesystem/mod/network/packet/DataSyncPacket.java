@@ -18,11 +18,22 @@ public class DataSyncPacket {
     
     public enum DataType {
         PLAYER_CURRENCY,    // 玩家货币数据
-        MARKET_ITEMS,       // 市场物品数据
+        MARKET_ITEMS,       // 市场物品数据（完整快照）
+        MARKET_DELTA,       // 市场物品增量数据
         TRADE_HISTORY,      // 交易历史数据
         SYSTEM_STATS        // 系统统计数据
     }
     
+    /**
+     * 市场增量操作类型
+     */
+    public enum MarketOp {
+        ADD,        // 新上架
+        REMOVE,     // 下架或售出
+        UPDATE,     // 价格或其他字段变化，携带完整物品数据
+        FILL        // 部分成交后的剩余数量，只携带 count 和 version
+    }
+    
     private final DataType dataType;
     private final CompoundTag data;
     
@@ -92,6 +103,9 @@ public class DataSyncPacket {
                     TradeMod.getLogger().info("处理市场物品同步");
                     handleMarketItemsSync(packet.data);
                     break;
+                case MARKET_DELTA:
+                    handleMarketDeltaSync(packet.data);
+                    break;
                 case TRADE_HISTORY:
                     TradeMod.getLogger().info("处理交易历史同步");
                     handleTradeHistorySync(packet.data);
@@ -138,7 +152,7 @@ public class DataSyncPacket {
      */
     private static void handlePlayerCurrencySync(CompoundTag data) {
         try {
-            int money = data.getInt("money");
+            long money = data.getLong("money");
             com.tradesystem.mod.client.ClientCurrencyManager.getInstance().setPlayerMoney(money);
             TradeMod.getLogger().debug("同步玩家货币数据: {}", money);
         } catch (Exception e) {
@@ -160,6 +174,17 @@ public class DataSyncPacket {
         }
     }
     
+    /**
+     * 处理市场物品增量同步
+     */
+    private static void handleMarketDeltaSync(CompoundTag data) {
+        try {
+            com.tradesystem.mod.manager.ItemListingManager.getInstance().applyClientDelta(data);
+        } catch (Exception e) {
+            TradeMod.getLogger().error("处理市场增量同步时出错: {}", e.getMessage());
+        }
+    }
+    
     /**
      * 处理交易历史数据同步
      */
@@ -0,0 +1,87 @@
+package com.tradesystem.mod.network.packet;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.data.OfflineMailbox;
+import com.tradesystem.mod.network.NetworkHandler;
+import com.tradesystem.mod.util.CurrencyUtil;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * 交易邮箱操作数据包
+ * 客户端请求查看或领取交易邮箱中的邮件
+ */
+public class MailboxActionPacket {
+    
+    public enum Action {
+        REQUEST,    // 请求邮件列表
+        CLAIM_ALL   // 领取全部邮件
+    }
+    
+    private final Action action;
+    
+    public MailboxActionPacket(Action action) {
+        this.action = action;
+    }
+    
+    /**
+     * 编码数据包
+     */
+    public static void encode(MailboxActionPacket packet, FriendlyByteBuf buffer) {
+        buffer.writeEnum(packet.action);
+    }
+    
+    /**
+     * 解码数据包
+     */
+    public static MailboxActionPacket decode(FriendlyByteBuf buffer) {
+        return new MailboxActionPacket(buffer.readEnum(Action.class));
+    }
+    
+    /**
+     * 处理数据包
+     */
+    public static void handle(MailboxActionPacket packet, Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> {
+            ServerPlayer player = context.getSender();
+            if (player == null) {
+                return;
+            }
+            
+            try {
+                OfflineMailbox mailbox = OfflineMailbox.getInstance();
+                if (packet.action == Action.CLAIM_ALL) {
+                    OfflineMailbox.ClaimResult result = mailbox.claim(player);
+                    player.inventoryMenu.broadcastChanges();
+                    
+                    if (result.isFailed()) {
+                        player.sendSystemMessage(Component.translatable("gui.tradesystem.message.mailbox_unavailable"));
+                    }
+                    if (result.getCurrency() > 0) {
+                        player.sendSystemMessage(Component.translatable(
+                                "gui.tradesystem.message.mailbox_currency_claimed",
+                                CurrencyUtil.formatMoney(result.getCurrency())));
+                    }
+                    if (result.getItemsDelivered() > 0) {
+                        player.sendSystemMessage(Component.translatable(
+                                "gui.tradesystem.message.mailbox_items_delivered", result.getItemsDelivered()));
+                    }
+                    if (result.getItemsRemaining() > 0) {
+                        player.sendSystemMessage(Component.translatable(
+                                "gui.tradesystem.message.mailbox_items_waiting", result.getItemsRemaining()));
+                    }
+                }
+                
+                NetworkHandler.sendToPlayer(new MailboxSyncPacket(mailbox.getParcels(player.getUUID())), player);
+            } catch (Exception e) {
+                TradeMod.getLogger().error("处理玩家 {} 的邮箱操作时出错", player.getName().getString(), e);
+            }
+        });
+        context.setPacketHandled(true);
+    }
+}
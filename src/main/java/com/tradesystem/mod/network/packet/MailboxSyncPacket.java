@@ -0,0 +1,68 @@
+package com.tradesystem.mod.network.packet;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.client.ClientMailboxManager;
+import com.tradesystem.mod.data.OfflineMailbox;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 交易邮箱同步数据包
+ * 把玩家交易邮箱中的邮件列表发送到客户端
+ */
+public class MailboxSyncPacket {
+    
+    private final List<OfflineMailbox.Parcel> parcels;
+    
+    public MailboxSyncPacket(List<OfflineMailbox.Parcel> parcels) {
+        this.parcels = parcels != null ? parcels : new ArrayList<>();
+    }
+    
+    /**
+     * 编码数据包
+     */
+    public static void encode(MailboxSyncPacket packet, FriendlyByteBuf buffer) {
+        buffer.writeInt(packet.parcels.size());
+        for (OfflineMailbox.Parcel parcel : packet.parcels) {
+            buffer.writeNbt(parcel.toNBT());
+        }
+    }
+    
+    /**
+     * 解码数据包
+     */
+    public static MailboxSyncPacket decode(FriendlyByteBuf buffer) {
+        int size = buffer.readInt();
+        List<OfflineMailbox.Parcel> parcels = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            CompoundTag tag = buffer.readNbt();
+            if (tag != null) {
+                parcels.add(OfflineMailbox.Parcel.fromNBT(tag));
+            }
+        }
+        return new MailboxSyncPacket(parcels);
+    }
+    
+    /**
+     * 处理数据包
+     */
+    public static void handle(MailboxSyncPacket packet, Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> {
+            if (context.getDirection().getReceptionSide().isClient()) {
+                DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> {
+                    ClientMailboxManager.getInstance().updateParcels(packet.parcels);
+                    TradeMod.getLogger().debug("已同步 {} 封邮件到客户端", packet.parcels.size());
+                });
+            }
+        });
+        context.setPacketHandled(true);
+    }
+}
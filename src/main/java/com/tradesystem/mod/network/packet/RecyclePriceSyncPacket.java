@@ -0,0 +1,54 @@
+package com.tradesystem.mod.network.packet;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.data.RecyclePriceTable;
+import com.tradesystem.mod.manager.RecycleManager;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * 回收价格表同步数据包
+ * 登录和 /reload 后把服务器编译好的回收价格表发送到客户端，客户端据此预览回收价格
+ */
+public class RecyclePriceSyncPacket {
+    
+    private final RecyclePriceTable table;
+    
+    public RecyclePriceSyncPacket(RecyclePriceTable table) {
+        this.table = table != null ? table : RecyclePriceTable.EMPTY;
+    }
+    
+    /**
+     * 编码数据包
+     */
+    public static void encode(RecyclePriceSyncPacket packet, FriendlyByteBuf buffer) {
+        packet.table.write(buffer);
+    }
+    
+    /**
+     * 解码数据包
+     */
+    public static RecyclePriceSyncPacket decode(FriendlyByteBuf buffer) {
+        return new RecyclePriceSyncPacket(RecyclePriceTable.read(buffer));
+    }
+    
+    /**
+     * 处理数据包
+     */
+    public static void handle(RecyclePriceSyncPacket packet, Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> {
+            if (context.getDirection().getReceptionSide().isClient()) {
+                DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> {
+                    RecycleManager.getInstance().setPriceTable(packet.table);
+                    TradeMod.getLogger().debug("已同步 {} 种物品的回收价格到客户端", packet.table.size());
+                });
+            }
+        });
+        context.setPacketHandled(true);
+    }
+}
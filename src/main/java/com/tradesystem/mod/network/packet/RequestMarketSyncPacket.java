@@ -0,0 +1,60 @@
+package com.tradesystem.mod.network.packet;
+
+import com.tradesystem.mod.TradeMod;
+import com.tradesystem.mod.data.DataService;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * 请求市场同步数据包
+ * 客户端发现本地市场版本与增量不连续时，携带当前版本号向服务器请求完整快照
+ */
+public class RequestMarketSyncPacket {
+    
+    private final long knownVersion;
+    
+    public RequestMarketSyncPacket(long knownVersion) {
+        this.knownVersion = knownVersion;
+    }
+    
+    /**
+     * 编码数据包
+     */
+    public static void encode(RequestMarketSyncPacket packet, FriendlyByteBuf buffer) {
+        buffer.writeLong(packet.knownVersion);
+    }
+    
+    /**
+     * 解码数据包
+     */
+    public static RequestMarketSyncPacket decode(FriendlyByteBuf buffer) {
+        return new RequestMarketSyncPacket(buffer.readLong());
+    }
+    
+    /**
+     * 处理数据包
+     */
+    public static void handle(RequestMarketSyncPacket packet, Supplier<NetworkEvent.Context> contextSupplier) {
+        NetworkEvent.Context context = contextSupplier.get();
+        context.enqueueWork(() -> {
+            ServerPlayer player = context.getSender();
+            if (player != null) {
+                try {
+                    DataService.getInstance().handleMarketSyncRequest(player, packet.knownVersion);
+                } catch (Exception e) {
+                    TradeMod.getLogger().error("处理玩家 {} 的市场同步请求时出错: {}", 
+                            player.getName().getString(), e.getMessage());
+                }
+            }
+        });
+        context.setPacketHandled(true);
+    }
+    
+    // Getter
+    public long getKnownVersion() {
+        return knownVersion;
+    }
+}
@@ -54,21 +54,16 @@ public class UnlistItemPacket {
      */
     private static void handleUnlistItem(ServerPlayer player, UUID itemId) {
         try {
-            boolean success = ItemListingManager.getInstance().unlistItem(player, itemId);
-            String message;
-            
-            if (success) {
-                message = "gui.tradesystem.message.unlist_success";
-                player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(message));
-            } else {
-                message = "gui.tradesystem.message.unlist_failed";
+            ItemListingManager.getInstance().unlistItem(player, itemId).thenAccept(result -> {
+                boolean success = result.isSuccess();
+                String message = success ? "gui.tradesystem.message.unlist_success" : "gui.tradesystem.message.unlist_failed";
                 player.sendSystemMessage(net.minecraft.network.chat.Component.translatable(message));
-            }
-            
-            // 发送响应包给客户端，通知刷新界面
-            com.tradesystem.mod.network.packet.UnlistResponsePacket responsePacket = 
-                new com.tradesystem.mod.network.packet.UnlistResponsePacket(itemId, success, message);
-            com.tradesystem.mod.network.NetworkHandler.sendToPlayer(responsePacket, player);
+                
+                // 发送响应包给客户端，通知刷新界面
+                com.tradesystem.mod.network.packet.UnlistResponsePacket responsePacket = 
+                    new com.tradesystem.mod.network.packet.UnlistResponsePacket(itemId, success, message);
+                com.tradesystem.mod.network.NetworkHandler.sendToPlayer(responsePacket, player);
+            });
             
         } catch (Exception e) {
             com.tradesystem.mod.TradeMod.getLogger().error("处理下架物品请求时出错: {}", e.getMessage());
@@ -4,6 +4,7 @@ import com.tradesystem.mod.TradeMod;
 import com.tradesystem.mod.capability.IPlayerCurrency;
 import com.tradesystem.mod.capability.ModCapabilities;
 import com.tradesystem.mod.config.TradeConfig;
+import com.tradesystem.mod.data.CurrencyLedger;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
@@ -36,15 +37,8 @@ public class CurrencyUtil {
      */
     public static boolean setPlayerMoney(Player player, int amount) {
         return getPlayerCurrency(player).map(currency -> {
+            // 服务端的Capability是账本视图，同步和保存在tick结束时统一进行
             currency.setMoney(amount);
-            
-            // 立即保存到持久化存储
-            if (player instanceof net.minecraft.server.level.ServerPlayer serverPlayer) {
-                savePlayerCurrencyToDisk(serverPlayer, amount);
-                // 同步到客户端
-                syncCurrencyToClient(serverPlayer);
-            }
-            
             return true;
         }).orElse(false);
     }
@@ -56,22 +50,8 @@ public class CurrencyUtil {
         // 税收钩子 - 可以在这里添加税收逻辑
         int finalAmount = applyTaxHook(player, amount, TransactionType.INCOME);
         
-        boolean result = getPlayerCurrency(player).map(currency -> {
-            int oldAmount = currency.getMoney();
-            boolean success = currency.addMoney(finalAmount);
-            if (success && player instanceof net.minecraft.server.level.ServerPlayer serverPlayer) {
-                // 立即保存到持久化存储
-                savePlayerCurrencyToDisk(serverPlayer, currency.getMoney());
-                
-                // 立即同步到客户端
-                syncCurrencyToClient(serverPlayer);
-                // 发送金币变化消息
-                sendMoneyMessage(serverPlayer, oldAmount, currency.getMoney());
-            }
-            return success;
-        }).orElse(false);
-        
-        return result;
+        // 同步到客户端和金币变化消息在tick结束时合并发送
+        return getPlayerCurrency(player).map(currency -> currency.addMoney(finalAmount)).orElse(false);
     }
     
     /**
@@ -81,22 +61,8 @@ public class CurrencyUtil {
         // 税收钩子 - 可以在这里添加税收逻辑
         int finalAmount = applyTaxHook(player, amount, TransactionType.EXPENSE);
         
-        boolean result = getPlayerCurrency(player).map(currency -> {
-            int oldAmount = currency.getMoney();
-            boolean success = currency.removeMoney(finalAmount);
-            if (success && player instanceof net.minecraft.server.level.ServerPlayer serverPlayer) {
-                // 立即保存到持久化存储
-                savePlayerCurrencyToDisk(serverPlayer, currency.getMoney());
-                
-                // 立即同步到客户端
-                syncCurrencyToClient(serverPlayer);
-                // 发送金币变化消息
-                sendMoneyMessage(serverPlayer, oldAmount, currency.getMoney());
-            }
-            return success;
-        }).orElse(false);
-        
-        return result;
+        // 同步到客户端和金币变化消息在tick结束时合并发送
+        return getPlayerCurrency(player).map(currency -> currency.removeMoney(finalAmount)).orElse(false);
     }
     
     /**
@@ -118,40 +84,29 @@ public class CurrencyUtil {
     
     /**
      * 玩家间转账
+     * 扣款和入账在账本中一步完成，不会出现扣了款却没到账的情况
      */
-    public static boolean transferMoney(Player from, Player to, int amount) {
+    public static boolean transferMoney(Player from, Player to, long amount) {
         if (amount <= 0) {
             return false;
         }
         
-        if (!hasPlayerMoney(from, amount)) {
-            return false;
-        }
-        
-        if (removePlayerMoney(from, amount)) {
-            if (addPlayerMoney(to, amount)) {
-                return true;
-            } else {
-                // 如果给接收方添加金币失败，回滚操作
-                addPlayerMoney(from, amount);
-                return false;
-            }
-        }
-        
-        return false;
+        CurrencyLedger.TransferResult result = CurrencyLedger.getInstance()
+                .transfer(from.getUUID(), to.getUUID(), amount, UUID.randomUUID());
+        return result == CurrencyLedger.TransferResult.SUCCESS;
     }
     
     /**
      * 格式化金币数量显示
      */
-    public static String formatMoney(int amount) {
+    public static String formatMoney(long amount) {
         return String.format("%,d %s", amount, "金币");
     }
     
     /**
      * 创建金币数量的文本组件
      */
-    public static Component getMoneyComponent(int amount) {
+    public static Component getMoneyComponent(long amount) {
         return Component.literal(formatMoney(amount));
     }
     
@@ -177,8 +132,8 @@ public class CurrencyUtil {
     /**
      * 向玩家发送金币变化消息
      */
-    public static void sendMoneyMessage(ServerPlayer player, int oldAmount, int newAmount) {
-        int change = newAmount - oldAmount;
+    public static void sendMoneyMessage(ServerPlayer player, long oldAmount, long newAmount) {
+        long change = newAmount - oldAmount;
         String changeText;
         
         if (change > 0) {
@@ -204,12 +159,12 @@ public class CurrencyUtil {
     /**
      * 保存玩家金币到持久化存储
      */
-    public static void savePlayerCurrencyToDisk(net.minecraft.server.level.ServerPlayer player, int amount) {
+    public static void savePlayerCurrencyToDisk(net.minecraft.server.level.ServerPlayer player, long amount) {
         try {
             UUID playerId = player.getUUID();
             
-            // 保存到JsonDataManager
-            com.tradesystem.mod.data.JsonDataManager.getInstance().setPlayerCurrency(playerId, amount);
+            // 通过账本写入，账本和JsonDataManager保持一致
+            CurrencyLedger.getInstance().setBalance(playerId, amount);
             
             TradeMod.getLogger().debug("已保存玩家 {} 的金币到磁盘: {}", player.getName().getString(), amount);
         } catch (Exception e) {
@@ -220,10 +175,10 @@ public class CurrencyUtil {
     /**
      * 从持久化存储加载玩家金币
      */
-    public static int loadPlayerCurrencyFromDisk(net.minecraft.server.level.ServerPlayer player) {
+    public static long loadPlayerCurrencyFromDisk(net.minecraft.server.level.ServerPlayer player) {
         try {
             UUID playerId = player.getUUID();
-            int amount = com.tradesystem.mod.data.JsonDataManager.getInstance().getPlayerCurrency(playerId);
+            long amount = CurrencyLedger.getInstance().getBalance(playerId);
             
             TradeMod.getLogger().debug("从磁盘加载玩家 {} 的金币: {}", player.getName().getString(), amount);
             return amount;
@@ -233,13 +188,35 @@ public class CurrencyUtil {
         }
     }
     
+    /**
+     * 刷新本tick内的金币变化
+     * 账本写入一次，每个有变化的在线玩家只收到一个同步包和一条汇总的金币变化消息
+     */
+    public static void flushCurrencyChanges(net.minecraft.server.MinecraftServer server) {
+        java.util.Map<UUID, Long> changes = CurrencyLedger.getInstance().flush();
+        if (changes.isEmpty() || server == null) {
+            return;
+        }
+        
+        for (java.util.Map.Entry<UUID, Long> entry : changes.entrySet()) {
+            ServerPlayer player = server.getPlayerList().getPlayer(entry.getKey());
+            if (player == null) {
+                continue;
+            }
+            
+            syncCurrencyToClient(player);
+            long balance = CurrencyLedger.getInstance().getBalance(entry.getKey());
+            sendMoneyMessage(player, balance - entry.getValue(), balance);
+        }
+    }
+    
     /**
      * 同步玩家金币到客户端
      */
     public static void syncCurrencyToClient(net.minecraft.server.level.ServerPlayer player) {
         getPlayerCurrency(player).ifPresent(currency -> {
             net.minecraft.nbt.CompoundTag data = new net.minecraft.nbt.CompoundTag();
-            data.putInt("money", currency.getMoney());
+            data.putLong("money", currency.getBalance());
             
             com.tradesystem.mod.network.packet.DataSyncPacket packet = 
                 new com.tradesystem.mod.network.packet.DataSyncPacket(
@@ -0,0 +1,146 @@
+package com.tradesystem.mod.util;
+
+import com.tradesystem.mod.data.ItemKey;
+import net.minecraft.world.Container;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.*;
+
+/**
+ * 背包扫描工具
+ * 检查和扣除背包物品的统一入口，取代各管理器中各自的 hasEnoughItems/removeItemFromInventory。
+ *
+ * 每次调用只遍历一次背包，为需要的物品建立 指纹 -> 槽位 的临时索引：先按物品类型过滤，
+ * 只有类型匹配的槽位才计算指纹（ItemKey，注册名+NBT摘要，每个槽位只算一次），
+ * 不再对每个槽位逐一做NBT深比较，检查和扣除共用同一个索引。
+ *
+ * 多个物品的扣除是原子的：全部数量都够时才修改背包，否则背包保持不变。
+ * 只能在服务器主线程调用
+ */
+public final class InventoryScanner {
+
+    private InventoryScanner() {}
+
+    /**
+     * 背包中与模板相同（物品和NBT都相同）的物品总数
+     */
+    public static int count(Container container, ItemStack template) {
+        if (template.isEmpty()) {
+            return 0;
+        }
+        ItemKey key = ItemKey.of(template);
+        int total = 0;
+        for (int slot : index(container, Collections.singletonMap(template.getItem(), Collections.singleton(key)))
+                .getOrDefault(key, Collections.emptyList())) {
+            total += container.getItem(slot).getCount();
+        }
+        return total;
+    }
+
+    /**
+     * 背包中是否有足够数量的物品（数量取 required.getCount()）
+     */
+    public static boolean contains(Container container, ItemStack required) {
+        return required.isEmpty() || count(container, required) >= required.getCount();
+    }
+
+    /**
+     * 扣除一种物品，数量不够时不做任何修改
+     */
+    public static boolean remove(Container container, ItemStack required) {
+        return removeAll(container, Collections.singletonList(required));
+    }
+
+    /**
+     * 扣除多种物品，全部或全不：任何一种数量不够时返回false，背包保持不变。
+     * 相同的物品可以出现多次，按总数检查
+     */
+    public static boolean removeAll(Container container, Collection<ItemStack> required) {
+        Map<ItemKey, Integer> needed = new LinkedHashMap<>();
+        Map<Item, Set<ItemKey>> wanted = new HashMap<>();
+        for (ItemStack stack : required) {
+            if (stack.isEmpty()) {
+                continue;
+            }
+            ItemKey key = ItemKey.of(stack);
+            needed.merge(key, stack.getCount(), Integer::sum);
+            wanted.computeIfAbsent(stack.getItem(), item -> new HashSet<>()).add(key);
+        }
+        if (needed.isEmpty()) {
+            return true;
+        }
+
+        Map<ItemKey, List<Integer>> slots = index(container, wanted);
+
+        for (Map.Entry<ItemKey, Integer> entry : needed.entrySet()) {
+            int available = 0;
+            for (int slot : slots.getOrDefault(entry.getKey(), Collections.emptyList())) {
+                available += container.getItem(slot).getCount();
+            }
+            if (available < entry.getValue()) {
+                return false;
+            }
+        }
+
+        for (Map.Entry<ItemKey, Integer> entry : needed.entrySet()) {
+            int remaining = entry.getValue();
+            for (int slot : slots.get(entry.getKey())) {
+                if (remaining <= 0) {
+                    break;
+                }
+                ItemStack slotStack = container.getItem(slot);
+                int take = Math.min(remaining, slotStack.getCount());
+                slotStack.shrink(take);
+                remaining -= take;
+            }
+        }
+        container.setChanged();
+        return true;
+    }
+
+    /**
+     * 从指定槽位取出指定数量，全部或全不：槽位无效、为空或数量不够时返回null，背包保持不变。
+     * @param quantities 槽位 -> 数量，同一槽位只能出现一次
+     * @return 按传入顺序取出的物品副本
+     */
+    public static List<ItemStack> takeFromSlots(Container container, Map<Integer, Integer> quantities) {
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            int slot = entry.getKey();
+            int quantity = entry.getValue();
+            if (slot < 0 || slot >= container.getContainerSize() || quantity <= 0
+                    || container.getItem(slot).getCount() < quantity) {
+                return null;
+            }
+        }
+
+        List<ItemStack> taken = new ArrayList<>(quantities.size());
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            taken.add(container.getItem(entry.getKey()).split(entry.getValue()));
+        }
+        container.setChanged();
+        return taken;
+    }
+
+    /**
+     * 遍历一次背包，为需要的指纹建立槽位索引；类型不在 wanted 中的槽位不计算指纹
+     */
+    private static Map<ItemKey, List<Integer>> index(Container container, Map<Item, Set<ItemKey>> wanted) {
+        Map<ItemKey, List<Integer>> slots = new HashMap<>();
+        for (int slot = 0; slot < container.getContainerSize(); slot++) {
+            ItemStack stack = container.getItem(slot);
+            if (stack.isEmpty()) {
+                continue;
+            }
+            Set<ItemKey> keys = wanted.get(stack.getItem());
+            if (keys == null) {
+                continue;
+            }
+            ItemKey key = ItemKey.of(stack);
+            if (keys.contains(key)) {
+                slots.computeIfAbsent(key, k -> new ArrayList<>()).add(slot);
+            }
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,535 @@
+package com.tradesystem.mod.util;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 不可变的持久化哈希映射（HAMT，哈希数组映射字典树）
+ * 每层按哈希值的 5 位分成 32 路，用位图只保存存在的分支。put/remove 不修改原映射，
+ * 而是返回新版本：只复制从根到被修改叶子的一条路径（约 log32(n) 个节点），其余节点与旧版本共享。
+ *
+ * 因此写入方可以不断发布新版本，读取方拿到某个版本的引用后可以随意遍历，不需要加锁或复制，
+ * 也不会看到之后的修改。不允许null键和null值
+ *
+ * @param <K> 键
+ * @param <V> 值
+ */
+public final class PersistentMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 空映射
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * 由普通Map构建
+     */
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        PersistentMap<K, V> result = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获取值，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        Leaf leaf = root.find(0, hash(key), key);
+        return leaf != null ? (V) leaf.value : null;
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 返回加入或替换了 key 的新版本；值与原来的是同一个对象时返回当前版本
+     */
+    public PersistentMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+
+        int hash = hash(key);
+        Leaf leaf = new Leaf(hash, key, value);
+        if (root == null) {
+            return new PersistentMap<>(BitmapNode.of(0, leaf), 1);
+        }
+
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(0, leaf, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * 返回去掉 key 的新版本；key 不存在时返回当前版本
+     */
+    public PersistentMap<K, V> remove(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        int hash = hash(key);
+        Object newRoot = root.remove(0, hash, key);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        Node node = newRoot instanceof Leaf ? BitmapNode.of(0, (Leaf) newRoot) : (Node) newRoot;
+        return new PersistentMap<>(node, size - 1);
+    }
+
+    /**
+     * 遍历所有键值对（顺序不固定）
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return (Iterator<Map.Entry<K, V>>) (Iterator<?>) new LeafIterator(root);
+    }
+
+    /**
+     * 只读的 java.util.Map 视图，不复制数据；查找走字典树，遍历直接遍历当前版本
+     */
+    public Map<K, V> asMap() {
+        return new AbstractMap<K, V>() {
+            @Override
+            public V get(Object key) {
+                return PersistentMap.this.get(key);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return PersistentMap.this.containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Entry<K, V>> entrySet() {
+                return new AbstractSet<Entry<K, V>>() {
+                    @Override
+                    public Iterator<Entry<K, V>> iterator() {
+                        return PersistentMap.this.iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * 两个叶子放在同一个位置时，向下建立足以区分它们的子树
+     */
+    private static Node merge(int shift, Leaf a, Leaf b) {
+        if (a.hash == b.hash) {
+            return new CollisionNode(a.hash, new Leaf[]{a, b});
+        }
+        int bitA = bit(a.hash, shift);
+        int bitB = bit(b.hash, shift);
+        if (bitA == bitB) {
+            return new BitmapNode(bitA, new Object[]{merge(shift + BITS, a, b)});
+        }
+        Object[] slots = Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[]{a, b} : new Object[]{b, a};
+        return new BitmapNode(bitA | bitB, slots);
+    }
+
+    /**
+     * 键值对，同时作为只读的 Map.Entry 返回给调用方
+     */
+    private static final class Leaf implements Map.Entry<Object, Object> {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean matches(int hash, Object key) {
+            return this.hash == hash && this.key.equals(key);
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return key.equals(other.getKey()) && value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private abstract static class Node {
+        abstract Leaf find(int shift, int hash, Object key);
+
+        /**
+         * 加入或替换叶子，没有变化时返回自身；新增键时把 added[0] 置为true
+         */
+        abstract Node put(int shift, Leaf leaf, boolean[] added);
+
+        /**
+         * 删除键，没有变化时返回自身；删除后为空返回null，只剩一个叶子时返回该叶子由上层直接保存
+         */
+        abstract Object remove(int shift, int hash, Object key);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        /**
+         * 子节点（叶子或节点）数组，供迭代器使用
+         */
+        abstract Object[] slots();
+    }
+
+    /**
+     * 位图节点：bitmap 中第 i 位为1表示存在第 i 个分支，slots 按位序紧凑存放叶子或子节点
+     */
+    private static final class BitmapNode extends Node {
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        static BitmapNode of(int shift, Leaf leaf) {
+            return new BitmapNode(bit(leaf.hash, shift), new Object[]{leaf});
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Leaf find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.matches(hash, key) ? leaf : null;
+            }
+            return ((Node) slot).find(shift + BITS, hash, key);
+        }
+
+        @Override
+        Node put(int shift, Leaf leaf, boolean[] added) {
+            int bit = bit(leaf.hash, shift);
+            int idx = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, idx);
+                newSlots[idx] = leaf;
+                System.arraycopy(slots, idx, newSlots, idx + 1, slots.length - idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            Object slot = slots[idx];
+            Object replacement;
+            if (slot instanceof Leaf) {
+                Leaf existing = (Leaf) slot;
+                if (existing.matches(leaf.hash, leaf.key)) {
+                    if (existing.value == leaf.value) {
+                        return this;
+                    }
+                    replacement = leaf;
+                } else {
+                    added[0] = true;
+                    replacement = merge(shift + BITS, existing, leaf);
+                }
+            } else {
+                Node child = (Node) slot;
+                Node newChild = child.put(shift + BITS, leaf, added);
+                if (newChild == child) {
+                    return this;
+                }
+                replacement = newChild;
+            }
+
+            Object[] newSlots = slots.clone();
+            newSlots[idx] = replacement;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        @Override
+        Object remove(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object slot = slots[idx];
+
+            Object replacement;
+            if (slot instanceof Leaf) {
+                if (!((Leaf) slot).matches(hash, key)) {
+                    return this;
+                }
+                replacement = null;
+            } else {
+                replacement = ((Node) slot).remove(shift + BITS, hash, key);
+                if (replacement == slot) {
+                    return this;
+                }
+            }
+
+            if (replacement != null) {
+                Object[] newSlots = slots.clone();
+                newSlots[idx] = replacement;
+                return new BitmapNode(bitmap, newSlots);
+            }
+
+            if (slots.length == 1) {
+                return null;
+            }
+            if (slots.length == 2) {
+                // 只剩一个叶子时交给上层直接保存，避免留下只有一个分支的节点链
+                Object other = slots[1 - idx];
+                if (other instanceof Leaf) {
+                    return other;
+                }
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, idx);
+            System.arraycopy(slots, idx + 1, newSlots, idx, slots.length - idx - 1);
+            return new BitmapNode(bitmap & ~bit, newSlots);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Object slot : slots) {
+                if (slot instanceof Leaf) {
+                    Leaf leaf = (Leaf) slot;
+                    action.accept(leaf.key, leaf.value);
+                } else {
+                    ((Node) slot).forEach(action);
+                }
+            }
+        }
+
+        @Override
+        Object[] slots() {
+            return slots;
+        }
+    }
+
+    /**
+     * 哈希值完全相同的键放在同一个冲突节点中，线性查找
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Leaf find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int idx = indexOf(key);
+            return idx >= 0 ? leaves[idx] : null;
+        }
+
+        @Override
+        Node put(int shift, Leaf leaf, boolean[] added) {
+            if (leaf.hash != hash) {
+                // 哈希不同的键落到这里：在当前层建立位图节点，把冲突节点作为它的一个分支
+                return new BitmapNode(bit(hash, shift), new Object[]{this}).put(shift, leaf, added);
+            }
+            int idx = indexOf(leaf.key);
+            if (idx >= 0) {
+                if (leaves[idx].value == leaf.value) {
+                    return this;
+                }
+                Leaf[] newLeaves = leaves.clone();
+                newLeaves[idx] = leaf;
+                return new CollisionNode(hash, newLeaves);
+            }
+            Leaf[] newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+            newLeaves[leaves.length] = leaf;
+            added[0] = true;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        Object remove(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return this;
+            }
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return this;
+            }
+            if (leaves.length == 2) {
+                return leaves[1 - idx];
+            }
+            Leaf[] newLeaves = new Leaf[leaves.length - 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, idx);
+            System.arraycopy(leaves, idx + 1, newLeaves, idx, leaves.length - idx - 1);
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Leaf leaf : leaves) {
+                action.accept(leaf.key, leaf.value);
+            }
+        }
+
+        @Override
+        Object[] slots() {
+            return leaves;
+        }
+    }
+
+    /**
+     * 深度优先遍历叶子，栈深度不超过字典树高度
+     */
+    private static final class LeafIterator implements Iterator<Leaf> {
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+        private Leaf next;
+
+        LeafIterator(Node root) {
+            if (root != null) {
+                arrays.push(root.slots());
+                positions.push(0);
+            }
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] slots = arrays.peek();
+                int pos = positions.pop();
+                if (pos >= slots.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(pos + 1);
+                Object slot = slots[pos];
+                if (slot instanceof Leaf) {
+                    next = (Leaf) slot;
+                    return;
+                }
+                arrays.push(((Node) slot).slots());
+                positions.push(0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Leaf next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf result = next;
+            advance();
+            return result;
+        }
+    }
+}
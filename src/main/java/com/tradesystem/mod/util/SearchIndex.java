@@ -0,0 +1,246 @@
+package com.tradesystem.mod.util;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.enchantment.Enchantment;
+import net.minecraft.world.item.enchantment.EnchantmentHelper;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.util.*;
+
+/**
+ * 增量全文搜索索引
+ * 对每个文档的若干字段建立单字和双字（bigram）倒排索引，
+ * 搜索时先用倒排表求候选集，再校验子串并按匹配位置和字段排序，不需要扫描全部文档
+ *
+ * 字段按重要性从高到低传入，例如：显示名称、卖家、注册名、附魔
+ *
+ * @param <K> 文档键
+ * @param <V> 文档值
+ */
+public class SearchIndex<K, V> {
+
+    // 匹配类型，数值越小排名越靠前
+    private static final int MATCH_EXACT = 0;
+    private static final int MATCH_PREFIX = 1;
+    private static final int MATCH_WORD = 2;
+    private static final int MATCH_CONTAINS = 3;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final Map<K, Document<V>> documents = new HashMap<>();
+    private final Map<String, Set<K>> postings = new HashMap<>();
+
+    /**
+     * 添加或更新文档
+     */
+    public synchronized void put(K key, V value, List<String> fields) {
+        remove(key);
+
+        List<String> normalized = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            if (field != null && !field.isEmpty()) {
+                normalized.add(normalize(field));
+            }
+        }
+
+        Document<V> document = new Document<>(value, normalized);
+        documents.put(key, document);
+        for (String gram : document.grams()) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * 移除文档
+     */
+    public synchronized void remove(K key) {
+        Document<V> document = documents.remove(key);
+        if (document == null) {
+            return;
+        }
+
+        for (String gram : document.grams()) {
+            Set<K> keys = postings.get(gram);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public synchronized void clear() {
+        documents.clear();
+        postings.clear();
+    }
+
+    /**
+     * 文档数量
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * 搜索包含关键词的文档，按相关度排序
+     * 关键词为空时返回空列表，由调用方决定是否展示全部
+     */
+    public synchronized List<V> search(String keyword) {
+        if (keyword == null) {
+            return new ArrayList<>();
+        }
+        String query = normalize(keyword).trim();
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 取各个 gram 对应倒排表中最短的一个作为候选集，其余用于过滤
+        List<Set<K>> lists = new ArrayList<>();
+        for (String gram : queryGrams(query)) {
+            Set<K> keys = postings.get(gram);
+            if (keys == null) {
+                return new ArrayList<>();
+            }
+            lists.add(keys);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        List<Ranked<V>> ranked = new ArrayList<>();
+        Set<K> smallest = lists.get(0);
+        candidates:
+        for (K key : smallest) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(key)) {
+                    continue candidates;
+                }
+            }
+
+            // gram 命中不代表子串连续，需要再校验一次
+            Document<V> document = documents.get(key);
+            int score = document.score(query);
+            if (score != NO_MATCH) {
+                ranked.add(new Ranked<>(document.value, score, document.fields.get(0)));
+            }
+        }
+
+        ranked.sort(Comparator.<Ranked<V>>comparingInt(r -> r.score).thenComparing(r -> r.primary));
+
+        List<V> result = new ArrayList<>(ranked.size());
+        for (Ranked<V> r : ranked) {
+            result.add(r.value);
+        }
+        return result;
+    }
+
+    /**
+     * 物品的附加搜索字段：注册名和附魔名称
+     */
+    public static List<String> itemTerms(ItemStack itemStack) {
+        List<String> terms = new ArrayList<>();
+
+        ResourceLocation itemId = ForgeRegistries.ITEMS.getKey(itemStack.getItem());
+        if (itemId != null) {
+            terms.add(itemId.toString());
+        }
+
+        for (Map.Entry<Enchantment, Integer> entry : EnchantmentHelper.getEnchantments(itemStack).entrySet()) {
+            terms.add(entry.getKey().getFullname(entry.getValue()).getString());
+            ResourceLocation enchantmentId = ForgeRegistries.ENCHANTMENTS.getKey(entry.getKey());
+            if (enchantmentId != null) {
+                terms.add(enchantmentId.getPath());
+            }
+        }
+
+        return terms;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 单个字符的关键词使用单字索引，更长的关键词使用双字索引
+     */
+    private static Set<String> queryGrams(String query) {
+        Set<String> grams = new HashSet<>();
+        if (query.length() == 1) {
+            grams.add(query);
+        } else {
+            for (int i = 0; i + 1 < query.length(); i++) {
+                grams.add(query.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 索引中的文档
+     */
+    private static class Document<V> {
+        final V value;
+        final List<String> fields;
+
+        Document(V value, List<String> fields) {
+            this.value = value;
+            this.fields = fields.isEmpty() ? Collections.singletonList("") : fields;
+        }
+
+        Set<String> grams() {
+            Set<String> grams = new HashSet<>();
+            for (String field : fields) {
+                for (int i = 0; i < field.length(); i++) {
+                    grams.add(field.substring(i, i + 1));
+                    if (i + 1 < field.length()) {
+                        grams.add(field.substring(i, i + 2));
+                    }
+                }
+            }
+            return grams;
+        }
+
+        /**
+         * 计算匹配得分：匹配类型优先，其次是字段顺序
+         */
+        int score(String query) {
+            int best = NO_MATCH;
+            for (int i = 0; i < fields.size(); i++) {
+                int match = matchType(fields.get(i), query);
+                if (match != NO_MATCH) {
+                    best = Math.min(best, match * 16 + Math.min(i, 15));
+                }
+            }
+            return best;
+        }
+
+        private static int matchType(String field, String query) {
+            int index = field.indexOf(query);
+            if (index < 0) {
+                return NO_MATCH;
+            }
+            if (index == 0) {
+                return field.length() == query.length() ? MATCH_EXACT : MATCH_PREFIX;
+            }
+            char before = field.charAt(index - 1);
+            if (Character.isWhitespace(before) || before == ':' || before == '_') {
+                return MATCH_WORD;
+            }
+            return MATCH_CONTAINS;
+        }
+    }
+
+    private static class Ranked<V> {
+        final V value;
+        final int score;
+        final String primary;
+
+        Ranked(V value, int score, String primary) {
+            this.value = value;
+            this.score = score;
+            this.primary = primary;
+        }
+    }
+}
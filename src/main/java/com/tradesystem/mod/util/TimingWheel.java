@@ -0,0 +1,201 @@
+package com.tradesystem.mod.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分层时间轮
+ * 以固定的刻度（毫秒）计时，共 LEVELS 层、每层 64 个槽：第 0 层每槽一个刻度，第 n 层每槽 64^n 个刻度。
+ * 到期时间较远的任务放在高层，时间推进到该槽时再下放到低层（级联），最终在第 0 层到期。
+ *
+ * 添加、取消都是 O(1)；每推进一个刻度只处理当前槽和需要级联的槽，
+ * 代价与到期和级联的任务数成正比，与总任务数无关。
+ * 同一个键只保留一个到期时间，重复添加视为修改到期时间。
+ * 所有方法加锁，可以在不同线程中添加、取消和推进
+ *
+ * @param <K> 任务键
+ */
+public class TimingWheel<K> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    // 时间轮能直接表示的最大跨度（刻度），更远的任务先放在最高层，级联时重新计算位置
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Node<K>[][] buckets;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+
+    // 已经处理完的最后一个刻度
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis必须大于0: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.buckets = new Node[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Node<K> head = new Node<>(null, 0);
+                head.prev = head;
+                head.next = head;
+                buckets[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * 添加或修改任务的到期时间，已经过去的时间在下一个刻度到期
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        Node<K> node = nodes.get(key);
+        if (node != null) {
+            unlink(node);
+        }
+        long deadlineTick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        node = new Node<>(key, deadlineTick);
+        nodes.put(key, node);
+        place(node);
+    }
+
+    /**
+     * 取消任务
+     * @return 任务存在并被取消时返回true
+     */
+    public synchronized boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * 是否包含任务
+     */
+    public synchronized boolean contains(K key) {
+        return nodes.containsKey(key);
+    }
+
+    /**
+     * 待到期的任务数
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 推进到 nowMillis，返回期间到期的任务键（按到期刻度排列），返回的任务已从时间轮中移除
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        if (targetTick <= currentTick) {
+            return new ArrayList<>(0);
+        }
+        if (nodes.isEmpty()) {
+            // 没有任务时直接跳到目标刻度，时钟大幅跳变也不会逐个刻度空转
+            currentTick = targetTick;
+            return new ArrayList<>(0);
+        }
+
+        List<K> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // 低位归零时把高层对应的槽下放
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+            }
+
+            Node<K> head = buckets[0][(int) (currentTick & SLOT_MASK)];
+            for (Node<K> node = head.next; node != head; ) {
+                Node<K> next = node.next;
+                if (node.deadlineTick <= currentTick) {
+                    unlink(node);
+                    nodes.remove(node.key);
+                    expired.add(node.key);
+                }
+                node = next;
+            }
+
+            if (nodes.isEmpty()) {
+                currentTick = targetTick;
+            }
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int slot) {
+        Node<K> head = buckets[level][slot];
+        Node<K> node = head.next;
+        // 先摘下整个槽再逐个重新放置，重新放置可能落回同一层
+        head.prev = head;
+        head.next = head;
+        while (node != head) {
+            Node<K> next = node.next;
+            node.prev = null;
+            node.next = null;
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Node<K> node) {
+        long delta = node.deadlineTick - currentTick;
+        long tick = node.deadlineTick;
+        if (delta >= MAX_SPAN) {
+            // 超出范围时先放在最高层的最远槽，级联到该槽时再按剩余时间重新放置
+            tick = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+        Node<K> head = buckets[level][slot];
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private static <K> void unlink(Node<K> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    private static final class Node<K> {
+        final K key;
+        final long deadlineTick;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
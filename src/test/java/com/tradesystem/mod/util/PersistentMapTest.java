@@ -0,0 +1,262 @@
+package com.tradesystem.mod.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentMapTest {
+
+    /**
+     * 哈希值由测试指定的键，用于构造共享前缀的深层节点和完全相同的哈希冲突
+     */
+    private static final class Key {
+        private final String name;
+        private final int hash;
+
+        Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).name.equals(name) && ((Key) o).hash == hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return name + "#" + hash;
+        }
+    }
+
+    @Test
+    void putAndGet() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 2000; i++) {
+            map = map.put("key" + i, i);
+        }
+
+        assertEquals(2000, map.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i, map.get("key" + i));
+        }
+        assertNull(map.get("missing"));
+        assertFalse(map.containsKey("missing"));
+        assertNull(map.get(null));
+    }
+
+    @Test
+    void putLeavesPreviousVersionUnchanged() {
+        PersistentMap<String, Integer> first = PersistentMap.<String, Integer>empty().put("a", 1);
+        PersistentMap<String, Integer> second = first.put("b", 2);
+
+        assertEquals(1, first.size());
+        assertNull(first.get("b"));
+        assertEquals(2, second.size());
+        assertEquals(1, second.get("a"));
+        assertEquals(2, second.get("b"));
+    }
+
+    @Test
+    void overwriteReplacesValueWithoutChangingSize() {
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        PersistentMap<String, Integer> updated = map.put("a", 10);
+
+        assertEquals(2, updated.size());
+        assertEquals(10, updated.get("a"));
+        assertEquals(1, map.get("a"));
+        // 同一个值对象不产生新版本
+        assertSame(updated, updated.put("a", updated.get("a")));
+    }
+
+    @Test
+    void rejectsNullKeysAndValues() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(NullPointerException.class, () -> map.put("a", null));
+    }
+
+    @Test
+    void removeReturnsNewVersion() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 100; i++) {
+            map = map.put("key" + i, i);
+        }
+        PersistentMap<String, Integer> removed = map.remove("key50");
+
+        assertEquals(99, removed.size());
+        assertNull(removed.get("key50"));
+        assertEquals(50, map.get("key50"));
+        assertEquals(100, map.size());
+        assertSame(removed, removed.remove("key50"));
+        assertSame(removed, removed.remove(null));
+    }
+
+    @Test
+    void removingEverythingReturnsEmpty() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 500; i++) {
+            map = map.put("key" + i, i);
+        }
+        for (int i = 0; i < 500; i++) {
+            map = map.remove("key" + i);
+        }
+
+        assertTrue(map.isEmpty());
+        assertSame(PersistentMap.empty(), map);
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    void removeCollapsesDeepSubtreeToRemainingLeaf() {
+        // 扰动（h ^ h >>> 16）之后两个哈希为 0x02000000 和 0，低 25 位相同，
+        // 两个键之间要建立 5 层只有一个分支的节点
+        Key a = new Key("a", 0x02000200);
+        Key b = new Key("b", 0);
+        Key sibling = new Key("sibling", 1);
+
+        PersistentMap<Key, String> map = PersistentMap.<Key, String>empty().put(sibling, "s").put(a, "a").put(b, "b");
+        assertEquals("a", map.get(a));
+        assertEquals("b", map.get(b));
+
+        PersistentMap<Key, String> collapsed = map.remove(a);
+        assertEquals(2, collapsed.size());
+        assertNull(collapsed.get(a));
+        assertEquals("b", collapsed.get(b));
+        assertEquals("s", collapsed.get(sibling));
+        assertEquals(Set.of(b, sibling), collapsed.asMap().keySet());
+
+        // 收缩后的叶子再次与新键共享前缀时重新向下展开
+        Key c = new Key("c", 0x04000400);
+        PersistentMap<Key, String> regrown = collapsed.put(c, "c");
+        assertEquals(3, regrown.size());
+        assertEquals("b", regrown.get(b));
+        assertEquals("c", regrown.get(c));
+
+        PersistentMap<Key, String> single = collapsed.remove(sibling);
+        assertEquals(1, single.size());
+        assertEquals("b", single.get(b));
+        assertSame(PersistentMap.empty(), single.remove(b));
+    }
+
+    @Test
+    void keysWithIdenticalHashesShareCollisionNode() {
+        Key first = new Key("first", 42);
+        Key second = new Key("second", 42);
+        Key third = new Key("third", 42);
+        Key other = new Key("other", 42 + (1 << 5));
+
+        PersistentMap<Key, Integer> map = PersistentMap.<Key, Integer>empty()
+                .put(first, 1).put(second, 2).put(third, 3).put(other, 4);
+        assertEquals(4, map.size());
+        assertEquals(1, map.get(first));
+        assertEquals(2, map.get(second));
+        assertEquals(3, map.get(third));
+        assertEquals(4, map.get(other));
+        assertNull(map.get(new Key("missing", 42)));
+
+        PersistentMap<Key, Integer> overwritten = map.put(second, 20);
+        assertEquals(4, overwritten.size());
+        assertEquals(20, overwritten.get(second));
+        assertEquals(2, map.get(second));
+
+        PersistentMap<Key, Integer> removed = overwritten.remove(first);
+        assertEquals(3, removed.size());
+        assertNull(removed.get(first));
+        assertEquals(20, removed.get(second));
+        assertSame(removed, removed.remove(new Key("missing", 42)));
+
+        // 冲突节点只剩一个键时收缩为叶子
+        PersistentMap<Key, Integer> last = removed.remove(third);
+        assertEquals(2, last.size());
+        assertEquals(20, last.get(second));
+        assertEquals(4, last.get(other));
+        assertEquals(Map.of(second, 20, other, 4), new HashMap<>(last.asMap()));
+    }
+
+    @Test
+    void iterationVisitsEveryEntryOnce() {
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 300; i++) {
+            // 每 3 个键哈希相同，同时混入共享低位的深层分支
+            Key key = new Key("k" + i, (i / 3) << 10);
+            expected.put(key, i);
+            map = map.put(key, i);
+        }
+
+        Map<Key, Integer> iterated = new HashMap<>();
+        for (Map.Entry<Key, Integer> entry : map) {
+            assertNull(iterated.put(entry.getKey(), entry.getValue()), "重复遍历 " + entry.getKey());
+        }
+        assertEquals(expected, iterated);
+
+        Map<Key, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+
+        assertEquals(expected, map.asMap());
+        assertEquals(expected.size(), map.asMap().entrySet().size());
+    }
+
+    @Test
+    void iteratorIsExhaustedCorrectly() {
+        Iterator<Map.Entry<String, Integer>> empty = PersistentMap.<String, Integer>empty().iterator();
+        assertFalse(empty.hasNext());
+        assertThrows(NoSuchElementException.class, empty::next);
+
+        Iterator<Map.Entry<String, Integer>> single = PersistentMap.<String, Integer>empty().put("a", 1).iterator();
+        assertTrue(single.hasNext());
+        Map.Entry<String, Integer> entry = single.next();
+        assertEquals("a", entry.getKey());
+        assertEquals(1, entry.getValue());
+        assertThrows(UnsupportedOperationException.class, () -> entry.setValue(2));
+        assertFalse(single.hasNext());
+        assertThrows(NoSuchElementException.class, single::next);
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(20240601L);
+        Map<Key, Integer> model = new HashMap<>();
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        List<PersistentMap<Key, Integer>> versions = new ArrayList<>();
+        List<Map<Key, Integer>> snapshots = new ArrayList<>();
+
+        for (int step = 0; step < 20000; step++) {
+            // 哈希只取少量取值，同时产生冲突节点和多层位图节点
+            int id = random.nextInt(400);
+            Key key = new Key("k" + id, (id % 97) * 0x01010101);
+            if (random.nextInt(3) == 0) {
+                model.remove(key);
+                map = map.remove(key);
+            } else {
+                int value = random.nextInt(1000);
+                model.put(key, value);
+                map = map.put(key, value);
+            }
+
+            assertEquals(model.size(), map.size());
+            if (step % 1000 == 0) {
+                versions.add(map);
+                snapshots.add(new HashMap<>(model));
+            }
+        }
+
+        assertEquals(model, map.asMap());
+        for (Key key : model.keySet()) {
+            assertEquals(model.get(key), map.get(key));
+        }
+        // 旧版本不受之后的修改影响
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(snapshots.get(i), versions.get(i).asMap());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.tradesystem.mod.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void expiresOnDeadlineTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        wheel.schedule("a", 5);
+
+        assertTrue(wheel.advance(4).isEmpty());
+        assertTrue(wheel.contains("a"));
+        assertEquals(List.of("a"), wheel.advance(5));
+        assertFalse(wheel.contains("a"));
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(100).isEmpty());
+    }
+
+    @Test
+    void deadlineRoundsUpToTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(50, 0);
+        wheel.schedule("a", 120);
+
+        assertTrue(wheel.advance(149).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(150));
+    }
+
+    @Test
+    void pastDeadlineExpiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 1000);
+        wheel.schedule("late", 0);
+
+        assertTrue(wheel.advance(1009).isEmpty());
+        assertEquals(List.of("late"), wheel.advance(1010));
+    }
+
+    @Test
+    void cascadesThroughEveryLevel() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        // 分别落在第 0 到第 4 层，级联到第 0 层后在准确的刻度到期
+        long[] deadlines = {63, 64, 64 * 64 + 3, 64L * 64 * 64 + 7, 64L * 64 * 64 * 64 + 11};
+        for (long deadline : deadlines) {
+            wheel.schedule("t" + deadline, deadline);
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        for (long deadline : deadlines) {
+            assertTrue(wheel.advance(deadline - 1).isEmpty(), "提前到期: " + deadline);
+            assertEquals(List.of("t" + deadline), wheel.advance(deadline));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void expiresInDeadlineOrderWithinOneAdvance() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 0);
+        List<Integer> deadlines = new ArrayList<>();
+        for (int i = 1; i <= 5000; i += 7) {
+            deadlines.add(i);
+        }
+        List<Integer> shuffled = new ArrayList<>(deadlines);
+        Collections.shuffle(shuffled, new Random(7));
+        for (int deadline : shuffled) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        assertEquals(deadlines, wheel.advance(5000));
+    }
+
+    @Test
+    void cancelledTasksNeverExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        wheel.schedule("near", 3);
+        wheel.schedule("far", 10_000);
+        wheel.schedule("kept", 20_000);
+
+        assertTrue(wheel.cancel("near"));
+        assertTrue(wheel.cancel("far"));
+        assertFalse(wheel.cancel("far"));
+        assertFalse(wheel.cancel("unknown"));
+        assertEquals(1, wheel.size());
+
+        assertTrue(wheel.advance(19_999).isEmpty());
+        assertEquals(List.of("kept"), wheel.advance(20_000));
+    }
+
+    @Test
+    void cancelAfterCascadeStillRemovesTask() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        wheel.schedule("a", 64 * 64 + 10);
+        wheel.schedule("b", 64 * 64 + 10);
+
+        // 推进到第 1 层的槽已经下放到第 0 层之后再取消
+        assertTrue(wheel.advance(64 * 64 + 5).isEmpty());
+        assertTrue(wheel.cancel("a"));
+        assertEquals(List.of("b"), wheel.advance(64 * 64 + 10));
+    }
+
+    @Test
+    void rescheduleReplacesPreviousDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        wheel.schedule("a", 10);
+        wheel.schedule("a", 5000);
+        assertEquals(1, wheel.size());
+
+        assertTrue(wheel.advance(4999).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(5000));
+
+        wheel.schedule("b", 9000);
+        wheel.schedule("b", 5001);
+        assertEquals(List.of("b"), wheel.advance(5001));
+        assertTrue(wheel.advance(9000).isEmpty());
+    }
+
+    @Test
+    void wrapsAroundSlotsFromUnalignedStart() {
+        // 起点不对齐任何一层，到期时间跨越第 0 层和第 1 层的槽边界多次回绕
+        long start = 64L * 64 * 3 - 17;
+        TimingWheel<Long> wheel = new TimingWheel<>(1, start);
+        Set<Long> pending = new HashSet<>();
+        for (long offset = 1; offset <= 64 * 64 * 2; offset += 13) {
+            wheel.schedule(start + offset, start + offset);
+            pending.add(start + offset);
+        }
+
+        Random random = new Random(11);
+        long now = start;
+        while (!pending.isEmpty()) {
+            long previous = now;
+            now += 1 + random.nextInt(150);
+            for (long deadline : wheel.advance(now)) {
+                assertTrue(deadline > previous && deadline <= now,
+                        "刻度 " + deadline + " 在 (" + previous + ", " + now + "] 之外到期");
+                assertTrue(pending.remove(deadline), "重复到期: " + deadline);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void randomDeadlinesExpireExactlyOnceInTheirWindow() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 0);
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            long deadline = 1 + random.nextInt(300_000);
+            deadlines.put(i, deadline);
+            wheel.schedule(i, deadline);
+        }
+        // 一部分在到期前取消
+        for (int i = 0; i < 3000; i += 10) {
+            assertTrue(wheel.cancel(i));
+            deadlines.remove(i);
+        }
+
+        long now = 0;
+        while (now < 300_000) {
+            long previous = now;
+            now += 1 + random.nextInt(5000);
+            for (int key : wheel.advance(now)) {
+                Long deadline = deadlines.remove(key);
+                assertNotNull(deadline, "取消或重复的任务到期: " + key);
+                assertTrue(deadline > previous && deadline <= now);
+            }
+        }
+        assertTrue(deadlines.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void idleWheelJumpsToNewTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        assertTrue(wheel.advance(1_000_000_000L).isEmpty());
+
+        // 跳过之后按新的当前时间计算到期
+        wheel.schedule("a", 1_000_000_010L);
+        assertTrue(wheel.advance(1_000_000_009L).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(1_000_000_010L));
+    }
+
+    @Test
+    void rejectsNonPositiveTick() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, 0));
+    }
+}